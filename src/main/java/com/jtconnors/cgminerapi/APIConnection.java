@@ -32,11 +32,15 @@
 package com.jtconnors.cgminerapi;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -57,20 +61,45 @@ public class APIConnection {
     private static final Logger LOGGER = 
             Logger.getLogger("com.jtconnors.cgminerapi");
 
+    /**
+     * Per call log, at FINE for every call and FINEST for sampled replies.
+     * Values are cut to {@link StructuredLog#getMaxValueLength()}
+     * characters.
+     */
+    public static final StructuredLog LOG =
+            new StructuredLog(LOGGER, APIConnection.class);
+
+    /**
+     * Decides which replies are logged in full at FINEST.  Defaults to one
+     * in every 100, or the value of the
+     * {@code com.jtconnors.cgminerapi.APIConnection.replySampling} logging
+     * property.
+     */
+    public static final StructuredLog.Sampler REPLY_SAMPLER =
+            new StructuredLog.Sampler(StructuredLog.intProperty(
+                    APIConnection.class.getName() + ".replySampling", 100));
+
+    private final String host;
     private final InetAddress ipAddr;
     private final int port;
 
+    private volatile TrafficRecorder recorder;
+    private volatile FirmwareProfile firmwareProfile;
+
     private static final int MAX_BYTES = 65535;
 
     /**
      * Perform an API call to a running cgminer instance.
+     * Each call is logged at FINE with its size and duration, and the reply
+     * of one call in {@link #REPLY_SAMPLER} is logged at FINEST.
      * @param jsonCmd JSON String representing the command.
      * @return a JSON string representing the response to this call.
      * @throws IOException if an error occurs when operating on the socket
      * connection
      */
     public String apiCall(String jsonCmd) throws IOException {
-        LOGGER.log(Level.INFO, "command = {0}", jsonCmd);
+        long timestamp = System.currentTimeMillis();
+        long start = System.nanoTime();
         StringBuilder sb = new StringBuilder();
         char[] buf = new char[MAX_BYTES];
         int len;
@@ -101,10 +130,127 @@ public class APIConnection {
         } catch (IOException e) {
            throw new IOException(e.getMessage() + " " + ipAddr + ":" + port, e);    
         }
-        LOGGER.log(Level.INFO, "reply = {0}", sb);
-        return sb.toString();
+        String reply = sb.toString();
+        logCall(jsonCmd, reply.length(), start, reply);
+        TrafficRecorder rec = recorder;
+        if (rec != null) {
+            try {
+                rec.record(toString(), timestamp, jsonCmd, reply);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to record API call", e);
+            }
+        }
+        return reply;
     }    
 
+    /**
+     * Perform an API call to a running cgminer instance using its plain text
+     * protocol, whose replies are cheaper for cgminer to produce and for
+     * {@link TextReplyParser} to scan than JSON.  Logging is as for
+     * {@link #apiCall(String)}.
+     * @param textCmd the command in text form, see
+     * {@link Command#toTextString()}
+     * @return the reply bytes, without the terminating NUL
+     * @throws IOException if an error occurs when operating on the socket
+     * connection
+     */
+    public byte[] apiCallText(String textCmd) throws IOException {
+        long timestamp = System.currentTimeMillis();
+        long start = System.nanoTime();
+        byte[] buf = new byte[MAX_BYTES];
+        int len = 0;
+        try (final Socket socket = new Socket(ipAddr, port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(textCmd.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            InputStream in = socket.getInputStream();
+            int n;
+            while ((n = in.read(buf, len, buf.length - len)) > 0) {
+                len += n;
+                if (buf[len - 1] == '\0') {
+                    len--;
+                    break;
+                }
+                if (len == buf.length) {
+                    buf = Arrays.copyOf(buf, len * 2);
+                }
+            }
+        } catch (IOException e) {
+           throw new IOException(e.getMessage() + " " + ipAddr + ":" + port, e);
+        }
+        byte[] reply = Arrays.copyOf(buf, len);
+        logCall(textCmd, len, start, reply);
+        TrafficRecorder rec = recorder;
+        if (rec != null) {
+            String replyStr = new String(reply, StandardCharsets.UTF_8);
+            try {
+                rec.record(toString(), timestamp, textCmd, replyStr);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to record API call", e);
+            }
+        }
+        return reply;
+    }
+
+    /*
+     * The reply is rendered only if it is sampled, and then by the handler.
+     */
+    private void logCall(String command, int size, long start,
+            Object reply) {
+        if (LOG.isLoggable(Level.FINE)) {
+            long micros = (System.nanoTime() - start) / 1000;
+            LOG.log(Level.FINE, "apiCall", "rig", this, "command", command,
+                    "bytes", size, "micros", micros);
+            LOG.log(Level.FINEST, REPLY_SAMPLER, "reply", "rig", this,
+                    "reply", reply);
+        }
+    }
+
+    /**
+     * Record every subsequent command and reply of this connection.
+     * @param recorder the recorder to append to, or null to stop recording
+     */
+    public void setRecorder(TrafficRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * @return the recorder this connection appends to, or null
+     */
+    public TrafficRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Get the profile of the cgminer instance, probing it with VERSION and
+     * CONFIG commands on first use.  The result is cached for the life of
+     * this connection.
+     * @return the firmware profile of the cgminer instance
+     * @throws IOException if an error occurs when probing
+     */
+    public FirmwareProfile getFirmwareProfile() throws IOException {
+        FirmwareProfile profile = firmwareProfile;
+        if (profile == null) {
+            synchronized (this) {
+                profile = firmwareProfile;
+                if (profile == null) {
+                    profile = FirmwareProfile.probe(this);
+                    firmwareProfile = profile;
+                }
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * Discard the cached firmware profile, e.g. after the instance has been
+     * upgraded, so that the next {@link #getFirmwareProfile()} probes again.
+     */
+    public void resetFirmwareProfile() {
+        firmwareProfile = null;
+    }
+
     /**
      * Creates an APIConnection
      * @param ipAddrStr the IP Address or hostname of the host
@@ -114,7 +260,30 @@ public class APIConnection {
      */
     public APIConnection(String ipAddrStr, int port) throws
             UnknownHostException {
+        this.host = ipAddrStr;
         this.ipAddr = InetAddress.getByName(ipAddrStr);
         this.port = port;
     }
+
+    /**
+     * @return the IP Address or hostname this connection was created with
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return the port number
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return a "host:port" string identifying the cgminer instance
+     */
+    @Override
+    public String toString() {
+        return host + ":" + port;
+    }
 }
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Streaming detector of sick devices.  For every device an exponentially
+ * weighted moving average and variance (EWMA/EWMVar) of its hashrate,
+ * temperature, hardware error rate and {@code Device Hardware%} is
+ * maintained; a sample is flagged when a metric leaves its band of
+ * {@code sigmas} standard deviations (with a minimum width) around the
+ * average.  Status and share staleness are checked on every sample.
+ * Anomalies are therefore reported within the poll cycle in which they
+ * first appear.  A metric that is flagged is not folded into its average,
+ * so the baseline stays put and the anomaly is reported on every sample
+ * for as long as it lasts, up to {@code rebaseline} consecutive samples.
+ * A metric still off its baseline by then is taken to have settled at a
+ * new level, such as after a re-tune, a fan swap or a change of ambient
+ * temperature: its average restarts from the current value and the
+ * anomaly is no longer reported.  Status and share staleness are not
+ * affected.
+ * <br><br>
+ * State per device is a fixed handful of primitives and no history is
+ * kept, so memory grows only with the number of devices.
+ * <br><br>
+ * Instances are thread safe.
+ */
+public class AnomalyDetector {
+
+    public static final double DEFAULT_ALPHA = 0.1;
+    public static final double DEFAULT_SIGMAS = 4.0;
+    public static final int DEFAULT_WARMUP = 10;
+    public static final int DEFAULT_REBASELINE = 60;
+    public static final long DEFAULT_STALE_SHARE_SECONDS = 600;
+
+    /* Minimum band widths, so near constant metrics do not flag noise */
+    public static final double MIN_HASHRATE_DROP_FRACTION = 0.2;
+    public static final double MIN_TEMPERATURE_RISE = 5.0;
+    public static final double MIN_HARDWARE_ERROR_RATE_RISE = 0.01;
+    public static final double MIN_HARDWARE_PERCENT_RISE = 0.5;
+
+    public static final String ALIVE = "Alive";
+
+    /**
+     * Receives the devices flagged by {@link AnomalyDetector#update}
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void anomaly(DeviceKey key, Set<Anomaly> anomalies, ReplyDevs devs);
+    }
+
+    /*
+     * EWMA/EWMVar of the four tracked metrics plus what is needed to derive
+     * the hardware error rate
+     */
+    private static final class State {
+        private final double[] mean = {
+            Double.NaN, Double.NaN, Double.NaN, Double.NaN
+        };
+        private final double[] variance = new double[METRICS];
+        private final int[] flagged = new int[METRICS];
+        private int count;
+        private double previousHardwareErrors = Double.NaN;
+        private double previousElapsed = Double.NaN;
+    }
+
+    private static final int HASHRATE = 0;
+    private static final int TEMPERATURE = 1;
+    private static final int HARDWARE_ERROR_RATE = 2;
+    private static final int HARDWARE_PERCENT = 3;
+    private static final int METRICS = 4;
+
+    private final double alpha;
+    private final double sigmas;
+    private final int warmup;
+    private final long staleShareSeconds;
+    private final int rebaseline;
+    private final ConcurrentMap<DeviceKey, State> states =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Creates an AnomalyDetector using the default parameters
+     */
+    public AnomalyDetector() {
+        this(DEFAULT_ALPHA, DEFAULT_SIGMAS, DEFAULT_WARMUP,
+                DEFAULT_STALE_SHARE_SECONDS, DEFAULT_REBASELINE);
+    }
+
+    /**
+     * Creates an AnomalyDetector that re-baselines after
+     * {@link #DEFAULT_REBASELINE} samples
+     * @param alpha EWMA smoothing factor between 0 and 1; larger values
+     * adapt faster
+     * @param sigmas width of the normal band in standard deviations
+     * @param warmup number of samples of a device before its metrics are
+     * checked
+     * @param staleShareSeconds maximum age of {@code Last Share Time}
+     */
+    public AnomalyDetector(double alpha, double sigmas, int warmup,
+            long staleShareSeconds) {
+        this(alpha, sigmas, warmup, staleShareSeconds, DEFAULT_REBASELINE);
+    }
+
+    /**
+     * Creates an AnomalyDetector
+     * @param alpha EWMA smoothing factor between 0 and 1; larger values
+     * adapt faster
+     * @param sigmas width of the normal band in standard deviations
+     * @param warmup number of samples of a device before its metrics are
+     * checked
+     * @param staleShareSeconds maximum age of {@code Last Share Time}
+     * @param rebaseline number of consecutive samples a metric is flagged
+     * before its current level is accepted as the new baseline
+     */
+    public AnomalyDetector(double alpha, double sigmas, int warmup,
+            long staleShareSeconds, int rebaseline) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException(
+                    "alpha must be in (0, 1], got " + alpha);
+        }
+        if (rebaseline < 1) {
+            throw new IllegalArgumentException(
+                    "rebaseline must be positive, got " + rebaseline);
+        }
+        this.alpha = alpha;
+        this.sigmas = sigmas;
+        this.warmup = warmup;
+        this.staleShareSeconds = staleShareSeconds;
+        this.rebaseline = rebaseline;
+    }
+
+    /**
+     * Check all DEVS replies of a poll
+     * @param sample the result of one poll of a rig
+     * @param listener receives the flagged devices
+     */
+    public void update(RigSample sample, Listener listener) {
+        for (Reply reply : sample.getReplies()) {
+            if (reply instanceof ReplyDevs) {
+                ReplyDevs devs = (ReplyDevs) reply;
+                DeviceKey key = new DeviceKey(sample.getRigId(),
+                        devs.getAsc());
+                Set<Anomaly> anomalies =
+                        update(key, sample.getTimestamp(), devs);
+                if (!anomalies.isEmpty()) {
+                    listener.anomaly(key, anomalies, devs);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check one device sample and fold its unflagged metrics into the
+     * device's state
+     * @param key the device
+     * @param timestamp time of the sample in milliseconds since the epoch
+     * @param devs the reply
+     * @return the anomalies found, empty if the device looks healthy
+     */
+    public Set<Anomaly> update(DeviceKey key, long timestamp, ReplyDevs devs) {
+        State state = states.computeIfAbsent(key, k -> new State());
+        Set<Anomaly> anomalies = EnumSet.noneOf(Anomaly.class);
+        if (devs.getStatus() != null && !ALIVE.equals(devs.getStatus())) {
+            anomalies.add(Anomaly.NOT_ALIVE);
+        }
+        Long lastShareTime = devs.getLastShareTime();
+        if (lastShareTime != null && lastShareTime > 0
+                && timestamp / 1000 - lastShareTime > staleShareSeconds) {
+            anomalies.add(Anomaly.STALE_SHARE);
+        }
+        double hashrate = DevsField.MHS_5S.getDouble(devs);
+        double temperature = DevsField.TEMPERATURE.getDouble(devs);
+        double hardwarePercent =
+                DevsField.DEVICE_HARDWARE_PERCENT.getDouble(devs);
+        double hardwareErrors = DevsField.HARDWARE_ERRORS.getDouble(devs);
+        double elapsed = DevsField.DEVICE_ELAPSED.getDouble(devs);
+        synchronized (state) {
+            double hardwareErrorRate = Double.NaN;
+            if (elapsed > state.previousElapsed
+                    && hardwareErrors >= state.previousHardwareErrors) {
+                hardwareErrorRate = (hardwareErrors
+                        - state.previousHardwareErrors)
+                        / (elapsed - state.previousElapsed);
+            }
+            state.previousHardwareErrors = hardwareErrors;
+            state.previousElapsed = elapsed;
+            if (state.count >= warmup) {
+                if (hashrate < state.mean[HASHRATE] - Math.max(
+                        band(state, HASHRATE),
+                        MIN_HASHRATE_DROP_FRACTION * state.mean[HASHRATE])) {
+                    anomalies.add(Anomaly.HASHRATE_DROP);
+                }
+                if (temperature > state.mean[TEMPERATURE] + Math.max(
+                        band(state, TEMPERATURE), MIN_TEMPERATURE_RISE)) {
+                    anomalies.add(Anomaly.TEMPERATURE_SPIKE);
+                }
+                if (hardwareErrorRate > state.mean[HARDWARE_ERROR_RATE]
+                        + Math.max(band(state, HARDWARE_ERROR_RATE),
+                        MIN_HARDWARE_ERROR_RATE_RISE)
+                        || hardwarePercent > state.mean[HARDWARE_PERCENT]
+                        + Math.max(band(state, HARDWARE_PERCENT),
+                        MIN_HARDWARE_PERCENT_RISE)) {
+                    anomalies.add(Anomaly.HARDWARE_ERRORS_RISING);
+                }
+            }
+            boolean hardwareFlagged =
+                    anomalies.contains(Anomaly.HARDWARE_ERRORS_RISING);
+            track(state, HASHRATE, hashrate,
+                    anomalies.contains(Anomaly.HASHRATE_DROP));
+            track(state, TEMPERATURE, temperature,
+                    anomalies.contains(Anomaly.TEMPERATURE_SPIKE));
+            track(state, HARDWARE_ERROR_RATE, hardwareErrorRate,
+                    hardwareFlagged);
+            track(state, HARDWARE_PERCENT, hardwarePercent, hardwareFlagged);
+            state.count++;
+        }
+        return anomalies;
+    }
+
+    private double band(State state, int metric) {
+        return sigmas * Math.sqrt(state.variance[metric]);
+    }
+
+    /*
+     * Fold an unflagged value into the average.  A flagged one is left out,
+     * unless the metric has now been flagged rebaseline times in a row, in
+     * which case the average restarts from it.
+     */
+    private void track(State state, int metric, double value,
+            boolean flagged) {
+        if (!flagged) {
+            state.flagged[metric] = 0;
+            fold(state, metric, value);
+        } else if (++state.flagged[metric] >= rebaseline) {
+            state.flagged[metric] = 0;
+            state.mean[metric] = Double.NaN;
+            fold(state, metric, value);
+        }
+    }
+
+    private void fold(State state, int metric, double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (Double.isNaN(state.mean[metric])) {
+            state.mean[metric] = value;
+            state.variance[metric] = 0.0;
+            return;
+        }
+        double diff = value - state.mean[metric];
+        double increment = alpha * diff;
+        state.mean[metric] += increment;
+        state.variance[metric] =
+                (1 - alpha) * (state.variance[metric] + diff * increment);
+    }
+
+    /**
+     * Forget the state of all devices of a rig
+     * @param rigId identifier of the rig
+     */
+    public void remove(String rigId) {
+        states.keySet().removeIf(key -> key.getRigId().equals(rigId));
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+
+/**
+ * {@code java.util.logging} handler that hands records to a target handler
+ * on a background thread, so that formatting and I/O stay off the threads
+ * that poll cgminer.  Records wait in a bounded queue; when it is full they
+ * are dropped rather than blocking the caller, and the writer thread
+ * reports the number dropped to the target as a WARNING once it catches up.
+ * <br><br>
+ * Since records are formatted later and on another thread, anything they
+ * refer to must not be modified after logging, and the source class and
+ * method should be set by the caller, as {@link StructuredLog} does; the
+ * handler does not infer them.
+ * <br><br>
+ * When created by the {@code LogManager} the handler is configured with
+ * these logging properties, prefixed with
+ * {@code com.jtconnors.cgminerapi.AsyncLogHandler}:
+ * <ul>
+ * <li>{@code .target} class name of the target handler, default
+ * {@code java.util.logging.ConsoleHandler}</li>
+ * <li>{@code .capacity} number of records the queue holds, default
+ * 1024</li>
+ * <li>{@code .level} level of this handler, default {@code ALL}</li>
+ * </ul>
+ * e.g. to get the per call logging of {@link APIConnection}:
+ * <pre>
+ * handlers = com.jtconnors.cgminerapi.AsyncLogHandler
+ * com.jtconnors.cgminerapi.AsyncLogHandler.target = \
+ *     java.util.logging.FileHandler
+ * com.jtconnors.cgminerapi.level = FINE
+ * </pre>
+ */
+public class AsyncLogHandler extends Handler {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final long FLUSH_TIMEOUT_MILLIS = 5000;
+
+    private final Handler target;
+    private final BlockingQueue<LogRecord> queue;
+    private final Thread writer;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Object lock = new Object();   // flush waits on it
+    private long reported;      // drop count last reported, writer only
+    private volatile boolean closed;
+
+    /**
+     * Creates an AsyncLogHandler configured from the logging properties
+     */
+    public AsyncLogHandler() {
+        this(createTarget(), StructuredLog.intProperty(
+                AsyncLogHandler.class.getName() + ".capacity",
+                DEFAULT_CAPACITY));
+        String level = LogManager.getLogManager().getProperty(
+                AsyncLogHandler.class.getName() + ".level");
+        if (level != null) {
+            try {
+                setLevel(Level.parse(level.trim()));
+            } catch (IllegalArgumentException e) {
+                reportError("Invalid level " + level, e,
+                        ErrorManager.GENERIC_FAILURE);
+            }
+        }
+    }
+
+    /**
+     * Creates an AsyncLogHandler
+     * @param target the handler records are handed to
+     * @param capacity number of records the queue holds
+     */
+    public AsyncLogHandler(Handler target, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(
+                    "capacity must be positive, got " + capacity);
+        }
+        this.target = target;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        setLevel(Level.ALL);
+        writer = new Thread(this::drain, "cgminerapi-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private static Handler createTarget() {
+        String name = LogManager.getLogManager().getProperty(
+                AsyncLogHandler.class.getName() + ".target");
+        if (name != null) {
+            try {
+                return (Handler) ClassLoader.getSystemClassLoader()
+                        .loadClass(name.trim())
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                new ErrorManager().error("Unable to create " + name, e,
+                        ErrorManager.OPEN_FAILURE);
+            }
+        }
+        return new ConsoleHandler();
+    }
+
+    /**
+     * Queue a record for the target handler.  Never blocks; the record is
+     * dropped if the queue is full or the handler is closed.
+     * @param record the record to publish
+     */
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        pending.incrementAndGet();
+        if (!queue.offer(record)) {
+            dropped.incrementAndGet();
+            done();
+        }
+    }
+
+    /*
+     * The lock is only taken when the last queued record is done, and then
+     * just to wake a waiting flush, so publish never contends for it.
+     */
+    private void done() {
+        if (pending.decrementAndGet() == 0) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                LogRecord record = queue.take();
+                write(record);
+                done();
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    private void write(LogRecord record) {
+        try {
+            target.publish(record);
+            long d = dropped.get();
+            if (d != reported && queue.isEmpty()) {
+                LogRecord warning = new LogRecord(Level.WARNING,
+                        "AsyncLogHandler dropped {0} records");
+                warning.setParameters(new Object[] {d - reported});
+                warning.setLoggerName(record.getLoggerName());
+                warning.setSourceClassName(AsyncLogHandler.class.getName());
+                warning.setSourceMethodName("publish");
+                reported = d;
+                target.publish(warning);
+            }
+        } catch (RuntimeException e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    /**
+     * @return the handler records are handed to
+     */
+    public Handler getTarget() {
+        return target;
+    }
+
+    /**
+     * @return the number of records dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Wait, for at most a few seconds, until the records queued so far have
+     * been handed to the target handler, then flush it.
+     */
+    @Override
+    public void flush() {
+        long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(FLUSH_TIMEOUT_MILLIS);
+        synchronized (lock) {
+            long wait;
+            while (pending.get() > 0 && !closed
+                    && (wait = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(lock, wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        target.flush();
+    }
+
+    /**
+     * Hand the remaining records to the target handler and close it
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        writer.interrupt();
+        try {
+            writer.join(FLUSH_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<LogRecord> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (LogRecord record : rest) {
+            write(record);
+        }
+        target.close();
+    }
+}
@@ -0,0 +1,678 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import java.util.logging.StreamHandler;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.spi.JsonProvider;
+
+/*
+ * Micro benchmarks of the encoding and parsing paths, driven by a recording
+ * of real cgminer traffic made with a TrafficRecorder:
+ *
+ *     Benchmarks export|text|json|format|log RECORDING_FILE
+ *
+ * Each case is run a few times to warm up and then timed; the best round is
+ * reported.  Results are indicative only, run with a quiet machine.
+ */
+public class Benchmarks {
+
+    private static final Logger LOGGER =
+            Logger.getLogger("com.jtconnors.cgminerapi");
+
+    private static final JsonBuilderFactory BUILDER_FACTORY =
+            Json.createBuilderFactory(Collections.emptyMap());
+
+    private static final int WARMUP_ROUNDS = 10;
+    private static final int TIMED_ROUNDS = 10;
+
+    @FunctionalInterface
+    private interface Task {
+        long run() throws IOException;
+    }
+
+    private static List<RigSample> loadSamples(Path recording)
+            throws IOException {
+        List<RigSample> samples = new ArrayList<>();
+        TrafficRecorder.read(recording, record -> {
+            RigSample sample = record.toRigSample();
+            if (sample.getReplies().size() > 1) {
+                samples.add(sample);
+            }
+            return true;
+        });
+        return samples;
+    }
+
+    /*
+     * Runs task repeatedly and prints the best round.  The task returns a
+     * byte count that is printed alongside.
+     */
+    private static void measure(String name, int samples, Task task)
+            throws IOException {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += task.run();
+        }
+        long best = Long.MAX_VALUE;
+        long bytes = 0;
+        for (int i = 0; i < TIMED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            bytes = task.run();
+            best = Math.min(best, System.nanoTime() - start);
+            sink += bytes;
+        }
+        System.out.println(String.format(Locale.ROOT,
+                "%-28s %12d bytes %10.0f samples/s %8.2f us/sample "
+                + "%8.1f MB/s", name, bytes, samples * 1e9 / best,
+                best / 1e3 / samples, bytes * 1e9 / best / (1024 * 1024)));
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /*
+     * The JSON a consumer would typically produce when re-serialising the
+     * parsed replies, using the same keys and layout as cgminer.
+     */
+    private static byte[] toJson(RigSample sample) {
+        JsonObjectBuilder root = BUILDER_FACTORY.createObjectBuilder();
+        JsonArrayBuilder devs = null;
+        for (Reply reply : sample.getReplies()) {
+            if (reply instanceof ReplyStatus) {
+                root.add(Reply.STATUS_REPLY, BUILDER_FACTORY
+                        .createArrayBuilder().add(toJson(StatusField.values(),
+                        (ReplyStatus) reply)));
+            } else if (reply instanceof ReplySummary) {
+                root.add(Reply.SUMMARY_REPLY, BUILDER_FACTORY
+                        .createArrayBuilder().add(toJson(SummaryField.values(),
+                        (ReplySummary) reply)));
+            } else if (reply instanceof ReplyDevs) {
+                if (devs == null) {
+                    devs = BUILDER_FACTORY.createArrayBuilder();
+                }
+                devs.add(toJson(DevsField.values(), (ReplyDevs) reply));
+            }
+        }
+        if (devs != null) {
+            root.add(Reply.DEVS_REPLY, devs);
+        }
+        return root.build().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static <T extends Reply> JsonObjectBuilder toJson(
+            ReplyField<T>[] fields, T reply) {
+        JsonObjectBuilder builder = BUILDER_FACTORY.createObjectBuilder();
+        for (ReplyField<T> field : fields) {
+            Object value = field.getValue(reply);
+            if (value == null) {
+                continue;
+            }
+            switch (field.getType()) {
+                case INTEGER:
+                case LONG:
+                    builder.add(field.getKey(), field.getLong(reply));
+                    break;
+                case DOUBLE:
+                    builder.add(field.getKey(), field.getDouble(reply));
+                    break;
+                case BOOLEAN:
+                    builder.add(field.getKey(), (Boolean) value);
+                    break;
+                case STRING:
+                    builder.add(field.getKey(), (String) value);
+                    break;
+            }
+        }
+        return builder;
+    }
+
+    private static byte[] toBinary(List<RigSample> samples)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SampleExportWriter writer = new SampleExportWriter(out)) {
+            for (RigSample sample : samples) {
+                writer.write(sample);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /*
+     * Size and throughput of the binary export format against JSON and
+     * the label=value toString() form.
+     */
+    private static void export(List<RigSample> samples) throws IOException {
+        int n = samples.size();
+        List<byte[]> json = new ArrayList<>();
+        for (RigSample sample : samples) {
+            json.add(toJson(sample));
+        }
+        byte[] binary = toBinary(samples);
+
+        System.out.println("Encode (" + n + " samples)");
+        measure("JSON", n, () -> {
+            long bytes = 0;
+            for (RigSample sample : samples) {
+                bytes += toJson(sample).length;
+            }
+            return bytes;
+        });
+        measure("toString()", n, () -> {
+            long bytes = 0;
+            for (RigSample sample : samples) {
+                for (Reply reply : sample.getReplies()) {
+                    bytes += reply.toString()
+                            .getBytes(StandardCharsets.UTF_8).length;
+                }
+            }
+            return bytes;
+        });
+        measure("binary export", n, () -> toBinary(samples).length);
+
+        System.out.println("Decode (" + n + " samples)");
+        measure("JSON (JSONParser)", n, () -> {
+            long bytes = 0;
+            for (byte[] reply : json) {
+                new JSONParser(new String(reply, StandardCharsets.UTF_8))
+                        .parseReply();
+                bytes += reply.length;
+            }
+            return bytes;
+        });
+        measure("binary export (Reply)", n, () -> {
+            try (SampleExportReader reader = new SampleExportReader(
+                    new ByteArrayInputStream(binary))) {
+                while (reader.read() != null) {
+                }
+            }
+            return binary.length;
+        });
+        SampleStore store = new SampleStore(16);
+        measure("binary export (visitor)", n, () -> {
+            try (SampleExportReader reader = new SampleExportReader(
+                    new ByteArrayInputStream(binary))) {
+                SampleExportReader.SampleVisitor visitor =
+                        new SampleExportReader.SampleVisitor() {
+                    @Override
+                    public void visitStatus(String rigId, long timestamp,
+                            ReplyValues<ReplyStatus> values) {
+                    }
+
+                    @Override
+                    public void visitSummary(String rigId, long timestamp,
+                            ReplyValues<ReplySummary> values) {
+                        store.appendSummary(rigId, timestamp, values);
+                    }
+
+                    @Override
+                    public void visitDevs(String rigId, long timestamp,
+                            ReplyValues<ReplyDevs> values) {
+                        store.appendDevs(rigId, timestamp, values);
+                    }
+                };
+                while (reader.read(visitor)) {
+                }
+            }
+            return binary.length;
+        });
+    }
+
+    /*
+     * The recorded JSON replies that parse to more than a STATUS
+     */
+    private static List<byte[]> loadReplies(Path recording)
+            throws IOException {
+        List<byte[]> replies = new ArrayList<>();
+        TrafficRecorder.read(recording, record -> {
+            if (!record.isText()
+                    && record.toRigSample().getReplies().size() > 1) {
+                replies.add(record.getReply());
+            }
+            return true;
+        });
+        return replies;
+    }
+
+    private static List<Command> loadCommands(TrafficReplayServer server) {
+        List<Command> commands = new ArrayList<>();
+        for (String request : server.getRequests()) {
+            JsonObject jsonCommand =
+                    JsonBackend.getDefault().readObject(request);
+            Request r = Request.toRequest(jsonCommand.getString("command"));
+            if (r != null) {
+                commands.add(new Command(r,
+                        jsonCommand.getString("parameter", null)));
+            }
+        }
+        return commands;
+    }
+
+    /*
+     * cgminer's plain text protocol against JSON on identical data, parsing
+     * from memory into new Replies and into a reusable ReplyBuffer, and then
+     * end to end through a TrafficReplayServer standing in for the rigs.
+     */
+    private static void text(Path recording) throws IOException {
+        List<byte[]> json = loadReplies(recording);
+        List<byte[]> text = new ArrayList<>();
+        for (byte[] reply : json) {
+            text.add(TrafficReplayServer.toTextReply(reply));
+        }
+        int n = json.size();
+
+        System.out.println("Decode (" + n + " replies)");
+        measure("JSON (JSONParser)", n, () -> {
+            long bytes = 0;
+            for (byte[] reply : json) {
+                new JSONParser(new String(reply, StandardCharsets.UTF_8))
+                        .parseReply();
+                bytes += reply.length;
+            }
+            return bytes;
+        });
+        TextReplyParser parser = new TextReplyParser();
+        measure("text (TextReplyParser)", n, () -> {
+            long bytes = 0;
+            for (byte[] reply : text) {
+                parser.parseReply(reply, 0, reply.length);
+                bytes += reply.length;
+            }
+            return bytes;
+        });
+        ReplyBuffer buffer = new ReplyBuffer();
+        measure("JSON (ReplyBuffer)", n, () -> {
+            long bytes = 0;
+            for (byte[] reply : json) {
+                buffer.clear();
+                buffer.parse(new String(reply, StandardCharsets.UTF_8));
+                bytes += reply.length;
+            }
+            return bytes;
+        });
+        measure("text (ReplyBuffer)", n, () -> {
+            long bytes = 0;
+            for (byte[] reply : text) {
+                buffer.clear();
+                buffer.parseText(reply, 0, reply.length);
+                bytes += reply.length;
+            }
+            return bytes;
+        });
+
+        try (TrafficReplayServer server = new TrafficReplayServer(recording,
+                null, 0, TrafficReplayer.MAX_SPEED, true)) {
+            APIConnection apiConn =
+                    new APIConnection("localhost", server.getPort());
+            List<Command> commands = loadCommands(server);
+            int calls = Math.min(n, 2000);
+            System.out.println("Call and decode (" + calls + " replies)");
+            measure("JSON (apiCall)", calls, () -> {
+                long bytes = 0;
+                for (int i = 0; i < calls; i++) {
+                    String reply = apiConn.apiCall(
+                            commands.get(i % commands.size()).toJSONString());
+                    new JSONParser(reply).parseReply();
+                    bytes += reply.length();
+                }
+                return bytes;
+            });
+            measure("text (apiCallText)", calls, () -> {
+                long bytes = 0;
+                for (int i = 0; i < calls; i++) {
+                    byte[] reply = apiConn.apiCallText(
+                            commands.get(i % commands.size()).toTextString());
+                    parser.parseReply(reply, 0, reply.length);
+                    bytes += reply.length;
+                }
+                return bytes;
+            });
+        }
+    }
+
+    /*
+     * Per-reply cost of each JsonBackend, reading only and reading and
+     * parsing into Reply objects
+     */
+    private static void json(Path recording) throws IOException {
+        List<String> json = new ArrayList<>();
+        for (byte[] reply : loadReplies(recording)) {
+            json.add(new String(reply, StandardCharsets.UTF_8));
+        }
+        int n = json.size();
+        JsonProvider provider = JsonProvider.provider();
+        String[] names = {
+            "Json.* lookups",
+            "cached " + provider.getClass().getSimpleName(),
+            "scanner"
+        };
+        JsonBackend[] backends = {
+            JsonBackend.serviceLookup(),
+            JsonBackend.forProvider(provider),
+            JsonBackend.scanner()
+        };
+        System.out.println("Read (" + n + " replies)");
+        for (int i = 0; i < backends.length; i++) {
+            JsonBackend backend = backends[i];
+            measure(names[i], n, () -> {
+                long bytes = 0;
+                for (String reply : json) {
+                    backend.readObject(reply);
+                    bytes += reply.length();
+                }
+                return bytes;
+            });
+        }
+        System.out.println("Read and parse (" + n + " replies)");
+        for (int i = 0; i < backends.length; i++) {
+            JsonBackend backend = backends[i];
+            measure(names[i], n, () -> {
+                long bytes = 0;
+                for (String reply : json) {
+                    new JSONParser(reply, backend).parseReply();
+                    bytes += reply.length();
+                }
+                return bytes;
+            });
+        }
+    }
+
+    /*
+     * toString() against ReplyFormatter writing each format into a reused
+     * StringBuilder, and into a ByteBuffer; cgminer's own JSON through
+     * JSON-P against CgminerJsonWriter.
+     */
+    private static void format(List<RigSample> samples) throws IOException {
+        int n = samples.size();
+        StringBuilder sb = new StringBuilder(8192);
+        System.out.println("Format (" + n + " samples)");
+        measure("toString()", n, () -> {
+            long bytes = 0;
+            for (RigSample sample : samples) {
+                for (Reply reply : sample.getReplies()) {
+                    bytes += reply.toString().length();
+                }
+            }
+            return bytes;
+        });
+        for (ReplyFormatter.Format format : ReplyFormatter.Format.values()) {
+            measure("formatTo(" + format + ")", n, () -> {
+                long bytes = 0;
+                for (RigSample sample : samples) {
+                    for (Reply reply : sample.getReplies()) {
+                        sb.setLength(0);
+                        reply.formatTo(sb, format);
+                        bytes += sb.length();
+                    }
+                }
+                return bytes;
+            });
+        }
+        measure("JSON-P builder", n, () -> {
+            long bytes = 0;
+            for (RigSample sample : samples) {
+                bytes += toJson(sample).length;
+            }
+            return bytes;
+        });
+        CgminerJsonWriter writer = new CgminerJsonWriter();
+        measure("CgminerJsonWriter", n, () -> {
+            long bytes = 0;
+            for (RigSample sample : samples) {
+                bytes += writer.write(sample.getReplies()).size();
+            }
+            return bytes;
+        });
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        measure("formatTo(JSON, ByteBuffer)", n, () -> {
+            long bytes = 0;
+            for (RigSample sample : samples) {
+                for (Reply reply : sample.getReplies()) {
+                    buffer.clear();
+                    reply.formatTo(buffer, ReplyFormatter.Format.JSON);
+                    bytes += buffer.position();
+                }
+            }
+            return bytes;
+        });
+    }
+
+    /*
+     * Checks that CgminerJsonWriter reproduces the recorded replies byte
+     * for byte, from Replies and from a ReplyBuffer, and again with every
+     * Diff1 Work raised above 2^31, which Replies cannot hold and must
+     * refuse to write.  The first mismatch of each path is printed.
+     */
+    private static void roundTrip(Path recording) throws IOException {
+        List<byte[]> replies = loadReplies(recording);
+        List<byte[]> large = new ArrayList<>();
+        Pattern diff1Work = Pattern.compile("\"Diff1 Work\":(\\d+)");
+        for (byte[] reply : replies) {
+            Matcher m = diff1Work.matcher(
+                    new String(reply, StandardCharsets.UTF_8));
+            StringBuffer sb = new StringBuffer();
+            while (m.find()) {
+                m.appendReplacement(sb, "\"Diff1 Work\":"
+                        + (Long.parseLong(m.group(1)) + 5000000000L));
+            }
+            m.appendTail(sb);
+            large.add(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        System.out.println("Round trip (" + replies.size() + " replies)");
+        roundTrip("recorded", replies);
+        roundTrip("Diff1 Work above 2^31", large);
+    }
+
+    private static void roundTrip(String name, List<byte[]> replies) {
+        CgminerJsonWriter writer = new CgminerJsonWriter();
+        ReplyBuffer buffer = new ReplyBuffer();
+        int fromReplies = 0;
+        int refused = 0;
+        int fromBuffer = 0;
+        String replyMismatch = null;
+        String bufferMismatch = null;
+        for (byte[] reply : replies) {
+            String json = new String(reply, StandardCharsets.UTF_8);
+            try {
+                byte[] written = writer.write(
+                        new JSONParser(json).parseReply()).toByteArray();
+                if (Arrays.equals(reply, written)) {
+                    fromReplies++;
+                } else if (replyMismatch == null) {
+                    replyMismatch = mismatch(reply, written);
+                }
+            } catch (IllegalArgumentException e) {
+                refused++;
+            }
+            buffer.clear();
+            buffer.parse(json);
+            byte[] written = writer.write(buffer).toByteArray();
+            if (Arrays.equals(reply, written)) {
+                fromBuffer++;
+            } else if (bufferMismatch == null) {
+                bufferMismatch = mismatch(reply, written);
+            }
+        }
+        System.out.println(String.format(Locale.ROOT,
+                "%-28s %d of %d identical from Replies (%d refused), %d from"
+                + " a ReplyBuffer", name, fromReplies, replies.size(),
+                refused, fromBuffer));
+        if (replyMismatch != null) {
+            System.out.println("  from Replies:  " + replyMismatch);
+        }
+        if (bufferMismatch != null) {
+            System.out.println("  from a ReplyBuffer:  " + bufferMismatch);
+        }
+    }
+
+    /*
+     * Where two replies first differ, with some context from each
+     */
+    private static String mismatch(byte[] recorded, byte[] written) {
+        int i = 0;
+        while (i < recorded.length && i < written.length
+                && recorded[i] == written[i]) {
+            i++;
+        }
+        int from = Math.max(0, i - 20);
+        return "offset " + i + ": recorded \""
+                + new String(recorded, from,
+                        Math.min(recorded.length, i + 20) - from,
+                        StandardCharsets.UTF_8)
+                + "\", written \""
+                + new String(written, from,
+                        Math.min(written.length, i + 20) - from,
+                        StandardCharsets.UTF_8) + "\"";
+    }
+
+    /*
+     * Cost of per call logging on apiCallText through a TrafficReplayServer.
+     * Records are formatted with a SimpleFormatter into a stream that
+     * discards them, so only the logging itself is measured.
+     */
+    private static void log(Path recording) throws IOException {
+        OutputStream discard = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+        try (TrafficReplayServer server = new TrafficReplayServer(recording,
+                null, 0, TrafficReplayer.MAX_SPEED, true)) {
+            APIConnection apiConn =
+                    new APIConnection("localhost", server.getPort());
+            List<Command> commands = loadCommands(server);
+            TextReplyParser parser = new TextReplyParser();
+            int calls = 2000;
+            Task task = () -> {
+                long bytes = 0;
+                for (int i = 0; i < calls; i++) {
+                    byte[] reply = apiConn.apiCallText(
+                            commands.get(i % commands.size()).toTextString());
+                    parser.parseReply(reply, 0, reply.length);
+                    bytes += reply.length;
+                }
+                return bytes;
+            };
+            System.out.println("Call and decode (" + calls + " replies)");
+            measure("WARNING", calls, task);
+
+            StreamHandler sync =
+                    new StreamHandler(discard, new SimpleFormatter());
+            sync.setLevel(Level.ALL);
+            AsyncLogHandler async = new AsyncLogHandler(sync, 1024);
+            LOGGER.setUseParentHandlers(false);
+            try {
+                LOGGER.addHandler(sync);
+                LOGGER.setLevel(Level.FINEST);
+                APIConnection.REPLY_SAMPLER.setOneIn(1);
+                measure("FINEST, every reply, sync", calls, task);
+                LOGGER.removeHandler(sync);
+
+                LOGGER.addHandler(async);
+                measure("FINEST, every reply, async", calls, task);
+                APIConnection.REPLY_SAMPLER.setOneIn(100);
+                measure("FINEST, 1 in 100, async", calls, task);
+                LOGGER.setLevel(Level.FINE);
+                measure("FINE, async", calls, task);
+                async.flush();
+                System.out.println("dropped " + async.getDroppedCount()
+                        + " records");
+            } finally {
+                LOGGER.removeHandler(async);
+                async.close();
+                LOGGER.setUseParentHandlers(true);
+                LOGGER.setLevel(Level.WARNING);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 || !(args[0].equals("export")
+                || args[0].equals("text") || args[0].equals("json")
+                || args[0].equals("format") || args[0].equals("log"))) {
+            System.err.println("Usage: Benchmarks "
+                    + "export|text|json|format|log RECORDING_FILE");
+            System.exit(1);
+        }
+        LOGGER.setLevel(Level.WARNING);
+        Path recording = Paths.get(args[1]);
+        if (args[0].equals("text")) {
+            text(recording);
+            return;
+        }
+        if (args[0].equals("json")) {
+            json(recording);
+            return;
+        }
+        if (args[0].equals("log")) {
+            log(recording);
+            return;
+        }
+        List<RigSample> samples = loadSamples(recording);
+        if (samples.isEmpty()) {
+            System.err.println("No SUMMARY or DEVS replies in " + args[1]);
+            System.exit(1);
+        }
+        if (args[0].equals("format")) {
+            roundTrip(recording);
+            format(samples);
+            return;
+        }
+        export(samples);
+    }
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes parsed STATUS, SUMMARY and DEVS replies back out as the JSON
+ * cgminer itself sends, for gateways and proxies that pass replies on to
+ * clients.  The output is byte for byte what cgminer 4.x produces for the
+ * same values: no whitespace, fields in cgminer's order, doubles printed
+ * with cgminer's {@code printf} precision (e.g. {@code %.2f} for MHS,
+ * temperature and utility, {@code %.4f} for Total MH and percentages,
+ * {@code %.8f} for difficulties) and a trailing {@code "id":1}.  A reply
+ * read from cgminer into a {@link ReplyBuffer} therefore comes out exactly
+ * as it was received, as long as it carried no fields beyond those
+ * modelled.  (A negative value that cgminer rounded to {@code -0.00} is the
+ * one exception: JSON-P reads it as a positive zero.)
+ * <br><br>
+ * {@code Reply} objects hold INTEGER fields such as {@code Diff1 Work},
+ * {@code Accepted} and {@code Best Share} as an {@code Integer}, which the
+ * counters of a long running ASIC outgrow.  Such values are truncated when
+ * parsed, reported as {@code OUT_OF_RANGE} by
+ * {@link JSONParser#parse(ParseMode)} and the reply is marked as
+ * {@linkplain Reply#isTruncated() truncated};
+ * {@link #write(List)} refuses it rather than write wrong numbers.
+ * {@link #write(ReplyBuffer)} holds every integral field as a
+ * {@code long} and writes such replies exactly.
+ * <br><br>
+ * The keys are encoded to UTF-8 once, up front, and numbers are formatted
+ * digit by digit into a byte array that is reused from one reply to the
+ * next.  Only doubles beyond the range of a {@code long}, or lying within
+ * rounding error of a tie, go through {@code BigDecimal}.
+ * <br><br>
+ * Instances are not thread safe, use one per thread.
+ */
+public final class CgminerJsonWriter {
+
+    private static final Map<Class<?>, Layout> LAYOUTS = new HashMap<>();
+
+    static {
+        Map<String, Integer> decimals = new HashMap<>();
+        for (String key : Arrays.asList(Reply.MHS_AV, Reply.MHS_5S,
+                Reply.MHS_1M, Reply.MHS_5M, Reply.MHS_15M, Reply.UTILITY,
+                Reply.WORK_UTILITY, Reply.TEMPERATURE)) {
+            decimals.put(key, 2);
+        }
+        for (String key : Arrays.asList(Reply.TOTAL_MH,
+                Reply.DEVICE_HARDWARE_PERCENT, Reply.DEVICE_REJECTED_PERCENT,
+                Reply.POOL_REJECTED_PERCENT, Reply.POOL_STALE_PERCENT)) {
+            decimals.put(key, 4);
+        }
+        for (String key : Arrays.asList(Reply.DIFFICULTY_ACCEPTED,
+                Reply.DIFFICULTY_REJECTED, Reply.DIFFICULTY_STALE,
+                Reply.LAST_SHARE_DIFFICULTY)) {
+            decimals.put(key, 8);
+        }
+        LAYOUTS.put(ReplyStatus.class, new Layout(Reply.STATUS_REPLY,
+                StatusField.values(), decimals));
+        LAYOUTS.put(ReplySummary.class, new Layout(Reply.SUMMARY_REPLY,
+                SummaryField.values(), decimals));
+        LAYOUTS.put(ReplyDevs.class, new Layout(Reply.DEVS_REPLY,
+                DevsField.values(), decimals));
+    }
+
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] END = ascii("],\"id\":1}");
+
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L,
+        100000000L
+    };
+
+    private static final double MAX_WHOLE = 9e18;
+
+    /*
+     * How a reply type is written: its pre-encoded section header and
+     * keys, and the number of decimals cgminer prints for each DOUBLE
+     * field
+     */
+    private static final class Layout {
+
+        private final byte[] section;
+        private final ReplyField<?>[] fields;
+        private final byte[][] keys;
+        private final int[] decimals;
+
+        private Layout(String name, ReplyField<?>[] fields,
+                Map<String, Integer> decimals) {
+            this.section = ascii("\"" + name + "\":[");
+            this.fields = fields;
+            this.keys = new byte[fields.length][];
+            this.decimals = new int[fields.length];
+            for (ReplyField<?> field : fields) {
+                int i = field.ordinal();
+                keys[i] = ("\"" + field.getKey() + "\":")
+                        .getBytes(StandardCharsets.UTF_8);
+                if (field.getType() == FieldType.DOUBLE) {
+                    Integer n = decimals.get(field.getKey());
+                    if (n == null) {
+                        throw new IllegalStateException(
+                                "No precision for " + field.getKey());
+                    }
+                    this.decimals[i] = n;
+                }
+            }
+        }
+    }
+
+    private final ReplyFormatter.ReplyAdapter replyValues =
+            new ReplyFormatter.ReplyAdapter();
+    private final byte[] digits = new byte[20];
+    private byte[] buf = new byte[8192];
+    private int count;
+    private Layout open;
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Write a complete reply, replacing the previous contents
+     * @param replies STATUS followed by the SUMMARY or DEVS replies, as
+     * returned by {@link JSONParser#parseReply()}
+     * @return this writer
+     * @throws IllegalArgumentException if a reply is not a STATUS, SUMMARY
+     * or DEVS reply, or is {@linkplain Reply#isTruncated() truncated}
+     */
+    public CgminerJsonWriter write(List<? extends Reply> replies) {
+        for (Reply reply : replies) {
+            if (reply.isTruncated()) {
+                throw new IllegalArgumentException("Cannot write "
+                        + reply.getClass().getSimpleName()
+                        + " holding a truncated value");
+            }
+        }
+        begin();
+        try {
+            for (Reply reply : replies) {
+                replyValues.reply = reply;
+                entry(layoutOf(reply), replyValues);
+            }
+        } finally {
+            replyValues.reply = null;
+        }
+        return end();
+    }
+
+    /**
+     * Write the replies held by a reusable buffer as a complete reply,
+     * replacing the previous contents
+     * @param buffer the buffer
+     * @return this writer
+     */
+    public CgminerJsonWriter write(ReplyBuffer buffer) {
+        begin();
+        entry(LAYOUTS.get(ReplyStatus.class), buffer.getStatus());
+        if (buffer.hasSummary()) {
+            entry(LAYOUTS.get(ReplySummary.class), buffer.getSummary());
+        }
+        for (int i = 0; i < buffer.getDevsCount(); i++) {
+            entry(LAYOUTS.get(ReplyDevs.class), buffer.getDevs(i));
+        }
+        return end();
+    }
+
+    private static Layout layoutOf(Reply reply) {
+        Layout layout = LAYOUTS.get(reply.getClass());
+        if (layout == null) {
+            throw new IllegalArgumentException("Cannot write "
+                    + reply.getClass().getSimpleName());
+        }
+        return layout;
+    }
+
+    private void begin() {
+        count = 0;
+        open = null;
+        put((byte) '{');
+    }
+
+    private CgminerJsonWriter end() {
+        if (open == null) {
+            put((byte) '}');
+        } else {
+            put(END);
+        }
+        open = null;
+        return this;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void entry(Layout layout, ReplyValues values) {
+        if (layout != open) {
+            if (open != null) {
+                put((byte) ']');
+                put((byte) ',');
+            }
+            put(layout.section);
+            open = layout;
+        } else {
+            put((byte) ',');
+        }
+        put((byte) '{');
+        boolean first = true;
+        for (ReplyField field : layout.fields) {
+            if (!values.isPresent(field)) {
+                continue;
+            }
+            if (!first) {
+                put((byte) ',');
+            }
+            first = false;
+            int i = field.ordinal();
+            put(layout.keys[i]);
+            switch (field.getType()) {
+                case INTEGER:
+                case LONG:
+                    longValue(values.getLong(field));
+                    break;
+                case DOUBLE:
+                    fixed(values.getDouble(field), layout.decimals[i]);
+                    break;
+                case BOOLEAN:
+                    put(values.getLong(field) != 0 ? TRUE : FALSE);
+                    break;
+                case STRING:
+                    string(values.getString(field));
+                    break;
+            }
+        }
+        put((byte) '}');
+    }
+
+    private void longValue(long value) {
+        if (value == Long.MIN_VALUE) {
+            put(ascii(Long.toString(value)));
+            return;
+        }
+        if (value < 0) {
+            put((byte) '-');
+            value = -value;
+        }
+        digits(value, 1);
+    }
+
+    private void digits(long value, int minDigits) {
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0 || digits.length - i < minDigits);
+        ensure(digits.length - i);
+        System.arraycopy(digits, i, buf, count, digits.length - i);
+        count += digits.length - i;
+    }
+
+    /*
+     * printf("%.Nf"): the exact binary value rounded half to even, with
+     * the sign kept on negative values that round to zero.  The fraction
+     * of a double is exact, so only a product within rounding error of a
+     * tie needs BigDecimal to decide.
+     */
+    private void fixed(double value, int decimals) {
+        if (Double.isNaN(value)) {
+            put(ascii("nan"));
+            return;
+        }
+        if (value < 0 || (value == 0 && 1 / value < 0)) {
+            put((byte) '-');
+            value = -value;
+        }
+        if (Double.isInfinite(value)) {
+            put(ascii("inf"));
+            return;
+        }
+        if (value < MAX_WHOLE) {
+            double whole = Math.floor(value);
+            double scaled = (value - whole) * POWERS_OF_TEN[decimals];
+            double floor = Math.floor(scaled);
+            if (Math.abs(scaled - floor - 0.5) > 4 * Math.ulp(scaled)) {
+                long integer = (long) whole;
+                long fraction = (long) floor + (scaled - floor > 0.5 ? 1 : 0);
+                if (fraction == POWERS_OF_TEN[decimals]) {
+                    integer++;
+                    fraction = 0;
+                }
+                digits(integer, 1);
+                if (decimals > 0) {
+                    put((byte) '.');
+                    digits(fraction, decimals);
+                }
+                return;
+            }
+        }
+        put(ascii(new BigDecimal(value)
+                .setScale(decimals, RoundingMode.HALF_EVEN)
+                .toPlainString()));
+    }
+
+    /*
+     * cgminer escapes only '"' and '\' in JSON strings
+     */
+    private void string(String value) {
+        put((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                put((byte) '\\');
+                put((byte) c);
+            } else if (c < 0x80) {
+                put((byte) c);
+            } else {
+                int end = i + 1;
+                while (end < value.length() && value.charAt(end) >= 0x80) {
+                    end++;
+                }
+                put(value.substring(i, end)
+                        .getBytes(StandardCharsets.UTF_8));
+                i = end - 1;
+            }
+        }
+        put((byte) '"');
+    }
+
+    private void ensure(int n) {
+        if (count + n > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + n));
+        }
+    }
+
+    private void put(byte b) {
+        ensure(1);
+        buf[count++] = b;
+    }
+
+    private void put(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, count, bytes.length);
+        count += bytes.length;
+    }
+
+    /**
+     * @return the length in bytes of the last reply written
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return a copy of the last reply written, without cgminer's
+     * terminating NUL
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    /**
+     * Send the last reply written, without cgminer's terminating NUL
+     * @param out the destination
+     * @throws IOException if {@code out} throws it
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, count);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buf, 0, count, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Change-data-capture over successive polls.  The latest SUMMARY and DEVS
+ * replies of every rig are retained; each new poll is compared field by
+ * field against them and a {@link ChangeEvent} listing only the modified
+ * fields is emitted for every rig summary or device that changed.  Rigs and
+ * devices whose replies are identical produce no events at all, so
+ * downstream sinks carry only what actually changed.
+ * <br><br>
+ * Instances are thread safe.
+ */
+public class ChangeDetector {
+
+    /**
+     * Receives the events emitted by {@link ChangeDetector#diff}
+     */
+    public interface Listener {
+        void summaryChanged(ChangeEvent<ReplySummary> event);
+
+        void devsChanged(ChangeEvent<ReplyDevs> event);
+    }
+
+    /*
+     * Latest replies of a rig, device replies keyed by ASC number
+     */
+    private static final class RigState {
+        private ReplySummary summary;
+        private final Map<Integer, ReplyDevs> devs = new LinkedHashMap<>();
+    }
+
+    private final ConcurrentMap<String, RigState> states =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Compare a poll against the previous one of the same rig
+     * @param sample the result of one poll of a rig
+     * @param listener receives the change events
+     */
+    public void diff(RigSample sample, Listener listener) {
+        diff(sample.getRigId(), sample.getTimestamp(), sample.getReplies(),
+                listener);
+    }
+
+    /**
+     * Compare a poll against the previous one of the same rig.  If
+     * {@code replies} hold DEVS replies, devices missing from them are
+     * reported as REMOVED; if they hold a STATUS with cgminer's "no
+     * devices" code, every device is.  A DEVS STATUS without entries, as
+     * left by a strict parse that rejected one of them, removes nothing.
+     * @param rigId identifier of the rig
+     * @param timestamp time of the poll in milliseconds since the epoch
+     * @param replies the parsed replies
+     * @param listener receives the change events
+     */
+    public void diff(String rigId, long timestamp, List<Reply> replies,
+            Listener listener) {
+        RigState state = states.computeIfAbsent(rigId, k -> new RigState());
+        synchronized (state) {
+            Set<Integer> seen = new HashSet<>();
+            boolean devsPresent = false;
+            for (Reply reply : replies) {
+                if (reply instanceof ReplyStatus) {
+                    // A DEVS code without entries means they were rejected
+                    Integer code = ((ReplyStatus) reply).getCode();
+                    if (code != null && code == ReplyStatus.NO_DEVS_CODE) {
+                        devsPresent = true;
+                    }
+                } else if (reply instanceof ReplySummary) {
+                    ReplySummary summary = (ReplySummary) reply;
+                    ChangeEvent<ReplySummary> event = compare(rigId,
+                            timestamp, SummaryField.values(), state.summary,
+                            summary);
+                    state.summary = summary;
+                    if (event != null) {
+                        listener.summaryChanged(event);
+                    }
+                } else if (reply instanceof ReplyDevs) {
+                    ReplyDevs devs = (ReplyDevs) reply;
+                    devsPresent = true;
+                    seen.add(devs.getAsc());
+                    ChangeEvent<ReplyDevs> event = compare(rigId, timestamp,
+                            DevsField.values(),
+                            state.devs.get(devs.getAsc()), devs);
+                    state.devs.put(devs.getAsc(), devs);
+                    if (event != null) {
+                        listener.devsChanged(event);
+                    }
+                }
+            }
+            if (devsPresent && state.devs.size() > seen.size()) {
+                Iterator<Map.Entry<Integer, ReplyDevs>> it =
+                        state.devs.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<Integer, ReplyDevs> entry = it.next();
+                    if (!seen.contains(entry.getKey())) {
+                        it.remove();
+                        listener.devsChanged(new ChangeEvent<>(rigId,
+                                timestamp, ChangeEvent.Kind.REMOVED,
+                                DevsField.values(), 0L, entry.getValue()));
+                    }
+                }
+            }
+        }
+    }
+
+    private static <T extends Reply> ChangeEvent<T> compare(String rigId,
+            long timestamp, ReplyField<T>[] fields, T previous, T current) {
+        long mask = changedFields(fields, previous, current);
+        if (previous == null) {
+            return new ChangeEvent<>(rigId, timestamp, ChangeEvent.Kind.ADDED,
+                    fields, mask, current);
+        }
+        if (mask == 0L) {
+            return null;
+        }
+        return new ChangeEvent<>(rigId, timestamp, ChangeEvent.Kind.CHANGED,
+                fields, mask, current);
+    }
+
+    /**
+     * Compare two replies field by field
+     * @param <T> the reply type
+     * @param fields the fields to compare, at most 64
+     * @param previous the earlier reply, may be {@code null} in which case
+     * every field with a value counts as changed
+     * @param current the later reply
+     * @return bit {@code n} is set if the field with ordinal {@code n}
+     * differs
+     */
+    public static <T extends Reply> long changedFields(ReplyField<T>[] fields,
+            T previous, T current) {
+        long mask = 0L;
+        for (ReplyField<T> field : fields) {
+            Object value = field.getValue(current);
+            if (previous == null ? value != null
+                    : !Objects.equals(field.getValue(previous), value)) {
+                mask |= 1L << field.ordinal();
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return the identifiers of all rigs seen so far
+     */
+    public Set<String> getRigIds() {
+        return Collections.unmodifiableSet(states.keySet());
+    }
+
+    /**
+     * @param rigId identifier of the rig
+     * @return the latest SUMMARY of the rig, or {@code null}
+     */
+    public ReplySummary getSummary(String rigId) {
+        RigState state = states.get(rigId);
+        if (state == null) {
+            return null;
+        }
+        synchronized (state) {
+            return state.summary;
+        }
+    }
+
+    /**
+     * @param rigId identifier of the rig
+     * @return the latest DEVS replies of the rig, in ASC order of first
+     * appearance
+     */
+    public Collection<ReplyDevs> getDevs(String rigId) {
+        RigState state = states.get(rigId);
+        if (state == null) {
+            return Collections.emptyList();
+        }
+        synchronized (state) {
+            return new ArrayList<>(state.devs.values());
+        }
+    }
+
+    /**
+     * Forget a rig
+     * @param rigId identifier of the rig
+     */
+    public void remove(String rigId) {
+        states.remove(rigId);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes how the SUMMARY of a rig, or the DEVS entry of one of its
+ * devices, differs from the previous poll.  Produced by
+ * {@link ChangeDetector}.  Only the set of modified fields is recorded;
+ * values are read from the current reply, which is referenced, not copied.
+ *
+ * @param <T> the {@code Reply} subclass that changed
+ */
+public final class ChangeEvent<T extends Reply> {
+
+    /**
+     * The kind of change
+     */
+    public enum Kind {
+        /**
+         * First appearance; all fields with a value are reported as changed
+         */
+        ADDED,
+        /**
+         * Some fields changed
+         */
+        CHANGED,
+        /**
+         * No longer reported by the rig; no fields are reported as changed
+         */
+        REMOVED
+    }
+
+    private final String rigId;
+    private final long timestamp;
+    private final Kind kind;
+    private final ReplyField<T>[] fields;
+    private final long changedMask;
+    private final T reply;
+
+    ChangeEvent(String rigId, long timestamp, Kind kind,
+            ReplyField<T>[] fields, long changedMask, T reply) {
+        this.rigId = rigId;
+        this.timestamp = timestamp;
+        this.kind = kind;
+        this.fields = fields;
+        this.changedMask = changedMask;
+        this.reply = reply;
+    }
+
+    /**
+     * @return the rigId
+     */
+    public String getRigId() {
+        return rigId;
+    }
+
+    /**
+     * @return the time of the poll in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the kind
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the current reply, or for REMOVED events the last reply seen
+     */
+    public T getReply() {
+        return reply;
+    }
+
+    /**
+     * @return bit {@code n} is set if the field with ordinal {@code n}
+     * changed
+     */
+    public long getChangedMask() {
+        return changedMask;
+    }
+
+    /**
+     * @param field the field in question
+     * @return {@code true} if {@code field} changed
+     */
+    public boolean isChanged(ReplyField<T> field) {
+        return (changedMask & (1L << field.ordinal())) != 0;
+    }
+
+    /**
+     * @return the changed fields in reply order
+     */
+    public List<ReplyField<T>> getChangedFields() {
+        List<ReplyField<T>> changed = new ArrayList<>(
+                Long.bitCount(changedMask));
+        for (ReplyField<T> field : fields) {
+            if (isChanged(field)) {
+                changed.add(field);
+            }
+        }
+        return Collections.unmodifiableList(changed);
+    }
+
+    /**
+     * @param field any field
+     * @return the current value of {@code field}
+     */
+    public Object getValue(ReplyField<T> field) {
+        return field.getValue(reply);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(rigId).append(' ').append(kind);
+        for (ReplyField<T> field : getChangedFields()) {
+            sb.append(", ");
+            sb.append(Reply.createLabelEqualsValueStr(field.getKey(),
+                    field.getValue(reply)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.function.Function;
+
+/**
+ * Enumeration of the modelled attributes of a COIN reply, in the order they
+ * are sent by cgminer.  See {@link ReplyCoin}.
+ */
+public enum CoinField implements ReplyField<ReplyCoin> {
+    HASH_METHOD(Reply.HASH_METHOD, FieldType.STRING, ReplyCoin::getHashMethod),
+    CURRENT_BLOCK_TIME(Reply.CURRENT_BLOCK_TIME, FieldType.DOUBLE,
+        ReplyCoin::getCurrentBlockTime),
+    CURRENT_BLOCK_HASH(Reply.CURRENT_BLOCK_HASH, FieldType.STRING,
+        ReplyCoin::getCurrentBlockHash),
+    LP(Reply.LP, FieldType.BOOLEAN, ReplyCoin::getLp),
+    NETWORK_DIFFICULTY(Reply.NETWORK_DIFFICULTY, FieldType.DOUBLE,
+        ReplyCoin::getNetworkDifficulty);
+
+    private final String key;
+    private final FieldType type;
+    private final Function<ReplyCoin, Object> accessor;
+
+    private CoinField(String key, FieldType type,
+            Function<ReplyCoin, Object> accessor) {
+        this.key = key;
+        this.type = type;
+        this.accessor = accessor;
+    }
+
+    @Override
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public FieldType getType() {
+        return type;
+    }
+
+    @Override
+    public Object getValue(ReplyCoin reply) {
+        return accessor.apply(reply);
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+/**
+ * Fixed capacity ring buffer holding a time series of replies of one kind
+ * (e.g. the {@code ReplyDevs} of a single device) in columnar form.  Every
+ * numeric field gets its own primitive column: {@code double[]} for DOUBLE
+ * fields and {@code long[]} for INTEGER, LONG and BOOLEAN fields.  STRING
+ * fields are kept as {@code int[]} codes of
+ * {@link StringDictionary#shared()}, since device names, states and the
+ * like take only a few distinct values; values the dictionary has no room
+ * for are kept as they are.
+ * <br><br>
+ * Appending is O(1) and overwrites the oldest sample once the series is
+ * full.  Samples are addressed by a logical index where 0 is the oldest
+ * retained sample.  Missing values are stored as {@code Double.NaN} and
+ * {@link #MISSING_LONG} respectively.
+ * <br><br>
+ * Instances are thread safe.
+ *
+ * @param <T> the {@code Reply} subclass stored in this series
+ */
+public class ColumnSeries<T extends Reply> {
+
+    public static final long MISSING_LONG = Long.MIN_VALUE;
+
+    private static final int MISSING_CODE = -2;
+    private static final int OVERFLOW_CODE = -3;
+
+    /**
+     * Receives the samples visited by a range scan
+     */
+    @FunctionalInterface
+    public interface DoubleVisitor {
+        void visit(long timestamp, double value);
+    }
+
+    /**
+     * Receives the samples visited by a range scan
+     */
+    @FunctionalInterface
+    public interface LongVisitor {
+        void visit(long timestamp, long value);
+    }
+
+    private final ReplyField<T>[] fields;
+    private final int capacity;
+    private final long[] timestamps;
+    private final double[][] doubleColumns;
+    private final long[][] longColumns;
+    private final int[][] codeColumns;
+    private final String[][] overflowColumns;
+    private int head;   // physical index of the next sample to be written
+    private int size;
+
+    /**
+     * Creates a ColumnSeries
+     * @param fields all fields of the stored reply type, indexed by their
+     * {@link ReplyField#ordinal()}, e.g. {@code DevsField.values()}
+     * @param capacity maximum number of samples retained
+     */
+    public ColumnSeries(ReplyField<T>[] fields, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(
+                    "capacity must be positive, got " + capacity);
+        }
+        this.fields = fields.clone();
+        this.capacity = capacity;
+        timestamps = new long[capacity];
+        doubleColumns = new double[fields.length][];
+        longColumns = new long[fields.length][];
+        codeColumns = new int[fields.length][];
+        overflowColumns = new String[fields.length][];
+        for (ReplyField<T> field : fields) {
+            if (field.getType() == FieldType.DOUBLE) {
+                doubleColumns[field.ordinal()] = new double[capacity];
+            } else if (field.getType() != FieldType.STRING) {
+                longColumns[field.ordinal()] = new long[capacity];
+            } else {
+                codeColumns[field.ordinal()] = new int[capacity];
+            }
+        }
+    }
+
+    /**
+     * Append a sample, overwriting the oldest one if the series is full
+     * @param timestamp time of the sample in milliseconds since the epoch
+     * @param reply the reply to store
+     */
+    public synchronized void append(long timestamp, T reply) {
+        timestamps[head] = timestamp;
+        for (ReplyField<T> field : fields) {
+            int column = field.ordinal();
+            if (doubleColumns[column] != null) {
+                doubleColumns[column][head] = field.getDouble(reply);
+            } else if (longColumns[column] != null) {
+                longColumns[column][head] = field.getValue(reply) == null
+                        ? MISSING_LONG : field.getLong(reply);
+            } else {
+                setString(column, (String) field.getValue(reply));
+            }
+        }
+        advance();
+    }
+
+    /**
+     * Append a sample, overwriting the oldest one if the series is full
+     * @param timestamp time of the sample in milliseconds since the epoch
+     * @param values the field values to store
+     */
+    public synchronized void append(long timestamp, ReplyValues<T> values) {
+        timestamps[head] = timestamp;
+        for (ReplyField<T> field : fields) {
+            int column = field.ordinal();
+            if (doubleColumns[column] != null) {
+                doubleColumns[column][head] = values.getDouble(field);
+            } else if (longColumns[column] != null) {
+                longColumns[column][head] = values.isPresent(field)
+                        ? values.getLong(field) : MISSING_LONG;
+            } else {
+                setString(column, values.getString(field));
+            }
+        }
+        advance();
+    }
+
+    private void setString(int column, String value) {
+        int code = value == null ? MISSING_CODE
+                : StringDictionary.shared().code(value);
+        if (code == StringDictionary.NO_CODE) {
+            if (overflowColumns[column] == null) {
+                overflowColumns[column] = new String[capacity];
+            }
+            overflowColumns[column][head] = value;
+            code = OVERFLOW_CODE;
+        }
+        codeColumns[column][head] = code;
+    }
+
+    private void advance() {
+        head = (head + 1) % capacity;
+        if (size < capacity) {
+            size++;
+        }
+    }
+
+    /**
+     * @return the number of samples currently retained
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the maximum number of samples retained
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private int physical(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(
+                    "index " + index + ", size " + size);
+        }
+        return (head - size + index + capacity) % capacity;
+    }
+
+    /**
+     * @param index logical index, 0 being the oldest retained sample
+     * @return the timestamp of the sample
+     */
+    public synchronized long getTimestamp(int index) {
+        return timestamps[physical(index)];
+    }
+
+    /**
+     * @param field a DOUBLE field
+     * @param index logical index, 0 being the oldest retained sample
+     * @return the value of {@code field} in the sample
+     */
+    public synchronized double getDouble(ReplyField<T> field, int index) {
+        return doubleColumn(field)[physical(index)];
+    }
+
+    /**
+     * @param field an INTEGER, LONG or BOOLEAN field
+     * @param index logical index, 0 being the oldest retained sample
+     * @return the value of {@code field} in the sample
+     */
+    public synchronized long getLong(ReplyField<T> field, int index) {
+        return longColumn(field)[physical(index)];
+    }
+
+    /**
+     * @param field a STRING field
+     * @param index logical index, 0 being the oldest retained sample
+     * @return the value of {@code field} in the sample, or {@code null}
+     */
+    public synchronized String getString(ReplyField<T> field, int index) {
+        int p = physical(index);
+        int code = codeColumn(field)[p];
+        if (code == MISSING_CODE) {
+            return null;
+        }
+        if (code == OVERFLOW_CODE) {
+            return overflowColumns[field.ordinal()][p];
+        }
+        return StringDictionary.shared().value(code);
+    }
+
+    /**
+     * Find the first sample taken at or after {@code timestamp}.  Timestamps
+     * are assumed to be appended in ascending order.
+     * @param timestamp time in milliseconds since the epoch
+     * @return logical index of the sample, or {@link #size()} if there is
+     * no such sample
+     */
+    public synchronized int indexOf(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[physical(mid)] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Visit the values of a DOUBLE field for all samples with
+     * {@code from <= timestamp < to}, oldest first
+     * @param field the field to scan
+     * @param from start of the range (inclusive)
+     * @param to end of the range (exclusive)
+     * @param visitor receives each sample
+     */
+    public synchronized void scanDoubles(ReplyField<T> field, long from,
+            long to, DoubleVisitor visitor) {
+        double[] column = doubleColumn(field);
+        for (int i = indexOf(from); i < size; i++) {
+            int p = physical(i);
+            if (timestamps[p] >= to) {
+                break;
+            }
+            visitor.visit(timestamps[p], column[p]);
+        }
+    }
+
+    /**
+     * Visit the values of an INTEGER, LONG or BOOLEAN field for all samples
+     * with {@code from <= timestamp < to}, oldest first
+     * @param field the field to scan
+     * @param from start of the range (inclusive)
+     * @param to end of the range (exclusive)
+     * @param visitor receives each sample
+     */
+    public synchronized void scanLongs(ReplyField<T> field, long from,
+            long to, LongVisitor visitor) {
+        long[] column = longColumn(field);
+        for (int i = indexOf(from); i < size; i++) {
+            int p = physical(i);
+            if (timestamps[p] >= to) {
+                break;
+            }
+            visitor.visit(timestamps[p], column[p]);
+        }
+    }
+
+    private double[] doubleColumn(ReplyField<T> field) {
+        double[] column = doubleColumns[field.ordinal()];
+        if (column == null) {
+            throw new IllegalArgumentException(
+                    field.getKey() + " is not a DOUBLE field");
+        }
+        return column;
+    }
+
+    private long[] longColumn(ReplyField<T> field) {
+        long[] column = longColumns[field.ordinal()];
+        if (column == null) {
+            throw new IllegalArgumentException(
+                    field.getKey() + " is not an integral or boolean field");
+        }
+        return column;
+    }
+
+    private int[] codeColumn(ReplyField<T> field) {
+        int[] column = codeColumns[field.ordinal()];
+        if (column == null) {
+            throw new IllegalArgumentException(
+                    field.getKey() + " is not a STRING field");
+        }
+        return column;
+    }
+}
@@ -31,6 +31,7 @@
 
 package com.jtconnors.cgminerapi;
 
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,6 +40,9 @@ public class Command {
     private static final Logger LOGGER = 
             Logger.getLogger("com.jtconnors.cgminerapi");
 
+    private static final StructuredLog LOG =
+            new StructuredLog(LOGGER, Command.class);
+
     private final Request request;
     private final String parameter;
 
@@ -58,7 +62,6 @@ public class Command {
      */
     public static Command parseQueryString(String queryString) throws
             InvalidQueryStringException {
-        LOGGER.log(Level.INFO, "Query str = {0}", queryString);
         if (queryString == null || queryString.equals("")) {
             throw new InvalidQueryStringException("null query string.");
         }
@@ -110,7 +113,10 @@ public class Command {
         }
 
         Command retVal = new Command(request, parameter);
-        LOGGER.log(Level.INFO, "JSON request: {0}", retVal.toJSONString());
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "parseQueryString", "query", queryString,
+                    "request", (Supplier<String>) retVal::toJSONString);
+        }
         return retVal;
     }
 
@@ -140,6 +146,24 @@ public class Command {
         return sb.toString();
     }
 
+    /**
+     * Convert the Command instance into cgminer's plain text form:
+     *
+     * 'CMD|PARAM'
+     *
+     * where CMD is a valid Request and PARAM is an optional parameter (based
+     * upon the Request).  cgminer answers a text command with a text reply,
+     * see {@link APIConnection#apiCallText(String)}.
+     *
+     * @return plain text representation of Command
+     */
+    public String toTextString() {
+        if (request.includesParameter() && parameter != null) {
+            return request.toRequestString() + "|" + parameter;
+        }
+        return request.toRequestString();
+    }
+
     public Command(Request request, String parameter) {
         this.request = request;
         this.parameter = parameter;
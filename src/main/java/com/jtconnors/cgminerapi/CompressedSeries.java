@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+/**
+ * Append-only, Gorilla compressed time series of replies of one kind (e.g.
+ * the {@code ReplyDevs} of a single device).  The timestamps and every
+ * numeric field are encoded into their own bit stream using
+ * {@link GorillaCodec}: DOUBLE fields with XOR compression, INTEGER, LONG
+ * and BOOLEAN fields as delta-of-deltas.  STRING fields are not stored.
+ * <br><br>
+ * Intended for long-term history such as a month of per-device samples;
+ * use a {@link ColumnSeries} where random access is required.  Samples are
+ * read back sequentially with a {@link Cursor}.  Missing values are stored
+ * as {@code Double.NaN} and {@link ColumnSeries#MISSING_LONG}.
+ * <br><br>
+ * Instances are thread safe.
+ *
+ * @param <T> the {@code Reply} subclass stored in this series
+ */
+public class CompressedSeries<T extends Reply> {
+
+    private final ReplyField<T>[] fields;
+    private final GorillaCodec.BitWriter timestampBits =
+            new GorillaCodec.BitWriter();
+    private final GorillaCodec.DeltaEncoder timestampEncoder =
+            new GorillaCodec.DeltaEncoder(timestampBits);
+    private final GorillaCodec.BitWriter[] fieldBits;
+    private final GorillaCodec.XorEncoder[] xorEncoders;
+    private final GorillaCodec.DeltaEncoder[] deltaEncoders;
+    private int size;
+
+    /**
+     * Creates an empty CompressedSeries
+     * @param fields all fields of the stored reply type, indexed by their
+     * {@link ReplyField#ordinal()}, e.g. {@code DevsField.values()}
+     */
+    public CompressedSeries(ReplyField<T>[] fields) {
+        this.fields = fields.clone();
+        fieldBits = new GorillaCodec.BitWriter[fields.length];
+        xorEncoders = new GorillaCodec.XorEncoder[fields.length];
+        deltaEncoders = new GorillaCodec.DeltaEncoder[fields.length];
+        for (ReplyField<T> field : fields) {
+            int i = field.ordinal();
+            if (field.getType() == FieldType.DOUBLE) {
+                fieldBits[i] = new GorillaCodec.BitWriter();
+                xorEncoders[i] = new GorillaCodec.XorEncoder(fieldBits[i]);
+            } else if (field.getType() != FieldType.STRING) {
+                fieldBits[i] = new GorillaCodec.BitWriter();
+                deltaEncoders[i] = new GorillaCodec.DeltaEncoder(fieldBits[i]);
+            }
+        }
+    }
+
+    /**
+     * Append a sample.  Timestamps should be appended in ascending order.
+     * @param timestamp time of the sample in milliseconds since the epoch
+     * @param reply the reply to store
+     */
+    public synchronized void append(long timestamp, T reply) {
+        timestampEncoder.encode(timestamp);
+        for (ReplyField<T> field : fields) {
+            int i = field.ordinal();
+            if (xorEncoders[i] != null) {
+                xorEncoders[i].encode(field.getDouble(reply));
+            } else if (deltaEncoders[i] != null) {
+                deltaEncoders[i].encode(field.getValue(reply) == null
+                        ? ColumnSeries.MISSING_LONG : field.getLong(reply));
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Append a sample.  Timestamps should be appended in ascending order.
+     * @param timestamp time of the sample in milliseconds since the epoch
+     * @param values the field values to store
+     */
+    public synchronized void append(long timestamp, ReplyValues<T> values) {
+        timestampEncoder.encode(timestamp);
+        for (ReplyField<T> field : fields) {
+            int i = field.ordinal();
+            if (xorEncoders[i] != null) {
+                xorEncoders[i].encode(values.getDouble(field));
+            } else if (deltaEncoders[i] != null) {
+                deltaEncoders[i].encode(values.isPresent(field)
+                        ? values.getLong(field) : ColumnSeries.MISSING_LONG);
+            }
+        }
+        size++;
+    }
+
+    /**
+     * @return the number of samples stored
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the total size of the encoded bit streams in bytes
+     */
+    public synchronized long getCompressedSize() {
+        long bytes = timestampBits.getByteLength();
+        for (GorillaCodec.BitWriter bits : fieldBits) {
+            if (bits != null) {
+                bytes += bits.getByteLength();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return a cursor positioned before the first sample, covering the
+     * samples appended so far
+     */
+    public synchronized Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Sequential decoder over a snapshot of a {@code CompressedSeries}.  Not
+     * thread safe.
+     */
+    public final class Cursor {
+
+        private final int count;
+        private final GorillaCodec.DeltaDecoder timestampDecoder;
+        private final GorillaCodec.XorDecoder[] xorDecoders;
+        private final GorillaCodec.DeltaDecoder[] deltaDecoders;
+        private final double[] doubles;
+        private final long[] longs;
+        private int position;
+        private long timestamp;
+
+        private Cursor() {
+            count = size;
+            timestampDecoder =
+                    new GorillaCodec.DeltaDecoder(timestampBits.toReader());
+            xorDecoders = new GorillaCodec.XorDecoder[fields.length];
+            deltaDecoders = new GorillaCodec.DeltaDecoder[fields.length];
+            doubles = new double[fields.length];
+            longs = new long[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                if (xorEncoders[i] != null) {
+                    xorDecoders[i] = new GorillaCodec.XorDecoder(
+                            fieldBits[i].toReader());
+                } else if (deltaEncoders[i] != null) {
+                    deltaDecoders[i] = new GorillaCodec.DeltaDecoder(
+                            fieldBits[i].toReader());
+                }
+            }
+        }
+
+        /**
+         * Advance to the next sample
+         * @return {@code false} if there are no more samples
+         */
+        public boolean next() {
+            if (position >= count) {
+                return false;
+            }
+            timestamp = timestampDecoder.decode();
+            for (int i = 0; i < fields.length; i++) {
+                if (xorDecoders[i] != null) {
+                    doubles[i] = xorDecoders[i].decode();
+                } else if (deltaDecoders[i] != null) {
+                    longs[i] = deltaDecoders[i].decode();
+                }
+            }
+            position++;
+            return true;
+        }
+
+        /**
+         * @return the timestamp of the current sample
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @param field a DOUBLE field
+         * @return the value of {@code field} in the current sample
+         */
+        public double getDouble(ReplyField<T> field) {
+            if (xorDecoders[field.ordinal()] == null) {
+                throw new IllegalArgumentException(
+                        field.getKey() + " is not a DOUBLE field");
+            }
+            return doubles[field.ordinal()];
+        }
+
+        /**
+         * @param field an INTEGER, LONG or BOOLEAN field
+         * @return the value of {@code field} in the current sample
+         */
+        public long getLong(ReplyField<T> field) {
+            if (deltaDecoders[field.ordinal()] == null) {
+                throw new IllegalArgumentException(field.getKey()
+                        + " is not an integral or boolean field");
+            }
+            return longs[field.ordinal()];
+        }
+    }
+}
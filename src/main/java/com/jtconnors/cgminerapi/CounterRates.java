@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+/**
+ * The per-interval change of the cumulative counters of a rig or device
+ * between two consecutive samples, as computed by {@link RateEngine}.
+ *
+ * @param <T> the {@code Reply} subclass the counters belong to
+ */
+public final class CounterRates<T extends Reply> {
+
+    private final ReplyField<T>[] counters;
+    private final double[] deltas;
+    private final double interval;
+    private final boolean reset;
+
+    CounterRates(ReplyField<T>[] counters, double[] deltas, double interval,
+            boolean reset) {
+        this.counters = counters;
+        this.deltas = deltas;
+        this.interval = interval;
+        this.reset = reset;
+    }
+
+    private int slot(ReplyField<T> counter) {
+        for (int i = 0; i < counters.length; i++) {
+            if (counters[i] == counter) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(
+                counter.getKey() + " is not a tracked counter");
+    }
+
+    /**
+     * @param counter a tracked counter
+     * @return the increase of {@code counter} over the interval
+     */
+    public double getDelta(ReplyField<T> counter) {
+        return deltas[slot(counter)];
+    }
+
+    /**
+     * @param counter a tracked counter
+     * @return the increase of {@code counter} per second, {@code Double.NaN}
+     * if the interval is empty
+     */
+    public double getRate(ReplyField<T> counter) {
+        return interval > 0 ? deltas[slot(counter)] / interval : Double.NaN;
+    }
+
+    /**
+     * @return the length of the interval in seconds
+     */
+    public double getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return {@code true} if cgminer (or the device) restarted, or the
+     * counters were zeroed, during the interval.  Deltas then count from
+     * zero rather than from the previous sample.
+     */
+    public boolean isReset() {
+        return reset;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(Reply.createLabelEqualsValueStr("interval", interval));
+        sb.append(", ");
+        sb.append(Reply.createLabelEqualsValueStr("reset", reset));
+        for (int i = 0; i < counters.length; i++) {
+            sb.append(", ");
+            sb.append(Reply.createLabelEqualsValueStr(counters[i].getKey(),
+                    deltas[i]));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.Objects;
+
+/**
+ * Identifies a single device across the fleet: the rig it is attached to
+ * and its cgminer ASC number on that rig.
+ */
+public final class DeviceKey {
+
+    private final String rigId;
+    private final int asc;
+
+    /**
+     * Creates a DeviceKey
+     * @param rigId identifier of the rig, typically "host:port"
+     * @param asc the ASC number of the device, see {@link ReplyDevs#getAsc()}
+     */
+    public DeviceKey(String rigId, int asc) {
+        this.rigId = Objects.requireNonNull(rigId);
+        this.asc = asc;
+    }
+
+    /**
+     * @return the rigId
+     */
+    public String getRigId() {
+        return rigId;
+    }
+
+    /**
+     * @return the asc
+     */
+    public int getAsc() {
+        return asc;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof DeviceKey)) {
+            return false;
+        }
+        DeviceKey other = (DeviceKey) obj;
+        return asc == other.asc && rigId.equals(other.rigId);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * rigId.hashCode() + asc;
+    }
+
+    @Override
+    public String toString() {
+        return rigId + "/" + Reply.ASC + asc;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.function.Function;
+
+/**
+ * Enumeration of the attributes of a DEVS reply, in the order they are
+ * sent by cgminer.  See {@link ReplyDevs}.
+ */
+public enum DevsField implements ReplyField<ReplyDevs> {
+    ASC(Reply.ASC, FieldType.INTEGER, ReplyDevs::getAsc),
+    NAME(Reply.NAME, FieldType.STRING, ReplyDevs::getName),
+    ID(Reply.ID, FieldType.INTEGER, ReplyDevs::getId),
+    ENABLED(Reply.ENABLED, FieldType.STRING, ReplyDevs::getEnabled),
+    STATUS(Reply.STATUS_DEVS, FieldType.STRING, ReplyDevs::getStatus),
+    TEMPERATURE(Reply.TEMPERATURE, FieldType.DOUBLE,
+        ReplyDevs::getTemperature),
+    MHS_AV(Reply.MHS_AV, FieldType.DOUBLE, ReplyDevs::getMhsAv),
+    MHS_5S(Reply.MHS_5S, FieldType.DOUBLE, ReplyDevs::getMhs5s),
+    MHS_1M(Reply.MHS_1M, FieldType.DOUBLE, ReplyDevs::getMhs1m),
+    MHS_5M(Reply.MHS_5M, FieldType.DOUBLE, ReplyDevs::getMhs5m),
+    MHS_15M(Reply.MHS_15M, FieldType.DOUBLE, ReplyDevs::getMhs15m),
+    ACCEPTED(Reply.ACCEPTED, FieldType.INTEGER, ReplyDevs::getAccepted),
+    REJECTED(Reply.REJECTED, FieldType.INTEGER, ReplyDevs::getRejected),
+    HARDWARE_ERRORS(Reply.HARDWARE_ERRORS, FieldType.INTEGER,
+        ReplyDevs::getHardwareErrors),
+    UTILITY(Reply.UTILITY, FieldType.DOUBLE, ReplyDevs::getUtility),
+    LAST_SHARE_POOL(Reply.LAST_SHARE_POOL, FieldType.INTEGER,
+        ReplyDevs::getLastSharePool),
+    LAST_SHARE_TIME(Reply.LAST_SHARE_TIME, FieldType.LONG,
+        ReplyDevs::getLastShareTime),
+    TOTAL_MH(Reply.TOTAL_MH, FieldType.DOUBLE, ReplyDevs::getTotalMh),
+    DIFF1_WORK(Reply.DIFF1_WORK, FieldType.INTEGER, ReplyDevs::getDiff1Work),
+    DIFFICULTY_ACCEPTED(Reply.DIFFICULTY_ACCEPTED, FieldType.DOUBLE,
+        ReplyDevs::getDifficultyAccepted),
+    DIFFICULTY_REJECTED(Reply.DIFFICULTY_REJECTED, FieldType.DOUBLE,
+        ReplyDevs::getDifficultyRejected),
+    LAST_SHARE_DIFFICULTY(Reply.LAST_SHARE_DIFFICULTY, FieldType.DOUBLE,
+        ReplyDevs::getLastShareDifficulty),
+    NO_DEVICE(Reply.NO_DEVICE, FieldType.BOOLEAN, ReplyDevs::getNoDevice),
+    LAST_VALID_WORK(Reply.LAST_VALID_WORK, FieldType.LONG,
+        ReplyDevs::getLastValidWork),
+    DEVICE_HARDWARE_PERCENT(Reply.DEVICE_HARDWARE_PERCENT, FieldType.DOUBLE,
+        ReplyDevs::getDeviceHardwarePercent),
+    DEVICE_REJECTED_PERCENT(Reply.DEVICE_REJECTED_PERCENT, FieldType.DOUBLE,
+        ReplyDevs::getDeviceRejectedPercent),
+    DEVICE_ELAPSED(Reply.DEVICE_ELAPSED, FieldType.LONG,
+        ReplyDevs::getDeviceElapsed);
+
+    private final String key;
+    private final FieldType type;
+    private final Function<ReplyDevs, Object> accessor;
+
+    private DevsField(String key, FieldType type,
+            Function<ReplyDevs, Object> accessor) {
+        this.key = key;
+        this.type = type;
+        this.accessor = accessor;
+    }
+
+    @Override
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public FieldType getType() {
+        return type;
+    }
+
+    @Override
+    public Object getValue(ReplyDevs reply) {
+        return accessor.apply(reply);
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+/**
+ * The attributes of a reply that are not modelled by fixed keys, e.g. the
+ * driver specific entries of a STATS reply ({@code chain_rate1},
+ * {@code temp2_3}, {@code fan1} ...) or the miner name reported by a
+ * firmware fork in its VERSION reply.
+ * <br><br>
+ * Values are held in parallel arrays, numbers as primitive {@code double}s,
+ * and keys are shared between replies rather than retained per sample.
+ * Instances are immutable.
+ */
+public final class ExtraFields {
+
+    /**
+     * An ExtraFields without any attributes
+     */
+    public static final ExtraFields EMPTY =
+            new ExtraFields(new String[0], new double[0], new String[0]);
+
+    /*
+     * Canonical key instances.  Bounded, since keys are under the control
+     * of the firmware; beyond the bound keys are simply not shared.
+     */
+    private static final StringDictionary SHARED_KEYS =
+            new StringDictionary(StringDictionary.DEFAULT_MAX_SIZE);
+
+    private final String[] keys;
+    private final double[] numbers;
+    private final String[] strings;
+
+    private ExtraFields(String[] keys, double[] numbers, String[] strings) {
+        this.keys = keys;
+        this.numbers = numbers;
+        this.strings = strings;
+    }
+
+    /**
+     * Collect the attributes of {@code jsonObject} whose keys are not in
+     * {@code modelled}
+     * @param jsonObject a reply entry
+     * @param modelled the keys already handled by the reply class
+     * @return the remaining attributes, in reply order
+     */
+    static ExtraFields of(JsonObject jsonObject, Set<String> modelled) {
+        int count = jsonObject.size() - modelled.size();
+        if (count <= 0) {
+            count = jsonObject.size();
+        }
+        String[] keys = new String[count];
+        double[] numbers = new double[count];
+        String[] strings = new String[count];
+        int n = 0;
+        for (Map.Entry<String, JsonValue> entry : jsonObject.entrySet()) {
+            if (modelled.contains(entry.getKey())) {
+                continue;
+            }
+            if (n == keys.length) {
+                keys = Arrays.copyOf(keys, n * 2);
+                numbers = Arrays.copyOf(numbers, n * 2);
+                strings = Arrays.copyOf(strings, n * 2);
+            }
+            keys[n] = sharedKey(entry.getKey());
+            JsonValue value = entry.getValue();
+            if (value instanceof JsonNumber) {
+                numbers[n] = ((JsonNumber) value).doubleValue();
+            } else {
+                numbers[n] = Double.NaN;
+                strings[n] = value instanceof JsonString
+                        ? ((JsonString) value).getString()
+                        : value.toString();
+            }
+            n++;
+        }
+        if (n == 0) {
+            return EMPTY;
+        }
+        if (n < keys.length) {
+            keys = Arrays.copyOf(keys, n);
+            numbers = Arrays.copyOf(numbers, n);
+            strings = Arrays.copyOf(strings, n);
+        }
+        return new ExtraFields(keys, numbers, strings);
+    }
+
+    private static String sharedKey(String key) {
+        return SHARED_KEYS.intern(key);
+    }
+
+    /**
+     * @return the number of attributes
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * @param index position of the attribute, in reply order
+     * @return its key
+     */
+    public String getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * @param index position of the attribute, in reply order
+     * @return {@code true} if its value is a number
+     */
+    public boolean isNumber(int index) {
+        return strings[index] == null;
+    }
+
+    /**
+     * @param index position of the attribute, in reply order
+     * @return its value if a number, {@code Double.NaN} otherwise
+     */
+    public double getDouble(int index) {
+        return numbers[index];
+    }
+
+    /**
+     * @param index position of the attribute, in reply order
+     * @return its value as a string; strings, booleans and numbers alike
+     */
+    public String getString(int index) {
+        String str = strings[index];
+        if (str != null) {
+            return str;
+        }
+        double number = numbers[index];
+        return number == (long) number ? Long.toString((long) number)
+                : Double.toString(number);
+    }
+
+    /**
+     * Find an attribute by key.  This is a linear search, which for the few
+     * dozen attributes of a reply is quicker than hashing.
+     * @param key the key
+     * @return the position of the attribute, or -1 if not present
+     */
+    public int indexOf(String key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param key the key
+     * @return the numeric value of the attribute, or {@code Double.NaN} if
+     * not present or not a number
+     */
+    public double getDouble(String key) {
+        int index = indexOf(key);
+        return index < 0 ? Double.NaN : numbers[index];
+    }
+
+    /**
+     * @param key the key
+     * @return the value of the attribute as a string, or {@code null} if not
+     * present
+     */
+    public String getString(String key) {
+        int index = indexOf(key);
+        return index < 0 ? null : getString(index);
+    }
+
+    /**
+     * Gather a numbered family of attributes, such as the per-chain
+     * {@code chain_rate1}, {@code chain_rate2} ... of a STATS reply.
+     * @param prefix the key prefix, e.g. "chain_rate"
+     * @return element {@code n} holds the value of key {@code prefix + n},
+     * {@code Double.NaN} where there is no such numeric attribute; the
+     * length is one more than the highest number found
+     */
+    public double[] getNumbered(String prefix) {
+        double[] values = new double[0];
+        for (int i = 0; i < keys.length; i++) {
+            int n = suffixNumber(keys[i], prefix);
+            if (n < 0) {
+                continue;
+            }
+            if (n >= values.length) {
+                int length = values.length;
+                values = Arrays.copyOf(values, n + 1);
+                Arrays.fill(values, length, n + 1, Double.NaN);
+            }
+            values[n] = numbers[i];
+        }
+        return values;
+    }
+
+    private static int suffixNumber(String key, String prefix) {
+        int length = key.length();
+        if (length == prefix.length() || !key.startsWith(prefix)
+                || length - prefix.length() > 4) {
+            return -1;
+        }
+        int n = 0;
+        for (int i = prefix.length(); i < length; i++) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+
+    /**
+     * @return the keys, in reply order
+     */
+    public List<String> getKeys() {
+        return Collections.unmodifiableList(Arrays.asList(keys));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(keys[i]).append('=').append(getString(i));
+        }
+        return sb.toString();
+    }
+}
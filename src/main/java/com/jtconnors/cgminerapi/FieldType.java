@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+/**
+ * The value types that appear in the object map representations of cgminer
+ * API replies.  Each {@link ReplyField} reports one of these types so that
+ * generic consumers (diffing, storage, export ...) can handle a field without
+ * having to inspect the boxed value returned by the {@code Reply} getters.
+ */
+public enum FieldType {
+    STRING,
+    INTEGER,
+    LONG,
+    DOUBLE,
+    BOOLEAN;
+
+    /**
+     * Determine if values of this type are numeric
+     * @return {@code true} if this type is INTEGER, LONG or DOUBLE,
+     * {@code false} otherwise
+     */
+    public boolean isNumeric() {
+        return this == INTEGER || this == LONG || this == DOUBLE;
+    }
+
+    /**
+     * Determine if values of this type are integral numbers
+     * @return {@code true} if this type is INTEGER or LONG, {@code false}
+     * otherwise
+     */
+    public boolean isIntegral() {
+        return this == INTEGER || this == LONG;
+    }
+}
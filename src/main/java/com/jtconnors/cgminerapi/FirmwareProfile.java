@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * What a cgminer instance reported about itself in its VERSION and CONFIG
+ * replies, and the reply decoder chosen for it.  The probe is made once per
+ * connection, see {@link APIConnection#getFirmwareProfile()}.
+ * <br><br>
+ * Replies from firmware with a known schema are decoded without per-key
+ * existence or type checks.  Should such a reply not match after all, it is
+ * parsed again with the checking parser and the profile drops to
+ * {@link Schema#GENERIC} from then on.
+ */
+public final class FirmwareProfile {
+
+    /**
+     * The reply schemas a decoder can be chosen for
+     */
+    public enum Schema {
+        /**
+         * cgminer 4.x, whose replies match the modelled keys and types
+         */
+        CGMINER,
+        /**
+         * Any other miner or fork, whose replies are parsed with checks
+         */
+        GENERIC
+    }
+
+    private static final Logger LOGGER =
+            Logger.getLogger("com.jtconnors.cgminerapi");
+
+    private final ReplyVersion version;
+    private final ReplyConfig config;
+    private final AtomicLong fallbackCount = new AtomicLong();
+    private volatile Schema schema;
+
+    /**
+     * Creates a FirmwareProfile
+     * @param version the VERSION reply of the instance, or null if it gave
+     * none
+     * @param config the CONFIG reply of the instance, or null if it gave
+     * none
+     */
+    public FirmwareProfile(ReplyVersion version, ReplyConfig config) {
+        this.version = version;
+        this.config = config;
+        this.schema = schemaOf(version);
+    }
+
+    /**
+     * Issue VERSION and CONFIG commands on {@code apiConn}
+     * @param apiConn the connection to probe
+     * @return the profile of the instance
+     * @throws IOException if an error occurs when talking to cgminer
+     */
+    static FirmwareProfile probe(APIConnection apiConn) throws IOException {
+        return new FirmwareProfile(
+                probe(apiConn, Request.VERSION, ReplyVersion.class),
+                probe(apiConn, Request.CONFIG, ReplyConfig.class));
+    }
+
+    private static <T extends Reply> T probe(APIConnection apiConn,
+            Request request, Class<T> type) throws IOException {
+        String replyStr =
+                apiConn.apiCall(new Command(request, null).toJSONString());
+        for (Reply reply :
+                JSONParser.parse(replyStr, ParseMode.LENIENT).getReplies()) {
+            if (type.isInstance(reply)) {
+                return type.cast(reply);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Forks (bmminer and vendor builds) name themselves with keys of their
+     * own, which end up in the extra fields.
+     */
+    private static Schema schemaOf(ReplyVersion version) {
+        if (version != null && version.getCgminer() != null
+                && version.getCgminer().startsWith("4.")
+                && version.getExtraFields().size() == 0) {
+            return Schema.CGMINER;
+        }
+        return Schema.GENERIC;
+    }
+
+    /**
+     * Parse a reply of the profiled instance, as
+     * {@link JSONParser#parseReply()} does, with the decoder for its schema
+     * @param replyStr the reply as returned by
+     * {@link APIConnection#apiCall(String)}
+     * @return the parsed replies
+     */
+    public List<Reply> parseReply(String replyStr) {
+        JSONParser parser = new JSONParser(replyStr);
+        if (schema == Schema.CGMINER) {
+            try {
+                return parser.parseTrusted();
+            } catch (RuntimeException e) {
+                schema = Schema.GENERIC;
+                fallbackCount.incrementAndGet();
+                LOGGER.log(Level.WARNING,
+                        "Reply does not match the {0} schema: {1}",
+                        new Object[] {Schema.CGMINER, e});
+            }
+        }
+        return parser.parseReply();
+    }
+
+    /**
+     * @return the schema replies are currently decoded with
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * @return the VERSION reply, or null if the instance gave none
+     */
+    public ReplyVersion getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the CONFIG reply, or null if the instance gave none
+     */
+    public ReplyConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return the number of replies that did not match the schema and were
+     * parsed again with checks
+     */
+    public long getFallbackCount() {
+        return fallbackCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "FirmwareProfile[" + schema + ", " + version + "]";
+    }
+}
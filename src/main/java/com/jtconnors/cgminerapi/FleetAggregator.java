@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes grouped statistics over a {@link SnapshotTable} in parallel on a
+ * {@code ForkJoinPool}.  Rows are split into ranges that are aggregated
+ * independently into per-group primitive accumulators and then merged, so
+ * the work scales with the number of cores rather than the size of the
+ * fleet.
+ * <br><br>
+ * Example: site hashrate and hottest device per rack
+ * <pre>{@code
+ *   SnapshotTable<ReplyDevs> devs = SnapshotTable.devices(latest, rackOf);
+ *   Map<String, Map<ReplyField<ReplyDevs>, FieldStats>> stats =
+ *       aggregator.aggregate(devs, GroupBy.GROUP,
+ *           DevsField.MHS_5S, DevsField.TEMPERATURE);
+ * }</pre>
+ */
+public class FleetAggregator {
+
+    private static final int THRESHOLD = 4096;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a FleetAggregator running on the common pool
+     */
+    public FleetAggregator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a FleetAggregator
+     * @param pool the pool to run on
+     */
+    public FleetAggregator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Compute count, sum, min and max of {@code fields} for every group in
+     * a single parallel pass
+     * @param <T> the reply type of the table
+     * @param table the snapshot
+     * @param groupBy the grouping dimension
+     * @param fields the numeric fields to aggregate
+     * @return group label to field to statistics
+     */
+    @SafeVarargs
+    public final <T extends Reply> Map<String, Map<ReplyField<T>, FieldStats>>
+            aggregate(SnapshotTable<T> table, GroupBy groupBy,
+            ReplyField<T>... fields) {
+        double[][] columns = new double[fields.length][];
+        for (int f = 0; f < fields.length; f++) {
+            columns[f] = table.column(fields[f]);
+        }
+        String[] labels = table.groupLabels(groupBy);
+        Accumulator acc = pool.invoke(new AggregateTask(columns,
+                table.groupCodes(groupBy), labels.length, 0,
+                table.getRowCount()));
+        Map<String, Map<ReplyField<T>, FieldStats>> result =
+                new LinkedHashMap<>();
+        for (int g = 0; g < labels.length; g++) {
+            Map<ReplyField<T>, FieldStats> stats = new LinkedHashMap<>();
+            for (int f = 0; f < fields.length; f++) {
+                stats.put(fields[f], acc.toStats(f, g));
+            }
+            result.put(labels[g], stats);
+        }
+        return result;
+    }
+
+    /**
+     * Compute exact percentiles of {@code field} for every group.  Missing
+     * values are ignored.
+     * @param <T> the reply type of the table
+     * @param table the snapshot
+     * @param groupBy the grouping dimension
+     * @param field the numeric field
+     * @param quantiles the requested quantiles between 0 and 1, e.g. 0.5,
+     * 0.95, 0.99
+     * @return group label to the values at the requested quantiles, in the
+     * order given, {@code Double.NaN} for empty groups
+     */
+    public <T extends Reply> Map<String, double[]> percentiles(
+            SnapshotTable<T> table, GroupBy groupBy, ReplyField<T> field,
+            double... quantiles) {
+        double[] column = table.column(field);
+        int[] codes = table.groupCodes(groupBy);
+        String[] labels = table.groupLabels(groupBy);
+        // Partition the values by group, then sort each partition
+        int[] offsets = new int[labels.length + 1];
+        for (int row = 0; row < column.length; row++) {
+            if (!Double.isNaN(column[row])) {
+                offsets[codes[row] + 1]++;
+            }
+        }
+        for (int g = 0; g < labels.length; g++) {
+            offsets[g + 1] += offsets[g];
+        }
+        double[] values = new double[offsets[labels.length]];
+        int[] fill = Arrays.copyOf(offsets, labels.length);
+        for (int row = 0; row < column.length; row++) {
+            if (!Double.isNaN(column[row])) {
+                values[fill[codes[row]]++] = column[row];
+            }
+        }
+        pool.invoke(new SortTask(values, offsets, 0, labels.length));
+        Map<String, double[]> result = new LinkedHashMap<>();
+        for (int g = 0; g < labels.length; g++) {
+            int from = offsets[g];
+            int n = offsets[g + 1] - from;
+            double[] q = new double[quantiles.length];
+            for (int i = 0; i < quantiles.length; i++) {
+                q[i] = n == 0 ? Double.NaN
+                        : values[from + rank(quantiles[i], n)];
+            }
+            result.put(labels[g], q);
+        }
+        return result;
+    }
+
+    /*
+     * Nearest-rank index of quantile q in n sorted values
+     */
+    private static int rank(double q, int n) {
+        return Math.max(0, Math.min(n - 1, (int) Math.ceil(q * n) - 1));
+    }
+
+    /*
+     * Per field, per group primitive accumulators
+     */
+    private static final class Accumulator {
+        private final long[][] count;
+        private final double[][] sum;
+        private final double[][] min;
+        private final double[][] max;
+
+        private Accumulator(int fields, int groups) {
+            count = new long[fields][groups];
+            sum = new double[fields][groups];
+            min = new double[fields][groups];
+            max = new double[fields][groups];
+            for (int f = 0; f < fields; f++) {
+                Arrays.fill(min[f], Double.POSITIVE_INFINITY);
+                Arrays.fill(max[f], Double.NEGATIVE_INFINITY);
+            }
+        }
+
+        private void merge(Accumulator other) {
+            for (int f = 0; f < count.length; f++) {
+                for (int g = 0; g < count[f].length; g++) {
+                    count[f][g] += other.count[f][g];
+                    sum[f][g] += other.sum[f][g];
+                    min[f][g] = Math.min(min[f][g], other.min[f][g]);
+                    max[f][g] = Math.max(max[f][g], other.max[f][g]);
+                }
+            }
+        }
+
+        private FieldStats toStats(int f, int g) {
+            return new FieldStats(count[f][g], sum[f][g], min[f][g],
+                    max[f][g]);
+        }
+    }
+
+    private static final class AggregateTask
+            extends RecursiveTask<Accumulator> {
+
+        static final long serialVersionUID = 1L;
+
+        private final double[][] columns;
+        private final int[] codes;
+        private final int groups;
+        private final int from;
+        private final int to;
+
+        private AggregateTask(double[][] columns, int[] codes, int groups,
+                int from, int to) {
+            this.columns = columns;
+            this.codes = codes;
+            this.groups = groups;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Accumulator compute() {
+            if (to - from > THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                AggregateTask left = new AggregateTask(columns, codes,
+                        groups, from, mid);
+                left.fork();
+                Accumulator right = new AggregateTask(columns, codes, groups,
+                        mid, to).compute();
+                Accumulator acc = left.join();
+                acc.merge(right);
+                return acc;
+            }
+            Accumulator acc = new Accumulator(columns.length, groups);
+            for (int f = 0; f < columns.length; f++) {
+                double[] column = columns[f];
+                long[] count = acc.count[f];
+                double[] sum = acc.sum[f];
+                double[] min = acc.min[f];
+                double[] max = acc.max[f];
+                for (int row = from; row < to; row++) {
+                    double value = column[row];
+                    if (Double.isNaN(value)) {
+                        continue;
+                    }
+                    int g = codes[row];
+                    count[g]++;
+                    sum[g] += value;
+                    if (value < min[g]) {
+                        min[g] = value;
+                    }
+                    if (value > max[g]) {
+                        max[g] = value;
+                    }
+                }
+            }
+            return acc;
+        }
+    }
+
+    /*
+     * Sorts the partitions [offsets[g], offsets[g+1]) for groups in
+     * [from, to).  Large single groups are sorted with parallelSort.
+     */
+    private static final class SortTask extends RecursiveAction {
+
+        static final long serialVersionUID = 1L;
+
+        private final double[] values;
+        private final int[] offsets;
+        private final int from;
+        private final int to;
+
+        private SortTask(double[] values, int[] offsets, int from, int to) {
+            this.values = values;
+            this.offsets = offsets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && offsets[to] - offsets[from] > THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SortTask(values, offsets, from, mid),
+                        new SortTask(values, offsets, mid, to));
+            } else if (to - from == 1) {
+                Arrays.parallelSort(values, offsets[from], offsets[to]);
+            } else {
+                for (int g = from; g < to; g++) {
+                    Arrays.sort(values, offsets[g], offsets[g + 1]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,526 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * Server-Sent Events (SSE) endpoint that pushes fleet changes to HTTP
+ * subscribers such as browser dashboards.
+ * <br><br>
+ * After each poll cycle the caller hands the parsed replies for a rig to
+ * {@link #publish(String, List)}.  Only the {@code ReplySummary} and
+ * {@code ReplyDevs} fields that a {@link ChangeDetector} reports as changed
+ * since the previous cycle are serialized, once, into a {@code change}
+ * event and the resulting bytes are shared by every subscriber.  A newly
+ * connected subscriber first receives a {@code snapshot} event holding the
+ * full current state; the snapshot is likewise serialized at most once per
+ * poll cycle.
+ * <br><br>
+ * Each subscriber owns a bounded buffer of pending events.  A subscriber
+ * whose buffer is full while its events are being written is considered
+ * too slow and is disconnected; a standard {@code EventSource} client
+ * reconnects automatically and resynchronizes from the snapshot event.  If
+ * the buffer filled up while waiting for a writer, its events are instead
+ * replaced by a snapshot event.
+ * <br><br>
+ * Subscribers do not hold a thread each.  Writing events and sending
+ * heartbeats share a fixed pool of writer threads,
+ * {@link #DEFAULT_WRITER_THREADS} unless given, that only runs for a
+ * subscriber while it has events pending and writes at most
+ * {@link #MAX_EVENTS_PER_RUN} events before giving way to the others.
+ * Connections are accepted on a thread of their own.  A client that stops
+ * reading occupies a writer until its socket buffer drains or its buffer
+ * fills up, at which point the write is interrupted and the connection
+ * closed.
+ */
+public class FleetEventServer {
+
+    private static final Logger LOGGER =
+            Logger.getLogger("com.jtconnors.cgminerapi");
+
+    public static final String DEFAULT_PATH = "/events";
+    public static final int DEFAULT_BUFFER_CAPACITY = 64;
+    public static final int DEFAULT_WRITER_THREADS = 4;
+    public static final int MAX_EVENTS_PER_RUN = 16;
+
+    public static final String RIG = "rig";
+    public static final String RIGS = "rigs";
+    public static final String DEVS_REMOVED = "DEVS_REMOVED";
+
+    private static final long HEARTBEAT_SECONDS = 15;
+    private static final byte[] HEARTBEAT =
+            ":\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final long ALL_FIELDS = -1L;
+
+    private static final JsonBuilderFactory BUILDER_FACTORY =
+            Json.createBuilderFactory(null);
+
+    private final HttpServer server;
+    private final ScheduledExecutorService executor;
+    private final ExecutorService httpExecutor;
+    private final int bufferCapacity;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ChangeDetector changeDetector = new ChangeDetector();
+    private final AtomicLong droppedSubscribers = new AtomicLong();
+    private byte[] snapshotEvent;
+
+    /*
+     * A connected client and its bounded buffer of pending events.  Runs on
+     * the writer pool whenever events are pending, never more than once at
+     * a time.
+     */
+    private final class Subscriber implements Runnable {
+        private final HttpExchange exchange;
+        private final OutputStream os;
+        private final BlockingQueue<byte[]> queue;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean dropped;
+        private Thread writer;      // guarded by this
+
+        private Subscriber(HttpExchange exchange, int capacity) {
+            this.exchange = exchange;
+            os = exchange.getResponseBody();
+            queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        private boolean send(byte[] event) {
+            if (!queue.offer(event)) {
+                return false;
+            }
+            schedule();
+            return true;
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    close();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                writer = Thread.currentThread();
+            }
+            try {
+                byte[] event;
+                int written = 0;
+                while (!dropped && written < MAX_EVENTS_PER_RUN
+                        && (event = queue.poll()) != null) {
+                    os.write(event);
+                    written++;
+                }
+                if (!dropped) {
+                    os.flush();
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "SSE subscriber went away: {0}",
+                        e.getMessage());
+                subscribers.remove(this);
+                dropped = true;
+            }
+            synchronized (this) {
+                writer = null;
+                Thread.interrupted();
+            }
+            scheduled.set(false);
+            if (dropped) {
+                close();
+            } else if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+
+        /*
+         * Interrupting a write on the channel of the exchange closes it.
+         * HttpExchange.close() would instead wait for the write to finish.
+         */
+        private synchronized void interruptWriter() {
+            if (writer != null) {
+                writer.interrupt();
+            }
+        }
+
+        private synchronized boolean isWriting() {
+            return writer != null;
+        }
+
+        private void close() {
+            if (closed.compareAndSet(false, true)) {
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * Creates a {@code FleetEventServer} listening on {@code port} using the
+     * default path and subscriber buffer capacity.  The server must be
+     * started with {@link #start()}.
+     * @param port the port number to listen on
+     * @throws IOException if the server socket cannot be created
+     */
+    public FleetEventServer(int port) throws IOException {
+        this(port, DEFAULT_PATH, DEFAULT_BUFFER_CAPACITY);
+    }
+
+    /**
+     * Creates a {@code FleetEventServer}.  The server must be started with
+     * {@link #start()}.
+     * @param port the port number to listen on
+     * @param path the HTTP path of the event stream, e.g. "/events"
+     * @param bufferCapacity maximum number of events buffered for a single
+     * subscriber before it is disconnected as a slow consumer
+     * @throws IOException if the server socket cannot be created
+     */
+    public FleetEventServer(int port, String path, int bufferCapacity)
+            throws IOException {
+        this(port, path, bufferCapacity, DEFAULT_WRITER_THREADS);
+    }
+
+    /**
+     * Creates a {@code FleetEventServer}.  The server must be started with
+     * {@link #start()}.
+     * @param port the port number to listen on
+     * @param path the HTTP path of the event stream, e.g. "/events"
+     * @param bufferCapacity maximum number of events buffered for a single
+     * subscriber before it is disconnected as a slow consumer
+     * @param writerThreads number of threads serving all subscribers
+     * @throws IOException if the server socket cannot be created
+     */
+    public FleetEventServer(int port, String path, int bufferCapacity,
+            int writerThreads) throws IOException {
+        if (bufferCapacity < 1) {
+            throw new IllegalArgumentException(
+                    "bufferCapacity must be positive, got " + bufferCapacity);
+        }
+        if (writerThreads < 1) {
+            throw new IllegalArgumentException(
+                    "writerThreads must be positive, got " + writerThreads);
+        }
+        this.bufferCapacity = bufferCapacity;
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = Executors.newScheduledThreadPool(writerThreads, r -> {
+            Thread t = new Thread(r, "FleetEventServer");
+            t.setDaemon(true);
+            return t;
+        });
+        httpExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "FleetEventServer-http");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(httpExecutor);
+        server.createContext(path, this::handleSubscriber);
+    }
+
+    /**
+     * Start accepting subscribers
+     */
+    public void start() {
+        server.start();
+        executor.scheduleAtFixedRate(this::heartbeat, HEARTBEAT_SECONDS,
+                HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /*
+     * Keeps idle connections, and the proxies in front of them, open
+     */
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.queue.isEmpty()) {
+                subscriber.send(HEARTBEAT);
+            }
+        }
+    }
+
+    /**
+     * Stop the server, disconnecting all subscribers
+     */
+    public void stop() {
+        for (Subscriber subscriber : subscribers) {
+            disconnect(subscriber);
+        }
+        server.stop(0);
+        httpExecutor.shutdown();
+        executor.shutdown();
+    }
+
+    /**
+     * @return the number of currently connected subscribers
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * @return the number of subscribers disconnected so far because their
+     * buffer filled up
+     */
+    public long getDroppedSubscriberCount() {
+        return droppedSubscribers.get();
+    }
+
+    /**
+     * Publish the result of one poll of a rig.  Fields that differ from the
+     * previous poll of the same rig are sent to all subscribers as a single
+     * {@code change} event.  Nothing is sent if nothing changed.
+     * @param sample the result of one poll of a rig
+     */
+    public void publish(RigSample sample) {
+        publish(sample.getRigId(), sample.getReplies());
+    }
+
+    /**
+     * Publish the result of one poll of a rig.  Fields that differ from the
+     * previous poll of the same rig are sent to all subscribers as a single
+     * {@code change} event.  Nothing is sent if nothing changed.
+     * @param rigId identifier of the rig, typically "host:port"
+     * @param replies the parsed replies, as returned by
+     * {@link JSONParser#parseReply()}
+     */
+    public synchronized void publish(String rigId, List<Reply> replies) {
+        EventBuilder builder = new EventBuilder(rigId);
+        changeDetector.diff(rigId, System.currentTimeMillis(), replies,
+                builder);
+        if (!builder.changed) {
+            return;
+        }
+        snapshotEvent = null;
+        byte[] bytes = toEventBytes("change", builder.build());
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.send(bytes)) {
+                continue;
+            }
+            if (subscriber.isWriting()) {
+                LOGGER.log(Level.WARNING,
+                        "Disconnecting slow SSE subscriber");
+                droppedSubscribers.incrementAndGet();
+                disconnect(subscriber);
+            } else {
+                // Waiting for a writer held by slower subscribers
+                subscriber.queue.clear();
+                subscriber.send(getSnapshotEvent());
+            }
+        }
+    }
+
+    /*
+     * Collects the change events of one poll into a single JSON object
+     */
+    private static final class EventBuilder
+            implements ChangeDetector.Listener {
+
+        private final JsonObjectBuilder event =
+                BUILDER_FACTORY.createObjectBuilder();
+        private final JsonArrayBuilder devs =
+                BUILDER_FACTORY.createArrayBuilder();
+        private final JsonArrayBuilder removed =
+                BUILDER_FACTORY.createArrayBuilder();
+        private boolean devsChanged;
+        private boolean devsRemoved;
+        private boolean changed;
+
+        private EventBuilder(String rigId) {
+            event.add(RIG, rigId);
+        }
+
+        @Override
+        public void summaryChanged(ChangeEvent<ReplySummary> change) {
+            JsonObjectBuilder fields = BUILDER_FACTORY.createObjectBuilder();
+            addFields(fields, SummaryField.values(), change.getChangedMask(),
+                    change.getReply());
+            event.add(Reply.SUMMARY_REPLY, fields);
+            changed = true;
+        }
+
+        @Override
+        public void devsChanged(ChangeEvent<ReplyDevs> change) {
+            if (change.getKind() == ChangeEvent.Kind.REMOVED) {
+                removed.add(change.getReply().getAsc());
+                devsRemoved = true;
+            } else {
+                JsonObjectBuilder fields =
+                        BUILDER_FACTORY.createObjectBuilder();
+                fields.add(Reply.ASC, change.getReply().getAsc());
+                addFields(fields, DevsField.values(),
+                        change.getChangedMask(), change.getReply());
+                devs.add(fields);
+                devsChanged = true;
+            }
+            changed = true;
+        }
+
+        private JsonObjectBuilder build() {
+            if (devsChanged) {
+                event.add(Reply.DEVS_REPLY, devs);
+            }
+            if (devsRemoved) {
+                event.add(DEVS_REMOVED, removed);
+            }
+            return event;
+        }
+    }
+
+    /*
+     * Add the fields of reply selected by mask (bit n set for the field
+     * with ordinal n) to builder.
+     */
+    private static <T extends Reply> void addFields(JsonObjectBuilder builder,
+            ReplyField<T>[] fields, long mask, T reply) {
+        for (ReplyField<T> field : fields) {
+            if ((mask & (1L << field.ordinal())) != 0) {
+                addField(builder, field.getKey(), field.getType(),
+                        field.getValue(reply));
+            }
+        }
+    }
+
+    private static void addField(JsonObjectBuilder builder, String key,
+            FieldType type, Object value) {
+        if (value == null) {
+            builder.addNull(key);
+            return;
+        }
+        switch (type) {
+            case STRING:
+                builder.add(key, (String) value);
+                break;
+            case INTEGER:
+            case LONG:
+                builder.add(key, ((Number) value).longValue());
+                break;
+            case DOUBLE:
+                builder.add(key, ((Number) value).doubleValue());
+                break;
+            case BOOLEAN:
+                builder.add(key, (Boolean) value);
+                break;
+            default:
+                builder.add(key, value.toString());
+        }
+    }
+
+    private static byte[] toEventBytes(String eventName,
+            JsonObjectBuilder builder) {
+        return ("event: " + eventName + "\ndata: " + builder.build() + "\n\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /*
+     * Full state of every known rig, serialized at most once between
+     * changes.  Must be called with the monitor held.
+     */
+    private byte[] getSnapshotEvent() {
+        if (snapshotEvent == null) {
+            JsonArrayBuilder rigs = BUILDER_FACTORY.createArrayBuilder();
+            for (String rigId : changeDetector.getRigIds()) {
+                JsonObjectBuilder rig = BUILDER_FACTORY.createObjectBuilder();
+                rig.add(RIG, rigId);
+                ReplySummary summary = changeDetector.getSummary(rigId);
+                if (summary != null) {
+                    JsonObjectBuilder fields =
+                            BUILDER_FACTORY.createObjectBuilder();
+                    addFields(fields, SummaryField.values(), ALL_FIELDS,
+                            summary);
+                    rig.add(Reply.SUMMARY_REPLY, fields);
+                }
+                JsonArrayBuilder devs = BUILDER_FACTORY.createArrayBuilder();
+                for (ReplyDevs dev : changeDetector.getDevs(rigId)) {
+                    JsonObjectBuilder fields =
+                            BUILDER_FACTORY.createObjectBuilder();
+                    addFields(fields, DevsField.values(), ALL_FIELDS, dev);
+                    devs.add(fields);
+                }
+                rig.add(Reply.DEVS_REPLY, devs);
+                rigs.add(rig);
+            }
+            snapshotEvent = toEventBytes("snapshot",
+                    BUILDER_FACTORY.createObjectBuilder().add(RIGS, rigs));
+        }
+        return snapshotEvent;
+    }
+
+    /*
+     * A writer blocked on the connection is interrupted so that it fails
+     * and closes it instead of holding its thread.
+     */
+    private void disconnect(Subscriber subscriber) {
+        subscriber.dropped = true;
+        subscribers.remove(subscriber);
+        subscriber.queue.clear();
+        subscriber.interruptWriter();
+        subscriber.schedule();
+    }
+
+    /*
+     * Registers the subscriber and returns; its events are written by the
+     * writer pool, which also closes the exchange.
+     */
+    private void handleSubscriber(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        Subscriber subscriber = new Subscriber(exchange, bufferCapacity);
+        synchronized (this) {
+            subscriber.send(getSnapshotEvent());
+            subscribers.add(subscriber);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Secondary indexes over the live DEVS state of the fleet, answering
+ * questions such as "which devices are Sick or Dead", "which rigs are on
+ * pool 2" or "what is running above 85 degrees C" in time proportional to
+ * the size of the answer rather than the size of the fleet.
+ * <br><br>
+ * The indexes cover {@code Status}, {@code Enabled},
+ * {@code Last Share Pool} and {@code Temperature}, the latter bucketed into
+ * bands of a configurable width.  They are maintained incrementally from
+ * the events of a {@link ChangeDetector}: register the index as the
+ * listener of {@link ChangeDetector#diff(RigSample, ChangeDetector.Listener)}
+ * and only devices whose indexed fields changed are touched on each poll.
+ * <br><br>
+ * Instances are thread safe.  Updates are serialized, queries run
+ * concurrently with them and return a snapshot of the matching devices.
+ */
+public class FleetIndex implements ChangeDetector.Listener {
+
+    /**
+     * Default width of a temperature band in degrees
+     */
+    public static final double DEFAULT_TEMPERATURE_BAND = 5.0;
+
+    private static final long INDEXED_FIELDS =
+            (1L << DevsField.STATUS.ordinal())
+            | (1L << DevsField.ENABLED.ordinal())
+            | (1L << DevsField.LAST_SHARE_POOL.ordinal())
+            | (1L << DevsField.TEMPERATURE.ordinal());
+
+    /*
+     * Indexed values currently recorded for a device
+     */
+    private static final class Entry {
+        private String status;
+        private String enabled;
+        private Integer pool;
+        private Integer band;
+    }
+
+    private final double temperatureBand;
+    private final Map<DeviceKey, Entry> entries = new HashMap<>();
+    private final ConcurrentMap<String, Set<DeviceKey>> byStatus =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<DeviceKey>> byEnabled =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Set<DeviceKey>> byPool =
+            new ConcurrentHashMap<>();
+    private final NavigableMap<Integer, Set<DeviceKey>> byBand =
+            new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<DeviceKey, Double> temperatures =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Creates a FleetIndex with temperature bands of
+     * {@link #DEFAULT_TEMPERATURE_BAND} degrees
+     */
+    public FleetIndex() {
+        this(DEFAULT_TEMPERATURE_BAND);
+    }
+
+    /**
+     * Creates a FleetIndex
+     * @param temperatureBand width of a temperature band in degrees
+     */
+    public FleetIndex(double temperatureBand) {
+        if (!(temperatureBand > 0)) {
+            throw new IllegalArgumentException(
+                    "temperatureBand must be > 0: " + temperatureBand);
+        }
+        this.temperatureBand = temperatureBand;
+    }
+
+    @Override
+    public void summaryChanged(ChangeEvent<ReplySummary> event) {
+    }
+
+    @Override
+    public synchronized void devsChanged(ChangeEvent<ReplyDevs> event) {
+        DeviceKey key = new DeviceKey(event.getRigId(),
+                event.getReply().getAsc());
+        if (event.getKind() == ChangeEvent.Kind.REMOVED) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                unindex(key, entry);
+            }
+            return;
+        }
+        if ((event.getChangedMask() & INDEXED_FIELDS) == 0) {
+            return;
+        }
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+        ReplyDevs devs = event.getReply();
+        if (!Objects.equals(entry.status, devs.getStatus())) {
+            move(byStatus, key, entry.status, devs.getStatus());
+            entry.status = devs.getStatus();
+        }
+        if (!Objects.equals(entry.enabled, devs.getEnabled())) {
+            move(byEnabled, key, entry.enabled, devs.getEnabled());
+            entry.enabled = devs.getEnabled();
+        }
+        if (!Objects.equals(entry.pool, devs.getLastSharePool())) {
+            move(byPool, key, entry.pool, devs.getLastSharePool());
+            entry.pool = devs.getLastSharePool();
+        }
+        double temperature = DevsField.TEMPERATURE.getDouble(devs);
+        Integer band = band(temperature);
+        if (!Objects.equals(entry.band, band)) {
+            move(byBand, key, entry.band, band);
+            entry.band = band;
+        }
+        if (Double.isNaN(temperature)) {
+            temperatures.remove(key);
+        } else {
+            temperatures.put(key, temperature);
+        }
+    }
+
+    /**
+     * Drop every device of a rig from the indexes
+     * @param rigId identifier of the rig
+     */
+    public synchronized void remove(String rigId) {
+        entries.entrySet().removeIf(e -> {
+            if (e.getKey().getRigId().equals(rigId)) {
+                unindex(e.getKey(), e.getValue());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * @param status a DEVS {@code Status} value, e.g. "Alive", "Sick",
+     * "Dead"
+     * @return the devices currently reporting {@code status}
+     */
+    public List<DeviceKey> getDevicesByStatus(String status) {
+        return snapshot(byStatus.get(status));
+    }
+
+    /**
+     * @param enabled a DEVS {@code Enabled} value, "Y" or "N"
+     * @return the devices currently reporting {@code enabled}
+     */
+    public List<DeviceKey> getDevicesByEnabled(String enabled) {
+        return snapshot(byEnabled.get(enabled));
+    }
+
+    /**
+     * @param pool a pool number
+     * @return the devices whose {@code Last Share Pool} is {@code pool}
+     */
+    public List<DeviceKey> getDevicesByPool(int pool) {
+        return snapshot(byPool.get(pool));
+    }
+
+    /**
+     * @param pool a pool number
+     * @return the rigs having at least one device whose
+     * {@code Last Share Pool} is {@code pool}
+     */
+    public Set<String> getRigsByPool(int pool) {
+        Set<DeviceKey> devices = byPool.get(pool);
+        if (devices == null) {
+            return Collections.emptySet();
+        }
+        Set<String> rigIds = new LinkedHashSet<>();
+        for (DeviceKey key : devices) {
+            rigIds.add(key.getRigId());
+        }
+        return rigIds;
+    }
+
+    /**
+     * @param temperature a temperature in degrees
+     * @return the devices currently reporting a temperature strictly above
+     * {@code temperature}, none if it is NaN
+     */
+    public List<DeviceKey> getDevicesAbove(double temperature) {
+        List<DeviceKey> result = new ArrayList<>();
+        Integer lowest = band(temperature);
+        if (lowest == null) {
+            return result;
+        }
+        for (Map.Entry<Integer, Set<DeviceKey>> entry
+                : byBand.tailMap(lowest, true).entrySet()) {
+            boolean boundary = entry.getKey().equals(lowest);
+            for (DeviceKey key : entry.getValue()) {
+                if (!boundary) {
+                    result.add(key);
+                } else {
+                    Double current = temperatures.get(key);
+                    if (current != null && current > temperature) {
+                        result.add(key);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of devices in each temperature band, keyed by the
+     * lower bound of the band in degrees, in ascending order
+     */
+    public NavigableMap<Double, Integer> getTemperatureHistogram() {
+        NavigableMap<Double, Integer> histogram = new TreeMap<>();
+        for (Map.Entry<Integer, Set<DeviceKey>> entry : byBand.entrySet()) {
+            histogram.put(entry.getKey() * temperatureBand,
+                    entry.getValue().size());
+        }
+        return histogram;
+    }
+
+    /**
+     * @return the distinct {@code Status} values currently reported
+     */
+    public Set<String> getStatuses() {
+        return Collections.unmodifiableSet(byStatus.keySet());
+    }
+
+    /**
+     * @return the distinct pool numbers currently reported
+     */
+    public Set<Integer> getPools() {
+        return Collections.unmodifiableSet(byPool.keySet());
+    }
+
+    /**
+     * @return the width of a temperature band in degrees
+     */
+    public double getTemperatureBand() {
+        return temperatureBand;
+    }
+
+    private Integer band(double temperature) {
+        if (Double.isNaN(temperature)) {
+            return null;
+        }
+        return (int) Math.floor(temperature / temperatureBand);
+    }
+
+    private void unindex(DeviceKey key, Entry entry) {
+        move(byStatus, key, entry.status, null);
+        move(byEnabled, key, entry.enabled, null);
+        move(byPool, key, entry.pool, null);
+        move(byBand, key, entry.band, null);
+        temperatures.remove(key);
+    }
+
+    /*
+     * Move key from the set of value from to the set of value to, either
+     * of which may be null.  Empty sets are dropped so that the key sets of
+     * the index maps only hold values currently reported.
+     */
+    private static <V> void move(Map<V, Set<DeviceKey>> index, DeviceKey key,
+            V from, V to) {
+        if (from != null) {
+            Set<DeviceKey> set = index.get(from);
+            if (set != null) {
+                set.remove(key);
+                if (set.isEmpty()) {
+                    index.remove(from);
+                }
+            }
+        }
+        if (to != null) {
+            index.computeIfAbsent(to, k -> ConcurrentHashMap.newKeySet())
+                    .add(key);
+        }
+    }
+
+    private static List<DeviceKey> snapshot(Set<DeviceKey> set) {
+        if (set == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(set);
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Constant-memory streaming summaries of the DEVS replies of a fleet, kept
+ * per site: {@link QuantileSketch}es of {@code MHS 5s} and
+ * {@code Temperature}, and {@link TopK} selections of the hottest devices
+ * and of the devices with the worst hardware error rate
+ * ({@code Device Hardware%}).  Each sample costs {@code O(log k)} per
+ * device, replacing an exact sort of the whole fleet every poll cycle.
+ * <br><br>
+ * Summaries accumulate until {@link #clear()} is called, typically at the
+ * start of each poll cycle or reporting window.  The summaries of several
+ * collectors are combined with {@link #merge(FleetSketches)}.
+ * <br><br>
+ * Instances are thread safe.
+ */
+public class FleetSketches {
+
+    public static final int DEFAULT_K = 20;
+
+    /**
+     * The fields summarized by quantile sketches
+     */
+    public static final DevsField[] SKETCHED_FIELDS = {
+        DevsField.MHS_5S, DevsField.TEMPERATURE
+    };
+
+    /*
+     * Summaries of a single site
+     */
+    private static final class Site {
+        private final QuantileSketch[] sketches =
+                new QuantileSketch[SKETCHED_FIELDS.length];
+        private final TopK<DeviceKey> hottest;
+        private final TopK<DeviceKey> worstHardware;
+
+        private Site(int k, double accuracy) {
+            for (int i = 0; i < sketches.length; i++) {
+                sketches[i] = new QuantileSketch(accuracy,
+                        QuantileSketch.DEFAULT_MAX_BINS);
+            }
+            hottest = new TopK<>(k);
+            worstHardware = new TopK<>(k);
+        }
+
+        private void add(String rigId, ReplyDevs devs) {
+            for (int i = 0; i < sketches.length; i++) {
+                sketches[i].add(SKETCHED_FIELDS[i].getDouble(devs));
+            }
+            DeviceKey key = new DeviceKey(rigId, devs.getAsc());
+            hottest.offer(key, DevsField.TEMPERATURE.getDouble(devs));
+            worstHardware.offer(key,
+                    DevsField.DEVICE_HARDWARE_PERCENT.getDouble(devs));
+        }
+
+        private void merge(Site other) {
+            for (int i = 0; i < sketches.length; i++) {
+                sketches[i].merge(other.sketches[i]);
+            }
+            hottest.merge(other.hottest);
+            worstHardware.merge(other.worstHardware);
+        }
+    }
+
+    private final int k;
+    private final double accuracy;
+    private final Function<String, String> siteOf;
+    private final ConcurrentMap<String, Site> sites =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Creates a FleetSketches treating the whole fleet as one site, with
+     * top {@link #DEFAULT_K} selections and sketches of
+     * {@link QuantileSketch#DEFAULT_ACCURACY}
+     */
+    public FleetSketches() {
+        this(r -> null, DEFAULT_K, QuantileSketch.DEFAULT_ACCURACY);
+    }
+
+    /**
+     * Creates a FleetSketches
+     * @param siteOf maps a rig identifier to its site, may return null for
+     * rigs not assigned to a site
+     * @param k the number of devices kept by each top-K selection
+     * @param accuracy relative accuracy of the quantile sketches
+     */
+    public FleetSketches(Function<String, String> siteOf, int k,
+            double accuracy) {
+        this.siteOf = siteOf;
+        this.k = k;
+        this.accuracy = accuracy;
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be > 0: " + k);
+        }
+        if (!(accuracy > 0 && accuracy < 1)) {
+            throw new IllegalArgumentException(
+                    "accuracy must be between 0 and 1: " + accuracy);
+        }
+    }
+
+    /**
+     * Add the DEVS replies of a poll
+     * @param sample the result of one poll of a rig
+     */
+    public void update(RigSample sample) {
+        update(sample.getRigId(), sample.getReplies());
+    }
+
+    /**
+     * Add the DEVS replies of a poll
+     * @param rigId identifier of the rig
+     * @param replies the parsed replies, other reply types are ignored
+     */
+    public void update(String rigId, List<Reply> replies) {
+        Site site = site(siteLabel(rigId));
+        synchronized (site) {
+            for (Reply reply : replies) {
+                if (reply instanceof ReplyDevs) {
+                    site.add(rigId, (ReplyDevs) reply);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add everything summarized by another instance to this one
+     * @param other summaries from e.g. another collector, created with the
+     * same accuracy
+     */
+    public void merge(FleetSketches other) {
+        for (String label : other.getSites()) {
+            Site from = other.sites.get(label);
+            Site copy = new Site(k, accuracy);
+            synchronized (from) {
+                copy.merge(from);
+            }
+            Site to = site(label);
+            synchronized (to) {
+                to.merge(copy);
+            }
+        }
+    }
+
+    /**
+     * Forget everything summarized so far
+     */
+    public void clear() {
+        sites.clear();
+    }
+
+    /**
+     * @return the sites seen so far, rigs without a site are reported under
+     * {@link SnapshotTable#UNGROUPED_LABEL}
+     */
+    public Set<String> getSites() {
+        return Collections.unmodifiableSet(sites.keySet());
+    }
+
+    /**
+     * @param site a site
+     * @param field one of {@link #SKETCHED_FIELDS}
+     * @return a copy of the sketch of {@code field} for {@code site}
+     */
+    public QuantileSketch getSketch(String site, DevsField field) {
+        QuantileSketch sketch = new QuantileSketch(accuracy,
+                QuantileSketch.DEFAULT_MAX_BINS);
+        Site s = sites.get(site);
+        if (s != null) {
+            synchronized (s) {
+                sketch.merge(s.sketches[sketchIndex(field)]);
+            }
+        }
+        return sketch;
+    }
+
+    /**
+     * @param field one of {@link #SKETCHED_FIELDS}
+     * @return the sketch of {@code field} over all sites
+     */
+    public QuantileSketch getFleetSketch(DevsField field) {
+        int index = sketchIndex(field);
+        QuantileSketch sketch = new QuantileSketch(accuracy,
+                QuantileSketch.DEFAULT_MAX_BINS);
+        for (Site s : sites.values()) {
+            synchronized (s) {
+                sketch.merge(s.sketches[index]);
+            }
+        }
+        return sketch;
+    }
+
+    /**
+     * @param site a site
+     * @return the hottest devices of {@code site}, hottest first
+     */
+    public List<TopK.Entry<DeviceKey>> getHottest(String site) {
+        return top(site, true);
+    }
+
+    /**
+     * @return the hottest devices of the fleet, hottest first
+     */
+    public List<TopK.Entry<DeviceKey>> getHottest() {
+        return top(null, true);
+    }
+
+    /**
+     * @param site a site
+     * @return the devices of {@code site} with the highest
+     * {@code Device Hardware%}, worst first
+     */
+    public List<TopK.Entry<DeviceKey>> getWorstHardwareErrors(String site) {
+        return top(site, false);
+    }
+
+    /**
+     * @return the devices of the fleet with the highest
+     * {@code Device Hardware%}, worst first
+     */
+    public List<TopK.Entry<DeviceKey>> getWorstHardwareErrors() {
+        return top(null, false);
+    }
+
+    private List<TopK.Entry<DeviceKey>> top(String site, boolean hottest) {
+        TopK<DeviceKey> top = new TopK<>(k);
+        for (Map.Entry<String, Site> entry : sites.entrySet()) {
+            if (site != null && !site.equals(entry.getKey())) {
+                continue;
+            }
+            Site s = entry.getValue();
+            synchronized (s) {
+                top.merge(hottest ? s.hottest : s.worstHardware);
+            }
+        }
+        return top.getTop();
+    }
+
+    private Site site(String label) {
+        return sites.computeIfAbsent(label, l -> new Site(k, accuracy));
+    }
+
+    private String siteLabel(String rigId) {
+        String site = siteOf.apply(rigId);
+        return site == null ? SnapshotTable.UNGROUPED_LABEL : site;
+    }
+
+    private static int sketchIndex(DevsField field) {
+        for (int i = 0; i < SKETCHED_FIELDS.length; i++) {
+            if (SKETCHED_FIELDS[i] == field) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(field + " is not sketched");
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.Arrays;
+
+/**
+ * Streaming encoders and decoders for the time series compression scheme
+ * described in "Gorilla: A Fast, Scalable, In-Memory Time Series Database"
+ * (Pelkonen et al., VLDB 2015).
+ * <br><br>
+ * Timestamps and integral values (e.g. {@code Elapsed}, {@code Accepted})
+ * are stored as delta-of-deltas, which is a single bit for a perfectly
+ * regular poll interval or a steadily increasing counter.  Floating point
+ * values (e.g. {@code MHS 5s}, {@code Temperature}) are stored as the XOR
+ * with the previous value, of which only the meaningful bits are written.
+ * <br><br>
+ * Encoders append to a {@link BitWriter}; decoders read the same sequence
+ * back from a {@link BitReader}.  The number of encoded values is not part
+ * of the stream and must be tracked by the caller.
+ */
+public final class GorillaCodec {
+
+    private GorillaCodec() {
+    }
+
+    /**
+     * Growable bit stream, most significant bit first
+     */
+    public static final class BitWriter {
+
+        private long[] words = new long[4];
+        private long bitLength;
+
+        /**
+         * Append the low {@code count} bits of {@code value}
+         * @param value the bits to write
+         * @param count number of bits, 0 to 64
+         */
+        public void writeBits(long value, int count) {
+            if (count == 0) {
+                return;
+            }
+            if (count < 64) {
+                value &= (1L << count) - 1;
+            }
+            int index = (int) (bitLength >>> 6);
+            int used = (int) (bitLength & 63);
+            int free = 64 - used;
+            ensureCapacity(index + 2);
+            if (count <= free) {
+                words[index] |= value << (free - count);
+            } else {
+                words[index] |= value >>> (count - free);
+                words[index + 1] |= value << (64 - (count - free));
+            }
+            bitLength += count;
+        }
+
+        /**
+         * Append a single bit
+         * @param bit the bit to write
+         */
+        public void writeBit(boolean bit) {
+            writeBits(bit ? 1L : 0L, 1);
+        }
+
+        private void ensureCapacity(int wordCount) {
+            if (wordCount > words.length) {
+                words = Arrays.copyOf(words,
+                        Math.max(wordCount, words.length * 2));
+            }
+        }
+
+        /**
+         * @return the number of bits written so far
+         */
+        public long getBitLength() {
+            return bitLength;
+        }
+
+        /**
+         * @return the number of bytes needed to hold the bits written so far
+         */
+        public int getByteLength() {
+            return (int) ((bitLength + 7) >>> 3);
+        }
+
+        /**
+         * @return a reader over the bits written so far.  The reader sees a
+         * copy, later writes do not affect it.
+         */
+        public BitReader toReader() {
+            return new BitReader(
+                    Arrays.copyOf(words, (int) ((bitLength + 63) >>> 6)),
+                    bitLength);
+        }
+
+        /**
+         * @return the bits written so far, padded with zero bits to a whole
+         * number of bytes
+         */
+        public byte[] toByteArray() {
+            byte[] bytes = new byte[getByteLength()];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) (words[i >>> 3] >>> (56 - ((i & 7) << 3)));
+            }
+            return bytes;
+        }
+
+        /**
+         * Release unused capacity
+         */
+        public void trim() {
+            words = Arrays.copyOf(words,
+                    Math.max(1, (int) ((bitLength + 63) >>> 6)));
+        }
+    }
+
+    /**
+     * Sequential reader over a bit stream produced by a {@link BitWriter}
+     */
+    public static final class BitReader {
+
+        private final long[] words;
+        private final long bitLength;
+        private long position;
+
+        private BitReader(long[] words, long bitLength) {
+            this.words = words;
+            this.bitLength = bitLength;
+        }
+
+        /**
+         * Creates a BitReader over bytes produced by
+         * {@link BitWriter#toByteArray()}
+         * @param bytes the encoded bytes
+         */
+        public BitReader(byte[] bytes) {
+            words = new long[(bytes.length + 7) >>> 3];
+            for (int i = 0; i < bytes.length; i++) {
+                words[i >>> 3] |=
+                        (bytes[i] & 0xFFL) << (56 - ((i & 7) << 3));
+            }
+            bitLength = (long) bytes.length << 3;
+        }
+
+        /**
+         * Read {@code count} bits as an unsigned value
+         * @param count number of bits, 0 to 64
+         * @return the bits read
+         */
+        public long readBits(int count) {
+            if (count == 0) {
+                return 0L;
+            }
+            if (position + count > bitLength) {
+                throw new IllegalStateException("Read past end of bit stream");
+            }
+            int index = (int) (position >>> 6);
+            int used = (int) (position & 63);
+            int available = 64 - used;
+            long value;
+            if (count <= available) {
+                value = words[index] >>> (available - count);
+            } else {
+                value = (words[index] << (count - available))
+                        | (words[index + 1] >>> (64 - (count - available)));
+            }
+            position += count;
+            return count == 64 ? value : value & ((1L << count) - 1);
+        }
+
+        /**
+         * @return the next bit
+         */
+        public boolean readBit() {
+            return readBits(1) != 0;
+        }
+
+        /**
+         * @return the number of unread bits
+         */
+        public long remaining() {
+            return bitLength - position;
+        }
+    }
+
+    /**
+     * Delta-of-delta encoder for timestamps and integral values
+     */
+    public static final class DeltaEncoder {
+
+        private final BitWriter out;
+        private long count;
+        private long previous;
+        private long previousDelta;
+
+        public DeltaEncoder(BitWriter out) {
+            this.out = out;
+        }
+
+        /**
+         * @param value the next value of the series
+         */
+        public void encode(long value) {
+            if (count == 0) {
+                out.writeBits(value, 64);
+            } else {
+                long delta = value - previous;
+                long dod = delta - previousDelta;
+                if (dod == 0) {
+                    out.writeBit(false);
+                } else if (fits(dod, 7)) {
+                    out.writeBits(0b10, 2);
+                    out.writeBits(dod, 7);
+                } else if (fits(dod, 9)) {
+                    out.writeBits(0b110, 3);
+                    out.writeBits(dod, 9);
+                } else if (fits(dod, 12)) {
+                    out.writeBits(0b1110, 4);
+                    out.writeBits(dod, 12);
+                } else if (fits(dod, 32)) {
+                    out.writeBits(0b11110, 5);
+                    out.writeBits(dod, 32);
+                } else {
+                    out.writeBits(0b11111, 5);
+                    out.writeBits(dod, 64);
+                }
+                previousDelta = delta;
+            }
+            previous = value;
+            count++;
+        }
+
+        private static boolean fits(long value, int bits) {
+            long limit = 1L << (bits - 1);
+            return value >= -limit && value < limit;
+        }
+    }
+
+    /**
+     * Decoder for streams written by {@link DeltaEncoder}
+     */
+    public static final class DeltaDecoder {
+
+        private final BitReader in;
+        private long count;
+        private long previous;
+        private long previousDelta;
+
+        public DeltaDecoder(BitReader in) {
+            this.in = in;
+        }
+
+        /**
+         * @return the next value of the series
+         */
+        public long decode() {
+            if (count++ == 0) {
+                previous = in.readBits(64);
+                return previous;
+            }
+            long dod;
+            if (!in.readBit()) {
+                dod = 0;
+            } else if (!in.readBit()) {
+                dod = signed(in.readBits(7), 7);
+            } else if (!in.readBit()) {
+                dod = signed(in.readBits(9), 9);
+            } else if (!in.readBit()) {
+                dod = signed(in.readBits(12), 12);
+            } else if (!in.readBit()) {
+                dod = signed(in.readBits(32), 32);
+            } else {
+                dod = in.readBits(64);
+            }
+            previousDelta += dod;
+            previous += previousDelta;
+            return previous;
+        }
+
+        private static long signed(long value, int bits) {
+            return (value << (64 - bits)) >> (64 - bits);
+        }
+    }
+
+    /**
+     * XOR encoder for floating point values
+     */
+    public static final class XorEncoder {
+
+        private final BitWriter out;
+        private long count;
+        private long previous;
+        private int previousLeading = Integer.MAX_VALUE;
+        private int previousTrailing;
+
+        public XorEncoder(BitWriter out) {
+            this.out = out;
+        }
+
+        /**
+         * @param value the next value of the series
+         */
+        public void encode(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            if (count++ == 0) {
+                out.writeBits(bits, 64);
+                previous = bits;
+                return;
+            }
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                out.writeBit(false);
+                return;
+            }
+            out.writeBit(true);
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (leading >= previousLeading && trailing >= previousTrailing) {
+                out.writeBit(false);
+                out.writeBits(xor >>> previousTrailing,
+                        64 - previousLeading - previousTrailing);
+            } else {
+                int significant = 64 - leading - trailing;
+                out.writeBit(true);
+                out.writeBits(leading, 5);
+                out.writeBits(significant - 1, 6);
+                out.writeBits(xor >>> trailing, significant);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+    }
+
+    /**
+     * Decoder for streams written by {@link XorEncoder}
+     */
+    public static final class XorDecoder {
+
+        private final BitReader in;
+        private long count;
+        private long previous;
+        private int previousLeading;
+        private int previousTrailing;
+
+        public XorDecoder(BitReader in) {
+            this.in = in;
+        }
+
+        /**
+         * @return the next value of the series
+         */
+        public double decode() {
+            if (count++ == 0) {
+                previous = in.readBits(64);
+            } else if (in.readBit()) {
+                if (in.readBit()) {
+                    previousLeading = (int) in.readBits(5);
+                    int significant = (int) in.readBits(6) + 1;
+                    previousTrailing = 64 - previousLeading - significant;
+                }
+                int significant = 64 - previousLeading - previousTrailing;
+                previous ^= in.readBits(significant) << previousTrailing;
+            }
+            return Double.longBitsToDouble(previous);
+        }
+    }
+}
@@ -31,15 +31,17 @@
 
 package com.jtconnors.cgminerapi;
 
-import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.json.Json;
 import javax.json.JsonArray;
+import javax.json.JsonException;
 import javax.json.JsonObject;
-import javax.json.JsonReader;
+import javax.json.JsonValue;
 
 /**
  * This class parses the JSON replies to cgminer API calls.  
@@ -47,65 +49,334 @@ import javax.json.JsonReader;
  */
 public class JSONParser {
 
+    private static final Set<String> STATUS_KEYS =
+            Reply.keysOf(StatusField.values());
+
+    /*
+     * The response sections that may follow STATUS, in the order they are
+     * looked for.  ESTATS replies use the STATS section.  STATS and VERSION
+     * entries carry driver and firmware specific keys, kept as
+     * ExtraFields rather than reported as extra keys.
+     */
+    private static final List<Section<?>> SECTIONS = Arrays.asList(
+            new Section<>(Reply.SUMMARY_REPLY, true,
+                    Reply.keysOf(SummaryField.values()), ReplySummary::new,
+                    null),
+            new Section<>(Reply.DEVS_REPLY, false,
+                    Reply.keysOf(DevsField.values()), ReplyDevs::new,
+                    // a device cannot be identified without its ASC
+                    devs -> devs.getAsc() != null),
+            new Section<>(Reply.POOLS_REPLY, false,
+                    Reply.keysOf(PoolsField.values()), ReplyPools::new,
+                    pool -> pool.getPool() != null),
+            new Section<>(Reply.STATS_REPLY, false, null, ReplyStats::new,
+                    null),
+            new Section<>(Reply.CONFIG_REPLY, true,
+                    Reply.keysOf(ConfigField.values()), ReplyConfig::new,
+                    null),
+            new Section<>(Reply.VERSION_REPLY, true, null,
+                    ReplyVersion::new, null),
+            new Section<>(Reply.COIN_REPLY, true,
+                    Reply.keysOf(CoinField.values()), ReplyCoin::new, null));
+
     private final JsonObject jsonReply;
+    private final TolerantJsonReader repairs;
+
+    private static boolean isCommand(JsonObject jsonObject, String command) {
+        return jsonObject.get(command) != null;
+    }
+
+    public List<Reply> parseReply() {
+        ParseResult result = parse(ParseMode.STRICT);
+        if (!result.isOk()) {
+            Logger.getLogger(JSONParser.class.getName()).log(Level.SEVERE,
+                    "Invalid reply: {0}", result.getDiagnostics());
+        }
+        return new ArrayList<>(result.getReplies());
+    }
+
+    /**
+     * Parse the reply without throwing or logging.  Problems, including
+     * extra keys that are not modelled, are returned as diagnostics in the
+     * result.
+     * @param mode whether to stop at the first invalid reply or carry on
+     * with the modelled fields that are present
+     * @return the parsed replies and any problems found
+     */
+    public ParseResult parse(ParseMode mode) {
+        ParseDiagnostics diagnostics = new ParseDiagnostics();
+        List<Reply> replies = new ArrayList<>();
+        parse(mode, diagnostics, replies);
+        return new ParseResult(replies, diagnostics);
+    }
+
+    /**
+     * Parse a reply string without throwing or logging.  A string that is
+     * not well formed JSON yields an empty result with a
+     * {@code MALFORMED_JSON} diagnostic.
+     * @param replyStr the reply as returned by
+     * {@link APIConnection#apiCall(String)}
+     * @param mode whether to stop at the first invalid reply or carry on
+     * with the modelled fields that are present
+     * @return the parsed replies and any problems found
+     */
+    public static ParseResult parse(String replyStr, ParseMode mode) {
+        JSONParser parser;
+        try {
+            parser = new JSONParser(replyStr);
+        } catch (JsonException e) {
+            ParseDiagnostics diagnostics = new ParseDiagnostics();
+            diagnostics.report(ParseDiagnostics.Kind.MALFORMED_JSON, null,
+                    e.getMessage());
+            return new ParseResult(new ArrayList<>(), diagnostics);
+        }
+        return parser.parse(mode);
+    }
 
-    private ReplyStatus parseReplyStatus() throws InvalidReplyException {
-        JsonArray statusArray = jsonReply.getJsonArray(Reply.STATUS_REPLY);
+    private void parse(ParseMode mode, ParseDiagnostics diagnostics,
+            List<Reply> replies) {
+        if (repairs != null) {
+            for (TolerantJsonReader.Repair repair : repairs.getRepairs()) {
+                diagnostics.report(ParseDiagnostics.Kind.REPAIRED, null,
+                        repair + " x" + repairs.getCount(repair)
+                        + ", first at offset "
+                        + repairs.getFirstOffset(repair));
+            }
+        }
+        boolean strict = mode == ParseMode.STRICT;
+        JsonArray statusArray = section(Reply.STATUS_REPLY, diagnostics);
+        if (statusArray == null) {
+            return;
+        }
         if (statusArray.size() != 1) {
-            throw new InvalidReplyException(
+            diagnostics.report(ParseDiagnostics.Kind.UNEXPECTED_SIZE, null,
                     "Expected JSON Reply Status Array of size 1, got "
                     + statusArray.size());
+            if (strict || statusArray.isEmpty()) {
+                return;
+            }
+        }
+        JsonObject jsonStatus = entry(Reply.STATUS_REPLY, statusArray, 0,
+                diagnostics);
+        if (jsonStatus == null) {
+            return;
+        }
+        checkExtraKeys(jsonStatus, STATUS_KEYS, diagnostics);
+        ReplyStatus status = create(ReplyStatus::new, jsonStatus,
+                diagnostics);
+        if (strict && diagnostics.hasErrors()) {
+            return;
+        }
+        replies.add(status);
+        for (Section<?> section : SECTIONS) {
+            if (isCommand(jsonReply, section.name)) {
+                parse(section, strict, diagnostics, replies);
+                return;
+            }
         }
-        JsonObject jsonStatus = statusArray.getJsonObject(0);
-        return new ReplyStatus(jsonStatus);
     }
 
-    private ReplySummary parseReplySummary() throws InvalidReplyException {
-        JsonArray summaryArray = jsonReply.getJsonArray(Reply.SUMMARY_REPLY);
-        if (summaryArray.size() != 1) {
-            throw new InvalidReplyException(
-                    "Expected JSON Reply Summary Array of size 1, got "
-                    + summaryArray.size());
+    /*
+     * Decode a reply already known to match the modelled schema: no
+     * extra key scan, no size checks and no per-key checks.  Any mismatch
+     * surfaces as a RuntimeException, on which the caller falls back to
+     * parse(ParseMode).
+     */
+    List<Reply> parseTrusted() {
+        ParseDiagnostics trusted = ParseDiagnostics.TRUSTED;
+        List<Reply> replies = new ArrayList<>();
+        replies.add(create(ReplyStatus::new, jsonReply
+                .getJsonArray(Reply.STATUS_REPLY).getJsonObject(0), trusted));
+        for (Section<?> section : SECTIONS) {
+            JsonArray array = jsonReply.getJsonArray(section.name);
+            if (array != null) {
+                for (int index = 0; index < array.size(); index++) {
+                    replies.add(create(section.factory,
+                            array.getJsonObject(index), trusted));
+                }
+                break;
+            }
         }
-        JsonObject jsonSummary = summaryArray.getJsonObject(0);
-        return new ReplySummary(jsonSummary);
+        return replies;
     }
 
-    private List<ReplyDevs> parseReplyDevs() throws InvalidReplyException {
-        List<ReplyDevs> devList = new ArrayList<>();
-        JsonArray devArray = jsonReply.getJsonArray(Reply.DEVS_REPLY);
-        for (int index = 0; index < devArray.size(); index++) {
-            devList.add(new ReplyDevs(devArray.getJsonObject(index)));
+    private <T extends Reply> void parse(Section<T> section, boolean strict,
+            ParseDiagnostics diagnostics, List<Reply> replies) {
+        JsonArray array = section(section.name, diagnostics);
+        if (array == null) {
+            return;
+        }
+        if (section.single && array.size() != 1) {
+            diagnostics.report(ParseDiagnostics.Kind.UNEXPECTED_SIZE, null,
+                    "Expected JSON Reply " + section.name
+                    + " Array of size 1, got " + array.size());
+            if (strict || array.isEmpty()) {
+                return;
+            }
+        }
+        int size = section.single ? 1 : array.size();
+        List<Reply> entries = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            JsonObject jsonEntry = entry(section.name, array, index,
+                    diagnostics);
+            if (jsonEntry == null) {
+                if (strict) {
+                    return;
+                }
+                continue;
+            }
+            if (section.keys != null) {
+                checkExtraKeys(jsonEntry, section.keys, diagnostics);
+            }
+            int errors = diagnostics.getErrorCount();
+            T reply = create(section.factory, jsonEntry, diagnostics);
+            if (diagnostics.getErrorCount() > errors) {
+                if (strict) {
+                    // all or nothing, as parseReply() has always done
+                    return;
+                }
+                if (section.usable != null && !section.usable.test(reply)) {
+                    continue;
+                }
+            }
+            entries.add(reply);
         }
-        return devList;
+        replies.addAll(entries);
     }
 
-    private static boolean isCommand(JsonObject jsonObject, String command) {
-        return jsonObject.get(command) != null;
+    @FunctionalInterface
+    private interface ReplyFactory<T extends Reply> {
+        T create(JsonObject jsonObject, ParseDiagnostics diagnostics)
+                throws InvalidReplyException;
     }
 
-    public List<Reply> parseReply() {
-        ArrayList<Reply> replyList = new ArrayList<>();
+    /*
+     * The constructors only throw when given null diagnostics.  A reply
+     * that had a value truncated is marked as such.
+     */
+    private static <T extends Reply> T create(ReplyFactory<T> factory,
+            JsonObject jsonObject, ParseDiagnostics diagnostics) {
         try {
-            replyList.add(parseReplyStatus());
-            if (isCommand(jsonReply, Reply.SUMMARY_REPLY)) {
-                replyList.add(parseReplySummary());
-            } else if (isCommand(jsonReply, Reply.DEVS_REPLY)) {
-                for (Reply reply : parseReplyDevs()) {
-                    replyList.add(reply);
-                }
+            int outOfRange = diagnostics.getOutOfRangeCount();
+            T reply = factory.create(jsonObject, diagnostics);
+            if (diagnostics.getOutOfRangeCount() > outOfRange) {
+                reply.markTruncated();
             }
-        } catch (InvalidReplyException ex) {
-            Logger.getLogger(
-                JSONParser.class.getName()).log(Level.SEVERE, null, ex);
+            return reply;
+        } catch (InvalidReplyException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Section<T extends Reply> {
+
+        private final String name;
+        private final boolean single;
+        private final Set<String> keys;
+        private final ReplyFactory<T> factory;
+        private final Predicate<T> usable;
+
+        /*
+         * keys is null for sections with dynamic keys; usable, if not null,
+         * decides whether an entry with errors is still returned in
+         * LENIENT mode.
+         */
+        private Section(String name, boolean single, Set<String> keys,
+                ReplyFactory<T> factory, Predicate<T> usable) {
+            this.name = name;
+            this.single = single;
+            this.keys = keys;
+            this.factory = factory;
+            this.usable = usable;
+        }
+    }
+
+    private JsonArray section(String section,
+            ParseDiagnostics diagnostics) {
+        diagnostics.setSection(section, 0);
+        JsonValue value = jsonReply.get(section);
+        if (value instanceof JsonArray) {
+            return (JsonArray) value;
         }
-        return replyList;
+        diagnostics.report(ParseDiagnostics.Kind.MISSING_SECTION, section,
+                value == null ? null : "expected array, got "
+                + value.getValueType());
+        return null;
     }
 
+    private static JsonObject entry(String section, JsonArray array,
+            int index, ParseDiagnostics diagnostics) {
+        JsonValue value = array.get(index);
+        diagnostics.setSection(section, index);
+        if (value instanceof JsonObject) {
+            return (JsonObject) value;
+        }
+        diagnostics.report(ParseDiagnostics.Kind.WRONG_TYPE, null,
+                "expected object, got " + value.getValueType());
+        return null;
+    }
+
+    private static void checkExtraKeys(JsonObject jsonObject,
+            Set<String> keys, ParseDiagnostics diagnostics) {
+        for (String key : jsonObject.keySet()) {
+            if (!keys.contains(key)) {
+                diagnostics.report(ParseDiagnostics.Kind.EXTRA_KEY, key,
+                        null);
+            }
+        }
+    }
+
+    /**
+     * Creates a JSONParser.  Replies that are not well formed JSON are read
+     * again with a {@link TolerantJsonReader}; the repairs made are reported
+     * by {@link #parse(ParseMode)}.
+     * @param replyStr the reply as returned by
+     * {@link APIConnection#apiCall(String)}
+     * @throws JsonException if the reply is not JSON and cannot be repaired
+     */
     public JSONParser(String replyStr) {
-        try (JsonReader rdr = Json.createReader(new StringReader(replyStr))) {
-            jsonReply = rdr.readObject();
+        this(replyStr, JsonBackend.getDefault());
+    }
+
+    /**
+     * Creates a JSONParser that reads the reply with a specific backend
+     * @param replyStr the reply as returned by
+     * {@link APIConnection#apiCall(String)}
+     * @param backend the JSON implementation to read with
+     * @throws JsonException if the reply is not JSON and cannot be repaired
+     */
+    public JSONParser(String replyStr, JsonBackend backend) {
+        JsonObject object;
+        TolerantJsonReader tolerantReader = null;
+        try {
+            object = backend.readObject(replyStr);
+        } catch (JsonException e) {
+            tolerantReader = new TolerantJsonReader(replyStr);
+            try {
+                object = tolerantReader.readObject();
+            } catch (JsonException unrepairable) {
+                e.addSuppressed(unrepairable);
+                throw e;
+            }
         }
+        jsonReply = object;
+        repairs = tolerantReader;
+    }
+
+    /**
+     * Creates a JSONParser for an already read reply
+     * @param jsonReply the reply
+     */
+    JSONParser(JsonObject jsonReply) {
+        this.jsonReply = jsonReply;
+        this.repairs = null;
+    }
+
+    /*
+     * The reply as read, repaired if need be
+     */
+    JsonObject getJsonReply() {
+        return jsonReply;
     }
 
 }
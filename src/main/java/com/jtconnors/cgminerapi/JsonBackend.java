@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.ServiceLoader;
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+import javax.json.JsonReaderFactory;
+import javax.json.spi.JsonProvider;
+
+/**
+ * The JSON implementation replies are read and JSON is built with.
+ * <br><br>
+ * The static {@code Json.createReader(...)} and
+ * {@code Json.createObjectBuilder()} methods look up a {@code JsonProvider}
+ * on every call.  The backends returned by {@link #forProvider(JsonProvider)}
+ * look it up once and keep its reader and builder factories.
+ * <br><br>
+ * The default backend is, in order of preference, the one passed to
+ * {@link #setDefault(JsonBackend)}, the first one registered as a service
+ * in {@code META-INF/services/com.jtconnors.cgminerapi.JsonBackend}, or a
+ * cached backend for the default {@code JsonProvider}.  Implementations
+ * must be thread safe.
+ */
+public abstract class JsonBackend {
+
+    private static volatile JsonBackend defaultBackend;
+
+    /**
+     * Read a JSON object
+     * @param json the JSON text
+     * @return the object
+     * @throws JsonException if {@code json} is not a well formed JSON
+     * object
+     */
+    public abstract JsonObject readObject(String json);
+
+    /**
+     * @return the factory JSON objects and arrays are built with
+     */
+    public abstract JsonBuilderFactory getBuilderFactory();
+
+    /**
+     * @return a builder for a JSON object
+     */
+    public JsonObjectBuilder createObjectBuilder() {
+        return getBuilderFactory().createObjectBuilder();
+    }
+
+    /**
+     * @return a builder for a JSON array
+     */
+    public JsonArrayBuilder createArrayBuilder() {
+        return getBuilderFactory().createArrayBuilder();
+    }
+
+    /**
+     * @return the backend used when none is given
+     */
+    public static JsonBackend getDefault() {
+        JsonBackend backend = defaultBackend;
+        if (backend == null) {
+            synchronized (JsonBackend.class) {
+                backend = defaultBackend;
+                if (backend == null) {
+                    Iterator<JsonBackend> services =
+                            ServiceLoader.load(JsonBackend.class).iterator();
+                    backend = services.hasNext() ? services.next()
+                            : forProvider(JsonProvider.provider());
+                    defaultBackend = backend;
+                }
+            }
+        }
+        return backend;
+    }
+
+    /**
+     * Replace the backend used when none is given
+     * @param backend the new default backend, or null to return to the
+     * registered or provider backend
+     */
+    public static void setDefault(JsonBackend backend) {
+        defaultBackend = backend;
+    }
+
+    /**
+     * A backend that keeps the reader and builder factories of
+     * {@code provider}, e.g. {@code JsonProvider.provider()} or a specific
+     * implementation such as Glassfish's
+     * {@code org.glassfish.json.JsonProviderImpl}
+     * @param provider the JSON-P implementation
+     * @return the backend
+     */
+    public static JsonBackend forProvider(JsonProvider provider) {
+        return new ProviderBackend(provider);
+    }
+
+    /**
+     * A backend that goes through the static {@code Json} methods on every
+     * call, as this library used to.  Only useful as a baseline.
+     * @return the backend
+     */
+    public static JsonBackend serviceLookup() {
+        return ServiceLookupBackend.INSTANCE;
+    }
+
+    /**
+     * A backend that reads with the single pass scanner of
+     * {@link TolerantJsonReader}, rejecting rather than repairing anything
+     * that is not well formed, and builds with the default
+     * {@code JsonProvider}
+     * @return the backend
+     */
+    public static JsonBackend scanner() {
+        return ScannerBackend.INSTANCE;
+    }
+
+    private static final class ProviderBackend extends JsonBackend {
+
+        private final JsonReaderFactory readerFactory;
+        private final JsonBuilderFactory builderFactory;
+
+        private ProviderBackend(JsonProvider provider) {
+            readerFactory = provider.createReaderFactory(
+                    Collections.<String, Object>emptyMap());
+            builderFactory = provider.createBuilderFactory(
+                    Collections.<String, Object>emptyMap());
+        }
+
+        @Override
+        public JsonObject readObject(String json) {
+            try (JsonReader rdr =
+                    readerFactory.createReader(new StringReader(json))) {
+                return rdr.readObject();
+            }
+        }
+
+        @Override
+        public JsonBuilderFactory getBuilderFactory() {
+            return builderFactory;
+        }
+    }
+
+    private static final class ServiceLookupBackend extends JsonBackend {
+
+        private static final ServiceLookupBackend INSTANCE =
+                new ServiceLookupBackend();
+
+        @Override
+        public JsonObject readObject(String json) {
+            try (JsonReader rdr = Json.createReader(new StringReader(json))) {
+                return rdr.readObject();
+            }
+        }
+
+        @Override
+        public JsonBuilderFactory getBuilderFactory() {
+            return Json.createBuilderFactory(
+                    Collections.<String, Object>emptyMap());
+        }
+
+        @Override
+        public JsonObjectBuilder createObjectBuilder() {
+            return Json.createObjectBuilder();
+        }
+
+        @Override
+        public JsonArrayBuilder createArrayBuilder() {
+            return Json.createArrayBuilder();
+        }
+    }
+
+    private static final class ScannerBackend extends JsonBackend {
+
+        private static final ScannerBackend INSTANCE = new ScannerBackend();
+
+        private final JsonBuilderFactory builderFactory =
+                JsonProvider.provider().createBuilderFactory(
+                        Collections.<String, Object>emptyMap());
+
+        @Override
+        public JsonObject readObject(String json) {
+            return new TolerantJsonReader(json, false).readObject();
+        }
+
+        @Override
+        public JsonBuilderFactory getBuilderFactory() {
+            return builderFactory;
+        }
+    }
+}
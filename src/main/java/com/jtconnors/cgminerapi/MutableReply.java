@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+/**
+ * Mutable holder of the field values of one reply, overwritten in place
+ * each time a {@link ReplyBuffer} parses a new reply.  The values are
+ * kept in primitive arrays and a presence bitmap, so refilling a
+ * MutableReply creates no objects beyond the string values that changed.
+ * <br><br>
+ * A MutableReply is a view: whatever is read from it is only valid until
+ * the next parse into its buffer.  Consumers that keep a sample must take
+ * a snapshot, either as an ordinary immutable {@code Reply} with
+ * {@link #toReply()} or as a detached MutableReply with {@link #copy()}.
+ * <br><br>
+ * Instances are not thread safe.
+ *
+ * @param <T> the {@code Reply} subclass whose fields are held
+ */
+public final class MutableReply<T extends Reply> implements ReplyValues<T> {
+
+    /*
+     * Creates the immutable Reply of a snapshot
+     */
+    @FunctionalInterface
+    interface ReplyFactory<T> {
+        T create(JsonObject json) throws InvalidReplyException;
+    }
+
+    final ReplyField<T>[] fields;
+    final long[] longs;
+    final double[] doubles;
+    final String[] strings;
+    long bitmap;
+    private final ReplyFactory<T> factory;
+
+    MutableReply(ReplyField<T>[] fields, ReplyFactory<T> factory) {
+        this.fields = fields;
+        this.factory = factory;
+        this.longs = new long[fields.length];
+        this.doubles = new double[fields.length];
+        this.strings = new String[fields.length];
+    }
+
+    static MutableReply<ReplyStatus> status() {
+        return new MutableReply<>(StatusField.values(), ReplyStatus::new);
+    }
+
+    static MutableReply<ReplySummary> summary() {
+        return new MutableReply<>(SummaryField.values(), ReplySummary::new);
+    }
+
+    static MutableReply<ReplyDevs> devs() {
+        return new MutableReply<>(DevsField.values(), ReplyDevs::new);
+    }
+
+    /*
+     * Mark every field as absent
+     */
+    void clear() {
+        bitmap = 0L;
+    }
+
+    void setLong(int index, long value) {
+        longs[index] = value;
+        bitmap |= 1L << index;
+    }
+
+    void setDouble(int index, double value) {
+        doubles[index] = value;
+        bitmap |= 1L << index;
+    }
+
+    void setString(int index, String value) {
+        String current = strings[index];
+        if (current == null || !current.equals(value)) {
+            strings[index] = StringDictionary.shared().intern(value);
+        }
+        bitmap |= 1L << index;
+    }
+
+    /*
+     * Overwrite the values with the modelled fields of a JSON reply
+     * entry.  Values that do not fit the type of their field are left
+     * absent.
+     */
+    void set(JsonObject json) {
+        clear();
+        for (ReplyField<T> field : fields) {
+            JsonValue value = json.get(field.getKey());
+            if (value == null) {
+                continue;
+            }
+            int i = field.ordinal();
+            switch (field.getType()) {
+                case INTEGER:
+                case LONG:
+                    if (value instanceof JsonNumber) {
+                        setLong(i, ((JsonNumber) value).longValue());
+                    }
+                    break;
+                case DOUBLE:
+                    if (value instanceof JsonNumber) {
+                        setDouble(i, ((JsonNumber) value).doubleValue());
+                    }
+                    break;
+                case BOOLEAN:
+                    if (value == JsonValue.TRUE || value == JsonValue.FALSE) {
+                        setLong(i, value == JsonValue.TRUE ? 1L : 0L);
+                    }
+                    break;
+                case STRING:
+                    if (value instanceof JsonString) {
+                        setString(i, ((JsonString) value).getString());
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Overwrite the values with those of another MutableReply
+     * @param other the values to copy
+     */
+    public void copyFrom(MutableReply<T> other) {
+        System.arraycopy(other.longs, 0, longs, 0, longs.length);
+        System.arraycopy(other.doubles, 0, doubles, 0, doubles.length);
+        System.arraycopy(other.strings, 0, strings, 0, strings.length);
+        bitmap = other.bitmap;
+    }
+
+    /**
+     * @return a detached copy of the current values, unaffected by later
+     * parses into this MutableReply's buffer
+     */
+    public MutableReply<T> copy() {
+        MutableReply<T> copy = new MutableReply<>(fields, factory);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    /**
+     * @return an immutable {@code Reply} holding the current values
+     * @throws InvalidReplyException if a field required by the
+     * {@code Reply} is absent
+     */
+    public T toReply() throws InvalidReplyException {
+        return factory.create(toJson());
+    }
+
+    /**
+     * Write the current values without creating intermediate strings, see
+     * {@link ReplyFormatter}
+     * @param out the destination
+     * @param format the output format
+     * @throws IOException if {@code out} throws it
+     */
+    public void formatTo(Appendable out, ReplyFormatter.Format format)
+            throws IOException {
+        ReplyFormatter.forThread().formatTo(this, fields, out, format);
+    }
+
+    /**
+     * Write the current values as UTF-8, see {@link ReplyFormatter}
+     * @param out the destination, advanced past the bytes written
+     * @param format the output format
+     * @throws java.nio.BufferOverflowException if {@code out} has too
+     * little room left
+     */
+    public void formatTo(ByteBuffer out, ReplyFormatter.Format format) {
+        ReplyFormatter.forThread().formatTo(this, fields, out, format);
+    }
+
+    JsonObject toJson() {
+        JsonObjectBuilder builder =
+                JsonBackend.getDefault().createObjectBuilder();
+        for (ReplyField<T> field : fields) {
+            if (!isPresent(field)) {
+                continue;
+            }
+            int i = field.ordinal();
+            switch (field.getType()) {
+                case INTEGER:
+                case LONG:
+                    builder.add(field.getKey(), longs[i]);
+                    break;
+                case DOUBLE:
+                    builder.add(field.getKey(), doubles[i]);
+                    break;
+                case BOOLEAN:
+                    builder.add(field.getKey(), longs[i] != 0);
+                    break;
+                case STRING:
+                    builder.add(field.getKey(), strings[i]);
+                    break;
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public boolean isPresent(ReplyField<T> field) {
+        return (bitmap & (1L << field.ordinal())) != 0;
+    }
+
+    @Override
+    public double getDouble(ReplyField<T> field) {
+        if (!isPresent(field)) {
+            return Double.NaN;
+        }
+        if (field.getType() == FieldType.DOUBLE) {
+            return doubles[field.ordinal()];
+        }
+        return longs[field.ordinal()];
+    }
+
+    @Override
+    public long getLong(ReplyField<T> field) {
+        if (!isPresent(field)) {
+            return 0L;
+        }
+        if (field.getType() == FieldType.DOUBLE) {
+            return (long) doubles[field.ordinal()];
+        }
+        return longs[field.ordinal()];
+    }
+
+    @Override
+    public String getString(ReplyField<T> field) {
+        if (!isPresent(field) || field.getType() != FieldType.STRING) {
+            return null;
+        }
+        return strings[field.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        return toJson().toString();
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the problems found while parsing a reply, as plain values
+ * rather than exceptions, so that replies from firmware that routinely
+ * omits or adds fields can be parsed cheaply.  See
+ * {@link JSONParser#parse(ParseMode)}.
+ */
+public class ParseDiagnostics {
+
+    /**
+     * The kinds of problem reported
+     */
+    public enum Kind {
+        /**
+         * A modelled key is absent
+         */
+        MISSING_KEY(true),
+        /**
+         * A value is not of the expected JSON type
+         */
+        WRONG_TYPE(true),
+        /**
+         * A key that is not modelled is present, not an error
+         */
+        EXTRA_KEY(false),
+        /**
+         * A reply section (STATUS, SUMMARY, DEVS ...) is absent or not an
+         * array of objects
+         */
+        MISSING_SECTION(true),
+        /**
+         * A reply section has an unexpected number of entries
+         */
+        UNEXPECTED_SIZE(true),
+        /**
+         * The reply is not well formed JSON
+         */
+        MALFORMED_JSON(true),
+        /**
+         * The reply was not well formed JSON but has been repaired by
+         * {@link TolerantJsonReader}, not an error
+         */
+        REPAIRED(false),
+        /**
+         * A number does not fit the {@code Integer} of its modelled field and
+         * has been truncated, not an error
+         */
+        OUT_OF_RANGE(false);
+
+        private final boolean error;
+
+        private Kind(boolean error) {
+            this.error = error;
+        }
+
+        /**
+         * @return {@code true} if this kind of problem makes a reply invalid
+         */
+        public boolean isError() {
+            return error;
+        }
+    }
+
+    /**
+     * A single problem found while parsing
+     */
+    public static final class Diagnostic {
+        private final Kind kind;
+        private final String section;
+        private final int index;
+        private final String key;
+        private final String message;
+
+        private Diagnostic(Kind kind, String section, int index, String key,
+                String message) {
+            this.kind = kind;
+            this.section = section;
+            this.index = index;
+            this.key = key;
+            this.message = message;
+        }
+
+        /**
+         * @return the kind of problem
+         */
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the reply section, e.g. "DEVS", or {@code null}
+         */
+        public String getSection() {
+            return section;
+        }
+
+        /**
+         * @return the index of the entry within its section
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return the key concerned, or {@code null}
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return a description of the problem
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(kind);
+            if (section != null) {
+                sb.append(' ').append(section).append('[').append(index)
+                        .append(']');
+            }
+            if (key != null) {
+                sb.append(" \"").append(key).append('"');
+            }
+            if (message != null) {
+                sb.append(": ").append(message);
+            }
+            return sb.toString();
+        }
+    }
+
+    /*
+     * Passed to the Reply constructors by decoders for a known schema: the
+     * getters then read each value directly, without existence or type
+     * checks, and any mismatch surfaces as a RuntimeException.  See
+     * FirmwareProfile.
+     */
+    static final ParseDiagnostics TRUSTED = new ParseDiagnostics(true);
+
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    private final boolean trusted;
+    private String section;
+    private int index;
+    private int errorCount;
+    private int outOfRangeCount;
+
+    /**
+     * Creates an empty ParseDiagnostics
+     */
+    public ParseDiagnostics() {
+        this(false);
+    }
+
+    private ParseDiagnostics(boolean trusted) {
+        this.trusted = trusted;
+    }
+
+    boolean isTrusted() {
+        return trusted;
+    }
+
+    /**
+     * Set the reply section subsequent problems are reported against
+     * @param section the section, e.g. "DEVS"
+     * @param index the index of the entry within {@code section}
+     */
+    public void setSection(String section, int index) {
+        if (trusted) {
+            return;
+        }
+        this.section = section;
+        this.index = index;
+    }
+
+    /**
+     * Report a problem in the current section
+     * @param kind the kind of problem
+     * @param key the key concerned, or {@code null}
+     * @param message a description of the problem, or {@code null}
+     */
+    public void report(Kind kind, String key, String message) {
+        if (trusted) {
+            throw new IllegalStateException(kind + " \"" + key + "\"");
+        }
+        diagnostics.add(new Diagnostic(kind, section, index, key, message));
+        if (kind.isError()) {
+            errorCount++;
+        } else if (kind == Kind.OUT_OF_RANGE) {
+            outOfRangeCount++;
+        }
+    }
+
+    int getOutOfRangeCount() {
+        return outOfRangeCount;
+    }
+
+    /**
+     * @return {@code true} if any problem reported is an error
+     */
+    public boolean hasErrors() {
+        return errorCount > 0;
+    }
+
+    /**
+     * @return the number of errors reported
+     */
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return every problem reported, in the order found
+     */
+    public List<Diagnostic> getDiagnostics() {
+        return Collections.unmodifiableList(diagnostics);
+    }
+
+    @Override
+    public String toString() {
+        return diagnostics.toString();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of {@link JSONParser#parse(ParseMode)}: the replies that could be
+ * parsed together with any problems found.  Whether an individual field was
+ * present in the reply is available from
+ * {@link ReplyField#isPresent(Reply)}.
+ */
+public class ParseResult {
+
+    private final List<Reply> replies;
+    private final ParseDiagnostics diagnostics;
+
+    ParseResult(List<Reply> replies, ParseDiagnostics diagnostics) {
+        this.replies = Collections.unmodifiableList(replies);
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * @return {@code true} if no errors were found; extra keys are not
+     * errors
+     */
+    public boolean isOk() {
+        return !diagnostics.hasErrors();
+    }
+
+    /**
+     * @return the parsed replies, STATUS first, in the same form as
+     * {@link JSONParser#parseReply()}
+     */
+    public List<Reply> getReplies() {
+        return replies;
+    }
+
+    /**
+     * @return the problems found
+     */
+    public List<ParseDiagnostics.Diagnostic> getDiagnostics() {
+        return diagnostics.getDiagnostics();
+    }
+
+    @Override
+    public String toString() {
+        return (isOk() ? "OK " : "FAILED ") + replies.size() + " replies "
+                + diagnostics;
+    }
+}
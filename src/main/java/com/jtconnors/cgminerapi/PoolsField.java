@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.function.Function;
+
+/**
+ * Enumeration of the modelled attributes of a POOLS reply, in the order they
+ * are sent by cgminer.  See {@link ReplyPools}.
+ */
+public enum PoolsField implements ReplyField<ReplyPools> {
+    POOL(Reply.POOL, FieldType.INTEGER, ReplyPools::getPool),
+    URL(Reply.URL, FieldType.STRING, ReplyPools::getUrl),
+    STATUS(Reply.STATUS_DEVS, FieldType.STRING, ReplyPools::getStatus),
+    PRIORITY(Reply.PRIORITY, FieldType.INTEGER, ReplyPools::getPriority),
+    QUOTA(Reply.QUOTA, FieldType.INTEGER, ReplyPools::getQuota),
+    LONG_POLL(Reply.LONG_POLL, FieldType.STRING, ReplyPools::getLongPoll),
+    GETWORKS(Reply.GETWORKS, FieldType.INTEGER, ReplyPools::getGetworks),
+    ACCEPTED(Reply.ACCEPTED, FieldType.LONG, ReplyPools::getAccepted),
+    REJECTED(Reply.REJECTED, FieldType.LONG, ReplyPools::getRejected),
+    WORKS(Reply.WORKS, FieldType.INTEGER, ReplyPools::getWorks),
+    DISCARDED(Reply.DISCARDED, FieldType.INTEGER, ReplyPools::getDiscarded),
+    STALE(Reply.STALE, FieldType.INTEGER, ReplyPools::getStale),
+    GET_FAILURES(Reply.GET_FAILURES, FieldType.INTEGER,
+        ReplyPools::getGetFailures),
+    REMOTE_FAILURES(Reply.REMOTE_FAILURES, FieldType.INTEGER,
+        ReplyPools::getRemoteFailures),
+    USER(Reply.USER, FieldType.STRING, ReplyPools::getUser),
+    LAST_SHARE_TIME(Reply.LAST_SHARE_TIME, FieldType.LONG,
+        ReplyPools::getLastShareTime),
+    DIFF1_SHARES(Reply.DIFF1_SHARES, FieldType.LONG,
+        ReplyPools::getDiff1Shares),
+    PROXY_TYPE(Reply.PROXY_TYPE, FieldType.STRING, ReplyPools::getProxyType),
+    PROXY(Reply.PROXY, FieldType.STRING, ReplyPools::getProxy),
+    DIFFICULTY_ACCEPTED(Reply.DIFFICULTY_ACCEPTED, FieldType.DOUBLE,
+        ReplyPools::getDifficultyAccepted),
+    DIFFICULTY_REJECTED(Reply.DIFFICULTY_REJECTED, FieldType.DOUBLE,
+        ReplyPools::getDifficultyRejected),
+    DIFFICULTY_STALE(Reply.DIFFICULTY_STALE, FieldType.DOUBLE,
+        ReplyPools::getDifficultyStale),
+    LAST_SHARE_DIFFICULTY(Reply.LAST_SHARE_DIFFICULTY, FieldType.DOUBLE,
+        ReplyPools::getLastShareDifficulty),
+    WORK_DIFFICULTY(Reply.WORK_DIFFICULTY, FieldType.DOUBLE,
+        ReplyPools::getWorkDifficulty),
+    HAS_STRATUM(Reply.HAS_STRATUM, FieldType.BOOLEAN,
+        ReplyPools::getHasStratum),
+    STRATUM_ACTIVE(Reply.STRATUM_ACTIVE, FieldType.BOOLEAN,
+        ReplyPools::getStratumActive),
+    STRATUM_URL(Reply.STRATUM_URL, FieldType.STRING, ReplyPools::getStratumUrl),
+    STRATUM_DIFFICULTY(Reply.STRATUM_DIFFICULTY, FieldType.DOUBLE,
+        ReplyPools::getStratumDifficulty),
+    HAS_VMASK(Reply.HAS_VMASK, FieldType.BOOLEAN, ReplyPools::getHasVmask),
+    HAS_GBT(Reply.HAS_GBT, FieldType.BOOLEAN, ReplyPools::getHasGbt),
+    BEST_SHARE(Reply.BESTSHARE, FieldType.LONG, ReplyPools::getBestShare),
+    POOL_REJECTED_PERCENT(Reply.POOL_REJECTED_PERCENT, FieldType.DOUBLE,
+        ReplyPools::getPoolRejectedPercent),
+    POOL_STALE_PERCENT(Reply.POOL_STALE_PERCENT, FieldType.DOUBLE,
+        ReplyPools::getPoolStalePercent),
+    BAD_WORK(Reply.BAD_WORK, FieldType.LONG, ReplyPools::getBadWork),
+    CURRENT_BLOCK_HEIGHT(Reply.CURRENT_BLOCK_HEIGHT, FieldType.LONG,
+        ReplyPools::getCurrentBlockHeight),
+    CURRENT_BLOCK_VERSION(Reply.CURRENT_BLOCK_VERSION, FieldType.LONG,
+        ReplyPools::getCurrentBlockVersion);
+
+    private final String key;
+    private final FieldType type;
+    private final Function<ReplyPools, Object> accessor;
+
+    private PoolsField(String key, FieldType type,
+            Function<ReplyPools, Object> accessor) {
+        this.key = key;
+        this.type = type;
+        this.accessor = accessor;
+    }
+
+    @Override
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public FieldType getType() {
+        return type;
+    }
+
+    @Override
+    public Object getValue(ReplyPools reply) {
+        return accessor.apply(reply);
+    }
+}
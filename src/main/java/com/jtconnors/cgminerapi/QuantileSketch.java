@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Constant-memory, mergeable estimate of the distribution of a stream of
+ * non-negative values such as hash rates or temperatures.
+ * <br><br>
+ * Values are counted in logarithmically sized bins so that every quantile
+ * returned is within a relative error of {@code accuracy} of a value that
+ * was actually added (the DDSketch scheme).  When more than
+ * {@code maxBins} bins would be needed the lowest bins are collapsed
+ * together, trading accuracy on the low tail for bounded memory; with the
+ * defaults values spanning over 17 orders of magnitude fit before that
+ * happens.  Values of zero or less, e.g. the hash rate of a dead device,
+ * are counted as zero.
+ * <br><br>
+ * Two sketches with the same accuracy are merged exactly, which makes it
+ * possible to combine the sketches of several collectors, sites or time
+ * windows.  {@link #writeTo(DataOutput)} and {@link #readFrom(DataInput)}
+ * transfer a sketch between processes.
+ * <br><br>
+ * Instances are not thread safe.
+ */
+public class QuantileSketch {
+
+    public static final double DEFAULT_ACCURACY = 0.01;
+    public static final int DEFAULT_MAX_BINS = 2048;
+
+    // Smallest value given its own bin, anything below counts as zero
+    private static final double MIN_INDEXABLE = 1e-9;
+
+    private final double accuracy;
+    private final int maxBins;
+    private final double gamma;
+    private final double logGamma;
+    private long[] bins = new long[0];
+    private int offset;            // index of bins[0]
+    private long zeroCount;
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private double sum;
+
+    /**
+     * Creates a QuantileSketch with {@link #DEFAULT_ACCURACY} and
+     * {@link #DEFAULT_MAX_BINS}
+     */
+    public QuantileSketch() {
+        this(DEFAULT_ACCURACY, DEFAULT_MAX_BINS);
+    }
+
+    /**
+     * Creates a QuantileSketch
+     * @param accuracy relative accuracy of the quantiles, between 0 and 1
+     * exclusive
+     * @param maxBins upper bound on the number of bins kept
+     */
+    public QuantileSketch(double accuracy, int maxBins) {
+        if (!(accuracy > 0 && accuracy < 1)) {
+            throw new IllegalArgumentException(
+                    "accuracy must be between 0 and 1: " + accuracy);
+        }
+        if (maxBins < 1) {
+            throw new IllegalArgumentException("maxBins must be > 0: "
+                    + maxBins);
+        }
+        this.accuracy = accuracy;
+        this.maxBins = maxBins;
+        this.gamma = (1 + accuracy) / (1 - accuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    /**
+     * Add a value.  {@code NaN} values are ignored.
+     * @param value the value
+     */
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    /**
+     * Add a value a number of times.  {@code NaN} values are ignored.
+     * @param value the value
+     * @param times how many times to add it, greater than 0
+     */
+    public void add(double value, long times) {
+        if (Double.isNaN(value) || times <= 0) {
+            return;
+        }
+        if (value < MIN_INDEXABLE) {
+            zeroCount += times;
+        } else {
+            int index = (int) Math.ceil(Math.log(value) / logGamma);
+            increment(index, times);
+        }
+        if (count == 0) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        count += times;
+        sum += value * times;
+    }
+
+    /**
+     * Add all values counted by another sketch to this one.
+     * @param other a sketch created with the same accuracy
+     * @throws IllegalArgumentException if the accuracies differ
+     */
+    public void merge(QuantileSketch other) {
+        if (other.accuracy != accuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches of "
+                    + "accuracy " + accuracy + " and " + other.accuracy);
+        }
+        if (other.count == 0) {
+            return;
+        }
+        for (int i = 0; i < other.bins.length; i++) {
+            if (other.bins[i] != 0) {
+                increment(other.offset + i, other.bins[i]);
+            }
+        }
+        zeroCount += other.zeroCount;
+        if (count == 0) {
+            min = other.min;
+            max = other.max;
+        } else {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+        count += other.count;
+        sum += other.sum;
+    }
+
+    /**
+     * @return an independent copy of this sketch
+     */
+    public QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch(accuracy, maxBins);
+        copy.merge(this);
+        return copy;
+    }
+
+    /**
+     * Estimate a quantile
+     * @param quantile between 0 and 1 inclusive, e.g. 0.95 for p95
+     * @return the estimated value, or {@code NaN} if the sketch is empty
+     */
+    public double getQuantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException(
+                    "quantile must be between 0 and 1: " + quantile);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+        if (rank < zeroCount) {
+            return Math.max(min, 0);
+        }
+        long seen = zeroCount;
+        for (int i = 0; i < bins.length; i++) {
+            seen += bins[i];
+            if (seen > rank) {
+                double value = 2 * Math.pow(gamma, offset + i) / (gamma + 1);
+                return Math.min(Math.max(value, min), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Estimate several quantiles
+     * @param quantiles each between 0 and 1 inclusive
+     * @return the estimated values, in the order requested
+     */
+    public double[] getQuantiles(double... quantiles) {
+        double[] values = new double[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            values[i] = getQuantile(quantiles[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Forget every value added
+     */
+    public void clear() {
+        bins = new long[0];
+        offset = 0;
+        zeroCount = 0;
+        count = 0;
+        min = Double.NaN;
+        max = Double.NaN;
+        sum = 0;
+    }
+
+    /**
+     * @return the number of values added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the exact minimum, or {@code NaN} if empty
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * @return the exact maximum, or {@code NaN} if empty
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * @return the exact mean, or {@code NaN} if empty
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * @return the relative accuracy of the quantiles
+     */
+    public double getAccuracy() {
+        return accuracy;
+    }
+
+    /**
+     * Serialize this sketch
+     * @param out destination of the serialized form
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeDouble(accuracy);
+        out.writeInt(maxBins);
+        out.writeLong(count);
+        out.writeLong(zeroCount);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeDouble(sum);
+        out.writeInt(offset);
+        out.writeInt(bins.length);
+        for (long bin : bins) {
+            out.writeLong(bin);
+        }
+    }
+
+    /**
+     * Deserialize a sketch written by {@link #writeTo(DataOutput)}
+     * @param in source of the serialized form
+     * @return the sketch
+     * @throws IOException if reading fails
+     */
+    public static QuantileSketch readFrom(DataInput in) throws IOException {
+        QuantileSketch sketch = new QuantileSketch(in.readDouble(),
+                in.readInt());
+        sketch.count = in.readLong();
+        sketch.zeroCount = in.readLong();
+        sketch.min = in.readDouble();
+        sketch.max = in.readDouble();
+        sketch.sum = in.readDouble();
+        sketch.offset = in.readInt();
+        int length = in.readInt();
+        if (length < 0 || length > sketch.maxBins) {
+            throw new IOException("Corrupt sketch, " + length + " bins");
+        }
+        sketch.bins = new long[length];
+        for (int i = 0; i < length; i++) {
+            sketch.bins[i] = in.readLong();
+        }
+        return sketch;
+    }
+
+    private void increment(int index, long times) {
+        if (bins.length == 0) {
+            bins = new long[Math.min(maxBins, 64)];
+            offset = index - bins.length / 2;
+        }
+        if (index < offset) {
+            int needed = offset + bins.length - index;
+            if (needed > maxBins) {
+                // Below the retained range: count in the lowest bin
+                bins[0] += times;
+                return;
+            }
+            grow(index, offset + bins.length - 1);
+        } else if (index >= offset + bins.length) {
+            int needed = index - offset + 1;
+            if (needed > maxBins) {
+                collapse(index - maxBins + 1);
+            }
+            if (index >= offset + bins.length) {
+                grow(offset, index);
+            }
+        }
+        bins[index - offset] += times;
+    }
+
+    /*
+     * Resize to cover at least [low, high], with some headroom on either
+     * side but never more than maxBins bins.
+     */
+    private void grow(int low, int high) {
+        int span = high - low + 1;
+        int length = Math.min(maxBins, Math.max(span + span / 2,
+                bins.length * 2));
+        int newOffset = low < offset
+                ? Math.max(high - length + 1, low - (length - span) / 2)
+                : low;
+        if (newOffset > low) {
+            newOffset = low;
+        }
+        long[] grown = new long[length];
+        System.arraycopy(bins, 0, grown, offset - newOffset, bins.length);
+        bins = grown;
+        offset = newOffset;
+    }
+
+    /*
+     * Fold every bin below newOffset into the bin at newOffset so that the
+     * highest bins fit.
+     */
+    private void collapse(int newOffset) {
+        long folded = 0;
+        int shift = newOffset - offset;
+        for (int i = 0; i < Math.min(shift, bins.length); i++) {
+            folded += bins[i];
+        }
+        long[] shifted = new long[bins.length];
+        if (shift < bins.length) {
+            System.arraycopy(bins, shift, shifted, 0, bins.length - shift);
+        }
+        shifted[0] += folded;
+        bins = shifted;
+        offset = newOffset;
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch[count=" + count + ", p50=" + getQuantile(0.5)
+                + ", p95=" + getQuantile(0.95) + ", p99=" + getQuantile(0.99)
+                + "]";
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Turns the cumulative counters of SUMMARY and DEVS replies (accepted
+ * shares, hardware errors, total MH ...) into per-interval deltas and
+ * rates.  Only the previous sample of every rig and device is kept, in
+ * primitive form, so each update is O(1) regardless of history length.
+ * <br><br>
+ * The interval is taken from {@code Elapsed} (SUMMARY) or
+ * {@code Device Elapsed} (DEVS), falling back to the poll timestamps.  If
+ * the elapsed time goes backwards cgminer or the device restarted, and the
+ * current counter values are reported as the deltas of an interval that
+ * started at the restart.  A single counter going backwards (e.g. after a
+ * {@code zero} command) is handled the same way for that counter.
+ * <br><br>
+ * Instances are thread safe.
+ */
+public class RateEngine {
+
+    public static final SummaryField[] SUMMARY_COUNTERS = {
+        SummaryField.ACCEPTED, SummaryField.REJECTED,
+        SummaryField.HARDWARE_ERRORS, SummaryField.DIFFICULTY_ACCEPTED,
+        SummaryField.TOTAL_MH
+    };
+
+    public static final DevsField[] DEVS_COUNTERS = {
+        DevsField.ACCEPTED, DevsField.REJECTED, DevsField.HARDWARE_ERRORS,
+        DevsField.DIFF1_WORK, DevsField.DIFFICULTY_ACCEPTED,
+        DevsField.TOTAL_MH
+    };
+
+    /**
+     * Receives the rates computed by {@link RateEngine#update(RigSample,
+     * Listener)}.  Nothing is reported for the first sample of a rig or
+     * device.
+     */
+    public interface Listener {
+        void summaryRates(String rigId, CounterRates<ReplySummary> rates);
+
+        void devsRates(DeviceKey key, CounterRates<ReplyDevs> rates);
+    }
+
+    /*
+     * Previous sample of one rig or device
+     */
+    private static final class State {
+        private final double[] counters;
+        private long elapsed;
+        private long timestamp;
+        private boolean initialized;
+
+        private State(int size) {
+            counters = new double[size];
+        }
+    }
+
+    private final ConcurrentMap<String, State> summaryStates =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<DeviceKey, State> devsStates =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Update with all SUMMARY and DEVS replies of a poll
+     * @param sample the result of one poll of a rig
+     * @param listener receives the computed rates
+     */
+    public void update(RigSample sample, Listener listener) {
+        for (Reply reply : sample.getReplies()) {
+            if (reply instanceof ReplySummary) {
+                CounterRates<ReplySummary> rates = update(sample.getRigId(),
+                        sample.getTimestamp(), (ReplySummary) reply);
+                if (rates != null) {
+                    listener.summaryRates(sample.getRigId(), rates);
+                }
+            } else if (reply instanceof ReplyDevs) {
+                ReplyDevs devs = (ReplyDevs) reply;
+                DeviceKey key = new DeviceKey(sample.getRigId(),
+                        devs.getAsc());
+                CounterRates<ReplyDevs> rates = update(key,
+                        sample.getTimestamp(), devs);
+                if (rates != null) {
+                    listener.devsRates(key, rates);
+                }
+            }
+        }
+    }
+
+    /**
+     * Update the counters of a rig
+     * @param rigId identifier of the rig
+     * @param timestamp time of the sample in milliseconds since the epoch
+     * @param summary the reply
+     * @return the rates since the previous sample of the rig, or
+     * {@code null} if this is the first one
+     */
+    public CounterRates<ReplySummary> update(String rigId, long timestamp,
+            ReplySummary summary) {
+        State state = summaryStates.computeIfAbsent(rigId,
+                k -> new State(SUMMARY_COUNTERS.length));
+        return update(state, SUMMARY_COUNTERS, SummaryField.ELAPSED,
+                timestamp, summary);
+    }
+
+    /**
+     * Update the counters of a device
+     * @param key the device
+     * @param timestamp time of the sample in milliseconds since the epoch
+     * @param devs the reply
+     * @return the rates since the previous sample of the device, or
+     * {@code null} if this is the first one
+     */
+    public CounterRates<ReplyDevs> update(DeviceKey key, long timestamp,
+            ReplyDevs devs) {
+        State state = devsStates.computeIfAbsent(key,
+                k -> new State(DEVS_COUNTERS.length));
+        return update(state, DEVS_COUNTERS, DevsField.DEVICE_ELAPSED,
+                timestamp, devs);
+    }
+
+    /**
+     * Forget the previous samples of a rig and its devices
+     * @param rigId identifier of the rig
+     */
+    public void remove(String rigId) {
+        summaryStates.remove(rigId);
+        devsStates.keySet().removeIf(key -> key.getRigId().equals(rigId));
+    }
+
+    private static <T extends Reply> CounterRates<T> update(State state,
+            ReplyField<T>[] counters, ReplyField<T> elapsedField,
+            long timestamp, T reply) {
+        Object elapsedValue = elapsedField.getValue(reply);
+        long elapsed = elapsedValue == null ? -1L
+                : ((Number) elapsedValue).longValue();
+        synchronized (state) {
+            CounterRates<T> rates = null;
+            if (state.initialized) {
+                boolean restarted = elapsed >= 0 && state.elapsed >= 0
+                        && elapsed < state.elapsed;
+                double interval;
+                if (restarted) {
+                    interval = elapsed;
+                } else if (elapsed >= 0 && state.elapsed >= 0) {
+                    interval = elapsed - state.elapsed;
+                } else {
+                    interval = (timestamp - state.timestamp) / 1000.0;
+                }
+                boolean reset = restarted;
+                double[] deltas = new double[counters.length];
+                for (int i = 0; i < counters.length; i++) {
+                    double value = counters[i].getDouble(reply);
+                    if (restarted || value < state.counters[i]) {
+                        deltas[i] = value;
+                        reset = true;
+                    } else {
+                        deltas[i] = value - state.counters[i];
+                    }
+                }
+                rates = new CounterRates<>(counters, deltas, interval, reset);
+            }
+            for (int i = 0; i < counters.length; i++) {
+                state.counters[i] = counters[i].getDouble(reply);
+            }
+            state.elapsed = elapsed;
+            state.timestamp = timestamp;
+            state.initialized = true;
+            return rates;
+        }
+    }
+}
@@ -31,7 +31,16 @@
 
 package com.jtconnors.cgminerapi;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import javax.json.Json;
+import javax.json.JsonNumber;
 import javax.json.JsonObject;
+import javax.json.JsonString;
 import javax.json.JsonValue;
 
 /**
@@ -54,11 +63,19 @@ import javax.json.JsonValue;
  * <br><br>
  * SUMMARY command: {@code ReplySummary.class}<br>
  * DEVS command: {@code ReplyDevs.class}<br>
+ * POOLS command: {@code ReplyPools.class}<br>
+ * STATS and ESTATS commands: {@code ReplyStats.class}<br>
+ * CONFIG command: {@code ReplyConfig.class}<br>
+ * VERSION command: {@code ReplyVersion.class}<br>
+ * COIN command: {@code ReplyCoin.class}<br>
  */
 public abstract class Reply {
 
     protected Reply() {      
     }
+
+    /* Set by JSONParser, see isTruncated() */
+    private boolean truncated;
     
     /* 
      * All replies contain a Status block and a response block. These
@@ -70,6 +87,11 @@ public abstract class Reply {
     public static final String SUMMARY_REPLY = "SUMMARY";
     public static final String DEVS_REPLY = "DEVS";
     public static final String STATUS_REPLY = "STATUS";
+    public static final String POOLS_REPLY = "POOLS";
+    public static final String STATS_REPLY = "STATS";
+    public static final String CONFIG_REPLY = "CONFIG";
+    public static final String VERSION_REPLY = "VERSION";
+    public static final String COIN_REPLY = "COIN";
     
     // Reponse Status attributes
     public static final String STATUS = "STATUS";
@@ -124,6 +146,98 @@ public abstract class Reply {
     public static final String LAST_VALID_WORK = "Last Valid Work";
     public static final String DEVICE_ELAPSED = "Device Elapsed";  
 
+    // Additional attributes needed when support added for POOLS command
+    public static final String POOL = "POOL";
+    public static final String URL = "URL";
+    public static final String PRIORITY = "Priority";
+    public static final String QUOTA = "Quota";
+    public static final String LONG_POLL = "Long Poll";
+    public static final String WORKS = "Works";
+    public static final String USER = "User";
+    public static final String DIFF1_SHARES = "Diff1 Shares";
+    public static final String PROXY_TYPE = "Proxy Type";
+    public static final String PROXY = "Proxy";
+    public static final String WORK_DIFFICULTY = "Work Difficulty";
+    public static final String HAS_STRATUM = "Has Stratum";
+    public static final String STRATUM_ACTIVE = "Stratum Active";
+    public static final String STRATUM_URL = "Stratum URL";
+    public static final String STRATUM_DIFFICULTY = "Stratum Difficulty";
+    public static final String HAS_VMASK = "Has Vmask";
+    public static final String HAS_GBT = "Has GBT";
+    public static final String BAD_WORK = "Bad Work";
+    public static final String CURRENT_BLOCK_HEIGHT = "Current Block Height";
+    public static final String CURRENT_BLOCK_VERSION = "Current Block Version";
+
+    // Additional attributes needed when support added for STATS command
+    public static final String STATS = "STATS";
+    public static final String CALLS = "Calls";
+    public static final String WAIT = "Wait";
+    public static final String MAX = "Max";
+    public static final String MIN = "Min";
+
+    // Additional attributes needed when support added for CONFIG command
+    public static final String ASC_COUNT = "ASC Count";
+    public static final String PGA_COUNT = "PGA Count";
+    public static final String POOL_COUNT = "Pool Count";
+    public static final String STRATEGY = "Strategy";
+    public static final String LOG_INTERVAL = "Log Interval";
+    public static final String DEVICE_CODE = "Device Code";
+    public static final String OS = "OS";
+    public static final String HOTPLUG = "Hotplug";
+    public static final String FAILOVER_ONLY = "Failover-Only";
+    public static final String SCAN_TIME = "ScanTime";
+    public static final String QUEUE = "Queue";
+    public static final String EXPIRY = "Expiry";
+
+    // Additional attributes needed when support added for VERSION command
+    public static final String CGMINER = "CGMiner";
+    public static final String API = "API";
+
+    // Additional attributes needed when support added for COIN command
+    public static final String HASH_METHOD = "Hash Method";
+    public static final String CURRENT_BLOCK_TIME = "Current Block Time";
+    public static final String CURRENT_BLOCK_HASH = "Current Block Hash";
+    public static final String LP = "LP";
+    public static final String NETWORK_DIFFICULTY = "Network Difficulty";
+
+    /**
+     * Write the modelled fields of this reply without creating intermediate
+     * strings, see {@link ReplyFormatter}
+     * @param out the destination
+     * @param format the output format
+     * @throws IOException if {@code out} throws it
+     */
+    public void formatTo(Appendable out, ReplyFormatter.Format format)
+            throws IOException {
+        ReplyFormatter.forThread().formatTo(this, out, format);
+    }
+
+    /**
+     * Write the modelled fields of this reply as UTF-8, see
+     * {@link ReplyFormatter}
+     * @param out the destination, advanced past the bytes written
+     * @param format the output format
+     * @throws java.nio.BufferOverflowException if {@code out} has too
+     * little room left
+     */
+    public void formatTo(ByteBuffer out, ReplyFormatter.Format format) {
+        ReplyFormatter.forThread().formatTo(this, out, format);
+    }
+
+    /**
+     * @return {@code true} if a value of this reply did not fit its
+     * {@code Integer} field and was truncated when parsed by
+     * {@link JSONParser}, see {@link ParseDiagnostics.Kind#OUT_OF_RANGE}.
+     * Replies built with the public constructors are not checked.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    void markTruncated() {
+        truncated = true;
+    }
+
     /**
      * Utility method to create a concatenated string of the form "label=value"
      * @param label the left hand side of the '=' string
@@ -135,6 +249,29 @@ public abstract class Reply {
         return (label + "=" + value);
     }
 
+    /**
+     * Determine whether an attribute is present, for attributes that only
+     * some cgminer versions or builds send
+     * @param jsonObject the JSON object to look in
+     * @param key the attribute name
+     * @return true if {@code jsonObject} contains {@code key}
+     */
+    protected static boolean hasKey(JsonObject jsonObject, String key) {
+        return jsonObject.containsKey(key);
+    }
+
+    /**
+     * @param fields the modelled attributes of a reply
+     * @return the unmodifiable set of their keys
+     */
+    static Set<String> keysOf(ReplyField<?>[] fields) {
+        Set<String> keys = new HashSet<>();
+        for (ReplyField<?> field : fields) {
+            keys.add(field.getKey());
+        }
+        return Collections.unmodifiableSet(keys);
+    }
+
     /**
      * Check to see that the value associated with {@code key} can be retrieved
      * from the {@code jsonObject}. If no such key-value pair
@@ -193,7 +330,7 @@ public abstract class Reply {
     protected static Long getLong(JsonObject jsonObject, String key)
             throws InvalidReplyException {
         checkKey(jsonObject, key);
-        return Long.parseLong(jsonObject.get(key).toString());
+        return jsonObject.getJsonNumber(key).longValue();
     }
     
     /**
@@ -207,7 +344,7 @@ public abstract class Reply {
     protected static Double getDouble(JsonObject jsonObject, String key)
             throws InvalidReplyException {
         checkKey(jsonObject, key);
-        return Double.parseDouble(jsonObject.get(key).toString());
+        return jsonObject.getJsonNumber(key).doubleValue();
     }
     
     /**
@@ -223,4 +360,204 @@ public abstract class Reply {
         checkKey(jsonObject, key);
         return jsonObject.getBoolean(key);
     }
+
+    /*
+     * The getters taking a ParseDiagnostics back the package-private
+     * constructors of the subclasses.  With diagnostics null a missing key
+     * throws InvalidReplyException, as the public constructors always have;
+     * otherwise it is reported and the value left null.
+     */
+
+    /**
+     * Get the String value associated with {@code key}, reporting a missing
+     * or mistyped value to {@code diagnostics} rather than throwing.
+     * @param jsonObject the JSON Object containing the {@code key} to retrieve
+     * @param key the value of the key to retrieve
+     * @param diagnostics receives any problem, or {@code null} to behave
+     * exactly like {@link #getString(JsonObject, String)}
+     * @return String value associated with {@code key}, or {@code null}
+     * @throws InvalidReplyException if {@code diagnostics} is {@code null}
+     * and no such key exists
+     */
+    protected static String getString(JsonObject jsonObject, String key,
+            ParseDiagnostics diagnostics) throws InvalidReplyException {
+        if (diagnostics == null) {
+            return getString(jsonObject, key);
+        }
+        if (diagnostics.isTrusted()) {
+            return jsonObject.getString(key);
+        }
+        JsonValue value = jsonValue(jsonObject, key, diagnostics);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof JsonString) {
+            return ((JsonString) value).getString();
+        }
+        diagnostics.report(ParseDiagnostics.Kind.WRONG_TYPE, key,
+                "expected string, got " + value.getValueType());
+        return null;
+    }
+
+    /**
+     * Get a String value of the kind that recurs across replies (device
+     * names, states, messages), shared through
+     * {@link StringDictionary#shared()} so that retained replies do not each
+     * hold a copy.
+     * @param jsonObject the JSON Object containing the {@code key} to retrieve
+     * @param key the value of the key to retrieve
+     * @param diagnostics receives any problem, or {@code null} to throw
+     * @return String value associated with {@code key}, or {@code null}
+     * @throws InvalidReplyException if {@code diagnostics} is {@code null}
+     * and no such key exists
+     */
+    protected static String getSharedString(JsonObject jsonObject,
+            String key, ParseDiagnostics diagnostics)
+            throws InvalidReplyException {
+        return StringDictionary.shared().intern(
+                getString(jsonObject, key, diagnostics));
+    }
+
+    /**
+     * Get the Integer value associated with {@code key}, reporting a missing
+     * or mistyped value to {@code diagnostics} rather than throwing.
+     * @param jsonObject the JSON Object containing the {@code key} to retrieve
+     * @param key the value of the key to retrieve
+     * @param diagnostics receives any problem, or {@code null} to behave
+     * exactly like {@link #getInteger(JsonObject, String)}
+     * @return Integer value associated with {@code key}, or {@code null}
+     * @throws InvalidReplyException if {@code diagnostics} is {@code null}
+     * and no such key exists
+     */
+    protected static Integer getInteger(JsonObject jsonObject, String key,
+            ParseDiagnostics diagnostics) throws InvalidReplyException {
+        if (diagnostics == null) {
+            return getInteger(jsonObject, key);
+        }
+        if (diagnostics.isTrusted()) {
+            return jsonObject.getJsonNumber(key).intValueExact();
+        }
+        JsonNumber number = jsonNumber(jsonObject, key, diagnostics);
+        if (number == null) {
+            return null;
+        }
+        int value = number.intValue();
+        if (number.isIntegral() && number.longValue() != value) {
+            diagnostics.report(ParseDiagnostics.Kind.OUT_OF_RANGE, key,
+                    number + " truncated to " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Get the Long value associated with {@code key}, reporting a missing
+     * or mistyped value to {@code diagnostics} rather than throwing.
+     * @param jsonObject the JSON Object containing the {@code key} to retrieve
+     * @param key the value of the key to retrieve
+     * @param diagnostics receives any problem, or {@code null} to behave
+     * exactly like {@link #getLong(JsonObject, String)}
+     * @return Long value associated with {@code key}, or {@code null}
+     * @throws InvalidReplyException if {@code diagnostics} is {@code null}
+     * and no such key exists
+     */
+    protected static Long getLong(JsonObject jsonObject, String key,
+            ParseDiagnostics diagnostics) throws InvalidReplyException {
+        if (diagnostics == null) {
+            return getLong(jsonObject, key);
+        }
+        if (diagnostics.isTrusted()) {
+            return jsonObject.getJsonNumber(key).longValue();
+        }
+        JsonNumber number = jsonNumber(jsonObject, key, diagnostics);
+        return number == null ? null : number.longValue();
+    }
+
+    /**
+     * Get the Double value associated with {@code key}, reporting a missing
+     * or mistyped value to {@code diagnostics} rather than throwing.
+     * @param jsonObject the JSON Object containing the {@code key} to retrieve
+     * @param key the value of the key to retrieve
+     * @param diagnostics receives any problem, or {@code null} to behave
+     * exactly like {@link #getDouble(JsonObject, String)}
+     * @return Double value associated with {@code key}, or {@code null}
+     * @throws InvalidReplyException if {@code diagnostics} is {@code null}
+     * and no such key exists
+     */
+    protected static Double getDouble(JsonObject jsonObject, String key,
+            ParseDiagnostics diagnostics) throws InvalidReplyException {
+        if (diagnostics == null) {
+            return getDouble(jsonObject, key);
+        }
+        if (diagnostics.isTrusted()) {
+            return jsonObject.getJsonNumber(key).doubleValue();
+        }
+        JsonNumber number = jsonNumber(jsonObject, key, diagnostics);
+        return number == null ? null : number.doubleValue();
+    }
+
+    /**
+     * Get the Boolean value associated with {@code key}, reporting a missing
+     * or mistyped value to {@code diagnostics} rather than throwing.
+     * @param jsonObject the JSON Object containing the {@code key} to retrieve
+     * @param key the value of the key to retrieve
+     * @param diagnostics receives any problem, or {@code null} to behave
+     * exactly like {@link #getBoolean(JsonObject, String)}
+     * @return Boolean value associated with {@code key}, or {@code null}
+     * @throws InvalidReplyException if {@code diagnostics} is {@code null}
+     * and no such key exists
+     */
+    protected static Boolean getBoolean(JsonObject jsonObject, String key,
+            ParseDiagnostics diagnostics) throws InvalidReplyException {
+        if (diagnostics == null) {
+            return getBoolean(jsonObject, key);
+        }
+        if (diagnostics.isTrusted()) {
+            return jsonObject.getBoolean(key);
+        }
+        JsonValue value = jsonValue(jsonObject, key, diagnostics);
+        if (value == null) {
+            return null;
+        }
+        if (value == JsonValue.TRUE || value == JsonValue.FALSE) {
+            return value == JsonValue.TRUE;
+        }
+        diagnostics.report(ParseDiagnostics.Kind.WRONG_TYPE, key,
+                "expected boolean, got " + value.getValueType());
+        return null;
+    }
+
+    private static JsonValue jsonValue(JsonObject jsonObject, String key,
+            ParseDiagnostics diagnostics) {
+        JsonValue value = jsonObject.get(key);
+        if (value == null) {
+            diagnostics.report(ParseDiagnostics.Kind.MISSING_KEY, key, null);
+        }
+        return value;
+    }
+
+    /*
+     * Some firmware sends numbers as strings: those are converted, but still
+     * reported.
+     */
+    private static JsonNumber jsonNumber(JsonObject jsonObject, String key,
+            ParseDiagnostics diagnostics) {
+        JsonValue value = jsonValue(jsonObject, key, diagnostics);
+        if (value == null || value instanceof JsonNumber) {
+            return (JsonNumber) value;
+        }
+        if (value instanceof JsonString) {
+            String str = ((JsonString) value).getString().trim();
+            try {
+                JsonNumber number = Json.createValue(new BigDecimal(str));
+                diagnostics.report(ParseDiagnostics.Kind.WRONG_TYPE, key,
+                        "converted string \"" + str + "\" to number");
+                return number;
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+        }
+        diagnostics.report(ParseDiagnostics.Kind.WRONG_TYPE, key,
+                "expected number, got " + value.getValueType());
+        return null;
+    }
 }
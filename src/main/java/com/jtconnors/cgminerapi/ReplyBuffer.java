@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+
+/**
+ * Reusable container for the STATUS, SUMMARY and DEVS replies of one rig,
+ * for steady poll loops that would otherwise build and discard a new list
+ * of {@code Reply} objects on every poll.  Each parse overwrites the
+ * {@link MutableReply} values of the buffer in place; as long as the rig
+ * reports the same number of devices, a poll parsed with
+ * {@link #parseText(byte[], int, int)} creates no new objects beyond the
+ * string values that changed.
+ * <br><br>
+ * Everything read from a ReplyBuffer is a view that is only valid until
+ * the next {@link #clear()} or parse.  Consumers that keep a sample must
+ * take a snapshot: {@link #toSample(String, long)} returns an ordinary
+ * immutable {@code RigSample}, and {@link #copy()} a detached ReplyBuffer.
+ * Views can be passed directly to consumers that accept
+ * {@link ReplyValues}, such as {@link ColumnSeries} and
+ * {@link SampleStore}, which copy what they store.
+ * <br><br>
+ * Values that do not fit the type of their field are left absent rather
+ * than reported; use {@link JSONParser#parse(ParseMode)} where
+ * diagnostics are needed.  Instances are not thread safe, use one per rig
+ * and poller.
+ */
+public final class ReplyBuffer {
+
+    final MutableReply<ReplyStatus> status = MutableReply.status();
+    private final MutableReply<ReplySummary> summary =
+            MutableReply.summary();
+    private final List<MutableReply<ReplyDevs>> devs = new ArrayList<>();
+    private boolean hasSummary;
+    private int devsCount;
+    private TextReplyParser textParser;
+
+    /**
+     * Forget all parsed sections, typically at the start of a poll cycle
+     * that issues several commands into this buffer.  The MutableReplies
+     * are kept for reuse.
+     */
+    public void clear() {
+        status.clear();
+        hasSummary = false;
+        devsCount = 0;
+    }
+
+    /**
+     * Overwrite the STATUS, and the SUMMARY or DEVS section if present, with
+     * those of a JSON reply.  Other sections of the buffer are unchanged,
+     * so the replies of several commands can be parsed in turn after a
+     * {@link #clear()}, except that a STATUS answering DEVS drops the
+     * devices even when, as for "No devices", no DEVS section follows.
+     * @param replyStr the reply as returned by
+     * {@link APIConnection#apiCall(String)}
+     * @return {@code true} if the reply had a valid STATUS
+     * @throws javax.json.JsonException if the reply is not JSON and cannot
+     * be repaired
+     */
+    public boolean parse(String replyStr) {
+        JsonObject json = new JSONParser(replyStr).getJsonReply();
+        JsonObject entry = first(json, Reply.STATUS_REPLY);
+        if (entry == null) {
+            return false;
+        }
+        status.set(entry);
+        if (isDevsStatus()) {
+            clearDevs();
+        }
+        entry = first(json, Reply.SUMMARY_REPLY);
+        if (entry != null) {
+            setSummary().set(entry);
+        }
+        JsonValue array = json.get(Reply.DEVS_REPLY);
+        if (array instanceof JsonArray) {
+            clearDevs();
+            for (JsonValue device : (JsonArray) array) {
+                if (device instanceof JsonObject) {
+                    addDevs().set((JsonObject) device);
+                }
+            }
+        }
+        return status.isPresent(StatusField.STATUS);
+    }
+
+    private static JsonObject first(JsonObject json, String section) {
+        JsonValue array = json.get(section);
+        if (!(array instanceof JsonArray) || ((JsonArray) array).isEmpty()) {
+            return null;
+        }
+        JsonValue entry = ((JsonArray) array).get(0);
+        return entry instanceof JsonObject ? (JsonObject) entry : null;
+    }
+
+    /**
+     * Overwrite the STATUS, and the SUMMARY or DEVS section if present, with
+     * those of a text reply, as {@link #parse(String)} does for JSON
+     * @param reply the reply bytes, as returned by
+     * {@link APIConnection#apiCallText(String)}
+     * @param offset start of the reply in {@code reply}
+     * @param length length of the reply; parsing also stops at a NUL
+     * @return {@code true} if the reply had a valid STATUS
+     */
+    public boolean parseText(byte[] reply, int offset, int length) {
+        if (textParser == null) {
+            textParser = new TextReplyParser();
+        }
+        return textParser.parseInto(reply, offset, length, this);
+    }
+
+    MutableReply<ReplySummary> setSummary() {
+        hasSummary = true;
+        return summary;
+    }
+
+    void clearDevs() {
+        devsCount = 0;
+    }
+
+    /*
+     * True if the STATUS answers a DEVS command.  With "no devices" cgminer
+     * sends no DEVS section at all, so the devices of an earlier parse must
+     * go on the status alone.
+     */
+    boolean isDevsStatus() {
+        if (!status.isPresent(StatusField.CODE)) {
+            return false;
+        }
+        long code = status.getLong(StatusField.CODE);
+        return code == ReplyStatus.DEVS_CODE
+                || code == ReplyStatus.NO_DEVS_CODE;
+    }
+
+    /*
+     * The next DEVS entry, reusing the one of an earlier parse if any
+     */
+    MutableReply<ReplyDevs> addDevs() {
+        if (devsCount == devs.size()) {
+            devs.add(MutableReply.devs());
+        }
+        return devs.get(devsCount++);
+    }
+
+    /**
+     * @return the STATUS of the last reply parsed
+     */
+    public MutableReply<ReplyStatus> getStatus() {
+        return status;
+    }
+
+    /**
+     * @return {@code true} if a SUMMARY has been parsed since the last
+     * {@link #clear()}
+     */
+    public boolean hasSummary() {
+        return hasSummary;
+    }
+
+    /**
+     * @return the SUMMARY, or {@code null} if none has been parsed since
+     * the last {@link #clear()}
+     */
+    public MutableReply<ReplySummary> getSummary() {
+        return hasSummary ? summary : null;
+    }
+
+    /**
+     * @return the number of devices parsed since the last {@link #clear()}
+     */
+    public int getDevsCount() {
+        return devsCount;
+    }
+
+    /**
+     * @param index index of the device, in the order reported
+     * @return the DEVS entry of the device
+     */
+    public MutableReply<ReplyDevs> getDevs(int index) {
+        if (index < 0 || index >= devsCount) {
+            throw new IndexOutOfBoundsException(
+                    "index " + index + ", size " + devsCount);
+        }
+        return devs.get(index);
+    }
+
+    /**
+     * @return a detached copy of this buffer, unaffected by later parses
+     * into it
+     */
+    public ReplyBuffer copy() {
+        ReplyBuffer copy = new ReplyBuffer();
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    /**
+     * Overwrite this buffer with the contents of another, reusing its
+     * MutableReplies
+     * @param other the buffer to copy
+     */
+    public void copyFrom(ReplyBuffer other) {
+        status.copyFrom(other.status);
+        summary.copyFrom(other.summary);
+        hasSummary = other.hasSummary;
+        clearDevs();
+        for (int i = 0; i < other.devsCount; i++) {
+            addDevs().copyFrom(other.devs.get(i));
+        }
+    }
+
+    /**
+     * Take an immutable snapshot of the buffer, holding the same replies
+     * {@link JSONParser#parseReply()} would have returned
+     * @param rigId identifier of the rig, typically "host:port"
+     * @param timestamp time of the poll in milliseconds since the epoch
+     * @return the snapshot
+     * @throws InvalidReplyException if a field required by a
+     * {@code Reply} is absent
+     */
+    public RigSample toSample(String rigId, long timestamp)
+            throws InvalidReplyException {
+        List<Reply> replies = new ArrayList<>(devsCount + 2);
+        replies.add(status.toReply());
+        if (hasSummary) {
+            replies.add(summary.toReply());
+        }
+        for (int i = 0; i < devsCount; i++) {
+            replies.add(devs.get(i).toReply());
+        }
+        return new RigSample(rigId, timestamp, replies);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import javax.json.JsonObject;
+
+/**
+ * Object map representation of the reply to the COIN command.
+ */
+public class ReplyCoin extends Reply {
+
+    private final String hashMethod;
+    private final Double currentBlockTime;
+    private final String currentBlockHash;
+    private final Boolean lp;
+    private final Double networkDifficulty;
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(createLabelEqualsValueStr(HASH_METHOD, getHashMethod()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(CURRENT_BLOCK_TIME,
+            getCurrentBlockTime()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(CURRENT_BLOCK_HASH,
+            getCurrentBlockHash()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(LP, getLp()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(NETWORK_DIFFICULTY,
+            getNetworkDifficulty()));
+        return sb.toString();
+    }
+
+    public ReplyCoin(JsonObject jsonCoin)
+            throws InvalidReplyException {
+        this(jsonCoin, null);
+    }
+
+    /*
+     * Attributes that only some cgminer versions send are never required.
+     */
+    ReplyCoin(JsonObject jsonCoin, ParseDiagnostics diagnostics)
+            throws InvalidReplyException {
+        hashMethod = getSharedString(jsonCoin, HASH_METHOD, diagnostics);
+        currentBlockTime = getDouble(jsonCoin, CURRENT_BLOCK_TIME, diagnostics);
+        currentBlockHash = getString(jsonCoin, CURRENT_BLOCK_HASH, diagnostics);
+        lp = getBoolean(jsonCoin, LP, diagnostics);
+        networkDifficulty = getDouble(jsonCoin, NETWORK_DIFFICULTY,
+            diagnostics);
+    }
+
+    /**
+     * @return the hash method
+     */
+    public String getHashMethod() {
+        return hashMethod;
+    }
+
+    /**
+     * @return the current block time
+     */
+    public Double getCurrentBlockTime() {
+        return currentBlockTime;
+    }
+
+    /**
+     * @return the current block hash
+     */
+    public String getCurrentBlockHash() {
+        return currentBlockHash;
+    }
+
+    /**
+     * @return the lp
+     */
+    public Boolean getLp() {
+        return lp;
+    }
+
+    /**
+     * @return the network difficulty
+     */
+    public Double getNetworkDifficulty() {
+        return networkDifficulty;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import javax.json.JsonObject;
+
+/**
+ * Object map representation of the reply to the CONFIG command.
+ */
+public class ReplyConfig extends Reply {
+
+    private final Integer ascCount;
+    private final Integer pgaCount;
+    private final Integer poolCount;
+    private final String strategy;
+    private final Integer logInterval;
+    private final String deviceCode;
+    private final String os;
+    private final String hotplug;
+    private final Boolean failoverOnly;
+    private final Integer scanTime;
+    private final Integer queue;
+    private final Integer expiry;
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(createLabelEqualsValueStr(ASC_COUNT, getAscCount()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(PGA_COUNT, getPgaCount()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(POOL_COUNT, getPoolCount()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(STRATEGY, getStrategy()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(LOG_INTERVAL, getLogInterval()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(DEVICE_CODE, getDeviceCode()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(OS, getOs()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(HOTPLUG, getHotplug()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(FAILOVER_ONLY, getFailoverOnly()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(SCAN_TIME, getScanTime()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(QUEUE, getQueue()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(EXPIRY, getExpiry()));
+        return sb.toString();
+    }
+
+    public ReplyConfig(JsonObject jsonConfig)
+            throws InvalidReplyException {
+        this(jsonConfig, null);
+    }
+
+    /*
+     * Attributes that only some cgminer versions send are never required.
+     */
+    ReplyConfig(JsonObject jsonConfig, ParseDiagnostics diagnostics)
+            throws InvalidReplyException {
+        ascCount = getInteger(jsonConfig, ASC_COUNT, diagnostics);
+        pgaCount = getInteger(jsonConfig, PGA_COUNT, diagnostics);
+        poolCount = getInteger(jsonConfig, POOL_COUNT, diagnostics);
+        strategy = getSharedString(jsonConfig, STRATEGY, diagnostics);
+        logInterval = getInteger(jsonConfig, LOG_INTERVAL, diagnostics);
+        deviceCode = getSharedString(jsonConfig, DEVICE_CODE, diagnostics);
+        os = getSharedString(jsonConfig, OS, diagnostics);
+        hotplug = hasKey(jsonConfig, HOTPLUG)
+            ? getSharedString(jsonConfig, HOTPLUG, diagnostics) : null;
+        failoverOnly = hasKey(jsonConfig, FAILOVER_ONLY)
+            ? getBoolean(jsonConfig, FAILOVER_ONLY, diagnostics) : null;
+        scanTime = hasKey(jsonConfig, SCAN_TIME)
+            ? getInteger(jsonConfig, SCAN_TIME, diagnostics) : null;
+        queue = hasKey(jsonConfig, QUEUE)
+            ? getInteger(jsonConfig, QUEUE, diagnostics) : null;
+        expiry = hasKey(jsonConfig, EXPIRY)
+            ? getInteger(jsonConfig, EXPIRY, diagnostics) : null;
+    }
+
+    /**
+     * @return the asc count
+     */
+    public Integer getAscCount() {
+        return ascCount;
+    }
+
+    /**
+     * @return the pga count
+     */
+    public Integer getPgaCount() {
+        return pgaCount;
+    }
+
+    /**
+     * @return the pool count
+     */
+    public Integer getPoolCount() {
+        return poolCount;
+    }
+
+    /**
+     * @return the strategy
+     */
+    public String getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return the log interval
+     */
+    public Integer getLogInterval() {
+        return logInterval;
+    }
+
+    /**
+     * @return the device code
+     */
+    public String getDeviceCode() {
+        return deviceCode;
+    }
+
+    /**
+     * @return the os
+     */
+    public String getOs() {
+        return os;
+    }
+
+    /**
+     * @return the hotplug
+     */
+    public String getHotplug() {
+        return hotplug;
+    }
+
+    /**
+     * @return the failover only
+     */
+    public Boolean getFailoverOnly() {
+        return failoverOnly;
+    }
+
+    /**
+     * @return the scan time
+     */
+    public Integer getScanTime() {
+        return scanTime;
+    }
+
+    /**
+     * @return the queue
+     */
+    public Integer getQueue() {
+        return queue;
+    }
+
+    /**
+     * @return the expiry
+     */
+    public Integer getExpiry() {
+        return expiry;
+    }
+}
@@ -129,36 +129,45 @@ public class ReplyDevs extends Reply {
 
     public ReplyDevs(JsonObject jsonReplyStatus)
             throws InvalidReplyException {
-        asc = getInteger(jsonReplyStatus, ASC);
-        name = getString(jsonReplyStatus, NAME);
-        id = getInteger(jsonReplyStatus, ID);
-        enabled = getString(jsonReplyStatus, ENABLED);
-        status = getString(jsonReplyStatus, STATUS_DEVS);
-        temperature = getDouble(jsonReplyStatus, TEMPERATURE);
-        mhsAv = getDouble(jsonReplyStatus, MHS_AV);
-        mhs5s = getDouble(jsonReplyStatus, MHS_5S);
-        mhs1m = getDouble(jsonReplyStatus, MHS_1M);
-        mhs5m = getDouble(jsonReplyStatus, MHS_5M);
-        mhs15m = getDouble(jsonReplyStatus, MHS_15M);
-        accepted = getInteger(jsonReplyStatus, ACCEPTED);
-        rejected = getInteger(jsonReplyStatus, REJECTED);
-        hardwareErrors = getInteger(jsonReplyStatus, HARDWARE_ERRORS);
-        utility = getDouble(jsonReplyStatus, UTILITY);
-        lastSharePool = getInteger(jsonReplyStatus, LAST_SHARE_POOL);
-        lastShareTime = getLong(jsonReplyStatus, LAST_SHARE_TIME);
-        totalMh = getDouble(jsonReplyStatus, TOTAL_MH);
-        diff1Work = getInteger(jsonReplyStatus, DIFF1_WORK);
-        difficultyAccepted = getDouble(jsonReplyStatus, DIFFICULTY_ACCEPTED);
-        difficultyRejected = getDouble(jsonReplyStatus, DIFFICULTY_REJECTED);
+        this(jsonReplyStatus, null);
+    }
+
+    ReplyDevs(JsonObject jsonReplyStatus, ParseDiagnostics diagnostics)
+            throws InvalidReplyException {
+        asc = getInteger(jsonReplyStatus, ASC, diagnostics);
+        name = getSharedString(jsonReplyStatus, NAME, diagnostics);
+        id = getInteger(jsonReplyStatus, ID, diagnostics);
+        enabled = getSharedString(jsonReplyStatus, ENABLED, diagnostics);
+        status = getSharedString(jsonReplyStatus, STATUS_DEVS, diagnostics);
+        temperature = getDouble(jsonReplyStatus, TEMPERATURE, diagnostics);
+        mhsAv = getDouble(jsonReplyStatus, MHS_AV, diagnostics);
+        mhs5s = getDouble(jsonReplyStatus, MHS_5S, diagnostics);
+        mhs1m = getDouble(jsonReplyStatus, MHS_1M, diagnostics);
+        mhs5m = getDouble(jsonReplyStatus, MHS_5M, diagnostics);
+        mhs15m = getDouble(jsonReplyStatus, MHS_15M, diagnostics);
+        accepted = getInteger(jsonReplyStatus, ACCEPTED, diagnostics);
+        rejected = getInteger(jsonReplyStatus, REJECTED, diagnostics);
+        hardwareErrors = getInteger(jsonReplyStatus, HARDWARE_ERRORS,
+            diagnostics);
+        utility = getDouble(jsonReplyStatus, UTILITY, diagnostics);
+        lastSharePool = getInteger(jsonReplyStatus, LAST_SHARE_POOL,
+            diagnostics);
+        lastShareTime = getLong(jsonReplyStatus, LAST_SHARE_TIME, diagnostics);
+        totalMh = getDouble(jsonReplyStatus, TOTAL_MH, diagnostics);
+        diff1Work = getInteger(jsonReplyStatus, DIFF1_WORK, diagnostics);
+        difficultyAccepted = getDouble(jsonReplyStatus, DIFFICULTY_ACCEPTED,
+            diagnostics);
+        difficultyRejected = getDouble(jsonReplyStatus, DIFFICULTY_REJECTED,
+            diagnostics);
         lastShareDifficulty = getDouble(jsonReplyStatus,
-            LAST_SHARE_DIFFICULTY);
-        noDevice = getBoolean(jsonReplyStatus, NO_DEVICE);
-        lastValidWork = getLong(jsonReplyStatus, LAST_VALID_WORK);
+            LAST_SHARE_DIFFICULTY, diagnostics);
+        noDevice = getBoolean(jsonReplyStatus, NO_DEVICE, diagnostics);
+        lastValidWork = getLong(jsonReplyStatus, LAST_VALID_WORK, diagnostics);
         deviceHardwarePercent = getDouble(jsonReplyStatus,
-            DEVICE_HARDWARE_PERCENT);
+            DEVICE_HARDWARE_PERCENT, diagnostics);
         deviceRejectedPercent = getDouble(jsonReplyStatus,
-            DEVICE_REJECTED_PERCENT);
-        deviceElapsed = getLong(jsonReplyStatus, DEVICE_ELAPSED);
+            DEVICE_REJECTED_PERCENT, diagnostics);
+        deviceElapsed = getLong(jsonReplyStatus, DEVICE_ELAPSED, diagnostics);
     }
 
     /**
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+/**
+ * Describes a single attribute of a parsed cgminer reply, pairing the JSON
+ * key (one of the constants found in {@link Reply}) with its value type and
+ * an accessor.  The {@link StatusField}, {@link SummaryField} and
+ * {@link DevsField} enums implement this interface for the STATUS, SUMMARY
+ * and DEVS replies respectively.
+ *
+ * @param <T> the {@code Reply} subclass that this field belongs to
+ */
+public interface ReplyField<T extends Reply> {
+
+    /**
+     * @return the position of this field in its enumeration, usable as an
+     * index into per-field arrays
+     */
+    int ordinal();
+
+    /**
+     * @return the JSON key of this field, as sent by cgminer
+     */
+    String getKey();
+
+    /**
+     * @return the type of the value associated with this field
+     */
+    FieldType getType();
+
+    /**
+     * Get the (boxed) value of this field from {@code reply}
+     * @param reply the reply to retrieve the value from
+     * @return the value of this field, may be {@code null}
+     */
+    Object getValue(T reply);
+
+    /**
+     * Determine if {@code reply} carries a value for this field.  Replies
+     * parsed in {@link ParseMode#LENIENT} mode leave missing fields
+     * unset.
+     * @param reply the reply to check
+     * @return {@code true} if the value of this field is not {@code null}
+     */
+    default boolean isPresent(T reply) {
+        return getValue(reply) != null;
+    }
+
+    /**
+     * Get the value of a numeric field as a {@code double}.  Missing or
+     * non-numeric values are returned as {@code Double.NaN}.
+     * @param reply the reply to retrieve the value from
+     * @return the value of this field as a {@code double}
+     */
+    default double getDouble(T reply) {
+        Object value = getValue(reply);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Get the value of a numeric field as a {@code long}.  Missing or
+     * non-numeric values are returned as {@code 0}, {@code Boolean} values
+     * as {@code 1} or {@code 0}.
+     * @param reply the reply to retrieve the value from
+     * @return the value of this field as a {@code long}
+     */
+    default long getLong(T reply) {
+        Object value = getValue(reply);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value instanceof Boolean) {
+            return ((Boolean) value) ? 1L : 0L;
+        }
+        return 0L;
+    }
+}
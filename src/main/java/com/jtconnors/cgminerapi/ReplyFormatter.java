@@ -0,0 +1,514 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the modelled fields of a reply to an {@code Appendable} or a
+ * {@code ByteBuffer} in one of three {@link Format}s, for high volume
+ * output such as audit logs.  Numbers, booleans and timestamps are written
+ * digit by digit into the destination, and a formatter reuses its scratch
+ * space from one call to the next, so no intermediate strings are created.
+ * The only exception is a {@code double} that has no exact decimal form
+ * of at most 15 fraction digits, which goes through
+ * {@code Double.toString()}.
+ * <br><br>
+ * Values are written as received from cgminer and fields that are absent
+ * are skipped, except in {@link Format#CSV}, where they leave an empty
+ * column so that every row of a reply type has the same columns.  In
+ * {@link Format#LABEL_VALUE} the epoch second timestamps ({@code When},
+ * {@code Last Share Time} and {@code Last Valid Work}) are written as ISO
+ * 8601 UTC date-times, computed arithmetically rather than through
+ * {@code java.time}; the other formats keep the epoch seconds.
+ * <br><br>
+ * {@link Reply#formatTo(Appendable, Format)} and
+ * {@link MutableReply#formatTo(Appendable, Format)} use a formatter per
+ * thread.  Instances are not thread safe.
+ */
+public final class ReplyFormatter {
+
+    /**
+     * The output formats
+     */
+    public enum Format {
+        /**
+         * Values only, in field order, separated by ',' and quoted as per
+         * RFC 4180 where needed; see
+         * {@link ReplyFormatter#formatHeader(ReplyField[], Appendable)}
+         */
+        CSV,
+        /**
+         * {@code key=value} pairs separated by ", ", as in
+         * {@code toString()}
+         */
+        LABEL_VALUE,
+        /**
+         * A JSON object with cgminer's keys
+         */
+        JSON
+    }
+
+    private static final Map<Class<?>, ReplyField<?>[]> FIELDS =
+            new HashMap<>();
+
+    static {
+        FIELDS.put(ReplyStatus.class, StatusField.values());
+        FIELDS.put(ReplySummary.class, SummaryField.values());
+        FIELDS.put(ReplyDevs.class, DevsField.values());
+        FIELDS.put(ReplyPools.class, PoolsField.values());
+        FIELDS.put(ReplyStats.class, StatsField.values());
+        FIELDS.put(ReplyConfig.class, ConfigField.values());
+        FIELDS.put(ReplyVersion.class, VersionField.values());
+        FIELDS.put(ReplyCoin.class, CoinField.values());
+    }
+
+    private static final Set<String> TIMESTAMP_KEYS = new HashSet<>(
+            Arrays.asList(Reply.WHEN, Reply.LAST_SHARE_TIME,
+                    Reply.LAST_VALID_WORK));
+
+    private static final ThreadLocal<ReplyFormatter> PER_THREAD =
+            ThreadLocal.withInitial(ReplyFormatter::new);
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15
+    };
+
+    private static final double MAX_EXACT_LONG = 9007199254740992.0;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final char[] digits = new char[20];
+    private final ByteBufferAppendable byteBufferOut =
+            new ByteBufferAppendable();
+    private final ReplyAdapter replyValues = new ReplyAdapter();
+
+    /**
+     * @param reply a reply
+     * @return the fields of its type, indexed by their ordinal
+     * @throws IllegalArgumentException if the reply type is not modelled
+     * by a {@link ReplyField} enumeration
+     */
+    static ReplyField<?>[] fieldsOf(Reply reply) {
+        ReplyField<?>[] fields = FIELDS.get(reply.getClass());
+        if (fields == null) {
+            throw new IllegalArgumentException("No fields for "
+                    + reply.getClass().getName());
+        }
+        return fields;
+    }
+
+    static ReplyFormatter forThread() {
+        return PER_THREAD.get();
+    }
+
+    /**
+     * Write the CSV header row matching {@link Format#CSV}, without a line
+     * terminator
+     * @param fields the fields of the reply type, e.g.
+     * {@code DevsField.values()}
+     * @param out the destination
+     * @throws IOException if {@code out} throws it
+     */
+    public static void formatHeader(ReplyField<?>[] fields, Appendable out)
+            throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            csvString(fields[i].getKey(), out);
+        }
+    }
+
+    /**
+     * Write a reply, without a line terminator
+     * @param reply the reply
+     * @param out the destination
+     * @param format the output format
+     * @throws IOException if {@code out} throws it
+     * @throws IllegalArgumentException if the reply type is not modelled
+     * by a {@link ReplyField} enumeration
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void formatTo(Reply reply, Appendable out, Format format)
+            throws IOException {
+        replyValues.reply = reply;
+        try {
+            formatTo(replyValues, (ReplyField[]) fieldsOf(reply), out,
+                    format);
+        } finally {
+            replyValues.reply = null;
+        }
+    }
+
+    /**
+     * Write a reply as UTF-8, without a line terminator
+     * @param reply the reply
+     * @param out the destination, advanced past the bytes written
+     * @param format the output format
+     * @throws BufferOverflowException if {@code out} has too little room
+     * left, in which case its position is undefined
+     * @throws IllegalArgumentException if the reply type is not modelled
+     * by a {@link ReplyField} enumeration
+     */
+    public void formatTo(Reply reply, ByteBuffer out, Format format) {
+        byteBufferOut.buffer = out;
+        try {
+            formatTo(reply, byteBufferOut, format);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            byteBufferOut.buffer = null;
+        }
+    }
+
+    /**
+     * Write the values of a reply, without a line terminator
+     * @param <T> the {@code Reply} subclass whose fields are written
+     * @param values the values
+     * @param fields the fields of the reply type, indexed by their ordinal
+     * @param out the destination
+     * @param format the output format
+     * @throws IOException if {@code out} throws it
+     */
+    public <T extends Reply> void formatTo(ReplyValues<T> values,
+            ReplyField<T>[] fields, Appendable out, Format format)
+            throws IOException {
+        boolean first = true;
+        if (format == Format.JSON) {
+            out.append('{');
+        }
+        for (ReplyField<T> field : fields) {
+            boolean present = values.isPresent(field);
+            if (!present && format != Format.CSV) {
+                continue;
+            }
+            if (!first) {
+                out.append(format == Format.LABEL_VALUE ? ", " : ",");
+            }
+            first = false;
+            if (format == Format.JSON) {
+                jsonString(field.getKey(), out);
+                out.append(':');
+            } else if (format == Format.LABEL_VALUE) {
+                out.append(field.getKey()).append('=');
+            }
+            if (present) {
+                value(values, field, out, format);
+            }
+        }
+        if (format == Format.JSON) {
+            out.append('}');
+        }
+    }
+
+    /**
+     * Write the values of a reply as UTF-8, without a line terminator
+     * @param <T> the {@code Reply} subclass whose fields are written
+     * @param values the values
+     * @param fields the fields of the reply type, indexed by their ordinal
+     * @param out the destination, advanced past the bytes written
+     * @param format the output format
+     * @throws BufferOverflowException if {@code out} has too little room
+     * left, in which case its position is undefined
+     */
+    public <T extends Reply> void formatTo(ReplyValues<T> values,
+            ReplyField<T>[] fields, ByteBuffer out, Format format) {
+        byteBufferOut.buffer = out;
+        try {
+            formatTo(values, fields, byteBufferOut, format);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            byteBufferOut.buffer = null;
+        }
+    }
+
+    private <T extends Reply> void value(ReplyValues<T> values,
+            ReplyField<T> field, Appendable out, Format format)
+            throws IOException {
+        switch (field.getType()) {
+            case INTEGER:
+            case LONG:
+                if (format == Format.LABEL_VALUE
+                        && TIMESTAMP_KEYS.contains(field.getKey())) {
+                    dateTime(values.getLong(field), out);
+                } else {
+                    longValue(values.getLong(field), out);
+                }
+                break;
+            case DOUBLE:
+                doubleValue(values.getDouble(field), out, format);
+                break;
+            case BOOLEAN:
+                out.append(values.getLong(field) != 0 ? "true" : "false");
+                break;
+            case STRING:
+                String value = values.getString(field);
+                if (format == Format.JSON) {
+                    jsonString(value, out);
+                } else if (format == Format.CSV) {
+                    csvString(value, out);
+                } else {
+                    out.append(value);
+                }
+                break;
+        }
+    }
+
+    private void longValue(long value, Appendable out) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            out.append("-9223372036854775808");
+            return;
+        }
+        if (value < 0) {
+            out.append('-');
+            value = -value;
+        }
+        digits(value, 1, out);
+    }
+
+    /*
+     * Write the digits of a non-negative value, zero padded to minDigits
+     */
+    private void digits(long value, int minDigits, Appendable out)
+            throws IOException {
+        int i = digits.length;
+        do {
+            digits[--i] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0 || digits.length - i < minDigits);
+        for (; i < digits.length; i++) {
+            out.append(digits[i]);
+        }
+    }
+
+    /*
+     * Write the fewest fraction digits that parse back to exactly the same
+     * double, always with a decimal point as Double.toString() does.
+     */
+    private void doubleValue(double value, Appendable out, Format format)
+            throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            out.append(format == Format.JSON ? "null"
+                    : Double.toString(value));
+            return;
+        }
+        if (value < 0 || (value == 0 && 1 / value < 0)) {
+            out.append('-');
+            value = -value;
+        }
+        for (int scale = 0; scale < POWERS_OF_TEN.length; scale++) {
+            double scaled = value * POWERS_OF_TEN[scale];
+            if (scaled >= MAX_EXACT_LONG) {
+                break;
+            }
+            long mantissa = Math.round(scaled);
+            if (mantissa / POWERS_OF_TEN[scale] == value) {
+                long unit = (long) POWERS_OF_TEN[scale];
+                digits(mantissa / unit, 1, out);
+                out.append('.');
+                digits(mantissa % unit, Math.max(scale, 1), out);
+                return;
+            }
+        }
+        out.append(Double.toString(value));
+    }
+
+    /*
+     * yyyy-MM-ddTHH:mm:ssZ from epoch seconds, using the days to civil
+     * date conversion of the proleptic Gregorian calendar
+     */
+    private void dateTime(long epochSecond, Appendable out)
+            throws IOException {
+        long days = Math.floorDiv(epochSecond, 86400L);
+        long secondOfDay = Math.floorMod(epochSecond, 86400L);
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097L);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524
+                - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra
+                - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0) {
+            out.append('-');
+            year = -year;
+        }
+        digits(year, 4, out);
+        out.append('-');
+        digits(month, 2, out);
+        out.append('-');
+        digits(day, 2, out);
+        out.append('T');
+        digits(secondOfDay / 3600, 2, out);
+        out.append(':');
+        digits(secondOfDay / 60 % 60, 2, out);
+        out.append(':');
+        digits(secondOfDay % 60, 2, out);
+        out.append('Z');
+    }
+
+    private static void jsonString(String value, Appendable out)
+            throws IOException {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else if (c == '\r') {
+                out.append("\\r");
+            } else if (c == '\t') {
+                out.append("\\t");
+            } else if (c < 0x20) {
+                out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private static void csvString(String value, Appendable out)
+            throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    /*
+     * ReplyValues view of the Reply being formatted
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static final class ReplyAdapter implements ReplyValues {
+
+        Reply reply;
+
+        @Override
+        public boolean isPresent(ReplyField field) {
+            return field.isPresent(reply);
+        }
+
+        @Override
+        public double getDouble(ReplyField field) {
+            return field.getDouble(reply);
+        }
+
+        @Override
+        public long getLong(ReplyField field) {
+            return field.getLong(reply);
+        }
+
+        @Override
+        public String getString(ReplyField field) {
+            Object value = field.getValue(reply);
+            return value instanceof String ? (String) value : null;
+        }
+    }
+
+    /*
+     * UTF-8 encoding Appendable over the ByteBuffer being written to
+     */
+    private static final class ByteBufferAppendable implements Appendable {
+
+        private ByteBuffer buffer;
+        private char highSurrogate;
+
+        @Override
+        public Appendable append(CharSequence csq) {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) {
+            for (int i = start; i < end; i++) {
+                append(csq.charAt(i));
+            }
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) {
+            if (Character.isLowSurrogate(c) && highSurrogate != 0) {
+                int codePoint = Character.toCodePoint(highSurrogate, c);
+                buffer.put((byte) (0xf0 | codePoint >> 18));
+                buffer.put((byte) (0x80 | codePoint >> 12 & 0x3f));
+                buffer.put((byte) (0x80 | codePoint >> 6 & 0x3f));
+                buffer.put((byte) (0x80 | codePoint & 0x3f));
+                highSurrogate = 0;
+                return this;
+            }
+            highSurrogate = 0;
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xc0 | c >> 6));
+                buffer.put((byte) (0x80 | c & 0x3f));
+            } else if (Character.isHighSurrogate(c)) {
+                highSurrogate = c;
+            } else {
+                buffer.put((byte) (0xe0 | c >> 12));
+                buffer.put((byte) (0x80 | c >> 6 & 0x3f));
+                buffer.put((byte) (0x80 | c & 0x3f));
+            }
+            return this;
+        }
+    }
+}
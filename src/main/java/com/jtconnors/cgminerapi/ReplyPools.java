@@ -0,0 +1,481 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import javax.json.JsonObject;
+
+/**
+ * Object map representation of a single pool entry of the reply to the
+ * POOLS command.  cgminer sends one entry per configured pool; the counters
+ * are cumulative since the pool was added.
+ */
+public class ReplyPools extends Reply {
+
+    private final Integer pool;
+    private final String url;
+    private final String status;
+    private final Integer priority;
+    private final Integer quota;
+    private final String longPoll;
+    private final Integer getworks;
+    private final Long accepted;
+    private final Long rejected;
+    private final Integer works;
+    private final Integer discarded;
+    private final Integer stale;
+    private final Integer getFailures;
+    private final Integer remoteFailures;
+    private final String user;
+    private final Long lastShareTime;
+    private final Long diff1Shares;
+    private final String proxyType;
+    private final String proxy;
+    private final Double difficultyAccepted;
+    private final Double difficultyRejected;
+    private final Double difficultyStale;
+    private final Double lastShareDifficulty;
+    private final Double workDifficulty;
+    private final Boolean hasStratum;
+    private final Boolean stratumActive;
+    private final String stratumUrl;
+    private final Double stratumDifficulty;
+    private final Boolean hasVmask;
+    private final Boolean hasGbt;
+    private final Long bestShare;
+    private final Double poolRejectedPercent;
+    private final Double poolStalePercent;
+    private final Long badWork;
+    private final Long currentBlockHeight;
+    private final Long currentBlockVersion;
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(createLabelEqualsValueStr(POOL, getPool()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(URL, getUrl()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(STATUS_DEVS, getStatus()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(PRIORITY, getPriority()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(QUOTA, getQuota()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(LONG_POLL, getLongPoll()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(GETWORKS, getGetworks()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(ACCEPTED, getAccepted()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(REJECTED, getRejected()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(WORKS, getWorks()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(DISCARDED, getDiscarded()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(STALE, getStale()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(GET_FAILURES, getGetFailures()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(REMOTE_FAILURES,
+            getRemoteFailures()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(USER, getUser()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(LAST_SHARE_TIME,
+            getLastShareTime()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(DIFF1_SHARES, getDiff1Shares()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(PROXY_TYPE, getProxyType()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(PROXY, getProxy()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(DIFFICULTY_ACCEPTED,
+            getDifficultyAccepted()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(DIFFICULTY_REJECTED,
+            getDifficultyRejected()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(DIFFICULTY_STALE,
+            getDifficultyStale()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(LAST_SHARE_DIFFICULTY,
+            getLastShareDifficulty()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(WORK_DIFFICULTY,
+            getWorkDifficulty()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(HAS_STRATUM, getHasStratum()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(STRATUM_ACTIVE,
+            getStratumActive()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(STRATUM_URL, getStratumUrl()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(STRATUM_DIFFICULTY,
+            getStratumDifficulty()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(HAS_VMASK, getHasVmask()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(HAS_GBT, getHasGbt()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(BESTSHARE, getBestShare()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(POOL_REJECTED_PERCENT,
+            getPoolRejectedPercent()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(POOL_STALE_PERCENT,
+            getPoolStalePercent()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(BAD_WORK, getBadWork()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(CURRENT_BLOCK_HEIGHT,
+            getCurrentBlockHeight()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(CURRENT_BLOCK_VERSION,
+            getCurrentBlockVersion()));
+        return sb.toString();
+    }
+
+    public ReplyPools(JsonObject jsonPools)
+            throws InvalidReplyException {
+        this(jsonPools, null);
+    }
+
+    /*
+     * Attributes that only some cgminer versions send are never required.
+     * URLs, users and proxies differ from rig to rig, so they are not
+     * shared through the dictionary.
+     */
+    ReplyPools(JsonObject jsonPools, ParseDiagnostics diagnostics)
+            throws InvalidReplyException {
+        pool = getInteger(jsonPools, POOL, diagnostics);
+        url = getString(jsonPools, URL, diagnostics);
+        status = getSharedString(jsonPools, STATUS_DEVS, diagnostics);
+        priority = getInteger(jsonPools, PRIORITY, diagnostics);
+        quota = getInteger(jsonPools, QUOTA, diagnostics);
+        longPoll = getSharedString(jsonPools, LONG_POLL, diagnostics);
+        getworks = getInteger(jsonPools, GETWORKS, diagnostics);
+        accepted = getLong(jsonPools, ACCEPTED, diagnostics);
+        rejected = getLong(jsonPools, REJECTED, diagnostics);
+        works = getInteger(jsonPools, WORKS, diagnostics);
+        discarded = getInteger(jsonPools, DISCARDED, diagnostics);
+        stale = getInteger(jsonPools, STALE, diagnostics);
+        getFailures = getInteger(jsonPools, GET_FAILURES, diagnostics);
+        remoteFailures = getInteger(jsonPools, REMOTE_FAILURES, diagnostics);
+        user = getString(jsonPools, USER, diagnostics);
+        lastShareTime = getLong(jsonPools, LAST_SHARE_TIME, diagnostics);
+        diff1Shares = getLong(jsonPools, DIFF1_SHARES, diagnostics);
+        proxyType = getSharedString(jsonPools, PROXY_TYPE, diagnostics);
+        proxy = getString(jsonPools, PROXY, diagnostics);
+        difficultyAccepted = getDouble(jsonPools, DIFFICULTY_ACCEPTED,
+            diagnostics);
+        difficultyRejected = getDouble(jsonPools, DIFFICULTY_REJECTED,
+            diagnostics);
+        difficultyStale = getDouble(jsonPools, DIFFICULTY_STALE, diagnostics);
+        lastShareDifficulty = getDouble(jsonPools, LAST_SHARE_DIFFICULTY,
+            diagnostics);
+        workDifficulty = getDouble(jsonPools, WORK_DIFFICULTY, diagnostics);
+        hasStratum = getBoolean(jsonPools, HAS_STRATUM, diagnostics);
+        stratumActive = getBoolean(jsonPools, STRATUM_ACTIVE, diagnostics);
+        stratumUrl = getString(jsonPools, STRATUM_URL, diagnostics);
+        stratumDifficulty = getDouble(jsonPools, STRATUM_DIFFICULTY,
+            diagnostics);
+        hasVmask = hasKey(jsonPools, HAS_VMASK)
+            ? getBoolean(jsonPools, HAS_VMASK, diagnostics) : null;
+        hasGbt = getBoolean(jsonPools, HAS_GBT, diagnostics);
+        bestShare = getLong(jsonPools, BESTSHARE, diagnostics);
+        poolRejectedPercent = getDouble(jsonPools, POOL_REJECTED_PERCENT,
+            diagnostics);
+        poolStalePercent = getDouble(jsonPools, POOL_STALE_PERCENT,
+            diagnostics);
+        badWork = hasKey(jsonPools, BAD_WORK)
+            ? getLong(jsonPools, BAD_WORK, diagnostics) : null;
+        currentBlockHeight = hasKey(jsonPools, CURRENT_BLOCK_HEIGHT)
+            ? getLong(jsonPools, CURRENT_BLOCK_HEIGHT, diagnostics) : null;
+        currentBlockVersion = hasKey(jsonPools, CURRENT_BLOCK_VERSION)
+            ? getLong(jsonPools, CURRENT_BLOCK_VERSION, diagnostics) : null;
+    }
+
+    /**
+     * @return the pool
+     */
+    public Integer getPool() {
+        return pool;
+    }
+
+    /**
+     * @return the url
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the status
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the priority
+     */
+    public Integer getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return the quota
+     */
+    public Integer getQuota() {
+        return quota;
+    }
+
+    /**
+     * @return the long poll
+     */
+    public String getLongPoll() {
+        return longPoll;
+    }
+
+    /**
+     * @return the getworks
+     */
+    public Integer getGetworks() {
+        return getworks;
+    }
+
+    /**
+     * @return the accepted
+     */
+    public Long getAccepted() {
+        return accepted;
+    }
+
+    /**
+     * @return the rejected
+     */
+    public Long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return the works
+     */
+    public Integer getWorks() {
+        return works;
+    }
+
+    /**
+     * @return the discarded
+     */
+    public Integer getDiscarded() {
+        return discarded;
+    }
+
+    /**
+     * @return the stale
+     */
+    public Integer getStale() {
+        return stale;
+    }
+
+    /**
+     * @return the get failures
+     */
+    public Integer getGetFailures() {
+        return getFailures;
+    }
+
+    /**
+     * @return the remote failures
+     */
+    public Integer getRemoteFailures() {
+        return remoteFailures;
+    }
+
+    /**
+     * @return the user
+     */
+    public String getUser() {
+        return user;
+    }
+
+    /**
+     * @return the last share time
+     */
+    public Long getLastShareTime() {
+        return lastShareTime;
+    }
+
+    /**
+     * @return the diff1 shares
+     */
+    public Long getDiff1Shares() {
+        return diff1Shares;
+    }
+
+    /**
+     * @return the proxy type
+     */
+    public String getProxyType() {
+        return proxyType;
+    }
+
+    /**
+     * @return the proxy
+     */
+    public String getProxy() {
+        return proxy;
+    }
+
+    /**
+     * @return the difficulty accepted
+     */
+    public Double getDifficultyAccepted() {
+        return difficultyAccepted;
+    }
+
+    /**
+     * @return the difficulty rejected
+     */
+    public Double getDifficultyRejected() {
+        return difficultyRejected;
+    }
+
+    /**
+     * @return the difficulty stale
+     */
+    public Double getDifficultyStale() {
+        return difficultyStale;
+    }
+
+    /**
+     * @return the last share difficulty
+     */
+    public Double getLastShareDifficulty() {
+        return lastShareDifficulty;
+    }
+
+    /**
+     * @return the work difficulty
+     */
+    public Double getWorkDifficulty() {
+        return workDifficulty;
+    }
+
+    /**
+     * @return the has stratum
+     */
+    public Boolean getHasStratum() {
+        return hasStratum;
+    }
+
+    /**
+     * @return the stratum active
+     */
+    public Boolean getStratumActive() {
+        return stratumActive;
+    }
+
+    /**
+     * @return the stratum url
+     */
+    public String getStratumUrl() {
+        return stratumUrl;
+    }
+
+    /**
+     * @return the stratum difficulty
+     */
+    public Double getStratumDifficulty() {
+        return stratumDifficulty;
+    }
+
+    /**
+     * @return the has vmask
+     */
+    public Boolean getHasVmask() {
+        return hasVmask;
+    }
+
+    /**
+     * @return the has gbt
+     */
+    public Boolean getHasGbt() {
+        return hasGbt;
+    }
+
+    /**
+     * @return the best share
+     */
+    public Long getBestShare() {
+        return bestShare;
+    }
+
+    /**
+     * @return the pool rejected percent
+     */
+    public Double getPoolRejectedPercent() {
+        return poolRejectedPercent;
+    }
+
+    /**
+     * @return the pool stale percent
+     */
+    public Double getPoolStalePercent() {
+        return poolStalePercent;
+    }
+
+    /**
+     * @return the bad work
+     */
+    public Long getBadWork() {
+        return badWork;
+    }
+
+    /**
+     * @return the current block height
+     */
+    public Long getCurrentBlockHeight() {
+        return currentBlockHeight;
+    }
+
+    /**
+     * @return the current block version
+     */
+    public Long getCurrentBlockVersion() {
+        return currentBlockVersion;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.Set;
+import javax.json.JsonObject;
+
+/**
+ * Object map representation of a single entry of the reply to the STATS
+ * and ESTATS commands.  Every entry starts with the same timing attributes,
+ * modelled here; the rest are driver or pool specific (per-chain hash rates,
+ * temperatures, fan speeds ...) and are kept as {@link ExtraFields}.
+ */
+public class ReplyStats extends Reply {
+
+    private static final Set<String> KEYS = keysOf(StatsField.values());
+
+    private final Integer stats;
+    private final String id;
+    private final Long elapsed;
+    private final Integer calls;
+    private final Double wait;
+    private final Double max;
+    private final Double min;
+    private final ExtraFields extraFields;
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(createLabelEqualsValueStr(STATS, getStats()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(ID, getId()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(ELAPSED, getElapsed()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(CALLS, getCalls()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(WAIT, getWait()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(MAX, getMax()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(MIN, getMin()));
+        if (extraFields.size() > 0) {
+            sb.append(", ");
+            sb.append(extraFields);
+        }
+        return sb.toString();
+    }
+
+    public ReplyStats(JsonObject jsonStats)
+            throws InvalidReplyException {
+        this(jsonStats, null);
+    }
+
+    /*
+     * Attributes that only some cgminer versions send are never required.
+     */
+    ReplyStats(JsonObject jsonStats, ParseDiagnostics diagnostics)
+            throws InvalidReplyException {
+        stats = getInteger(jsonStats, STATS, diagnostics);
+        id = getSharedString(jsonStats, ID, diagnostics);
+        elapsed = getLong(jsonStats, ELAPSED, diagnostics);
+        calls = getInteger(jsonStats, CALLS, diagnostics);
+        wait = getDouble(jsonStats, WAIT, diagnostics);
+        max = getDouble(jsonStats, MAX, diagnostics);
+        min = getDouble(jsonStats, MIN, diagnostics);
+        extraFields = ExtraFields.of(jsonStats, KEYS);
+    }
+
+    /**
+     * @return the stats
+     */
+    public Integer getStats() {
+        return stats;
+    }
+
+    /**
+     * @return the id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the elapsed
+     */
+    public Long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return the calls
+     */
+    public Integer getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return the wait
+     */
+    public Double getWait() {
+        return wait;
+    }
+
+    /**
+     * @return the max
+     */
+    public Double getMax() {
+        return max;
+    }
+
+    /**
+     * @return the min
+     */
+    public Double getMin() {
+        return min;
+    }
+
+    /**
+     * @return the attributes not modelled by fixed keys, in reply order
+     */
+    public ExtraFields getExtraFields() {
+        return extraFields;
+    }
+}
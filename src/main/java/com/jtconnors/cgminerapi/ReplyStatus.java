@@ -37,6 +37,10 @@ import javax.json.JsonObject;
 
 public class ReplyStatus extends Reply {
 
+    /* cgminer's MSG_DEVS and MSG_NODEVS, the status codes of a DEVS reply */
+    static final int DEVS_CODE = 9;
+    static final int NO_DEVS_CODE = 10;
+
     private final String status;
     private final Long when;
     private final Integer code;
@@ -80,11 +84,17 @@ public class ReplyStatus extends Reply {
 
     public ReplyStatus(JsonObject jsonReplyStatus)
             throws InvalidReplyException {
-        status = getString(jsonReplyStatus, STATUS);
-        when = getLong(jsonReplyStatus, WHEN);
-        code = getInteger(jsonReplyStatus, CODE);
-        msg = getString(jsonReplyStatus, MSG);
-        description = getString(jsonReplyStatus, DESCRIPTION);
+        this(jsonReplyStatus, null);
+    }
+
+    ReplyStatus(JsonObject jsonReplyStatus, ParseDiagnostics diagnostics)
+            throws InvalidReplyException {
+        status = getSharedString(jsonReplyStatus, STATUS, diagnostics);
+        when = getLong(jsonReplyStatus, WHEN, diagnostics);
+        code = getInteger(jsonReplyStatus, CODE, diagnostics);
+        msg = getSharedString(jsonReplyStatus, MSG, diagnostics);
+        description = getSharedString(jsonReplyStatus, DESCRIPTION,
+                diagnostics);
     }
 
     /**
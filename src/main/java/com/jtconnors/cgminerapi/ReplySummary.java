@@ -141,37 +141,50 @@ public class ReplySummary extends Reply {
 
     public ReplySummary(JsonObject jsonReplyStatus)
             throws InvalidReplyException {
-        elapsed = getLong(jsonReplyStatus, ELAPSED);
-        mhsAv = getDouble(jsonReplyStatus, MHS_AV);
-        mhs5s = getDouble(jsonReplyStatus, MHS_5S);
-        mhs1m = getDouble(jsonReplyStatus, MHS_1M);
-        mhs5m = getDouble(jsonReplyStatus, MHS_5M);
-        mhs15m = getDouble(jsonReplyStatus, MHS_15M);
-        foundBlocks = getInteger(jsonReplyStatus, FOUND_BLOCKS);
-        getWorks = getInteger(jsonReplyStatus, GETWORKS);
-        accepted = getInteger(jsonReplyStatus, ACCEPTED);
-        rejected = getInteger(jsonReplyStatus, REJECTED);
-        hardwareErrors = getInteger(jsonReplyStatus, HARDWARE_ERRORS);
-        utility = getDouble(jsonReplyStatus, UTILITY);
-        discarded = getInteger(jsonReplyStatus, DISCARDED);
-        stale = getInteger(jsonReplyStatus, STALE);
-        getFailures = getInteger(jsonReplyStatus, GET_FAILURES);
-        localWork = getInteger(jsonReplyStatus, LOCAL_WORK);
-        remoteFailures = getInteger(jsonReplyStatus, REMOTE_FAILURES);
-        networkBlocks = getInteger(jsonReplyStatus, NETWORK_BLOCKS);
-        totalMH = getDouble(jsonReplyStatus, TOTAL_MH);
-        workUtility = getDouble(jsonReplyStatus, WORK_UTILITY);
-        difficultyAccepted = getDouble(jsonReplyStatus, DIFFICULTY_ACCEPTED);
-        difficultyRejected = getDouble(jsonReplyStatus, DIFFICULTY_REJECTED);
-        difficultyStale = getDouble(jsonReplyStatus, DIFFICULTY_STALE);
-        bestShare = getInteger(jsonReplyStatus, BESTSHARE);
+        this(jsonReplyStatus, null);
+    }
+
+    ReplySummary(JsonObject jsonReplyStatus, ParseDiagnostics diagnostics)
+            throws InvalidReplyException {
+        elapsed = getLong(jsonReplyStatus, ELAPSED, diagnostics);
+        mhsAv = getDouble(jsonReplyStatus, MHS_AV, diagnostics);
+        mhs5s = getDouble(jsonReplyStatus, MHS_5S, diagnostics);
+        mhs1m = getDouble(jsonReplyStatus, MHS_1M, diagnostics);
+        mhs5m = getDouble(jsonReplyStatus, MHS_5M, diagnostics);
+        mhs15m = getDouble(jsonReplyStatus, MHS_15M, diagnostics);
+        foundBlocks = getInteger(jsonReplyStatus, FOUND_BLOCKS, diagnostics);
+        getWorks = getInteger(jsonReplyStatus, GETWORKS, diagnostics);
+        accepted = getInteger(jsonReplyStatus, ACCEPTED, diagnostics);
+        rejected = getInteger(jsonReplyStatus, REJECTED, diagnostics);
+        hardwareErrors = getInteger(jsonReplyStatus, HARDWARE_ERRORS,
+            diagnostics);
+        utility = getDouble(jsonReplyStatus, UTILITY, diagnostics);
+        discarded = getInteger(jsonReplyStatus, DISCARDED, diagnostics);
+        stale = getInteger(jsonReplyStatus, STALE, diagnostics);
+        getFailures = getInteger(jsonReplyStatus, GET_FAILURES, diagnostics);
+        localWork = getInteger(jsonReplyStatus, LOCAL_WORK, diagnostics);
+        remoteFailures = getInteger(jsonReplyStatus, REMOTE_FAILURES,
+            diagnostics);
+        networkBlocks = getInteger(jsonReplyStatus, NETWORK_BLOCKS,
+            diagnostics);
+        totalMH = getDouble(jsonReplyStatus, TOTAL_MH, diagnostics);
+        workUtility = getDouble(jsonReplyStatus, WORK_UTILITY, diagnostics);
+        difficultyAccepted = getDouble(jsonReplyStatus, DIFFICULTY_ACCEPTED,
+            diagnostics);
+        difficultyRejected = getDouble(jsonReplyStatus, DIFFICULTY_REJECTED,
+            diagnostics);
+        difficultyStale = getDouble(jsonReplyStatus, DIFFICULTY_STALE,
+            diagnostics);
+        bestShare = getInteger(jsonReplyStatus, BESTSHARE, diagnostics);
         deviceHardwarePercent = getDouble(jsonReplyStatus,
-            DEVICE_HARDWARE_PERCENT);
+            DEVICE_HARDWARE_PERCENT, diagnostics);
         deviceRejectedPercent = getDouble(jsonReplyStatus,
-            DEVICE_REJECTED_PERCENT);
-        poolRejectedPercent = getDouble(jsonReplyStatus, POOL_REJECTED_PERCENT);
-        poolStalePercent = getDouble(jsonReplyStatus, POOL_STALE_PERCENT);
-        lastGetwork = getLong(jsonReplyStatus, LAST_GETWORK);
+            DEVICE_REJECTED_PERCENT, diagnostics);
+        poolRejectedPercent = getDouble(jsonReplyStatus, POOL_REJECTED_PERCENT,
+            diagnostics);
+        poolStalePercent = getDouble(jsonReplyStatus, POOL_STALE_PERCENT,
+            diagnostics);
+        lastGetwork = getLong(jsonReplyStatus, LAST_GETWORK, diagnostics);
     }
     
     /**
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+/**
+ * Read access to the field values of a reply that is not necessarily held
+ * as a {@code Reply} object, e.g. a record in a {@link SampleLog} segment.
+ * Consumers such as {@link ColumnSeries} can take their input from either
+ * form without an intermediate conversion.
+ *
+ * @param <T> the {@code Reply} subclass whose fields are described
+ */
+public interface ReplyValues<T extends Reply> {
+
+    /**
+     * @param field the field in question
+     * @return {@code true} if a value is present for {@code field}
+     */
+    boolean isPresent(ReplyField<T> field);
+
+    /**
+     * @param field a numeric field
+     * @return the value, or {@code Double.NaN} if not present
+     */
+    double getDouble(ReplyField<T> field);
+
+    /**
+     * @param field an INTEGER, LONG or BOOLEAN field
+     * @return the value ({@code 1} or {@code 0} for BOOLEAN fields), or
+     * {@code 0} if not present
+     */
+    long getLong(ReplyField<T> field);
+
+    /**
+     * @param field a STRING field
+     * @return the value, or {@code null} if not present
+     */
+    String getString(ReplyField<T> field);
+}
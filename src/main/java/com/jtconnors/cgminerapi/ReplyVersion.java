@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.Set;
+import javax.json.JsonObject;
+
+/**
+ * Object map representation of the reply to the VERSION command.  Firmware
+ * forks report their own miner name and version (e.g. {@code BMMiner}) in
+ * place of or alongside {@code CGMiner}; such attributes are kept as
+ * {@link ExtraFields}.
+ */
+public class ReplyVersion extends Reply {
+
+    private static final Set<String> KEYS = keysOf(VersionField.values());
+
+    private final String cgminer;
+    private final String api;
+    private final ExtraFields extraFields;
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(createLabelEqualsValueStr(CGMINER, getCgminer()));
+        sb.append(", ");
+        sb.append(createLabelEqualsValueStr(API, getApi()));
+        if (extraFields.size() > 0) {
+            sb.append(", ");
+            sb.append(extraFields);
+        }
+        return sb.toString();
+    }
+
+    public ReplyVersion(JsonObject jsonVersion)
+            throws InvalidReplyException {
+        this(jsonVersion, null);
+    }
+
+    /*
+     * Attributes that only some cgminer versions send are never required.
+     */
+    ReplyVersion(JsonObject jsonVersion, ParseDiagnostics diagnostics)
+            throws InvalidReplyException {
+        cgminer = hasKey(jsonVersion, CGMINER)
+            ? getSharedString(jsonVersion, CGMINER, diagnostics) : null;
+        api = getSharedString(jsonVersion, API, diagnostics);
+        extraFields = ExtraFields.of(jsonVersion, KEYS);
+    }
+
+    /**
+     * @return the cgminer
+     */
+    public String getCgminer() {
+        return cgminer;
+    }
+
+    /**
+     * @return the api
+     */
+    public String getApi() {
+        return api;
+    }
+
+    /**
+     * @return the attributes not modelled by fixed keys, in reply order
+     */
+    public ExtraFields getExtraFields() {
+        return extraFields;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Issues a fixed set of parameterless report commands (e.g. SUMMARY and
+ * DEVS) to a single cgminer instance and parses the replies with the
+ * decoder of its {@link FirmwareProfile}.  One call to {@link #poll()}
+ * performs one poll cycle for the rig.
+ */
+public class RigPoller {
+
+    private final APIConnection apiConn;
+    private final List<String> jsonCommands;
+    private final String rigId;
+
+    /**
+     * Creates a RigPoller
+     * @param apiConn connection to the cgminer instance
+     * @param requests the report commands to issue on each poll
+     */
+    public RigPoller(APIConnection apiConn, Request... requests) {
+        this.apiConn = apiConn;
+        this.rigId = apiConn.toString();
+        List<String> commands = new ArrayList<>();
+        for (Request request : Arrays.asList(requests)) {
+            commands.add(new Command(request, null).toJSONString());
+        }
+        this.jsonCommands = Collections.unmodifiableList(commands);
+    }
+
+    /**
+     * Perform one poll cycle, issuing each command in turn.
+     * @return the parsed replies of all commands
+     * @throws IOException if an error occurs when talking to cgminer
+     */
+    public RigSample poll() throws IOException {
+        long timestamp = System.currentTimeMillis();
+        FirmwareProfile profile = apiConn.getFirmwareProfile();
+        List<Reply> replies = new ArrayList<>();
+        for (String jsonCommand : jsonCommands) {
+            replies.addAll(profile.parseReply(apiConn.apiCall(jsonCommand)));
+        }
+        return new RigSample(rigId, timestamp, replies);
+    }
+
+    /**
+     * Perform one poll cycle, parsing the replies into a reusable buffer
+     * instead of new {@code Reply} objects.  The buffer is cleared first.
+     * @param buffer the buffer to overwrite, typically one per rig
+     * @return the time of the poll in milliseconds since the epoch
+     * @throws IOException if an error occurs when talking to cgminer
+     */
+    public long poll(ReplyBuffer buffer) throws IOException {
+        long timestamp = System.currentTimeMillis();
+        buffer.clear();
+        for (String jsonCommand : jsonCommands) {
+            buffer.parse(apiConn.apiCall(jsonCommand));
+        }
+        return timestamp;
+    }
+
+    /**
+     * @return the identifier of the polled rig in "host:port" form
+     */
+    public String getRigId() {
+        return rigId;
+    }
+
+    /**
+     * @return the connection to the polled rig
+     */
+    public APIConnection getApiConnection() {
+        return apiConn;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The parsed replies returned by one poll of a single cgminer instance
+ * (rig), together with the rig identifier and the time of the poll.
+ */
+public class RigSample {
+
+    private final String rigId;
+    private final long timestamp;
+    private final List<Reply> replies;
+
+    /**
+     * Creates a RigSample
+     * @param rigId identifier of the rig, typically "host:port"
+     * @param timestamp time of the poll in milliseconds since the epoch
+     * @param replies the parsed replies
+     */
+    public RigSample(String rigId, long timestamp, List<Reply> replies) {
+        this.rigId = rigId;
+        this.timestamp = timestamp;
+        this.replies = Collections.unmodifiableList(replies);
+    }
+
+    /**
+     * @return the rigId
+     */
+    public String getRigId() {
+        return rigId;
+    }
+
+    /**
+     * @return the timestamp
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the replies
+     */
+    public List<Reply> getReplies() {
+        return replies;
+    }
+
+    @Override
+    public String toString() {
+        return rigId + "@" + timestamp + " " + replies;
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.Arrays;
+
+/**
+ * Downsampled history of selected numeric fields of one series (a rig's
+ * SUMMARY or a device's DEVS) at a single resolution.  Samples are folded
+ * into fixed width time buckets keeping min, max, average and last value
+ * per field; the buckets live in a fixed size ring so memory use is
+ * constant.  Only buckets that received samples are stored.
+ * <br><br>
+ * Samples should arrive in ascending time order.  A late sample is folded
+ * into its bucket if that bucket is still retained and dropped otherwise.
+ * BOOLEAN fields are rolled up as 0 and 1, missing values are ignored.
+ * <br><br>
+ * Instances are thread safe.
+ *
+ * @param <T> the {@code Reply} subclass of the series
+ */
+public class Rollup<T extends Reply> {
+
+    private final ReplyField<T>[] fields;
+    private final int[] slots;           // field ordinal -> slot, -1 if none
+    private final long resolution;
+    private final int capacity;
+    private final long[] bucketStarts;
+    private final int[][] counts;
+    private final double[][] mins;
+    private final double[][] maxs;
+    private final double[][] sums;
+    private final double[][] lasts;
+    private int head;                    // physical index of newest bucket
+    private int size;
+
+    /**
+     * Creates a Rollup
+     * @param fields the fields to roll up
+     * @param resolution width of a bucket in milliseconds
+     * @param capacity number of buckets retained
+     */
+    public Rollup(ReplyField<T>[] fields, long resolution, int capacity) {
+        if (resolution < 1 || capacity < 1) {
+            throw new IllegalArgumentException(
+                    "resolution and capacity must be positive");
+        }
+        int maxOrdinal = 0;
+        for (ReplyField<T> field : fields) {
+            if (!field.getType().isNumeric()
+                    && field.getType() != FieldType.BOOLEAN) {
+                throw new IllegalArgumentException(
+                        field.getKey() + " is not a numeric field");
+            }
+            maxOrdinal = Math.max(maxOrdinal, field.ordinal());
+        }
+        this.fields = fields.clone();
+        this.slots = new int[maxOrdinal + 1];
+        Arrays.fill(slots, -1);
+        for (int i = 0; i < fields.length; i++) {
+            slots[fields[i].ordinal()] = i;
+        }
+        this.resolution = resolution;
+        this.capacity = capacity;
+        bucketStarts = new long[capacity];
+        counts = new int[fields.length][capacity];
+        mins = new double[fields.length][capacity];
+        maxs = new double[fields.length][capacity];
+        sums = new double[fields.length][capacity];
+        lasts = new double[fields.length][capacity];
+        head = capacity - 1;
+    }
+
+    /**
+     * Fold a sample into its bucket
+     * @param timestamp time of the sample in milliseconds since the epoch
+     * @param reply the reply
+     */
+    public synchronized void add(long timestamp, T reply) {
+        int p = bucketFor(timestamp);
+        if (p < 0) {
+            return;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            fold(i, p, fields[i].getType() == FieldType.BOOLEAN
+                    ? fields[i].getLong(reply) : fields[i].getDouble(reply));
+        }
+    }
+
+    /**
+     * Fold a sample into its bucket
+     * @param timestamp time of the sample in milliseconds since the epoch
+     * @param values the field values of the reply
+     */
+    public synchronized void add(long timestamp, ReplyValues<T> values) {
+        int p = bucketFor(timestamp);
+        if (p < 0) {
+            return;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            fold(i, p, values.isPresent(fields[i])
+                    ? values.getDouble(fields[i]) : Double.NaN);
+        }
+    }
+
+    /*
+     * Physical index of the bucket for timestamp, starting a new bucket if
+     * required.  Returns -1 for samples older than the retained buckets.
+     */
+    private int bucketFor(long timestamp) {
+        long start = timestamp - Math.floorMod(timestamp, resolution);
+        if (size > 0 && start == bucketStarts[head]) {
+            return head;
+        }
+        if (size == 0 || start > bucketStarts[head]) {
+            head = (head + 1) % capacity;
+            if (size < capacity) {
+                size++;
+            }
+            bucketStarts[head] = start;
+            for (int i = 0; i < fields.length; i++) {
+                counts[i][head] = 0;
+                mins[i][head] = Double.NaN;
+                maxs[i][head] = Double.NaN;
+                sums[i][head] = 0.0;
+                lasts[i][head] = Double.NaN;
+            }
+            return head;
+        }
+        int index = indexOf(start);
+        return index < 0 ? -1 : physical(index);
+    }
+
+    private void fold(int slot, int p, double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (counts[slot][p]++ == 0) {
+            mins[slot][p] = value;
+            maxs[slot][p] = value;
+        } else {
+            mins[slot][p] = Math.min(mins[slot][p], value);
+            maxs[slot][p] = Math.max(maxs[slot][p], value);
+        }
+        sums[slot][p] += value;
+        lasts[slot][p] = value;
+    }
+
+    private int physical(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(
+                    "index " + index + ", size " + size);
+        }
+        return (head - size + 1 + index + capacity) % capacity;
+    }
+
+    private int slot(ReplyField<T> field) {
+        int ordinal = field.ordinal();
+        if (ordinal >= slots.length || slots[ordinal] < 0) {
+            throw new IllegalArgumentException(
+                    field.getKey() + " is not rolled up");
+        }
+        return slots[ordinal];
+    }
+
+    /**
+     * @return the bucket width in milliseconds
+     */
+    public long getResolution() {
+        return resolution;
+    }
+
+    /**
+     * @return the number of buckets retained
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Find the bucket starting at {@code bucketStart}
+     * @param bucketStart start of the bucket in milliseconds since the epoch
+     * @return the logical index of the bucket (0 being the oldest), or -1
+     */
+    public synchronized int indexOf(long bucketStart) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long start = bucketStarts[physical(mid)];
+            if (start < bucketStart) {
+                low = mid + 1;
+            } else if (start > bucketStart) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param index logical bucket index, 0 being the oldest
+     * @return the start of the bucket in milliseconds since the epoch
+     */
+    public synchronized long getBucketStart(int index) {
+        return bucketStarts[physical(index)];
+    }
+
+    /**
+     * @param field a rolled up field
+     * @param index logical bucket index, 0 being the oldest
+     * @return the number of values of {@code field} folded into the bucket
+     */
+    public synchronized int getCount(ReplyField<T> field, int index) {
+        return counts[slot(field)][physical(index)];
+    }
+
+    /**
+     * @param field a rolled up field
+     * @param index logical bucket index, 0 being the oldest
+     * @return the smallest value, {@code Double.NaN} if none
+     */
+    public synchronized double getMin(ReplyField<T> field, int index) {
+        return mins[slot(field)][physical(index)];
+    }
+
+    /**
+     * @param field a rolled up field
+     * @param index logical bucket index, 0 being the oldest
+     * @return the largest value, {@code Double.NaN} if none
+     */
+    public synchronized double getMax(ReplyField<T> field, int index) {
+        return maxs[slot(field)][physical(index)];
+    }
+
+    /**
+     * @param field a rolled up field
+     * @param index logical bucket index, 0 being the oldest
+     * @return the average value, {@code Double.NaN} if none
+     */
+    public synchronized double getAverage(ReplyField<T> field, int index) {
+        int s = slot(field);
+        int p = physical(index);
+        return counts[s][p] == 0 ? Double.NaN : sums[s][p] / counts[s][p];
+    }
+
+    /**
+     * @param field a rolled up field
+     * @param index logical bucket index, 0 being the oldest
+     * @return the most recent value, {@code Double.NaN} if none
+     */
+    public synchronized double getLast(ReplyField<T> field, int index) {
+        return lasts[slot(field)][physical(index)];
+    }
+}
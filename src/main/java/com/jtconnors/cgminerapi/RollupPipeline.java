@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incremental downsampling of polled samples into several resolutions at
+ * once.  Every sample handed to {@link #add(RigSample)} is consumed exactly
+ * once and folded into one {@link Rollup} per resolution for its rig
+ * (SUMMARY) and device (DEVS), so long-horizon history such as a week at 1
+ * hour resolution is always available without rescanning raw samples.
+ * <br><br>
+ * Memory per series is {@code 8 * 4 * fields * buckets} bytes summed over
+ * all levels, so restrict the rolled up fields and bucket counts
+ * accordingly for large fleets.
+ * <br><br>
+ * Instances are thread safe.
+ */
+public class RollupPipeline {
+
+    public static final SummaryField[] DEFAULT_SUMMARY_FIELDS = {
+        SummaryField.MHS_5S, SummaryField.ACCEPTED, SummaryField.REJECTED,
+        SummaryField.HARDWARE_ERRORS, SummaryField.DEVICE_HARDWARE_PERCENT
+    };
+
+    public static final DevsField[] DEFAULT_DEVS_FIELDS = {
+        DevsField.MHS_5S, DevsField.TEMPERATURE,
+        DevsField.HARDWARE_ERRORS, DevsField.DEVICE_HARDWARE_PERCENT
+    };
+
+    private final long[] resolutions;
+    private final int[] capacities;
+    private final SummaryField[] summaryFields;
+    private final DevsField[] devsFields;
+    private final ConcurrentMap<String, Rollup<ReplySummary>[]> summaryRollups =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<DeviceKey, Rollup<ReplyDevs>[]> devsRollups =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Creates a RollupPipeline
+     * @param resolutions bucket width of each level in milliseconds,
+     * finest first
+     * @param capacities number of buckets retained at each level
+     * @param summaryFields SUMMARY fields to roll up per rig
+     * @param devsFields DEVS fields to roll up per device
+     */
+    public RollupPipeline(long[] resolutions, int[] capacities,
+            SummaryField[] summaryFields, DevsField[] devsFields) {
+        if (resolutions.length == 0
+                || resolutions.length != capacities.length) {
+            throw new IllegalArgumentException(
+                    "resolutions and capacities must be non-empty and of "
+                    + "equal length");
+        }
+        this.resolutions = resolutions.clone();
+        this.capacities = capacities.clone();
+        this.summaryFields = summaryFields.clone();
+        this.devsFields = devsFields.clone();
+    }
+
+    /**
+     * @return a pipeline keeping one day at 1 minute, one week at 15 minutes
+     * and 30 days at 1 hour resolution of the default fields
+     */
+    public static RollupPipeline standard() {
+        return new RollupPipeline(
+                new long[] {TimeUnit.MINUTES.toMillis(1),
+                    TimeUnit.MINUTES.toMillis(15), TimeUnit.HOURS.toMillis(1)},
+                new int[] {1440, 672, 720},
+                DEFAULT_SUMMARY_FIELDS, DEFAULT_DEVS_FIELDS);
+    }
+
+    /**
+     * Fold all SUMMARY and DEVS replies of a poll into every level
+     * @param sample the result of one poll of a rig
+     */
+    public void add(RigSample sample) {
+        long timestamp = sample.getTimestamp();
+        for (Reply reply : sample.getReplies()) {
+            if (reply instanceof ReplySummary) {
+                for (Rollup<ReplySummary> rollup : summaryRollups(
+                        sample.getRigId())) {
+                    rollup.add(timestamp, (ReplySummary) reply);
+                }
+            } else if (reply instanceof ReplyDevs) {
+                ReplyDevs devs = (ReplyDevs) reply;
+                for (Rollup<ReplyDevs> rollup : devsRollups(
+                        new DeviceKey(sample.getRigId(), devs.getAsc()))) {
+                    rollup.add(timestamp, devs);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Rollup<ReplySummary>[] summaryRollups(String rigId) {
+        return summaryRollups.computeIfAbsent(rigId, k -> {
+            Rollup<ReplySummary>[] levels = new Rollup[resolutions.length];
+            for (int i = 0; i < levels.length; i++) {
+                levels[i] = new Rollup<>(summaryFields, resolutions[i],
+                        capacities[i]);
+            }
+            return levels;
+        });
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Rollup<ReplyDevs>[] devsRollups(DeviceKey key) {
+        return devsRollups.computeIfAbsent(key, k -> {
+            Rollup<ReplyDevs>[] levels = new Rollup[resolutions.length];
+            for (int i = 0; i < levels.length; i++) {
+                levels[i] = new Rollup<>(devsFields, resolutions[i],
+                        capacities[i]);
+            }
+            return levels;
+        });
+    }
+
+    /**
+     * @return the number of levels
+     */
+    public int getLevelCount() {
+        return resolutions.length;
+    }
+
+    /**
+     * @param level the level, 0 being the finest
+     * @return the bucket width of {@code level} in milliseconds
+     */
+    public long getResolution(int level) {
+        return resolutions[level];
+    }
+
+    /**
+     * @param rigId identifier of the rig
+     * @param level the level, 0 being the finest
+     * @return the SUMMARY rollup of the rig, or {@code null} if unknown
+     */
+    public Rollup<ReplySummary> getSummaryRollup(String rigId, int level) {
+        Rollup<ReplySummary>[] levels = summaryRollups.get(rigId);
+        return levels == null ? null : levels[level];
+    }
+
+    /**
+     * @param key the device
+     * @param level the level, 0 being the finest
+     * @return the DEVS rollup of the device, or {@code null} if unknown
+     */
+    public Rollup<ReplyDevs> getDevsRollup(DeviceKey key, int level) {
+        Rollup<ReplyDevs>[] levels = devsRollups.get(key);
+        return levels == null ? null : levels[level];
+    }
+
+    /**
+     * Site level total of a SUMMARY field for one bucket: the sum over
+     * {@code rigIds} of each rig's average in that bucket.  Rigs without
+     * data for the bucket are skipped.
+     * @param rigIds the rigs making up the site
+     * @param field a rolled up SUMMARY field, e.g. {@code MHS_5S}
+     * @param level the level, 0 being the finest
+     * @param bucketStart start of the bucket in milliseconds since the epoch
+     * @return the site total
+     */
+    public double getSiteTotal(Collection<String> rigIds, SummaryField field,
+            int level, long bucketStart) {
+        double total = 0.0;
+        for (String rigId : rigIds) {
+            Rollup<ReplySummary> rollup = getSummaryRollup(rigId, level);
+            if (rollup != null) {
+                int index = rollup.indexOf(bucketStart);
+                if (index >= 0) {
+                    double average = rollup.getAverage(field, index);
+                    if (!Double.isNaN(average)) {
+                        total += average;
+                    }
+                }
+            }
+        }
+        return total;
+    }
+}
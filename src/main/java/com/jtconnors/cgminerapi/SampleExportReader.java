@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.jtconnors.cgminerapi.SampleExportWriter.*;
+
+/**
+ * Streaming reader of the binary export format written by a
+ * {@link SampleExportWriter}.
+ * <br><br>
+ * {@link #read()} rebuilds each sample as a {@code RigSample} holding
+ * ordinary {@code Reply} objects.  {@link #read(SampleVisitor)} skips that
+ * step and hands out reusable {@link ReplyValues} views over the decoded
+ * values, which is considerably cheaper when the consumer only feeds a
+ * {@link SampleStore}, {@link RollupPipeline} or similar.
+ * <br><br>
+ * Instances are not thread safe.
+ */
+public class SampleExportReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * Callback interface for {@link #read(SampleVisitor)}.  The
+     * {@code values} passed are only valid for the duration of the call.
+     */
+    public interface SampleVisitor {
+        void visitStatus(String rigId, long timestamp,
+                ReplyValues<ReplyStatus> values);
+
+        void visitSummary(String rigId, long timestamp,
+                ReplyValues<ReplySummary> values);
+
+        void visitDevs(String rigId, long timestamp,
+                ReplyValues<ReplyDevs> values);
+    }
+
+    private final InputStream in;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private final List<String> dictionary = new ArrayList<>();
+    private final MutableReply<ReplyStatus> status = MutableReply.status();
+    private final MutableReply<ReplySummary> summary =
+            MutableReply.summary();
+    private final MutableReply<ReplyDevs> devs = MutableReply.devs();
+    private long lastTimestamp;
+
+    /**
+     * Creates a SampleExportReader and reads the stream header.
+     * @param in the stream to read from
+     * @throws IOException if the header cannot be read or the stream is
+     * not in the export format
+     */
+    public SampleExportReader(InputStream in) throws IOException {
+        this.in = in;
+        int magic = readInt();
+        long version = readVarLong();
+        if (magic != MAGIC || version != VERSION) {
+            throw new IOException("Not a cgminer sample export, magic="
+                    + Integer.toHexString(magic) + " version=" + version);
+        }
+    }
+
+    /**
+     * Read the next sample.
+     * @return the next sample, or null at the end of the stream
+     * @throws IOException if the sample cannot be read
+     */
+    public RigSample read() throws IOException {
+        if (!nextFrame()) {
+            return null;
+        }
+        String rigId = readString();
+        long timestamp = readTimestamp();
+        int count = (int) readVarLong();
+        List<Reply> replies = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                int kind = readByte();
+                switch (kind) {
+                    case KIND_STATUS:
+                        readValues(status);
+                        replies.add(status.toReply());
+                        break;
+                    case KIND_SUMMARY:
+                        readValues(summary);
+                        replies.add(summary.toReply());
+                        break;
+                    case KIND_DEVS:
+                        readValues(devs);
+                        replies.add(devs.toReply());
+                        break;
+                    default:
+                        throw new IOException("Unknown reply kind " + kind);
+                }
+            }
+        } catch (InvalidReplyException e) {
+            throw new IOException("Corrupt sample for " + rigId, e);
+        }
+        return new RigSample(rigId, timestamp, replies);
+    }
+
+    /**
+     * Read the next sample, passing each of its replies to {@code visitor}.
+     * @param visitor called for each reply of the sample
+     * @return false at the end of the stream
+     * @throws IOException if the sample cannot be read
+     */
+    public boolean read(SampleVisitor visitor) throws IOException {
+        if (!nextFrame()) {
+            return false;
+        }
+        String rigId = readString();
+        long timestamp = readTimestamp();
+        int count = (int) readVarLong();
+        for (int i = 0; i < count; i++) {
+            int kind = readByte();
+            switch (kind) {
+                case KIND_STATUS:
+                    readValues(status);
+                    visitor.visitStatus(rigId, timestamp, status);
+                    break;
+                case KIND_SUMMARY:
+                    readValues(summary);
+                    visitor.visitSummary(rigId, timestamp, summary);
+                    break;
+                case KIND_DEVS:
+                    readValues(devs);
+                    visitor.visitDevs(rigId, timestamp, devs);
+                    break;
+                default:
+                    throw new IOException("Unknown reply kind " + kind);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readValues(MutableReply<?> values) throws IOException {
+        values.bitmap = readVarLong();
+        for (ReplyField<?> field : values.fields) {
+            int i = field.ordinal();
+            if ((values.bitmap & (1L << i)) == 0) {
+                continue;
+            }
+            switch (field.getType()) {
+                case INTEGER:
+                case LONG:
+                    values.longs[i] = unZigZag(readVarLong());
+                    break;
+                case DOUBLE:
+                    values.doubles[i] = readDouble();
+                    break;
+                case BOOLEAN:
+                    values.longs[i] = readByte();
+                    break;
+                case STRING:
+                    values.strings[i] = readString();
+                    break;
+            }
+        }
+    }
+
+    private boolean nextFrame() throws IOException {
+        if (pos == limit && !fill()) {
+            return false;
+        }
+        int tag = readByte();
+        if (tag != FRAME_SAMPLE) {
+            throw new IOException("Unknown frame tag " + tag);
+        }
+        return true;
+    }
+
+    private long readTimestamp() throws IOException {
+        lastTimestamp += unZigZag(readVarLong());
+        return lastTimestamp;
+    }
+
+    private String readString() throws IOException {
+        long code = readVarLong();
+        if (code > 0) {
+            if (code > dictionary.size()) {
+                throw new IOException("Unknown string reference " + code);
+            }
+            return dictionary.get((int) code - 1);
+        }
+        int length = (int) readVarLong();
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            if (pos == limit && !fill()) {
+                throw new EOFException();
+            }
+            int n = Math.min(length - offset, limit - pos);
+            System.arraycopy(buf, pos, bytes, offset, n);
+            pos += n;
+            offset += n;
+        }
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        if (dictionary.size() < MAX_DICTIONARY_SIZE) {
+            dictionary.add(value);
+        }
+        return value;
+    }
+
+    private double readDouble() throws IOException {
+        long value = readVarLong();
+        if (value == RAW_DOUBLE) {
+            long bits = ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+            return Double.longBitsToDouble(bits);
+        }
+        return unZigZag(value >>> 1) / DOUBLE_SCALE;
+    }
+
+    private int readByte() throws IOException {
+        if (pos == limit && !fill()) {
+            throw new EOFException();
+        }
+        return buf[pos++] & 0xFF;
+    }
+
+    private int readInt() throws IOException {
+        return (readByte() << 24) | (readByte() << 16) | (readByte() << 8)
+                | readByte();
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buf, 0, buf.length);
+        if (n <= 0) {
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming writer of the compact binary export format, used to ship
+ * parsed samples from a site to a central aggregator.  The stream is read
+ * back with a {@link SampleExportReader}.
+ * <br><br>
+ * The format is schema'd by the {@link StatusField}, {@link SummaryField}
+ * and {@link DevsField} enumerations: field keys are never written.  Each
+ * reply is a presence bitmap followed by the values of the present fields
+ * in field order:
+ * <ul>
+ * <li>INTEGER and LONG values as zig-zag varints</li>
+ * <li>DOUBLE values with at most two decimal places (MHS, temperatures,
+ * percentages ...) as a zig-zag varint of the value times 100, anything
+ * else as its 8 raw IEEE 754 bytes</li>
+ * <li>BOOLEAN values as a single byte</li>
+ * <li>STRING values as a varint reference into a per-stream dictionary,
+ * the first occurrence of a string writing it in full</li>
+ * </ul>
+ * Stream layout: a header ({@code int} magic, varint version) followed by
+ * one frame per sample: a frame tag, the rig identifier (dictionary
+ * string), the timestamp as a zig-zag varint delta from the previous frame,
+ * the reply count and the replies, each prefixed with its kind.
+ * <br><br>
+ * Instances are not thread safe.
+ */
+public class SampleExportWriter implements Closeable {
+
+    static final int MAGIC = 0x43474258;    // "CGBX"
+    static final int VERSION = 1;
+
+    static final int FRAME_SAMPLE = 1;
+
+    static final int KIND_STATUS = 0;
+    static final int KIND_SUMMARY = 1;
+    static final int KIND_DEVS = 2;
+
+    /*
+     * Strings beyond this many distinct values are written in full each
+     * time, bounding the dictionary held by both ends of the stream.
+     */
+    static final int MAX_DICTIONARY_SIZE = 4096;
+
+    static final double DOUBLE_SCALE = 100.0;
+    static final long RAW_DOUBLE = 1L;
+    private static final long MAX_SCALED = 1L << 60;
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private static final StatusField[] STATUS_FIELDS = StatusField.values();
+    private static final SummaryField[] SUMMARY_FIELDS =
+            SummaryField.values();
+    private static final DevsField[] DEVS_FIELDS = DevsField.values();
+
+    private final OutputStream out;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final Object[] values = new Object[Long.SIZE];
+    private byte[] buf = new byte[BUFFER_SIZE];
+    private int pos;
+    private long lastTimestamp;
+    private long sampleCount;
+    private long bytesWritten;
+
+    /**
+     * Creates a SampleExportWriter and writes the stream header.
+     * @param out the stream to write to
+     * @throws IOException if the header cannot be written
+     */
+    public SampleExportWriter(OutputStream out) throws IOException {
+        this.out = out;
+        writeInt(MAGIC);
+        writeVarLong(VERSION);
+    }
+
+    /**
+     * Write one sample.
+     * @param sample the sample
+     * @throws IOException if the sample cannot be written
+     */
+    public void write(RigSample sample) throws IOException {
+        write(sample.getRigId(), sample.getTimestamp(), sample.getReplies());
+    }
+
+    /**
+     * Write one sample.
+     * @param rigId identifier of the rig, typically "host:port"
+     * @param timestamp time of the sample in milliseconds since the epoch
+     * @param replies the parsed replies, as returned by
+     * {@link JSONParser#parseReply()}
+     * @throws IOException if the sample cannot be written
+     * @throws IllegalArgumentException if a reply is of an unsupported type
+     */
+    public void write(String rigId, long timestamp, List<Reply> replies)
+            throws IOException {
+        writeByte(FRAME_SAMPLE);
+        writeString(rigId);
+        writeVarLong(zigZag(timestamp - lastTimestamp));
+        lastTimestamp = timestamp;
+        writeVarLong(replies.size());
+        for (Reply reply : replies) {
+            if (reply instanceof ReplyDevs) {
+                writeByte(KIND_DEVS);
+                writeReply(DEVS_FIELDS, (ReplyDevs) reply);
+            } else if (reply instanceof ReplySummary) {
+                writeByte(KIND_SUMMARY);
+                writeReply(SUMMARY_FIELDS, (ReplySummary) reply);
+            } else if (reply instanceof ReplyStatus) {
+                writeByte(KIND_STATUS);
+                writeReply(STATUS_FIELDS, (ReplyStatus) reply);
+            } else {
+                throw new IllegalArgumentException(
+                        "Unsupported reply type " + reply.getClass());
+            }
+        }
+        sampleCount++;
+        if (pos > BUFFER_SIZE / 2) {
+            drain();
+        }
+    }
+
+    /**
+     * @return the number of samples written
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return the number of bytes written, including any still buffered
+     */
+    public long getBytesWritten() {
+        return bytesWritten + pos;
+    }
+
+    /**
+     * Write any buffered samples and flush the underlying stream.
+     * @throws IOException if the samples cannot be written
+     */
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            out.close();
+        }
+    }
+
+    private <T extends Reply> void writeReply(ReplyField<T>[] fields,
+            T reply) {
+        long bitmap = 0L;
+        for (ReplyField<T> field : fields) {
+            Object value = field.getValue(reply);
+            values[field.ordinal()] = value;
+            if (value != null) {
+                bitmap |= 1L << field.ordinal();
+            }
+        }
+        writeVarLong(bitmap);
+        for (ReplyField<T> field : fields) {
+            Object value = values[field.ordinal()];
+            if (value == null) {
+                continue;
+            }
+            switch (field.getType()) {
+                case INTEGER:
+                case LONG:
+                    writeVarLong(zigZag(((Number) value).longValue()));
+                    break;
+                case DOUBLE:
+                    writeDouble(((Number) value).doubleValue());
+                    break;
+                case BOOLEAN:
+                    writeByte((Boolean) value ? 1 : 0);
+                    break;
+                case STRING:
+                    writeString((String) value);
+                    break;
+            }
+        }
+    }
+
+    private void writeDouble(double value) {
+        long scaled = Math.round(value * DOUBLE_SCALE);
+        if (scaled > -MAX_SCALED && scaled < MAX_SCALED
+                && scaled / DOUBLE_SCALE == value) {
+            writeVarLong(zigZag(scaled) << 1);
+        } else {
+            writeVarLong(RAW_DOUBLE);
+            long bits = Double.doubleToRawLongBits(value);
+            writeInt((int) (bits >>> 32));
+            writeInt((int) bits);
+        }
+    }
+
+    /*
+     * Dictionary reference + 1, or 0 followed by the length and UTF-8 bytes
+     */
+    private void writeString(String value) {
+        Integer code = dictionary.get(value);
+        if (code != null) {
+            writeVarLong(code + 1L);
+            return;
+        }
+        if (dictionary.size() < MAX_DICTIONARY_SIZE) {
+            dictionary.put(value, dictionary.size());
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(0L);
+        writeVarLong(bytes.length);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+    }
+
+    private void writeByte(int value) {
+        ensure(1);
+        buf[pos++] = (byte) value;
+    }
+
+    private void writeInt(int value) {
+        ensure(4);
+        buf[pos++] = (byte) (value >>> 24);
+        buf[pos++] = (byte) (value >>> 16);
+        buf[pos++] = (byte) (value >>> 8);
+        buf[pos++] = (byte) value;
+    }
+
+    private void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private void ensure(int size) {
+        if (pos + size > buf.length) {
+            byte[] grown = new byte[Math.max(buf.length * 2, pos + size)];
+            System.arraycopy(buf, 0, grown, 0, pos);
+            buf = grown;
+        }
+    }
+
+    private void drain() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            bytesWritten += pos;
+            pos = 0;
+        }
+    }
+}
@@ -0,0 +1,576 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only on-disk log of polled SUMMARY and DEVS samples, stored in
+ * memory-mapped segment files of a fixed size.
+ * <br><br>
+ * Samples are written directly from the parsed {@code Reply} values in a
+ * compact binary record format: a presence bitmap followed by the raw
+ * primitive value of every present field.  Strings (rig identifiers and
+ * STRING field values) are written once per segment as dictionary records
+ * and referenced by code thereafter, so every segment is self-contained.
+ * When a record does not fit in the current segment a new segment is
+ * started and segments exceeding the retention limits are deleted.
+ * <br><br>
+ * {@link #read(Path, long, RecordVisitor)} and
+ * {@link #load(Path, long, SampleStore)} map the segments back in read-only
+ * and decode the records in place, without any JSON parsing.
+ * <br><br>
+ * Segment layout: a header ({@code int} magic, {@code int} version)
+ * followed by records of the form {@code int length, byte type, body}.  A
+ * length of zero marks the end of the written data.
+ */
+public class SampleLog implements Closeable {
+
+    private static final Logger LOGGER =
+            Logger.getLogger("com.jtconnors.cgminerapi");
+
+    public static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final int MAGIC = 0x43474C47;    // "CGLG"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    private static final byte DICTIONARY_RECORD = 1;
+    private static final byte SUMMARY_RECORD = 2;
+    private static final byte DEVS_RECORD = 3;
+
+    /* length, type, timestamp, rig code, presence bitmap */
+    private static final int SAMPLE_HEADER_SIZE = 4 + 1 + 8 + 4 + 8;
+    /* length, type, code, string length */
+    private static final int DICTIONARY_HEADER_SIZE = 4 + 1 + 4 + 4;
+
+    /**
+     * Receives the records decoded by {@link SampleLog#read}.  The
+     * {@code ReplyValues} instances are only valid for the duration of the
+     * call.
+     */
+    public interface RecordVisitor {
+        void visitSummary(String rigId, long timestamp,
+                ReplyValues<ReplySummary> values);
+
+        void visitDevs(String rigId, long timestamp,
+                ReplyValues<ReplyDevs> values);
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final long maxAgeMillis;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private long segmentSequence;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    /**
+     * Opens a SampleLog.  Writing always starts in a new segment following
+     * any segments already present in {@code directory}.
+     * @param directory the directory holding the segment files, created if
+     * necessary
+     * @param segmentSize size of each segment file in bytes
+     * @param maxSegments maximum number of segment files retained
+     * @param maxAgeMillis segments last written to longer ago than this are
+     * deleted, {@code 0} disables age based retention
+     * @throws IOException if the directory or first segment cannot be
+     * created
+     */
+    public SampleLog(Path directory, int segmentSize, int maxSegments,
+            long maxAgeMillis) throws IOException {
+        if (segmentSize < HEADER_SIZE + 1024) {
+            throw new IllegalArgumentException(
+                    "segmentSize too small: " + segmentSize);
+        }
+        if (maxSegments < 1) {
+            throw new IllegalArgumentException(
+                    "maxSegments must be positive, got " + maxSegments);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.maxAgeMillis = maxAgeMillis;
+        Files.createDirectories(directory);
+        List<Path> segments = listSegments(directory);
+        if (!segments.isEmpty()) {
+            segmentSequence = sequenceOf(segments.get(segments.size() - 1));
+        }
+        roll();
+    }
+
+    /**
+     * Append all SUMMARY and DEVS replies of a poll.  Other replies are
+     * ignored.
+     * @param sample the result of one poll of a rig
+     * @throws IOException if a new segment cannot be created
+     */
+    public synchronized void append(RigSample sample) throws IOException {
+        for (Reply reply : sample.getReplies()) {
+            if (reply instanceof ReplySummary) {
+                append(sample.getRigId(), sample.getTimestamp(),
+                        (ReplySummary) reply);
+            } else if (reply instanceof ReplyDevs) {
+                append(sample.getRigId(), sample.getTimestamp(),
+                        (ReplyDevs) reply);
+            }
+        }
+    }
+
+    /**
+     * Append a SUMMARY sample of a rig
+     * @param rigId identifier of the rig
+     * @param timestamp time of the sample in milliseconds since the epoch
+     * @param summary the reply
+     * @throws IOException if a new segment cannot be created
+     */
+    public synchronized void append(String rigId, long timestamp,
+            ReplySummary summary) throws IOException {
+        writeSample(SUMMARY_RECORD, rigId, timestamp, SummaryField.values(),
+                summary);
+    }
+
+    /**
+     * Append a DEVS sample of a single device
+     * @param rigId identifier of the rig
+     * @param timestamp time of the sample in milliseconds since the epoch
+     * @param devs the reply
+     * @throws IOException if a new segment cannot be created
+     */
+    public synchronized void append(String rigId, long timestamp,
+            ReplyDevs devs) throws IOException {
+        writeSample(DEVS_RECORD, rigId, timestamp, DevsField.values(), devs);
+    }
+
+    /**
+     * Force the contents of the current segment to disk
+     */
+    public synchronized void flush() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            buffer.force();
+            channel.close();
+            channel = null;
+            buffer = null;
+        }
+    }
+
+    private <T extends Reply> void writeSample(byte type, String rigId,
+            long timestamp, ReplyField<T>[] fields, T reply)
+            throws IOException {
+        if (buffer == null) {
+            throw new IOException("SampleLog is closed");
+        }
+        if (buffer.remaining() < requiredSize(rigId, fields, reply)) {
+            roll();
+            if (buffer.remaining() < requiredSize(rigId, fields, reply)) {
+                throw new IllegalArgumentException(
+                        "Sample too large for segment size " + segmentSize);
+            }
+        }
+        int rigCode = encode(rigId);
+        long bitmap = 0L;
+        for (ReplyField<T> field : fields) {
+            if (field.getValue(reply) != null) {
+                bitmap |= 1L << field.ordinal();
+            }
+        }
+        int[] stringCodes = null;
+        for (ReplyField<T> field : fields) {
+            if (field.getType() == FieldType.STRING
+                    && (bitmap & (1L << field.ordinal())) != 0) {
+                if (stringCodes == null) {
+                    stringCodes = new int[fields.length];
+                }
+                stringCodes[field.ordinal()] =
+                        encode((String) field.getValue(reply));
+            }
+        }
+        int start = buffer.position();
+        buffer.putInt(0);
+        buffer.put(type);
+        buffer.putLong(timestamp);
+        buffer.putInt(rigCode);
+        buffer.putLong(bitmap);
+        for (ReplyField<T> field : fields) {
+            Object value = field.getValue(reply);
+            if (value == null) {
+                continue;
+            }
+            switch (field.getType()) {
+                case DOUBLE:
+                    buffer.putDouble(((Number) value).doubleValue());
+                    break;
+                case LONG:
+                    buffer.putLong(((Number) value).longValue());
+                    break;
+                case INTEGER:
+                    buffer.putInt(((Number) value).intValue());
+                    break;
+                case BOOLEAN:
+                    buffer.put((byte) (((Boolean) value) ? 1 : 0));
+                    break;
+                case STRING:
+                    buffer.putInt(stringCodes[field.ordinal()]);
+                    break;
+                default:
+                    break;
+            }
+        }
+        commit(start);
+    }
+
+    /*
+     * Bytes needed for a sample record plus any dictionary records it
+     * requires in the current segment.  Also leaves room for the
+     * terminating zero length.
+     */
+    private <T extends Reply> int requiredSize(String rigId,
+            ReplyField<T>[] fields, T reply) {
+        int size = SAMPLE_HEADER_SIZE + 4 + dictionarySize(rigId);
+        for (ReplyField<T> field : fields) {
+            Object value = field.getValue(reply);
+            if (value == null) {
+                continue;
+            }
+            size += valueSize(field.getType());
+            if (field.getType() == FieldType.STRING) {
+                size += dictionarySize((String) value);
+            }
+        }
+        return size;
+    }
+
+    private int dictionarySize(String str) {
+        if (dictionary.containsKey(str)) {
+            return 0;
+        }
+        return DICTIONARY_HEADER_SIZE
+                + str.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static int valueSize(FieldType type) {
+        switch (type) {
+            case DOUBLE:
+            case LONG:
+                return 8;
+            case BOOLEAN:
+                return 1;
+            default:
+                return 4;
+        }
+    }
+
+    /*
+     * Return the dictionary code of str, writing a dictionary record first
+     * if it is new to the current segment.
+     */
+    private int encode(String str) {
+        Integer code = dictionary.get(str);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.put(str, code);
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            int start = buffer.position();
+            buffer.putInt(0);
+            buffer.put(DICTIONARY_RECORD);
+            buffer.putInt(code);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+            commit(start);
+        }
+        return code;
+    }
+
+    /*
+     * Fill in the length of the record starting at start.  The length is
+     * written last so that a reader never sees a partially written record.
+     */
+    private void commit(int start) {
+        buffer.putInt(start, buffer.position() - start - 4);
+    }
+
+    private void roll() throws IOException {
+        close();
+        segmentSequence++;
+        Path segment = directory.resolve(
+                String.format("%020d%s", segmentSequence, SEGMENT_SUFFIX));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        dictionary.clear();
+        applyRetention(segment);
+    }
+
+    private void applyRetention(Path current) throws IOException {
+        List<Path> segments = listSegments(directory);
+        long now = System.currentTimeMillis();
+        int excess = segments.size() - maxSegments;
+        for (Path segment : segments) {
+            if (segment.equals(current)) {
+                continue;
+            }
+            boolean expired = maxAgeMillis > 0 && now
+                    - Files.getLastModifiedTime(segment).toMillis()
+                    > maxAgeMillis;
+            if (excess > 0 || expired) {
+                try {
+                    Files.delete(segment);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Unable to delete segment {0}",
+                            segment);
+                }
+                excess--;
+            }
+        }
+    }
+
+    private static List<Path> listSegments(Path directory)
+            throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+                directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path segment : stream) {
+                segments.add(segment);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0,
+                    name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * Decode all records of the segments in {@code directory}, oldest first.
+     * @param directory the directory holding the segment files
+     * @param fromTimestamp only samples taken at or after this time
+     * (milliseconds since the epoch) are visited
+     * @param visitor receives the decoded samples
+     * @throws IOException if a segment cannot be read
+     */
+    public static void read(Path directory, long fromTimestamp,
+            RecordVisitor visitor) throws IOException {
+        for (Path segment : listSegments(directory)) {
+            if (Files.getLastModifiedTime(segment).toMillis()
+                    < fromTimestamp) {
+                continue;
+            }
+            try (FileChannel ch = FileChannel.open(segment,
+                    StandardOpenOption.READ)) {
+                readSegment(segment,
+                        ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()),
+                        fromTimestamp, visitor);
+            }
+        }
+    }
+
+    /**
+     * Populate a {@code SampleStore} with the samples found in
+     * {@code directory}
+     * @param directory the directory holding the segment files
+     * @param fromTimestamp only samples taken at or after this time
+     * (milliseconds since the epoch) are loaded
+     * @param store the store to append to
+     * @throws IOException if a segment cannot be read
+     */
+    public static void load(Path directory, long fromTimestamp,
+            SampleStore store) throws IOException {
+        read(directory, fromTimestamp, new RecordVisitor() {
+            @Override
+            public void visitSummary(String rigId, long timestamp,
+                    ReplyValues<ReplySummary> values) {
+                store.appendSummary(rigId, timestamp, values);
+            }
+
+            @Override
+            public void visitDevs(String rigId, long timestamp,
+                    ReplyValues<ReplyDevs> values) {
+                store.appendDevs(rigId, timestamp, values);
+            }
+        });
+    }
+
+    private static void readSegment(Path segment, ByteBuffer buf,
+            long fromTimestamp, RecordVisitor visitor) {
+        if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC
+                || buf.getInt() != VERSION) {
+            LOGGER.log(Level.WARNING, "Skipping invalid segment {0}", segment);
+            return;
+        }
+        List<String> strings = new ArrayList<>();
+        MappedRecord<ReplySummary> summary =
+                new MappedRecord<>(SummaryField.values(), strings);
+        MappedRecord<ReplyDevs> devs =
+                new MappedRecord<>(DevsField.values(), strings);
+        while (buf.remaining() >= 4) {
+            int length = buf.getInt();
+            if (length <= 0 || length > buf.remaining()) {
+                break;
+            }
+            int next = buf.position() + length;
+            byte type = buf.get();
+            if (type == DICTIONARY_RECORD) {
+                int code = buf.getInt();
+                byte[] bytes = new byte[buf.getInt()];
+                buf.get(bytes);
+                while (strings.size() <= code) {
+                    strings.add(null);
+                }
+                strings.set(code, new String(bytes, StandardCharsets.UTF_8));
+            } else if (type == SUMMARY_RECORD || type == DEVS_RECORD) {
+                long timestamp = buf.getLong();
+                String rigId = strings.get(buf.getInt());
+                long bitmap = buf.getLong();
+                if (timestamp >= fromTimestamp) {
+                    if (type == SUMMARY_RECORD) {
+                        summary.wrap(buf, buf.position(), bitmap);
+                        visitor.visitSummary(rigId, timestamp, summary);
+                    } else {
+                        devs.wrap(buf, buf.position(), bitmap);
+                        visitor.visitDevs(rigId, timestamp, devs);
+                    }
+                }
+            }
+            buf.position(next);
+        }
+    }
+
+    /*
+     * Flyweight view of a sample record inside a mapped segment.
+     */
+    private static final class MappedRecord<T extends Reply>
+            implements ReplyValues<T> {
+
+        private final ReplyField<T>[] fields;
+        private final List<String> strings;
+        private final int[] offsets;
+        private ByteBuffer buf;
+        private long bitmap;
+
+        private MappedRecord(ReplyField<T>[] fields, List<String> strings) {
+            this.fields = fields;
+            this.strings = strings;
+            this.offsets = new int[fields.length];
+        }
+
+        private void wrap(ByteBuffer buf, int offset, long bitmap) {
+            this.buf = buf;
+            this.bitmap = bitmap;
+            for (ReplyField<T> field : fields) {
+                offsets[field.ordinal()] = offset;
+                if ((bitmap & (1L << field.ordinal())) != 0) {
+                    offset += valueSize(field.getType());
+                }
+            }
+        }
+
+        @Override
+        public boolean isPresent(ReplyField<T> field) {
+            return (bitmap & (1L << field.ordinal())) != 0;
+        }
+
+        @Override
+        public double getDouble(ReplyField<T> field) {
+            if (!isPresent(field)) {
+                return Double.NaN;
+            }
+            if (field.getType() == FieldType.DOUBLE) {
+                return buf.getDouble(offsets[field.ordinal()]);
+            }
+            return getLong(field);
+        }
+
+        @Override
+        public long getLong(ReplyField<T> field) {
+            if (!isPresent(field)) {
+                return 0L;
+            }
+            int offset = offsets[field.ordinal()];
+            switch (field.getType()) {
+                case LONG:
+                    return buf.getLong(offset);
+                case INTEGER:
+                    return buf.getInt(offset);
+                case BOOLEAN:
+                    return buf.get(offset);
+                case DOUBLE:
+                    return (long) buf.getDouble(offset);
+                default:
+                    return 0L;
+            }
+        }
+
+        @Override
+        public String getString(ReplyField<T> field) {
+            if (!isPresent(field) || field.getType() != FieldType.STRING) {
+                return null;
+            }
+            return strings.get(buf.getInt(offsets[field.ordinal()]));
+        }
+    }
+}
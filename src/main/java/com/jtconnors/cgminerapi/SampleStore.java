@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory time series store for polled SUMMARY and DEVS samples.  Each
+ * rig's {@code ReplySummary} history and each device's {@code ReplyDevs}
+ * history is kept in its own {@link ColumnSeries}, a fixed capacity ring
+ * buffer of primitive columns, so retaining e.g. 24 hours of 5 second
+ * samples costs a few hundred bytes per sample rather than a graph of boxed
+ * objects and strings.
+ * <br><br>
+ * Instances are thread safe.
+ */
+public class SampleStore {
+
+    private final int capacity;
+    private final ConcurrentMap<String, ColumnSeries<ReplySummary>>
+            summarySeries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<DeviceKey, ColumnSeries<ReplyDevs>>
+            devsSeries = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a SampleStore
+     * @param capacity number of samples retained per rig and per device,
+     * e.g. 17280 for 24 hours at a 5 second poll interval
+     */
+    public SampleStore(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(
+                    "capacity must be positive, got " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Append all SUMMARY and DEVS replies of a poll.  Other replies are
+     * ignored.
+     * @param sample the result of one poll of a rig
+     */
+    public void append(RigSample sample) {
+        for (Reply reply : sample.getReplies()) {
+            if (reply instanceof ReplySummary) {
+                append(sample.getRigId(), sample.getTimestamp(),
+                        (ReplySummary) reply);
+            } else if (reply instanceof ReplyDevs) {
+                append(sample.getRigId(), sample.getTimestamp(),
+                        (ReplyDevs) reply);
+            }
+        }
+    }
+
+    /**
+     * Append the SUMMARY and DEVS sections of a poll parsed into a reusable
+     * buffer.  The values are copied, so the buffer may be reused
+     * afterwards.
+     * @param rigId identifier of the rig
+     * @param timestamp time of the poll in milliseconds since the epoch
+     * @param buffer the parsed replies
+     */
+    public void append(String rigId, long timestamp, ReplyBuffer buffer) {
+        if (buffer.hasSummary()) {
+            appendSummary(rigId, timestamp, buffer.getSummary());
+        }
+        for (int i = 0; i < buffer.getDevsCount(); i++) {
+            appendDevs(rigId, timestamp, buffer.getDevs(i));
+        }
+    }
+
+    /**
+     * Append a SUMMARY sample of a rig
+     * @param rigId identifier of the rig
+     * @param timestamp time of the sample in milliseconds since the epoch
+     * @param summary the reply
+     */
+    public void append(String rigId, long timestamp, ReplySummary summary) {
+        summarySeries.computeIfAbsent(rigId,
+                k -> new ColumnSeries<>(SummaryField.values(), capacity))
+                .append(timestamp, summary);
+    }
+
+    /**
+     * Append a DEVS sample of a single device
+     * @param rigId identifier of the rig
+     * @param timestamp time of the sample in milliseconds since the epoch
+     * @param devs the reply
+     */
+    public void append(String rigId, long timestamp, ReplyDevs devs) {
+        devsSeries.computeIfAbsent(new DeviceKey(rigId, devs.getAsc()),
+                k -> new ColumnSeries<>(DevsField.values(), capacity))
+                .append(timestamp, devs);
+    }
+
+    /**
+     * Append a SUMMARY sample of a rig
+     * @param rigId identifier of the rig
+     * @param timestamp time of the sample in milliseconds since the epoch
+     * @param values the field values of the reply
+     */
+    public void appendSummary(String rigId, long timestamp,
+            ReplyValues<ReplySummary> values) {
+        summarySeries.computeIfAbsent(rigId,
+                k -> new ColumnSeries<>(SummaryField.values(), capacity))
+                .append(timestamp, values);
+    }
+
+    /**
+     * Append a DEVS sample of a single device
+     * @param rigId identifier of the rig
+     * @param timestamp time of the sample in milliseconds since the epoch
+     * @param values the field values of the reply
+     */
+    public void appendDevs(String rigId, long timestamp,
+            ReplyValues<ReplyDevs> values) {
+        int asc = (int) values.getLong(DevsField.ASC);
+        devsSeries.computeIfAbsent(new DeviceKey(rigId, asc),
+                k -> new ColumnSeries<>(DevsField.values(), capacity))
+                .append(timestamp, values);
+    }
+
+    /**
+     * @param rigId identifier of the rig
+     * @return the SUMMARY history of the rig, or {@code null} if unknown
+     */
+    public ColumnSeries<ReplySummary> getSummarySeries(String rigId) {
+        return summarySeries.get(rigId);
+    }
+
+    /**
+     * @param key the device
+     * @return the DEVS history of the device, or {@code null} if unknown
+     */
+    public ColumnSeries<ReplyDevs> getDevsSeries(DeviceKey key) {
+        return devsSeries.get(key);
+    }
+
+    /**
+     * @return the identifiers of all rigs with SUMMARY history
+     */
+    public Set<String> getRigIds() {
+        return Collections.unmodifiableSet(summarySeries.keySet());
+    }
+
+    /**
+     * @return the keys of all devices with DEVS history
+     */
+    public Set<DeviceKey> getDeviceKeys() {
+        return Collections.unmodifiableSet(devsSeries.keySet());
+    }
+
+    /**
+     * Forget all history of a rig and its devices
+     * @param rigId identifier of the rig
+     */
+    public void remove(String rigId) {
+        summarySeries.remove(rigId);
+        devsSeries.keySet().removeIf(key -> key.getRigId().equals(rigId));
+    }
+}
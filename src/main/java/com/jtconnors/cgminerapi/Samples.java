@@ -32,14 +32,13 @@ package com.jtconnors.cgminerapi;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.lang.invoke.MethodHandles;
 import java.lang.management.ManagementFactory;
 import static com.jtconnors.cgminerapi.CgArgs.*;
 
-import javax.json.Json;
-
 /*
  * Sample invocations of the cgminer API.  This must have access to a running cgminer
  * instance.
@@ -89,7 +88,18 @@ public class Samples {
         cgminerHost = cgArgs.getProperty(CGMINERHOST);
         cgminerPort = Integer.parseInt(cgArgs.getProperty(CGMINERPORT));
         debugLog = Boolean.parseBoolean(cgArgs.getProperty(DEBUGLOG));
-        if (!debugLog) {
+        AsyncLogHandler logHandler = null;
+        if (debugLog) {
+            // Log every call and every reply, off the calling thread
+            ConsoleHandler console = new ConsoleHandler();
+            console.setLevel(Level.ALL);
+            logHandler = new AsyncLogHandler(console, 1024);
+            LOGGER.addHandler(logHandler);
+            LOGGER.setUseParentHandlers(false);
+            LOGGER.setLevel(Level.FINEST);
+            APIConnection.REPLY_SAMPLER.setOneIn(1);
+            APIConnection.LOG.setMaxValueLength(Integer.MAX_VALUE);
+        } else {
             LOGGER.setLevel(Level.OFF);
         }
         Util.checkHostValidity(cgminerHost);
@@ -105,8 +115,10 @@ public class Samples {
         JSONParser parser = new JSONParser(replyStr);
         printParseReply(parser.parseReply());
         
-        // Issue another SUMMARY command, this time using the Json class methods
-        jsonString = Json.createObjectBuilder()
+        // Issue another SUMMARY command, this time building the JSON with
+        // the JSON backend
+        JsonBackend json = JsonBackend.getDefault();
+        jsonString = json.createObjectBuilder()
                 .add("command", "summary")
                 .build()
                 .toString();
@@ -115,7 +127,7 @@ public class Samples {
         printParseReply(parser.parseReply());        
         
         // Issue a DEVS Command int JSON format
-        jsonString = Json.createObjectBuilder()
+        jsonString = json.createObjectBuilder()
                 .add("command", "devs")
                 .build()
                 .toString();
@@ -138,6 +150,9 @@ public class Samples {
         LOGGER.log(Level.INFO, "Memory usage = {0}", 
                 Runtime.getRuntime().totalMemory() -
                 Runtime.getRuntime().freeMemory());
+        if (logHandler != null) {
+            logHandler.close();
+        }
     } 
 }
 
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Column oriented snapshot of the latest replies of one kind across the
+ * fleet, the input of {@link FleetAggregator}.  Each row is one rig (for
+ * SUMMARY) or one device (for DEVS); each numeric field is held in its own
+ * {@code double[]} column, missing values as {@code Double.NaN}.  Rows also
+ * carry precomputed integer group codes for every applicable
+ * {@link GroupBy} dimension.
+ *
+ * @param <T> the {@code Reply} subclass the rows were taken from
+ */
+public final class SnapshotTable<T extends Reply> {
+
+    public static final String FLEET_LABEL = "fleet";
+    public static final String UNGROUPED_LABEL = "";
+
+    private final int rows;
+    private final double[][] columns;
+    private final int[][] groupCodes;
+    private final String[][] groupLabels;
+
+    private SnapshotTable(ReplyField<T>[] fields, List<String> rigIds,
+            List<T> replies, Function<String, String> groupOf) {
+        rows = replies.size();
+        columns = new double[fields.length][];
+        for (ReplyField<T> field : fields) {
+            if (field.getType() != FieldType.STRING) {
+                double[] column = new double[rows];
+                if (field.getType() == FieldType.BOOLEAN) {
+                    Arrays.parallelSetAll(column,
+                            row -> field.getLong(replies.get(row)));
+                } else {
+                    Arrays.parallelSetAll(column,
+                            row -> field.getDouble(replies.get(row)));
+                }
+                columns[field.ordinal()] = column;
+            }
+        }
+        groupCodes = new int[GroupBy.values().length][];
+        groupLabels = new String[GroupBy.values().length][];
+        encode(GroupBy.FLEET, rigIds, r -> FLEET_LABEL);
+        encode(GroupBy.HOST, rigIds, r -> r);
+        encode(GroupBy.GROUP, rigIds, r -> {
+            String group = groupOf.apply(r);
+            return group == null ? UNGROUPED_LABEL : group;
+        });
+    }
+
+    private <K> void encode(GroupBy groupBy, List<K> keys,
+            Function<? super K, String> labelOf) {
+        Map<String, Integer> codes = new HashMap<>();
+        List<String> labels = new ArrayList<>();
+        int[] rowCodes = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            String label = labelOf.apply(keys.get(row));
+            Integer code = codes.get(label);
+            if (code == null) {
+                code = labels.size();
+                codes.put(label, code);
+                labels.add(label);
+            }
+            rowCodes[row] = code;
+        }
+        groupCodes[groupBy.ordinal()] = rowCodes;
+        groupLabels[groupBy.ordinal()] = labels.toArray(new String[0]);
+    }
+
+    /**
+     * Build a table with one row per device from the DEVS replies found in
+     * {@code samples}
+     * @param samples the latest sample of every rig
+     * @param groupOf maps a rig identifier to its user defined group, e.g.
+     * its rack; may return {@code null}
+     * @return the table
+     */
+    public static SnapshotTable<ReplyDevs> devices(
+            Collection<RigSample> samples, Function<String, String> groupOf) {
+        List<String> rigIds = new ArrayList<>();
+        List<ReplyDevs> replies = new ArrayList<>();
+        for (RigSample sample : samples) {
+            for (Reply reply : sample.getReplies()) {
+                if (reply instanceof ReplyDevs) {
+                    rigIds.add(sample.getRigId());
+                    replies.add((ReplyDevs) reply);
+                }
+            }
+        }
+        SnapshotTable<ReplyDevs> table = new SnapshotTable<>(
+                DevsField.values(), rigIds, replies, groupOf);
+        List<Integer> pools = new ArrayList<>();
+        for (ReplyDevs reply : replies) {
+            pools.add(reply.getLastSharePool());
+        }
+        table.encode(GroupBy.POOL, pools, String::valueOf);
+        return table;
+    }
+
+    /**
+     * Build a table with one row per rig from the SUMMARY replies found in
+     * {@code samples}
+     * @param samples the latest sample of every rig
+     * @param groupOf maps a rig identifier to its user defined group, e.g.
+     * its rack; may return {@code null}
+     * @return the table
+     */
+    public static SnapshotTable<ReplySummary> summaries(
+            Collection<RigSample> samples, Function<String, String> groupOf) {
+        List<String> rigIds = new ArrayList<>();
+        List<ReplySummary> replies = new ArrayList<>();
+        for (RigSample sample : samples) {
+            for (Reply reply : sample.getReplies()) {
+                if (reply instanceof ReplySummary) {
+                    rigIds.add(sample.getRigId());
+                    replies.add((ReplySummary) reply);
+                }
+            }
+        }
+        return new SnapshotTable<>(SummaryField.values(), rigIds, replies,
+                groupOf);
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int getRowCount() {
+        return rows;
+    }
+
+    /**
+     * @param field a numeric or boolean field
+     * @return the column of {@code field}; must not be modified
+     */
+    double[] column(ReplyField<T> field) {
+        double[] column = columns[field.ordinal()];
+        if (column == null) {
+            throw new IllegalArgumentException(
+                    field.getKey() + " is not a numeric field");
+        }
+        return column;
+    }
+
+    /**
+     * @param groupBy the grouping dimension
+     * @return the group code of every row; must not be modified
+     */
+    int[] groupCodes(GroupBy groupBy) {
+        int[] codes = groupCodes[groupBy.ordinal()];
+        if (codes == null) {
+            throw new IllegalArgumentException(
+                    "Cannot group this table by " + groupBy);
+        }
+        return codes;
+    }
+
+    /**
+     * @param groupBy the grouping dimension
+     * @return the labels of the groups, indexed by group code
+     */
+    String[] groupLabels(GroupBy groupBy) {
+        groupCodes(groupBy);
+        return groupLabels[groupBy.ordinal()];
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded, thread safe dictionary of the string values that recur in
+ * replies, e.g. device names ("BTM", "AV8"), {@code Enabled} ("Y"/"N"),
+ * {@code Status} ("Alive") and the {@code Msg} and {@code Description} of
+ * every STATUS.  The parsers pass such values through {@link #shared()}
+ * so that retained replies share one instance of each, and compact storage
+ * such as {@link ColumnSeries} keeps their small integer codes instead.
+ * <br><br>
+ * Codes are assigned in order of first use and never change.  Once the
+ * dictionary is full, further values are neither shared nor coded; the
+ * bound keeps unique values such as block hashes from growing it without
+ * limit.  Only pass values drawn from a small set: per-rig values such as
+ * pool URLs and worker names would fill it on a large fleet and crowd out
+ * the values it is meant for.
+ */
+public final class StringDictionary {
+
+    /**
+     * Returned by {@link #code(String)} for values that have no code
+     */
+    public static final int NO_CODE = -1;
+
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    private static final StringDictionary SHARED =
+            new StringDictionary(DEFAULT_MAX_SIZE);
+
+    private final int maxSize;
+    private final ConcurrentHashMap<String, Integer> codes =
+            new ConcurrentHashMap<>();
+    private volatile String[] values = new String[16];
+    private volatile int size;      // written under the monitor
+
+    /**
+     * Creates a StringDictionary
+     * @param maxSize maximum number of distinct values held
+     */
+    public StringDictionary(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException(
+                    "maxSize must be positive, got " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the dictionary used by the parsers
+     */
+    public static StringDictionary shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param value a string, or null
+     * @return the shared instance equal to {@code value}, or {@code value}
+     * itself if it is null or the dictionary is full
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        int code = code(value);
+        return code == NO_CODE ? value : values[code];
+    }
+
+    /**
+     * @param value a string
+     * @return the code of {@code value}, adding it if it is new, or
+     * {@link #NO_CODE} if it is new and the dictionary is full
+     */
+    public int code(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (size == maxSize) {
+            return NO_CODE;
+        }
+        return add(value);
+    }
+
+    /*
+     * The value is stored before its code is published in the map, so
+     * that readers who find the code also find the value.
+     */
+    private synchronized int add(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (size == maxSize) {
+            return NO_CODE;
+        }
+        String[] array = values;
+        if (size == array.length) {
+            array = Arrays.copyOf(array, Math.min(maxSize, size * 2));
+        }
+        array[size] = value;
+        values = array;
+        codes.put(value, size);
+        return size++;
+    }
+
+    /**
+     * @param code a code returned by {@link #code(String)}
+     * @return the value with that code
+     */
+    public String value(int code) {
+        return values[code];
+    }
+
+    /**
+     * @return the number of values held
+     */
+    public int size() {
+        return codes.size();
+    }
+
+    /**
+     * @return the maximum number of values held
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+}
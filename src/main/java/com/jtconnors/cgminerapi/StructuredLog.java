@@ -0,0 +1,414 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Level guarded, structured logging on top of {@code java.util.logging} for
+ * code on the polling hot path.  An event is logged as a name followed by
+ * {@code key=value} pairs, e.g.
+ * <pre>
+ * apiCall rig=10.0.0.5:4028 command=summary bytes=1043 micros=812
+ * </pre>
+ * Nothing is done unless the level is loggable: the fixed arity
+ * {@code log} methods allocate no varargs array, and the message is only
+ * rendered when a handler first asks for it, which with
+ * {@link AsyncLogHandler} happens on its writer thread rather than on the
+ * thread doing the logging.  Values are rendered with
+ * {@code String.valueOf}, except that a {@link Supplier} is rendered from
+ * what it supplies and a {@code byte[]} is decoded as UTF-8; every value is
+ * cut to {@link #getMaxValueLength()} characters.  Since rendering may be
+ * deferred, values must not be modified after they have been logged.
+ * <br><br>
+ * The maximum value length defaults to 256 and may be set with the
+ * {@code com.jtconnors.cgminerapi.StructuredLog.maxValueLength} logging
+ * property.
+ * <br><br>
+ * Instances are thread safe.
+ */
+public final class StructuredLog {
+
+    private static final int DEFAULT_MAX_VALUE_LENGTH = 256;
+
+    /**
+     * Lets through one in every {@code n} of the events offered to it,
+     * starting with the first, and counts the ones it suppresses.  Used to
+     * keep the volume of bulky events, such as whole replies, bounded.
+     * <br><br>
+     * Instances are thread safe.
+     */
+    public static final class Sampler {
+
+        private final AtomicLong count = new AtomicLong();
+        private volatile int oneIn;
+
+        /**
+         * Creates a Sampler
+         * @param oneIn let through one in every {@code oneIn} events, 1
+         * letting through all of them
+         */
+        public Sampler(int oneIn) {
+            setOneIn(oneIn);
+        }
+
+        /**
+         * @param oneIn let through one in every {@code oneIn} events, 1
+         * letting through all of them
+         */
+        public void setOneIn(int oneIn) {
+            if (oneIn < 1) {
+                throw new IllegalArgumentException(
+                        "oneIn must be positive, got " + oneIn);
+            }
+            this.oneIn = oneIn;
+        }
+
+        /**
+         * @return one in how many events are let through
+         */
+        public int getOneIn() {
+            return oneIn;
+        }
+
+        /**
+         * Offer an event to this sampler
+         * @return true if the event should be logged
+         */
+        public boolean sample() {
+            int n = oneIn;
+            long c = count.getAndIncrement();
+            return n == 1 || c % n == 0;
+        }
+
+        /**
+         * @return the number of events offered so far
+         */
+        public long getCount() {
+            return count.get();
+        }
+
+        /**
+         * @return the number of events suppressed so far
+         */
+        public long getSuppressed() {
+            long c = count.get();
+            int n = oneIn;
+            return c - (c + n - 1) / n;
+        }
+    }
+
+    private final Logger logger;
+    private final String sourceClass;
+    private volatile int maxValueLength;
+
+    /**
+     * Creates a StructuredLog
+     * @param logger the logger records are handed to
+     * @param source the class reported as the source of the records
+     */
+    public StructuredLog(Logger logger, Class<?> source) {
+        this.logger = logger;
+        this.sourceClass = source.getName();
+        this.maxValueLength = intProperty(
+                StructuredLog.class.getName() + ".maxValueLength",
+                DEFAULT_MAX_VALUE_LENGTH);
+    }
+
+    /**
+     * Read an integer property of the logging configuration
+     * @param name the property name
+     * @param defaultValue returned if the property is unset or malformed
+     * @return the value of the property
+     */
+    static int intProperty(String name, int defaultValue) {
+        String value = LogManager.getLogManager().getProperty(name);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                // fall through to the default
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * @return the logger records are handed to
+     */
+    public Logger getLogger() {
+        return logger;
+    }
+
+    /**
+     * @return the number of characters values are cut to
+     */
+    public int getMaxValueLength() {
+        return maxValueLength;
+    }
+
+    /**
+     * @param maxValueLength the number of characters values are cut to
+     */
+    public void setMaxValueLength(int maxValueLength) {
+        if (maxValueLength < 1) {
+            throw new IllegalArgumentException(
+                    "maxValueLength must be positive, got " + maxValueLength);
+        }
+        this.maxValueLength = maxValueLength;
+    }
+
+    /**
+     * @param level a message level
+     * @return true if events at {@code level} would be logged
+     */
+    public boolean isLoggable(Level level) {
+        return logger.isLoggable(level);
+    }
+
+    /**
+     * Log an event with one field
+     * @param level the message level
+     * @param event name of the event
+     * @param key1 name of the field
+     * @param value1 value of the field
+     */
+    public void log(Level level, String event, String key1, Object value1) {
+        if (logger.isLoggable(level)) {
+            publish(level, event, new Object[] {key1, value1});
+        }
+    }
+
+    /**
+     * Log an event with two fields
+     * @param level the message level
+     * @param event name of the event
+     * @param key1 name of the first field
+     * @param value1 value of the first field
+     * @param key2 name of the second field
+     * @param value2 value of the second field
+     */
+    public void log(Level level, String event, String key1, Object value1,
+            String key2, Object value2) {
+        if (logger.isLoggable(level)) {
+            publish(level, event, new Object[] {key1, value1, key2, value2});
+        }
+    }
+
+    /**
+     * Log an event with three fields
+     * @param level the message level
+     * @param event name of the event
+     * @param key1 name of the first field
+     * @param value1 value of the first field
+     * @param key2 name of the second field
+     * @param value2 value of the second field
+     * @param key3 name of the third field
+     * @param value3 value of the third field
+     */
+    public void log(Level level, String event, String key1, Object value1,
+            String key2, Object value2, String key3, Object value3) {
+        if (logger.isLoggable(level)) {
+            publish(level, event,
+                    new Object[] {key1, value1, key2, value2, key3, value3});
+        }
+    }
+
+    /**
+     * Log an event with four fields
+     * @param level the message level
+     * @param event name of the event
+     * @param key1 name of the first field
+     * @param value1 value of the first field
+     * @param key2 name of the second field
+     * @param value2 value of the second field
+     * @param key3 name of the third field
+     * @param value3 value of the third field
+     * @param key4 name of the fourth field
+     * @param value4 value of the fourth field
+     */
+    public void log(Level level, String event, String key1, Object value1,
+            String key2, Object value2, String key3, Object value3,
+            String key4, Object value4) {
+        if (logger.isLoggable(level)) {
+            publish(level, event, new Object[] {key1, value1, key2, value2,
+                    key3, value3, key4, value4});
+        }
+    }
+
+    /**
+     * Log an event with one field if {@code sampler} lets it through.  The
+     * sampler is only consulted if the level is loggable.
+     * @param level the message level
+     * @param sampler decides which events are logged
+     * @param event name of the event
+     * @param key1 name of the field
+     * @param value1 value of the field
+     */
+    public void log(Level level, Sampler sampler, String event, String key1,
+            Object value1) {
+        if (logger.isLoggable(level) && sampler.sample()) {
+            publish(level, event, new Object[] {key1, value1});
+        }
+    }
+
+    /**
+     * Log an event with two fields if {@code sampler} lets it through.  The
+     * sampler is only consulted if the level is loggable.
+     * @param level the message level
+     * @param sampler decides which events are logged
+     * @param event name of the event
+     * @param key1 name of the first field
+     * @param value1 value of the first field
+     * @param key2 name of the second field
+     * @param value2 value of the second field
+     */
+    public void log(Level level, Sampler sampler, String event, String key1,
+            Object value1, String key2, Object value2) {
+        if (logger.isLoggable(level) && sampler.sample()) {
+            publish(level, event, new Object[] {key1, value1, key2, value2});
+        }
+    }
+
+    private void publish(Level level, String event, Object[] fields) {
+        EventRecord record = new EventRecord(level, event, fields,
+                maxValueLength);
+        record.setLoggerName(logger.getName());
+        record.setSourceClassName(sourceClass);
+        record.setSourceMethodName(event);
+        logger.log(record);
+    }
+
+    /**
+     * A record whose message is rendered from its fields on first use
+     */
+    private static final class EventRecord extends LogRecord {
+
+        private static final long serialVersionUID = 1L;
+
+        private transient Object[] fields;
+        private final int maxValueLength;
+        private volatile String rendered;
+
+        EventRecord(Level level, String event, Object[] fields,
+                int maxValueLength) {
+            super(level, event);
+            this.fields = fields;
+            this.maxValueLength = maxValueLength;
+        }
+
+        @Override
+        public String getMessage() {
+            String message = rendered;
+            if (message == null) {
+                synchronized (this) {
+                    message = rendered;
+                    if (message == null) {
+                        message = render();
+                        rendered = message;
+                        fields = null;
+                    }
+                }
+            }
+            return message;
+        }
+
+        @Override
+        public void setMessage(String message) {
+            super.setMessage(message);
+            rendered = message;
+        }
+
+        private String render() {
+            StringBuilder sb = new StringBuilder(super.getMessage());
+            for (int i = 0; i < fields.length; i += 2) {
+                sb.append(' ').append(fields[i]).append('=');
+                appendValue(sb, valueOf(fields[i + 1]));
+            }
+            return sb.toString();
+        }
+
+        private static String valueOf(Object value) {
+            if (value instanceof Supplier) {
+                value = ((Supplier<?>) value).get();
+            }
+            if (value instanceof byte[]) {
+                return new String((byte[]) value, StandardCharsets.UTF_8);
+            }
+            return String.valueOf(value);
+        }
+
+        /*
+         * Values with blanks, quotes, '=' or control characters are quoted
+         * so that the line can still be split into fields.
+         */
+        private void appendValue(StringBuilder sb, String value) {
+            int length = Math.min(value.length(), maxValueLength);
+            boolean quote = value.isEmpty();
+            for (int i = 0; i < length && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c <= ' ' || c == '"' || c == '=';
+            }
+            if (quote) {
+                sb.append('"');
+            }
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    sb.append('\\').append(c);
+                } else if (c == '\n') {
+                    sb.append("\\n");
+                } else if (c == '\r') {
+                    sb.append("\\r");
+                } else if (c == '\t') {
+                    sb.append("\\t");
+                } else if (c < ' ') {
+                    sb.append(' ');
+                } else {
+                    sb.append(c);
+                }
+            }
+            if (length < value.length()) {
+                sb.append("...(").append(value.length()).append(" chars)");
+            }
+            if (quote) {
+                sb.append('"');
+            }
+        }
+    }
+}
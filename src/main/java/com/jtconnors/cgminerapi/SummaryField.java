@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.function.Function;
+
+/**
+ * Enumeration of the attributes of a SUMMARY reply, in the order they are
+ * sent by cgminer.  See {@link ReplySummary}.
+ */
+public enum SummaryField implements ReplyField<ReplySummary> {
+    ELAPSED(Reply.ELAPSED, FieldType.LONG, ReplySummary::getElapsed),
+    MHS_AV(Reply.MHS_AV, FieldType.DOUBLE, ReplySummary::getMhsAv),
+    MHS_5S(Reply.MHS_5S, FieldType.DOUBLE, ReplySummary::getMhs5s),
+    MHS_1M(Reply.MHS_1M, FieldType.DOUBLE, ReplySummary::getMhs1m),
+    MHS_5M(Reply.MHS_5M, FieldType.DOUBLE, ReplySummary::getMhs5m),
+    MHS_15M(Reply.MHS_15M, FieldType.DOUBLE, ReplySummary::getMhs15m),
+    FOUND_BLOCKS(Reply.FOUND_BLOCKS, FieldType.INTEGER,
+        ReplySummary::getFoundBlocks),
+    GETWORKS(Reply.GETWORKS, FieldType.INTEGER, ReplySummary::getGetWorks),
+    ACCEPTED(Reply.ACCEPTED, FieldType.INTEGER, ReplySummary::getAccepted),
+    REJECTED(Reply.REJECTED, FieldType.INTEGER, ReplySummary::getRejected),
+    HARDWARE_ERRORS(Reply.HARDWARE_ERRORS, FieldType.INTEGER,
+        ReplySummary::getHardwareErrors),
+    UTILITY(Reply.UTILITY, FieldType.DOUBLE, ReplySummary::getUtility),
+    DISCARDED(Reply.DISCARDED, FieldType.INTEGER, ReplySummary::getDiscarded),
+    STALE(Reply.STALE, FieldType.INTEGER, ReplySummary::getStale),
+    GET_FAILURES(Reply.GET_FAILURES, FieldType.INTEGER,
+        ReplySummary::getGetFailures),
+    LOCAL_WORK(Reply.LOCAL_WORK, FieldType.INTEGER, ReplySummary::getLocalWork),
+    REMOTE_FAILURES(Reply.REMOTE_FAILURES, FieldType.INTEGER,
+        ReplySummary::getRemoteFailures),
+    NETWORK_BLOCKS(Reply.NETWORK_BLOCKS, FieldType.INTEGER,
+        ReplySummary::getNetworkBlocks),
+    TOTAL_MH(Reply.TOTAL_MH, FieldType.DOUBLE, ReplySummary::getTotalMH),
+    WORK_UTILITY(Reply.WORK_UTILITY, FieldType.DOUBLE,
+        ReplySummary::getWorkUtility),
+    DIFFICULTY_ACCEPTED(Reply.DIFFICULTY_ACCEPTED, FieldType.DOUBLE,
+        ReplySummary::getDifficultyAccepted),
+    DIFFICULTY_REJECTED(Reply.DIFFICULTY_REJECTED, FieldType.DOUBLE,
+        ReplySummary::getDifficultyRejected),
+    DIFFICULTY_STALE(Reply.DIFFICULTY_STALE, FieldType.DOUBLE,
+        ReplySummary::getDifficultyStale),
+    BESTSHARE(Reply.BESTSHARE, FieldType.INTEGER, ReplySummary::getBestShare),
+    DEVICE_HARDWARE_PERCENT(Reply.DEVICE_HARDWARE_PERCENT, FieldType.DOUBLE,
+        ReplySummary::getDeviceHardwarePercent),
+    DEVICE_REJECTED_PERCENT(Reply.DEVICE_REJECTED_PERCENT, FieldType.DOUBLE,
+        ReplySummary::getDeviceRejectedPercent),
+    POOL_REJECTED_PERCENT(Reply.POOL_REJECTED_PERCENT, FieldType.DOUBLE,
+        ReplySummary::getPoolRejectedPercent),
+    POOL_STALE_PERCENT(Reply.POOL_STALE_PERCENT, FieldType.DOUBLE,
+        ReplySummary::getPoolStalePercent),
+    LAST_GETWORK(Reply.LAST_GETWORK, FieldType.LONG,
+        ReplySummary::getLastGetwork);
+
+    private final String key;
+    private final FieldType type;
+    private final Function<ReplySummary, Object> accessor;
+
+    private SummaryField(String key, FieldType type,
+            Function<ReplySummary, Object> accessor) {
+        this.key = key;
+        this.type = type;
+        this.accessor = accessor;
+    }
+
+    @Override
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public FieldType getType() {
+        return type;
+    }
+
+    @Override
+    public Object getValue(ReplySummary reply) {
+        return accessor.apply(reply);
+    }
+}
@@ -0,0 +1,990 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.json.JsonArray;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.spi.JsonProvider;
+
+/**
+ * Parses replies in cgminer's plain text form, e.g.
+ * <br><br>
+ * {@code STATUS=S,When=1528900000,Code=11,Msg=Summary,Description=cgminer
+ * 4.10.0|SUMMARY,Elapsed=100,MHS av=1.50,...|}
+ * <br><br>
+ * into the same Reply types as {@link JSONParser}, straight from the bytes
+ * returned by {@link APIConnection#apiCallText(String)}.
+ * <br><br>
+ * The reply is scanned once into offset tables that are reused from one
+ * reply to the next.  A value is only converted when a Reply constructor
+ * asks for it, to the type of the modelled field, so that no intermediate
+ * document is built.  The sections are then validated exactly as those of a
+ * JSON reply.  Instances are not thread safe, use one per thread.
+ */
+public final class TextReplyParser {
+
+    private static final Logger LOGGER =
+            Logger.getLogger("com.jtconnors.cgminerapi");
+
+    private static final JsonProvider PROVIDER = JsonProvider.provider();
+
+    /*
+     * The modelled fields of each section, by key
+     */
+    private static final Map<String, Map<String, FieldType>> TYPES =
+            new HashMap<>();
+
+    static {
+        types(Reply.STATUS_REPLY, StatusField.values());
+        types(Reply.SUMMARY_REPLY, SummaryField.values());
+        types(Reply.DEVS_REPLY, DevsField.values());
+        types(Reply.POOLS_REPLY, PoolsField.values());
+        types(Reply.STATS_REPLY, StatsField.values());
+        types(Reply.CONFIG_REPLY, ConfigField.values());
+        types(Reply.VERSION_REPLY, VersionField.values());
+        types(Reply.COIN_REPLY, CoinField.values());
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /*
+     * Mantissas of up to 15 digits, multiplied or divided by an exact power
+     * of ten, are correctly rounded.  Anything else goes through
+     * Double.parseDouble().
+     */
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private byte[] buf;
+    private int fieldCount;
+    private int[] keyStart = new int[256];
+    private int[] keyEnd = new int[256];
+    private int[] valueStart = new int[256];
+    private int[] valueEnd = new int[256];
+    private boolean[] escaped = new boolean[256];
+    private int entryCount;
+    private int[] entryStart = new int[64];
+    private boolean numberIntegral;
+    private long numberLong;
+    private double numberDouble;
+
+    private static void types(String section, ReplyField<?>[] fields) {
+        Map<String, FieldType> types = new HashMap<>();
+        for (ReplyField<?> field : fields) {
+            types.put(field.getKey(), field.getType());
+        }
+        TYPES.put(section, types);
+    }
+
+    /**
+     * Parse a text reply, as {@link JSONParser#parseReply()} parses a JSON
+     * reply
+     * @param reply the reply bytes
+     * @param offset start of the reply in {@code reply}
+     * @param length length of the reply; parsing also stops at a NUL
+     * @return the parsed replies
+     */
+    public List<Reply> parseReply(byte[] reply, int offset, int length) {
+        ParseResult result = parse(reply, offset, length, ParseMode.STRICT);
+        if (!result.isOk()) {
+            LOGGER.log(Level.SEVERE, "Invalid reply: {0}",
+                    result.getDiagnostics());
+        }
+        return new ArrayList<>(result.getReplies());
+    }
+
+    /**
+     * Parse a text reply without throwing or logging, as
+     * {@link JSONParser#parse(ParseMode)} does
+     * @param reply the reply bytes
+     * @param offset start of the reply in {@code reply}
+     * @param length length of the reply; parsing also stops at a NUL
+     * @param mode whether to stop at the first invalid reply or carry on
+     * with the modelled fields that are present
+     * @return the parsed replies and any problems found
+     */
+    public ParseResult parse(byte[] reply, int offset, int length,
+            ParseMode mode) {
+        buf = reply;
+        try {
+            scan(offset, offset + length);
+            return new JSONParser(new Root()).parse(mode);
+        } finally {
+            buf = null;
+        }
+    }
+
+    /*
+     * Overwrite the STATUS and the SUMMARY or DEVS section of a buffer with
+     * those of a text reply, straight from the offset tables.  Other
+     * sections are ignored.
+     */
+    boolean parseInto(byte[] reply, int offset, int length,
+            ReplyBuffer buffer) {
+        buf = reply;
+        try {
+            scan(offset, offset + length);
+            if (entryCount == 0) {
+                return false;
+            }
+            fill(buffer.status, 0);
+            if (buffer.isDevsStatus()) {
+                buffer.clearDevs();
+            }
+            int first = entryStart[1];
+            if (entryCount > 1 && isBare(first)
+                    && keyEquals(first, Reply.SUMMARY_REPLY)) {
+                fill(buffer.setSummary(), 1);
+            } else if (entryCount > 1 && (keyEquals(first, Reply.ASC)
+                    || keyEquals(first, "PGA") || keyEquals(first, "GPU"))) {
+                buffer.clearDevs();
+                for (int entry = 1; entry < entryCount; entry++) {
+                    fill(buffer.addDevs(), entry);
+                }
+            }
+            return buffer.status.isPresent(StatusField.STATUS);
+        } finally {
+            buf = null;
+        }
+    }
+
+    private void fill(MutableReply<?> values, int entry) {
+        values.clear();
+        ReplyField<?>[] fields = values.fields;
+        int next = 0;
+        for (int field = entryStart[entry];
+                field < entryStart[entry + 1]; field++) {
+            if (isBare(field)) {
+                continue;
+            }
+            int index = fieldIndex(fields, field, next);
+            if (index >= 0) {
+                setValue(values, index, fields[index].getType(), field);
+                next = index + 1;
+            }
+        }
+    }
+
+    /*
+     * cgminer sends the fields in the order they are modelled, so the one
+     * following the previous match is tried first.
+     */
+    private int fieldIndex(ReplyField<?>[] fields, int field, int next) {
+        if (next < fields.length && keyEquals(field, fields[next].getKey())) {
+            return next;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            if (keyEquals(field, fields[i].getKey())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Values that do not fit the type of their field are left absent.  A
+     * string value that is unchanged since the last fill keeps its
+     * instance.
+     */
+    private void setValue(MutableReply<?> values, int index, FieldType type,
+            int field) {
+        int start = valueStart[field];
+        int end = valueEnd[field];
+        if (type == FieldType.STRING) {
+            String current = values.strings[index];
+            values.setString(index, current != null && !escaped[field]
+                    && valueEquals(field, current)
+                    ? current : string(start, end, escaped[field]));
+        } else if (escaped[field]) {
+            return;
+        } else if (type == FieldType.BOOLEAN) {
+            if (valueEquals(field, "true")) {
+                values.setLong(index, 1L);
+            } else if (valueEquals(field, "false")) {
+                values.setLong(index, 0L);
+            }
+        } else if (scanNumber(start, end)) {
+            if (type == FieldType.DOUBLE) {
+                values.setDouble(index, numberDouble);
+            } else {
+                values.setLong(index, numberLong);
+            }
+        }
+    }
+
+    /*
+     * Record the key and value offsets of every field, and the first field
+     * of every entry.  Entries are separated by '|', fields by ','; a '\'
+     * escapes the next character.
+     */
+    private void scan(int from, int to) {
+        fieldCount = 0;
+        entryCount = 0;
+        entryStart[0] = 0;
+        int i = from;
+        while (i < to && buf[i] != 0) {
+            int start = i;
+            int separator = -1;
+            boolean escape = false;
+            while (i < to) {
+                byte b = buf[i];
+                if (b == '\\') {
+                    escape = true;
+                    i += 2;
+                    continue;
+                }
+                if (b == ',' || b == '|' || b == 0) {
+                    break;
+                }
+                if (b == '=' && separator < 0) {
+                    separator = i;
+                }
+                i++;
+            }
+            if (i > to) {
+                i = to;
+            }
+            if (i > start) {
+                addField(start, separator, i, escape);
+            }
+            if (i < to && buf[i] == ',') {
+                i++;
+                continue;
+            }
+            endEntry();
+            if (i < to && buf[i] == '|') {
+                i++;
+            } else {
+                break;
+            }
+        }
+        endEntry();
+    }
+
+    private void addField(int start, int separator, int end,
+            boolean escape) {
+        if (fieldCount == keyStart.length) {
+            int n = fieldCount * 2;
+            keyStart = Arrays.copyOf(keyStart, n);
+            keyEnd = Arrays.copyOf(keyEnd, n);
+            valueStart = Arrays.copyOf(valueStart, n);
+            valueEnd = Arrays.copyOf(valueEnd, n);
+            escaped = Arrays.copyOf(escaped, n);
+        }
+        keyStart[fieldCount] = start;
+        keyEnd[fieldCount] = separator < 0 ? end : separator;
+        valueStart[fieldCount] = separator < 0 ? -1 : separator + 1;
+        valueEnd[fieldCount] = end;
+        escaped[fieldCount] = escape;
+        fieldCount++;
+    }
+
+    private void endEntry() {
+        if (fieldCount > entryStart[entryCount]) {
+            if (++entryCount == entryStart.length) {
+                entryStart = Arrays.copyOf(entryStart, entryCount * 2);
+            }
+            entryStart[entryCount] = fieldCount;
+        }
+    }
+
+    private boolean isBare(int field) {
+        return valueStart[field] < 0;
+    }
+
+    private String string(int start, int end, boolean escape) {
+        if (!escape) {
+            return new String(buf, start, end - start,
+                    StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[end - start];
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            if (buf[i] == '\\' && i + 1 < end) {
+                i++;
+            }
+            bytes[n++] = buf[i];
+        }
+        return new String(bytes, 0, n, StandardCharsets.UTF_8);
+    }
+
+    private String key(int field) {
+        return string(keyStart[field], keyEnd[field], escaped[field]);
+    }
+
+    private boolean keyEquals(int field, String key) {
+        int start = keyStart[field];
+        if (keyEnd[field] - start != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if ((buf[start + i] & 0xff) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean valueEquals(int field, String str) {
+        int start = valueStart[field];
+        if (valueEnd[field] - start != str.length()) {
+            return false;
+        }
+        for (int i = 0; i < str.length(); i++) {
+            if (buf[start + i] != str.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Convert a value to the type of its modelled field, or, for fields
+     * that are not modelled, to whatever it looks like.  A value that does
+     * not fit its field is returned as a string, to be reported by the
+     * Reply constructor.
+     */
+    private JsonValue value(int field, FieldType type) {
+        if (isBare(field)) {
+            return JsonValue.NULL;
+        }
+        if (type != FieldType.STRING && !escaped[field]) {
+            if (type == null || type == FieldType.BOOLEAN) {
+                if (valueEquals(field, "true")) {
+                    return JsonValue.TRUE;
+                }
+                if (valueEquals(field, "false")) {
+                    return JsonValue.FALSE;
+                }
+            }
+            if (type != FieldType.BOOLEAN) {
+                JsonNumber number = number(valueStart[field],
+                        valueEnd[field]);
+                if (number != null) {
+                    return number;
+                }
+            }
+        }
+        return PROVIDER.createValue(string(valueStart[field],
+                valueEnd[field], escaped[field]));
+    }
+
+    private JsonNumber number(int start, int end) {
+        if (!scanNumber(start, end)) {
+            return null;
+        }
+        return new TextNumber(buf, start, end, numberIntegral, numberLong,
+                numberDouble);
+    }
+
+    /*
+     * Convert a number into numberIntegral, numberLong and numberDouble,
+     * without creating any objects unless the mantissa is too long to be
+     * converted exactly.
+     */
+    private boolean scanNumber(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        int unsignedStart = i;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        boolean exponent = false;
+        for (; i < end; i++) {
+            byte b = buf[i];
+            if (b >= '0' && b <= '9') {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                }
+                digits++;
+                if (point) {
+                    scale++;
+                }
+            } else if (b == '.' && !point && digits > 0) {
+                point = true;
+            } else if ((b == 'e' || b == 'E') && digits > 0) {
+                exponent = true;
+                break;
+            } else {
+                return false;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        int power = -scale;
+        if (exponent) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+                negativeExponent = buf[i] == '-';
+                i++;
+            }
+            if (i == end) {
+                return false;
+            }
+            int exponentValue = 0;
+            for (; i < end; i++) {
+                if (buf[i] < '0' || buf[i] > '9') {
+                    return false;
+                }
+                if (exponentValue < 1000) {
+                    exponentValue = exponentValue * 10 + (buf[i] - '0');
+                }
+            }
+            power += negativeExponent ? -exponentValue : exponentValue;
+        }
+        boolean integral = !point && !exponent;
+        double value;
+        long longValue;
+        if (digits <= MAX_EXACT_DIGITS && power <= 0
+                && -power < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-power];
+            longValue = integral ? mantissa : (long) value;
+        } else if (digits <= MAX_EXACT_DIGITS && power > 0
+                && power < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[power];
+            longValue = (long) value;
+        } else {
+            String text = new String(buf, unsignedStart,
+                    end - unsignedStart, StandardCharsets.ISO_8859_1);
+            value = Double.parseDouble(text);
+            if (integral && digits <= 18) {
+                longValue = mantissa;
+            } else if (integral) {
+                try {
+                    longValue = Long.parseLong(text);
+                } catch (NumberFormatException e) {
+                    longValue = (long) value;
+                    integral = false;
+                }
+            } else {
+                longValue = (long) value;
+            }
+        }
+        numberIntegral = integral;
+        numberLong = negative ? -longValue : longValue;
+        numberDouble = negative ? -value : value;
+        return true;
+    }
+
+    private static boolean booleanValue(JsonValue value) {
+        if (value == JsonValue.TRUE) {
+            return true;
+        }
+        if (value == JsonValue.FALSE) {
+            return false;
+        }
+        throw new ClassCastException(value == null ? "null"
+                : value.getValueType() + " is not a boolean");
+    }
+
+    /*
+     * Shared implementation of the typed getters of JsonObject
+     */
+    private abstract static class TextObject
+            extends AbstractMap<String, JsonValue> implements JsonObject {
+
+        @Override
+        public JsonArray getJsonArray(String name) {
+            return (JsonArray) get(name);
+        }
+
+        @Override
+        public JsonObject getJsonObject(String name) {
+            return (JsonObject) get(name);
+        }
+
+        @Override
+        public JsonNumber getJsonNumber(String name) {
+            return (JsonNumber) get(name);
+        }
+
+        @Override
+        public JsonString getJsonString(String name) {
+            return (JsonString) get(name);
+        }
+
+        @Override
+        public String getString(String name) {
+            return getJsonString(name).getString();
+        }
+
+        @Override
+        public String getString(String name, String defaultValue) {
+            JsonValue value = get(name);
+            return value instanceof JsonString
+                    ? ((JsonString) value).getString() : defaultValue;
+        }
+
+        @Override
+        public int getInt(String name) {
+            return getJsonNumber(name).intValue();
+        }
+
+        @Override
+        public int getInt(String name, int defaultValue) {
+            JsonValue value = get(name);
+            return value instanceof JsonNumber
+                    ? ((JsonNumber) value).intValue() : defaultValue;
+        }
+
+        @Override
+        public boolean getBoolean(String name) {
+            return booleanValue(get(name));
+        }
+
+        @Override
+        public boolean getBoolean(String name, boolean defaultValue) {
+            JsonValue value = get(name);
+            return value == JsonValue.TRUE || value == JsonValue.FALSE
+                    ? value == JsonValue.TRUE : defaultValue;
+        }
+
+        @Override
+        public boolean isNull(String name) {
+            return get(name).equals(JsonValue.NULL);
+        }
+
+        @Override
+        public ValueType getValueType() {
+            return ValueType.OBJECT;
+        }
+
+        @Override
+        public String toString() {
+            JsonObjectBuilder builder = PROVIDER.createObjectBuilder();
+            for (Map.Entry<String, JsonValue> entry : entrySet()) {
+                builder.add(entry.getKey(), entry.getValue());
+            }
+            return builder.build().toString();
+        }
+    }
+
+    /*
+     * The reply: STATUS followed by at most one other section, named by a
+     * bare first field ("SUMMARY,Elapsed=...") or else by the key that
+     * identifies its entries ("ASC=0,..." for DEVS).
+     */
+    private final class Root extends TextObject {
+
+        private final String name;
+        private final Map<String, JsonValue> sections;
+
+        private Root() {
+            Map<String, JsonValue> map = new HashMap<>(4);
+            if (entryCount > 0) {
+                map.put(Reply.STATUS_REPLY,
+                        new Section(Reply.STATUS_REPLY, 0, 1));
+            }
+            name = entryCount > 1 ? sectionName(entryStart[1]) : null;
+            if (name != null) {
+                map.put(name, new Section(name, 1, entryCount));
+            }
+            sections = map;
+        }
+
+        private String sectionName(int field) {
+            if (isBare(field)) {
+                return key(field);
+            }
+            if (keyEquals(field, Reply.ASC) || keyEquals(field, "PGA")
+                    || keyEquals(field, "GPU")) {
+                return Reply.DEVS_REPLY;
+            }
+            if (keyEquals(field, Reply.POOL)) {
+                return Reply.POOLS_REPLY;
+            }
+            return key(field);
+        }
+
+        @Override
+        public JsonValue get(Object key) {
+            return sections.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return sections.containsKey(key);
+        }
+
+        @Override
+        public Set<Map.Entry<String, JsonValue>> entrySet() {
+            return sections.entrySet();
+        }
+    }
+
+    /*
+     * The entries of one section.  get(int) repositions a single TextEntry,
+     * which is only valid until the next call.
+     */
+    private final class Section extends AbstractList<JsonValue>
+            implements JsonArray {
+
+        private final TextEntry entry;
+        private final int first;
+        private final int end;
+
+        private Section(String name, int first, int end) {
+            Map<String, FieldType> types = TYPES.get(name);
+            this.entry = new TextEntry(types == null
+                    ? Collections.<String, FieldType>emptyMap() : types);
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        public JsonValue get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index);
+            }
+            return entry.at(first + index);
+        }
+
+        @Override
+        public int size() {
+            return end - first;
+        }
+
+        @Override
+        public JsonObject getJsonObject(int index) {
+            return (JsonObject) get(index);
+        }
+
+        @Override
+        public JsonArray getJsonArray(int index) {
+            return (JsonArray) get(index);
+        }
+
+        @Override
+        public JsonNumber getJsonNumber(int index) {
+            return (JsonNumber) get(index);
+        }
+
+        @Override
+        public JsonString getJsonString(int index) {
+            return (JsonString) get(index);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T extends JsonValue> List<T> getValuesAs(Class<T> clazz) {
+            return (List<T>) this;
+        }
+
+        @Override
+        public String getString(int index) {
+            return getJsonString(index).getString();
+        }
+
+        @Override
+        public String getString(int index, String defaultValue) {
+            return defaultValue;
+        }
+
+        @Override
+        public int getInt(int index) {
+            return getJsonNumber(index).intValue();
+        }
+
+        @Override
+        public int getInt(int index, int defaultValue) {
+            return defaultValue;
+        }
+
+        @Override
+        public boolean getBoolean(int index) {
+            return booleanValue(get(index));
+        }
+
+        @Override
+        public boolean getBoolean(int index, boolean defaultValue) {
+            return defaultValue;
+        }
+
+        @Override
+        public boolean isNull(int index) {
+            return false;
+        }
+
+        @Override
+        public ValueType getValueType() {
+            return ValueType.ARRAY;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(get(i));
+            }
+            return sb.append(']').toString();
+        }
+    }
+
+    /*
+     * One entry of a section, read in place
+     */
+    private final class TextEntry extends TextObject {
+
+        private final Map<String, FieldType> types;
+        private int from;
+        private int to;
+
+        private TextEntry(Map<String, FieldType> types) {
+            this.types = types;
+        }
+
+        private TextEntry at(int entry) {
+            from = entryStart[entry];
+            to = entryStart[entry + 1];
+            if (from < to && isBare(from)) {
+                from++;
+            }
+            return this;
+        }
+
+        private int indexOf(Object key) {
+            if (key instanceof String) {
+                for (int field = from; field < to; field++) {
+                    if (keyEquals(field, (String) key)) {
+                        return field;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public JsonValue get(Object key) {
+            int field = indexOf(key);
+            return field < 0 ? null : value(field, types.get(key));
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return indexOf(key) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return new AbstractSet<String>() {
+                @Override
+                public Iterator<String> iterator() {
+                    return new FieldIterator<String>() {
+                        @Override
+                        String next(int field) {
+                            return key(field);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return to - from;
+                }
+            };
+        }
+
+        @Override
+        public Set<Map.Entry<String, JsonValue>> entrySet() {
+            return new AbstractSet<Map.Entry<String, JsonValue>>() {
+                @Override
+                public Iterator<Map.Entry<String, JsonValue>> iterator() {
+                    return new FieldIterator<Map.Entry<String, JsonValue>>() {
+                        @Override
+                        Map.Entry<String, JsonValue> next(int field) {
+                            String key = key(field);
+                            return new SimpleImmutableEntry<>(key,
+                                    value(field, types.get(key)));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return to - from;
+                }
+            };
+        }
+
+        private abstract class FieldIterator<T> implements Iterator<T> {
+            private int field = from;
+
+            abstract T next(int field);
+
+            @Override
+            public boolean hasNext() {
+                return field < to;
+            }
+
+            @Override
+            public T next() {
+                if (field >= to) {
+                    throw new NoSuchElementException();
+                }
+                return next(field++);
+            }
+        }
+    }
+
+    /*
+     * A number read in place.  Its text is only materialised on demand, so
+     * it must not outlive the buffer it was read from; the Reply
+     * constructors only take its value.
+     */
+    private static final class TextNumber implements JsonNumber {
+
+        private final byte[] buf;
+        private final int start;
+        private final int end;
+        private final boolean integral;
+        private final long longValue;
+        private final double doubleValue;
+
+        private TextNumber(byte[] buf, int start, int end, boolean integral,
+                long longValue, double doubleValue) {
+            this.buf = buf;
+            this.start = start;
+            this.end = end;
+            this.integral = integral;
+            this.longValue = longValue;
+            this.doubleValue = doubleValue;
+        }
+
+        @Override
+        public boolean isIntegral() {
+            return integral;
+        }
+
+        @Override
+        public int intValue() {
+            return (int) longValue;
+        }
+
+        @Override
+        public int intValueExact() {
+            return Math.toIntExact(longValueExact());
+        }
+
+        @Override
+        public long longValue() {
+            return longValue;
+        }
+
+        @Override
+        public long longValueExact() {
+            if (!integral) {
+                throw new ArithmeticException("not integral: " + this);
+            }
+            return longValue;
+        }
+
+        @Override
+        public BigInteger bigIntegerValue() {
+            return bigDecimalValue().toBigInteger();
+        }
+
+        @Override
+        public BigInteger bigIntegerValueExact() {
+            return bigDecimalValue().toBigIntegerExact();
+        }
+
+        @Override
+        public double doubleValue() {
+            return doubleValue;
+        }
+
+        @Override
+        public BigDecimal bigDecimalValue() {
+            return new BigDecimal(toString());
+        }
+
+        @Override
+        public ValueType getValueType() {
+            return ValueType.NUMBER;
+        }
+
+        @Override
+        public String toString() {
+            return new String(buf, start, end - start,
+                    StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof JsonNumber && bigDecimalValue().equals(
+                    ((JsonNumber) obj).bigDecimalValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return bigDecimalValue().hashCode();
+        }
+    }
+}
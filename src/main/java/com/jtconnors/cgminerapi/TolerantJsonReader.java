@@ -0,0 +1,451 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
+import javax.json.spi.JsonProvider;
+
+/**
+ * Reads the JSON replies of cgminer drivers that do not produce well formed
+ * JSON.  API-README warns that some (e.g. the HashFast STATS) do not; a
+ * standard reader then rejects the whole reply.
+ * <br><br>
+ * The reply is scanned once, in place, and the following quirks are
+ * repaired:
+ * <ul>
+ * <li>missing commas between members or elements</li>
+ * <li>bare {@code nan}, {@code inf} and {@code -inf} numbers, read as JSON
+ * {@code null}</li>
+ * <li>duplicate keys, where the last value wins as with a standard
+ * reader</li>
+ * <li>NUL characters, or anything else, after the reply object</li>
+ * </ul>
+ * Anything else that is not well formed still fails with a
+ * {@code JsonException}.  Instances are not thread safe and read one
+ * reply.
+ */
+public final class TolerantJsonReader {
+
+    /**
+     * The repairs made
+     */
+    public enum Repair {
+        /**
+         * A comma between two members or elements was missing
+         */
+        MISSING_COMMA,
+        /**
+         * A bare nan or infinity was read as {@code null}
+         */
+        NON_FINITE_NUMBER,
+        /**
+         * A key occurred twice in one object
+         */
+        DUPLICATE_KEY,
+        /**
+         * NUL characters followed the reply object
+         */
+        TRAILING_NUL,
+        /**
+         * Other characters followed the reply object
+         */
+        TRAILING_CHARACTERS
+    }
+
+    private static final JsonProvider PROVIDER = JsonProvider.provider();
+    private static final JsonBuilderFactory FACTORY =
+            PROVIDER.createBuilderFactory(
+                    Collections.<String, Object>emptyMap());
+    private static final int MAX_DEPTH = 64;
+    private static final Repair[] REPAIRS = Repair.values();
+
+    private final String json;
+    private final boolean repair;
+    private final int[] counts = new int[REPAIRS.length];
+    private final int[] offsets = new int[REPAIRS.length];
+    private int pos;
+    private int depth;
+
+    /**
+     * Creates a TolerantJsonReader
+     * @param json the reply as returned by
+     * {@link APIConnection#apiCall(String)}
+     */
+    public TolerantJsonReader(String json) {
+        this(json, true);
+    }
+
+    /*
+     * With repair false, the first quirk fails the read; used as a strict
+     * reader by JsonBackend.scanner()
+     */
+    TolerantJsonReader(String json, boolean repair) {
+        this.json = json;
+        this.repair = repair;
+    }
+
+    /**
+     * Read the reply object, repairing it as it is read
+     * @return the reply
+     * @throws JsonException if the reply cannot be repaired
+     */
+    public JsonObject readObject() {
+        skipWhitespace();
+        expect('{');
+        JsonObject object = readObjectBody();
+        skipWhitespace();
+        if (pos < json.length()) {
+            int start = pos;
+            while (pos < json.length() && json.charAt(pos) == '\0') {
+                pos++;
+            }
+            repaired(pos == json.length() ? Repair.TRAILING_NUL
+                    : Repair.TRAILING_CHARACTERS, start);
+            pos = json.length();
+        }
+        return object;
+    }
+
+    /**
+     * @return the kinds of repair made by {@link #readObject()}
+     */
+    public Set<Repair> getRepairs() {
+        Set<Repair> repairs = EnumSet.noneOf(Repair.class);
+        for (Repair repair : REPAIRS) {
+            if (counts[repair.ordinal()] > 0) {
+                repairs.add(repair);
+            }
+        }
+        return repairs;
+    }
+
+    /**
+     * @param repair a kind of repair
+     * @return the number of times it was made
+     */
+    public int getCount(Repair repair) {
+        return counts[repair.ordinal()];
+    }
+
+    /**
+     * @param repair a kind of repair
+     * @return the offset in the reply of the first time it was made, or -1
+     */
+    public int getFirstOffset(Repair repair) {
+        return counts[repair.ordinal()] > 0 ? offsets[repair.ordinal()] : -1;
+    }
+
+    private void repaired(Repair repair, int offset) {
+        if (!this.repair) {
+            throw new JsonException(repair + " at offset " + offset);
+        }
+        if (counts[repair.ordinal()]++ == 0) {
+            offsets[repair.ordinal()] = offset;
+        }
+    }
+
+    /*
+     * Called with the opening brace consumed
+     */
+    private JsonObject readObjectBody() {
+        enter();
+        JsonObjectBuilder builder = FACTORY.createObjectBuilder();
+        Set<String> keys = null;
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            depth--;
+            return builder.build();
+        }
+        while (true) {
+            skipWhitespace();
+            int keyOffset = pos;
+            String key = readString();
+            if (keys == null) {
+                keys = new HashSet<>();
+            }
+            if (!keys.add(key)) {
+                repaired(Repair.DUPLICATE_KEY, keyOffset);
+            }
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            builder.add(key, readValue());
+            skipWhitespace();
+            char c = peek();
+            if (c == ',') {
+                pos++;
+            } else if (c == '}') {
+                pos++;
+                depth--;
+                return builder.build();
+            } else if (c == '"') {
+                repaired(Repair.MISSING_COMMA, pos);
+            } else {
+                throw error("expected ',' or '}'");
+            }
+        }
+    }
+
+    /*
+     * Called with the opening bracket consumed
+     */
+    private JsonValue readArrayBody() {
+        enter();
+        JsonArrayBuilder builder = FACTORY.createArrayBuilder();
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            depth--;
+            return builder.build();
+        }
+        while (true) {
+            skipWhitespace();
+            builder.add(readValue());
+            skipWhitespace();
+            char c = peek();
+            if (c == ',') {
+                pos++;
+            } else if (c == ']') {
+                pos++;
+                depth--;
+                return builder.build();
+            } else if (startsValue(c)) {
+                repaired(Repair.MISSING_COMMA, pos);
+            } else {
+                throw error("expected ',' or ']'");
+            }
+        }
+    }
+
+    private JsonValue readValue() {
+        char c = peek();
+        switch (c) {
+            case '{':
+                pos++;
+                return readObjectBody();
+            case '[':
+                pos++;
+                return readArrayBody();
+            case '"':
+                return PROVIDER.createValue(readString());
+            default:
+                break;
+        }
+        int start = pos;
+        if (c == '-' || c == '+') {
+            pos++;
+        }
+        if (pos < json.length() && Character.isLetter(json.charAt(pos))) {
+            return readWord(start);
+        }
+        return readNumber(start);
+    }
+
+    private JsonValue readWord(int start) {
+        while (pos < json.length() && Character.isLetter(json.charAt(pos))) {
+            pos++;
+        }
+        String word = json.substring(start, pos);
+        switch (word) {
+            case "true":
+                return JsonValue.TRUE;
+            case "false":
+                return JsonValue.FALSE;
+            case "null":
+                return JsonValue.NULL;
+            default:
+                break;
+        }
+        String bare = word.charAt(0) == '-' || word.charAt(0) == '+'
+                ? word.substring(1) : word;
+        if (bare.equalsIgnoreCase("nan") || bare.equalsIgnoreCase("inf")
+                || bare.equalsIgnoreCase("infinity")) {
+            repaired(Repair.NON_FINITE_NUMBER, start);
+            return JsonValue.NULL;
+        }
+        pos = start;
+        throw error("unexpected \"" + word + "\"");
+    }
+
+    private JsonValue readNumber(int start) {
+        boolean integral = true;
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                pos++;
+            } else if (c == '.' || c == 'e' || c == 'E' || c == '+'
+                    || c == '-') {
+                integral = false;
+                pos++;
+            } else {
+                break;
+            }
+        }
+        if (pos == start) {
+            throw error("expected a value");
+        }
+        int length = pos - start;
+        try {
+            if (integral && length < 19) {
+                return PROVIDER.createValue(Long.parseLong(
+                        json.substring(start, pos)));
+            }
+            return PROVIDER.createValue(new BigDecimal(
+                    json.substring(start, pos)));
+        } catch (NumberFormatException e) {
+            pos = start;
+            throw error("malformed number");
+        }
+    }
+
+    private String readString() {
+        expect('"');
+        int start = pos;
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c == '"') {
+                return json.substring(start, pos++);
+            }
+            if (c == '\\') {
+                return readEscapedString(start);
+            }
+            pos++;
+        }
+        throw error("unterminated string");
+    }
+
+    /*
+     * The slow path, entered at the first backslash
+     */
+    private String readEscapedString(int start) {
+        StringBuilder sb = new StringBuilder(pos - start + 16);
+        sb.append(json, start, pos);
+        while (pos < json.length()) {
+            char c = json.charAt(pos++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos == json.length()) {
+                break;
+            }
+            char e = json.charAt(pos++);
+            switch (e) {
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > json.length()) {
+                        throw error("truncated escape");
+                    }
+                    try {
+                        sb.append((char) Integer.parseInt(
+                                json.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw error("malformed escape");
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    // '"', '\\', '/' and, leniently, anything else
+                    sb.append(e);
+                    break;
+            }
+        }
+        throw error("unterminated string");
+    }
+
+    private static boolean startsValue(char c) {
+        return c == '{' || c == '[' || c == '"' || c == '-'
+                || (c >= '0' && c <= '9') || Character.isLetter(c);
+    }
+
+    private void enter() {
+        if (++depth > MAX_DEPTH) {
+            throw error("nested too deeply");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private char peek() {
+        if (pos == json.length()) {
+            throw error("unexpected end of reply");
+        }
+        return json.charAt(pos);
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw error("expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    private JsonException error(String message) {
+        return new JsonException(message + " at offset " + pos);
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Streaming selection of the {@code k} keys with the highest scores, e.g.
+ * the hottest devices of a poll cycle.  A bounded min-heap keeps memory at
+ * {@code O(k)} and makes each offer {@code O(log k)} amortized, instead of
+ * sorting every candidate.  Offering a key that is already retained
+ * replaces its score with the higher of the two; the superseded heap entry
+ * is discarded lazily rather than searched for, so re-offering the same
+ * keys poll after poll costs no more than offering new ones.  Selections
+ * are mergeable: offering the entries of one selection to another yields
+ * the top {@code k} of the union.
+ * <br><br>
+ * Instances are not thread safe.
+ *
+ * @param <K> the key type, e.g. {@link DeviceKey}
+ */
+public class TopK<K> {
+
+    /**
+     * A key and its score
+     * @param <K> the key type
+     */
+    public static final class Entry<K> {
+        private final K key;
+        private final double score;
+
+        private Entry(K key, double score) {
+            this.key = key;
+            this.score = score;
+        }
+
+        /**
+         * @return the key
+         */
+        public K getKey() {
+            return key;
+        }
+
+        /**
+         * @return the score
+         */
+        public double getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + score;
+        }
+    }
+
+    private final int k;
+    private final PriorityQueue<Entry<K>> heap;
+    private final Map<K, Entry<K>> retained;
+
+    /**
+     * Creates a TopK
+     * @param k the number of keys to retain, greater than 0
+     */
+    public TopK(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be > 0: " + k);
+        }
+        this.k = k;
+        this.heap = new PriorityQueue<>(2 * k + 1,
+                (a, b) -> Double.compare(a.score, b.score));
+        this.retained = new HashMap<>(k * 2);
+    }
+
+    /**
+     * Offer a candidate.  {@code NaN} scores are ignored.
+     * @param key the key
+     * @param score its score, higher ranks first
+     */
+    public void offer(K key, double score) {
+        if (Double.isNaN(score)) {
+            return;
+        }
+        Entry<K> existing = retained.get(key);
+        if (existing != null) {
+            if (score <= existing.score) {
+                return;
+            }
+            // existing stays in the heap until lowest() or compact()
+        } else if (retained.size() == k) {
+            if (score <= lowest().score) {
+                return;
+            }
+            retained.remove(heap.poll().key);
+        }
+        Entry<K> entry = new Entry<>(key, score);
+        heap.add(entry);
+        retained.put(key, entry);
+        if (heap.size() > 2 * k) {
+            compact();
+        }
+    }
+
+    /*
+     * The lowest retained entry, after dropping superseded ones from the
+     * top of the heap.  Must not be called when empty.
+     */
+    private Entry<K> lowest() {
+        Entry<K> lowest = heap.peek();
+        while (retained.get(lowest.key) != lowest) {
+            heap.poll();
+            lowest = heap.peek();
+        }
+        return lowest;
+    }
+
+    /*
+     * Rebuild the heap from the retained entries.  Runs at most once every
+     * k offers, which keeps the cost of an offer O(log k) amortized.
+     */
+    private void compact() {
+        heap.clear();
+        heap.addAll(retained.values());
+    }
+
+    /**
+     * Offer every entry of another selection
+     * @param other the selection to merge into this one
+     */
+    public void merge(TopK<K> other) {
+        for (Entry<K> entry : other.retained.values()) {
+            offer(entry.key, entry.score);
+        }
+    }
+
+    /**
+     * @return the retained entries, highest score first
+     */
+    public List<Entry<K>> getTop() {
+        List<Entry<K>> top = new ArrayList<>(retained.values());
+        top.sort((a, b) -> Double.compare(b.score, a.score));
+        return top;
+    }
+
+    /**
+     * @return the lowest retained score, the bar a new key must clear once
+     * {@code k} keys are retained, or {@code NaN} if empty
+     */
+    public double getThreshold() {
+        return retained.isEmpty() ? Double.NaN : lowest().score;
+    }
+
+    /**
+     * Forget every candidate offered
+     */
+    public void clear() {
+        heap.clear();
+        retained.clear();
+    }
+
+    /**
+     * @return the number of keys to retain
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * @return the number of keys currently retained
+     */
+    public int size() {
+        return retained.size();
+    }
+
+    @Override
+    public String toString() {
+        return getTop().toString();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * A single recorded cgminer API exchange: the raw command sent to a rig and
+ * the raw reply received, as captured by a {@link TrafficRecorder}.  The
+ * exchange may be in JSON or in cgminer's plain text form; JSON replies are
+ * told apart by their leading '{'.
+ */
+public class TrafficRecord {
+
+    private static final ThreadLocal<TextReplyParser> TEXT_PARSER =
+            ThreadLocal.withInitial(TextReplyParser::new);
+
+    private final String rigId;
+    private final long timestamp;
+    private final byte[] request;
+    private final byte[] reply;
+
+    /**
+     * Creates a TrafficRecord
+     * @param rigId identifier of the rig, typically "host:port"
+     * @param timestamp time the command was sent, in milliseconds since the
+     * epoch
+     * @param request the UTF-8 bytes of the command
+     * @param reply the UTF-8 bytes of the reply, without the terminating NUL
+     */
+    public TrafficRecord(String rigId, long timestamp, byte[] request,
+            byte[] reply) {
+        this.rigId = rigId;
+        this.timestamp = timestamp;
+        this.request = request;
+        this.reply = reply;
+    }
+
+    /**
+     * @return identifier of the rig, typically "host:port"
+     */
+    public String getRigId() {
+        return rigId;
+    }
+
+    /**
+     * @return time the command was sent, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the raw UTF-8 bytes of the command
+     */
+    public byte[] getRequest() {
+        return request;
+    }
+
+    /**
+     * @return the raw UTF-8 bytes of the reply
+     */
+    public byte[] getReply() {
+        return reply;
+    }
+
+    /**
+     * @return the command as a String
+     */
+    public String getRequestString() {
+        return new String(request, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the reply as a String
+     */
+    public String getReplyString() {
+        return new String(reply, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return true if the reply is in cgminer's plain text form, as
+     * recorded from {@link APIConnection#apiCallText(String)}, rather than
+     * JSON
+     */
+    public boolean isText() {
+        int i = 0;
+        while (i < reply.length && reply[i] <= ' ') {
+            i++;
+        }
+        return i < reply.length && reply[i] != '{';
+    }
+
+    /**
+     * Parse the reply the same way a live call would be parsed, with a
+     * {@link TextReplyParser} if it is in text form and a
+     * {@link JSONParser} otherwise.
+     * @return the reply parsed into a {@code RigSample}
+     */
+    public RigSample toRigSample() {
+        List<Reply> replies = isText()
+                ? TEXT_PARSER.get().parseReply(reply, 0, reply.length)
+                : new JSONParser(getReplyString()).parseReply();
+        return new RigSample(rigId, timestamp, replies);
+    }
+
+    @Override
+    public String toString() {
+        return rigId + "@" + timestamp + " " + getRequestString();
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only file of raw cgminer API traffic.  Attach a recorder to one or
+ * more connections with {@link APIConnection#setRecorder(TrafficRecorder)}
+ * and every command and reply passing through
+ * {@link APIConnection#apiCall(String)} or
+ * {@link APIConnection#apiCallText(String)} is written, with the time the
+ * command was sent, as a {@link TrafficRecord}.  The file can later be fed
+ * back with a {@link TrafficReplayer} or served by a
+ * {@link TrafficReplayServer}, reproducing a site's load without touching
+ * the miners.
+ * <br><br>
+ * File layout: a header ({@code int} magic, {@code int} version) followed
+ * by records of the form {@code long timestamp, UTF rigId, int length,
+ * request bytes, int length, reply bytes}.  Reopening an existing file
+ * appends to it, after cutting off a last record left incomplete by a
+ * crash.  Such a record is likewise ignored on reading.
+ */
+public class TrafficRecorder implements Closeable {
+
+    private static final Logger LOGGER =
+            Logger.getLogger("com.jtconnors.cgminerapi");
+
+    private static final int MAGIC = 0x43475452;    // "CGTR"
+    private static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final Path file;
+    private final DataOutputStream out;
+
+    /**
+     * Creates a TrafficRecorder, appending to {@code file} if it already
+     * exists.  An incomplete last record is truncated first so that the
+     * records appended after it can be read.
+     * @param file the recording file
+     * @throws IOException if the file cannot be opened, or exists and is
+     * not a recording
+     */
+    public TrafficRecorder(Path file) throws IOException {
+        this.file = file;
+        boolean exists = Files.exists(file) && Files.size(file) > 0;
+        if (exists) {
+            long length = completeLength(file);
+            if (length < Files.size(file)) {
+                LOGGER.log(Level.WARNING,
+                        "Truncating incomplete record at {0} of {1}",
+                        new Object[] {length, file});
+                try (FileChannel channel = FileChannel.open(file,
+                        StandardOpenOption.WRITE)) {
+                    channel.truncate(length);
+                }
+            }
+        }
+        out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND), BUFFER_SIZE));
+        if (!exists) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.flush();
+        }
+    }
+
+    /**
+     * Append one API exchange to the recording.
+     * @param rigId identifier of the rig, typically "host:port"
+     * @param timestamp time the command was sent, in milliseconds since the
+     * epoch
+     * @param request the command
+     * @param reply the reply, without the terminating NUL
+     * @throws IOException if the record cannot be written
+     */
+    public void record(String rigId, long timestamp, String request,
+            String reply) throws IOException {
+        byte[] requestBytes = request.getBytes(StandardCharsets.UTF_8);
+        byte[] replyBytes = reply.getBytes(StandardCharsets.UTF_8);
+        synchronized (out) {
+            out.writeLong(timestamp);
+            out.writeUTF(rigId);
+            out.writeInt(requestBytes.length);
+            out.write(requestBytes);
+            out.writeInt(replyBytes.length);
+            out.write(replyBytes);
+        }
+    }
+
+    /**
+     * Write any buffered records to the file.
+     * @throws IOException if the records cannot be written
+     */
+    public void flush() throws IOException {
+        synchronized (out) {
+            out.flush();
+        }
+    }
+
+    /**
+     * @return the recording file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (out) {
+            out.close();
+        }
+    }
+
+    /**
+     * Callback interface for {@link #read(Path, RecordVisitor)}
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        /**
+         * Called for each record in the order it was written.
+         * @param record the record
+         * @return false to stop reading
+         * @throws IOException to abort reading
+         */
+        boolean visit(TrafficRecord record) throws IOException;
+    }
+
+    /**
+     * Read every complete record of a recording file.
+     * @param file the recording file
+     * @param visitor called for each record
+     * @return the number of records visited
+     * @throws IOException if the file cannot be read or is not a recording
+     */
+    public static long read(Path file, RecordVisitor visitor)
+            throws IOException {
+        long count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file), BUFFER_SIZE))) {
+            readHeader(in);
+            TrafficRecord record;
+            while ((record = readRecord(in)) != null) {
+                count++;
+                if (!visitor.visit(record)) {
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static void readHeader(DataInputStream in) throws IOException {
+        int magic = in.readInt();
+        int version = in.readInt();
+        if (magic != MAGIC || version != VERSION) {
+            throw new IOException("Not a cgminer traffic recording, magic="
+                    + Integer.toHexString(magic) + " version=" + version);
+        }
+    }
+
+    /*
+     * Length of the header and the complete records of a recording file
+     */
+    private static long completeLength(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file), BUFFER_SIZE))) {
+            readHeader(in);
+            long length = 8;
+            try {
+                while (true) {
+                    in.readLong();
+                    int rigIdLength = in.readUnsignedShort();
+                    skipFully(in, rigIdLength);
+                    int requestLength = in.readInt();
+                    skipFully(in, requestLength);
+                    int replyLength = in.readInt();
+                    skipFully(in, replyLength);
+                    length += 8 + 2 + rigIdLength + 4 + requestLength + 4
+                            + replyLength;
+                }
+            } catch (EOFException e) {
+                return length;
+            }
+        }
+    }
+
+    private static void skipFully(DataInputStream in, int n)
+            throws IOException {
+        if (n < 0) {
+            throw new EOFException("Corrupt record length " + n);
+        }
+        while (n > 0) {
+            int skipped = in.skipBytes(n);
+            if (skipped == 0) {
+                throw new EOFException();
+            }
+            n -= skipped;
+        }
+    }
+
+    /*
+     * Returns null at the end of the file, including a truncated last record
+     */
+    private static TrafficRecord readRecord(DataInputStream in)
+            throws IOException {
+        try {
+            long timestamp = in.readLong();
+            String rigId = in.readUTF();
+            byte[] request = readBytes(in);
+            byte[] reply = readBytes(in);
+            return new TrafficRecord(rigId, timestamp, request, reply);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Corrupt record length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.json.JsonArray;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+/**
+ * Local stand-in for a cgminer instance that answers API commands from a
+ * recording made by a {@link TrafficRecorder}.  Point an
+ * {@link APIConnection} at {@code localhost} and {@link #getPort()} to
+ * benchmark or regression test the full socket and parsing path against a
+ * real site's replies.
+ * <br><br>
+ * Each command is answered with the next recorded reply to the identical
+ * command, in recording order.  Replies are held back until their recorded
+ * offset from the first record, scaled by the speed factor, has elapsed
+ * since the first command was served; with {@link TrafficReplayer#MAX_SPEED}
+ * they are sent immediately.  When the recorded replies to a command run out
+ * they are served again from the start if looping is enabled, otherwise an
+ * error STATUS is returned.  Commands never seen in the recording are
+ * answered with an error STATUS as well.
+ * <br><br>
+ * Commands in cgminer's plain text form (e.g. {@code summary}) are answered
+ * in text form too: from text commands in the recording if there are any,
+ * otherwise by converting the replies to the equivalent JSON command.
+ */
+public class TrafficReplayServer implements Closeable {
+
+    private static final Logger LOGGER =
+            Logger.getLogger("com.jtconnors.cgminerapi");
+
+    private static final int MAX_COMMAND_BYTES = 65535;
+    private static final int TEXT_COMMAND_IDLE_MILLIS = 50;
+
+    // cgminer API status code for an invalid command
+    private static final int INVALID_COMMAND = 14;
+
+    private final Map<String, List<TrafficRecord>> replies = new HashMap<>();
+    private final Map<String, AtomicLong> cursors = new HashMap<>();
+    private final Map<TrafficRecord, byte[]> textReplies =
+            new ConcurrentHashMap<>();
+    private final long span;
+    private final boolean loop;
+    private final TrafficReplayer.Pacer pacer;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+
+    /**
+     * Creates and starts a TrafficReplayServer
+     * @param file the recording file
+     * @param rigId serve only the replies recorded for this rig, or null to
+     * serve the replies of all rigs interleaved in recording order
+     * @param port the local port to listen on, 0 for any free port
+     * @param speed replay speed relative to the recording, greater than 0
+     * @param loop whether to start over when the recorded replies run out
+     * @throws IOException if the recording cannot be read or the port cannot
+     * be bound
+     */
+    public TrafficReplayServer(Path file, String rigId, int port,
+            double speed, boolean loop) throws IOException {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("speed must be > 0: " + speed);
+        }
+        long[] range = { Long.MAX_VALUE, Long.MIN_VALUE };
+        TrafficRecorder.read(file, record -> {
+            if (rigId == null || rigId.equals(record.getRigId())) {
+                replies.computeIfAbsent(record.getRequestString(),
+                        k -> new ArrayList<>()).add(record);
+                range[0] = Math.min(range[0], record.getTimestamp());
+                range[1] = Math.max(range[1], record.getTimestamp());
+            }
+            return true;
+        });
+        for (String request : replies.keySet()) {
+            cursors.put(request, new AtomicLong());
+        }
+        this.span = replies.isEmpty() ? 1 : Math.max(1, range[1] - range[0]);
+        this.loop = loop;
+        this.pacer = new TrafficReplayer.Pacer(speed);
+        this.serverSocket = new ServerSocket(port, 50,
+                InetAddress.getLoopbackAddress());
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "TrafficReplayServer");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.execute(this::acceptLoop);
+    }
+
+    /**
+     * @return the local port the server is listening on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return the distinct commands found in the recording
+     */
+    public List<String> getRequests() {
+        return new ArrayList<>(replies.keySet());
+    }
+
+    /**
+     * Stop accepting commands.
+     * @throws IOException if the server socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                executor.execute(() -> serve(socket));
+            } catch (SocketException e) {
+                // closed
+                return;
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Accept failed", e);
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            String request = readCommand(s,
+                    new BufferedInputStream(s.getInputStream()));
+            byte[] reply;
+            if (!request.startsWith("{") && !replies.containsKey(request)) {
+                reply = nextReply(toJSONCommand(request), true);
+            } else {
+                reply = nextReply(request, false);
+            }
+            OutputStream out = s.getOutputStream();
+            out.write(reply);
+            out.write(0);
+            out.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Replay connection failed", e);
+        }
+    }
+
+    private byte[] nextReply(String request, boolean text)
+            throws InterruptedException {
+        List<TrafficRecord> records = replies.get(request);
+        if (records == null) {
+            return errorReply("Invalid command", text);
+        }
+        long n = cursors.get(request).getAndIncrement();
+        long cycle = n / records.size();
+        if (cycle > 0 && !loop) {
+            return errorReply("No more recorded replies", text);
+        }
+        TrafficRecord record = records.get((int) (n % records.size()));
+        pacer.await(record.getTimestamp() + cycle * span);
+        if (text) {
+            return textReplies.computeIfAbsent(record,
+                    r -> toTextReply(r.getReply()));
+        }
+        return record.getReply();
+    }
+
+    /*
+     * Read one command: clients send the command and then wait for the
+     * reply without closing their side, so stop at the closing brace of a
+     * JSON command.  A text command has no terminator, so it ends at a
+     * newline or NUL, once it reads as a complete command with nothing more
+     * buffered, or when the client has sent nothing more for a moment.
+     */
+    private String readCommand(Socket socket, InputStream in)
+            throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        int first = in.read();
+        if (first >= 0 && first != '{') {
+            int b = first;
+            socket.setSoTimeout(TEXT_COMMAND_IDLE_MILLIS);
+            try {
+                while (b >= 0 && b != '\n' && b != 0
+                        && buf.size() < MAX_COMMAND_BYTES) {
+                    buf.write(b);
+                    if (in.available() == 0 && isComplete(buf)) {
+                        break;
+                    }
+                    b = in.read();
+                }
+            } catch (SocketTimeoutException e) {
+                // the client has sent the whole command
+            } finally {
+                socket.setSoTimeout(0);
+            }
+            return new String(buf.toByteArray(), StandardCharsets.UTF_8)
+                    .trim();
+        }
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        int b = first;
+        for (; b >= 0 && buf.size() < MAX_COMMAND_BYTES; b = in.read()) {
+            buf.write(b);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    inString = false;
+                }
+            } else if (b == '"') {
+                inString = true;
+            } else if (b == '{') {
+                depth++;
+            } else if (b == '}' && --depth == 0) {
+                break;
+            }
+        }
+        return new String(buf.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /*
+     * A text command is complete if it was recorded or is a request that
+     * takes no parameter, none of which is a prefix of another command.
+     */
+    private boolean isComplete(ByteArrayOutputStream buf) {
+        String command = new String(buf.toByteArray(),
+                StandardCharsets.UTF_8).trim();
+        if (replies.containsKey(command)) {
+            return true;
+        }
+        Request request = Request.toRequest(command);
+        return request != null && !request.includesParameter();
+    }
+
+    /*
+     * "pools" or "pga|0" to the JSON form recorded by an APIConnection
+     */
+    private static String toJSONCommand(String textCommand) {
+        int bar = textCommand.indexOf('|');
+        Request request = Request.toRequest(bar < 0 ? textCommand
+                : textCommand.substring(0, bar));
+        if (request == null) {
+            return textCommand;
+        }
+        return new Command(request,
+                bar < 0 ? null : textCommand.substring(bar + 1))
+                .toJSONString();
+    }
+
+    /**
+     * Convert a JSON reply to cgminer's plain text form: one entry per
+     * '|' terminated segment, ',' separated key=value fields, and a bare
+     * section name leading the entries of sections that have no
+     * identifying key of their own.
+     * @param jsonReply the JSON reply
+     * @return the reply in text form, or {@code jsonReply} if it is not
+     * well formed
+     */
+    static byte[] toTextReply(byte[] jsonReply) {
+        JsonObject root;
+        try {
+            root = JsonBackend.getDefault().readObject(
+                    new String(jsonReply, StandardCharsets.UTF_8));
+        } catch (JsonException e) {
+            return jsonReply;
+        }
+        StringBuilder sb = new StringBuilder(jsonReply.length);
+        for (Map.Entry<String, JsonValue> section : root.entrySet()) {
+            if (!(section.getValue() instanceof JsonArray)) {
+                continue;
+            }
+            String name = section.getKey();
+            boolean bare = !name.equals(Reply.STATUS_REPLY)
+                    && !name.equals(Reply.DEVS_REPLY)
+                    && !name.equals(Reply.POOLS_REPLY)
+                    && !name.equals(Reply.STATS_REPLY);
+            for (JsonValue entry : (JsonArray) section.getValue()) {
+                if (!(entry instanceof JsonObject)) {
+                    continue;
+                }
+                boolean first = true;
+                if (bare) {
+                    sb.append(name);
+                    first = false;
+                }
+                for (Map.Entry<String, JsonValue> field
+                        : ((JsonObject) entry).entrySet()) {
+                    if (!first) {
+                        sb.append(',');
+                    }
+                    first = false;
+                    appendEscaped(sb, field.getKey());
+                    sb.append('=');
+                    JsonValue value = field.getValue();
+                    appendEscaped(sb, value instanceof JsonString
+                            ? ((JsonString) value).getString()
+                            : value.toString());
+                }
+                sb.append('|');
+            }
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendEscaped(StringBuilder sb, String str) {
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == ',' || c == '|' || c == '=' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+    }
+
+    private static byte[] errorReply(String msg, boolean text) {
+        byte[] reply = errorReply(msg);
+        return text ? toTextReply(reply) : reply;
+    }
+
+    private static byte[] errorReply(String msg) {
+        return ("{\"" + Reply.STATUS + "\":[{\"" + Reply.STATUS + "\":\"E\",\""
+                + Reply.WHEN + "\":" + System.currentTimeMillis() / 1000
+                + ",\"" + Reply.CODE + "\":" + INVALID_COMMAND + ",\""
+                + Reply.MSG + "\":\"" + msg + "\",\"" + Reply.DESCRIPTION
+                + "\":\"" + TrafficReplayServer.class.getSimpleName()
+                + "\"}],\"id\":1}").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Replays a recording made by a {@link TrafficRecorder}, preserving the
+ * recorded spacing between exchanges scaled by a speed factor: 1.0 replays
+ * in real time, 10.0 ten times faster and {@link #MAX_SPEED} as fast as the
+ * consumer can keep up.
+ * <br><br>
+ * {@link #replay(TrafficRecorder.RecordVisitor)} hands back the raw
+ * records, {@link #replaySamples(Consumer)} runs each reply through
+ * {@link JSONParser} exactly as a live poll would.  To exercise the socket
+ * path as well, serve the recording with a {@link TrafficReplayServer}.
+ */
+public class TrafficReplayer {
+
+    /**
+     * Speed factor that replays without any pauses
+     */
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+    private final Path file;
+    private final double speed;
+
+    /**
+     * Creates a TrafficReplayer
+     * @param file the recording file
+     * @param speed replay speed relative to the recording, greater than 0
+     */
+    public TrafficReplayer(Path file, double speed) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("speed must be > 0: " + speed);
+        }
+        this.file = file;
+        this.speed = speed;
+    }
+
+    /**
+     * Replay the raw records.
+     * @param visitor called for each record at its scaled time
+     * @return the number of records replayed
+     * @throws IOException if the recording cannot be read
+     * @throws InterruptedException if interrupted while pacing the replay
+     */
+    public long replay(TrafficRecorder.RecordVisitor visitor)
+            throws IOException, InterruptedException {
+        Pacer pacer = new Pacer(speed);
+        try {
+            return TrafficRecorder.read(file, record -> {
+                try {
+                    pacer.await(record.getTimestamp());
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException(e);
+                }
+                return visitor.visit(record);
+            });
+        } catch (InterruptedIOException e) {
+            throw (InterruptedException) e.getCause();
+        }
+    }
+
+    /**
+     * Replay the records, parsing every reply with {@link JSONParser}.
+     * @param consumer called with each parsed reply at its scaled time
+     * @return the number of records replayed
+     * @throws IOException if the recording cannot be read
+     * @throws InterruptedException if interrupted while pacing the replay
+     */
+    public long replaySamples(Consumer<RigSample> consumer)
+            throws IOException, InterruptedException {
+        return replay(record -> {
+            consumer.accept(record.toRigSample());
+            return true;
+        });
+    }
+
+    /**
+     * @return the recording file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return replay speed relative to the recording
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /*
+     * Carries an InterruptedException out of a RecordVisitor
+     */
+    private static class InterruptedIOException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private InterruptedIOException(InterruptedException cause) {
+            super(cause);
+        }
+    }
+
+    /*
+     * Sleeps until the scaled offset of a recorded timestamp from the first
+     * recorded timestamp has elapsed since the first call.
+     */
+    static class Pacer {
+
+        private final double speed;
+        private long firstTimestamp;
+        private long startNanos;
+        private boolean started;
+
+        Pacer(double speed) {
+            this.speed = speed;
+        }
+
+        synchronized void reset() {
+            started = false;
+        }
+
+        void await(long timestamp) throws InterruptedException {
+            long dueNanos;
+            synchronized (this) {
+                if (!started) {
+                    firstTimestamp = timestamp;
+                    startNanos = System.nanoTime();
+                    started = true;
+                }
+                if (speed == MAX_SPEED) {
+                    return;
+                }
+                dueNanos = startNanos + (long) ((timestamp - firstTimestamp)
+                        * 1_000_000L / speed);
+            }
+            long remaining;
+            while ((remaining = dueNanos - System.nanoTime()) > 0) {
+                Thread.sleep(remaining / 1_000_000L,
+                        (int) (remaining % 1_000_000L));
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Subscription shared by {@link RigPublisher} and {@link FleetPublisher}.
+ * Each rig is polled by its own task on the scheduler; samples are handed
+ * to the subscriber only against outstanding demand, as dictated by the
+ * {@link BackpressureMode}.
+ *
+ * @param <T> the item type delivered to the subscriber
+ */
+final class PollingSubscription<T> implements Flow.Subscription {
+
+    private static final Logger LOGGER =
+            Logger.getLogger("com.jtconnors.cgminerapi");
+
+    private final Flow.Subscriber<? super T> subscriber;
+    private final Function<RigSample, T> mapper;
+    private final BackpressureMode mode;
+    private final AtomicLong demand = new AtomicLong();
+    private final List<ScheduledFuture<?>> tasks = new ArrayList<>();
+    /* LATEST mode only: newest undelivered sample per rig, guarded by this */
+    private final Map<String, RigSample> pending = new LinkedHashMap<>();
+    private volatile boolean cancelled;
+
+    PollingSubscription(Flow.Subscriber<? super T> subscriber,
+            Function<RigSample, T> mapper, BackpressureMode mode) {
+        this.subscriber = subscriber;
+        this.mapper = mapper;
+        this.mode = mode;
+    }
+
+    /*
+     * Schedule one polling task per rig.  Called after onSubscribe().
+     */
+    void start(List<RigPoller> pollers, ScheduledExecutorService scheduler,
+            long interval, TimeUnit unit) {
+        synchronized (tasks) {
+            for (RigPoller poller : pollers) {
+                if (cancelled) {
+                    return;
+                }
+                tasks.add(scheduler.scheduleWithFixedDelay(
+                        () -> poll(poller), 0, interval, unit));
+            }
+        }
+    }
+
+    @Override
+    public void request(long n) {
+        if (cancelled) {
+            return;
+        }
+        if (n <= 0) {
+            cancel();
+            subscriber.onError(new IllegalArgumentException(
+                    "non-positive subscription request: " + n));
+            return;
+        }
+        demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+        if (mode == BackpressureMode.LATEST) {
+            drain();
+        }
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        synchronized (tasks) {
+            for (ScheduledFuture<?> task : tasks) {
+                task.cancel(false);
+            }
+            tasks.clear();
+        }
+        synchronized (this) {
+            pending.clear();
+        }
+    }
+
+    private void poll(RigPoller poller) {
+        if (cancelled) {
+            return;
+        }
+        if (mode == BackpressureMode.PAUSE) {
+            if (!reserve()) {
+                return;
+            }
+            RigSample sample = pollQuietly(poller);
+            if (sample == null) {
+                demand.incrementAndGet();
+                return;
+            }
+            synchronized (this) {
+                if (!cancelled) {
+                    deliver(sample);
+                }
+            }
+        } else {
+            RigSample sample = pollQuietly(poller);
+            if (sample == null) {
+                return;
+            }
+            synchronized (this) {
+                pending.put(sample.getRigId(), sample);
+            }
+            drain();
+        }
+    }
+
+    /*
+     * A single unreachable rig, or a reply that cannot be parsed, must not
+     * terminate the stream, so polling errors are logged and the sample is
+     * skipped.  Letting one escape would also silently end the periodic
+     * task of the rig.
+     */
+    private RigSample pollQuietly(RigPoller poller) {
+        try {
+            return poller.poll();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Poll of {0} failed: {1}",
+                    new Object[] {poller.getRigId(), e.getMessage()});
+            return null;
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Poll of " + poller.getRigId()
+                    + " failed", e);
+            return null;
+        }
+    }
+
+    /*
+     * Per Flow rule 2.13 a subscriber that throws from onNext has cancelled
+     * its subscription; it is also told why.  Must be called with the
+     * monitor held.
+     */
+    private void deliver(RigSample sample) {
+        try {
+            subscriber.onNext(mapper.apply(sample));
+        } catch (RuntimeException e) {
+            cancel();
+            subscriber.onError(e);
+        }
+    }
+
+    private boolean reserve() {
+        return demand.getAndUpdate(d -> d > 0 ? d - 1 : d) > 0;
+    }
+
+    private synchronized void drain() {
+        Iterator<RigSample> it = pending.values().iterator();
+        while (!cancelled && it.hasNext() && reserve()) {
+            RigSample sample = it.next();
+            it.remove();
+            deliver(sample);
+            it = pending.values().iterator();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2020, Jim Connors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   * Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided
+ *     with the distribution.
+ *   * Neither the name of this project nor the names of its
+ *     contributors may be used to endorse or promote products derived
+ *     from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jtconnors.cgminerapi;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@code Flow.Publisher} that continuously polls a single rig and
+ * publishes the parsed replies of each poll.  Polling honours subscriber
+ * demand according to the configured {@link BackpressureMode}, so a slow
+ * subscriber never causes parsed replies to accumulate on the heap.
+ * <br><br>
+ * Every subscriber gets its own polling schedule.  Polling errors are
+ * logged and the affected poll is skipped; the stream itself only ends when
+ * the subscription is cancelled.
+ */
+public class RigPublisher implements Flow.Publisher<List<Reply>> {
+
+    private final RigPoller poller;
+    private final ScheduledExecutorService scheduler;
+    private final long interval;
+    private final TimeUnit unit;
+    private final BackpressureMode mode;
+
+    /**
+     * Creates a RigPublisher
+     * @param poller the poller for the rig
+     * @param scheduler executor running the polling tasks
+     * @param interval delay between the end of one poll and the start of
+     * the next
+     * @param unit the time unit of {@code interval}
+     * @param mode behaviour while the subscriber has no outstanding demand
+     */
+    public RigPublisher(RigPoller poller, ScheduledExecutorService scheduler,
+            long interval, TimeUnit unit, BackpressureMode mode) {
+        this.poller = poller;
+        this.scheduler = scheduler;
+        this.interval = interval;
+        this.unit = unit;
+        this.mode = mode;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<Reply>> subscriber) {
+        PollingSubscription<List<Reply>> subscription =
+                new PollingSubscription<>(subscriber, RigSample::getReplies,
+                        mode);
+        subscriber.onSubscribe(subscription);
+        subscription.start(Collections.singletonList(poller), scheduler,
+                interval, unit);
+    }
+}